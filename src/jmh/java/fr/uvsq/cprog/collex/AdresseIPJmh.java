@@ -0,0 +1,69 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Débit de {@link AdresseIP#compareTo}, utilisé par le tri par adresse de la
+ * commande {@code ls -a}, pour des adresses IPv4 et IPv6, et de l’analyse
+ * d’une adresse IPv6 abrégée.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdresseIPJmh {
+  private static final int ADRESSES = 1 << 10;
+
+  private AdresseIP[] adresses;
+  private AdresseIP[] adressesIpv6;
+  private String[] textesIpv6;
+  private int suivant;
+
+  @Setup
+  public void preparer() {
+    Random aleatoire = new Random(42);
+    adresses = new AdresseIP[ADRESSES];
+    for (int i = 0; i < ADRESSES; i++) {
+      adresses[i] = new AdresseIP(AdresseIP.depuisEntier(aleatoire.nextInt()).getIp());
+    }
+    adressesIpv6 = new AdresseIP[ADRESSES];
+    textesIpv6 = new String[ADRESSES];
+    for (int i = 0; i < ADRESSES; i++) {
+      // Préfixe de documentation et identifiant d’interface souvent court.
+      adressesIpv6[i] = AdresseIP.depuisEntiers(0x2001_0db8_0000_0000L | aleatoire.nextInt(1 << 16),
+          aleatoire.nextLong() >>> (16 * aleatoire.nextInt(4)));
+      textesIpv6[i] = adressesIpv6[i].getIp();
+    }
+  }
+
+  @Benchmark
+  public int compareTo() {
+    int i = suivant++ & (ADRESSES - 1);
+    return adresses[i].compareTo(adresses[(i + 1) & (ADRESSES - 1)]);
+  }
+
+  @Benchmark
+  public int compareToIpv6() {
+    int i = suivant++ & (ADRESSES - 1);
+    return adressesIpv6[i].compareTo(adressesIpv6[(i + 1) & (ADRESSES - 1)]);
+  }
+
+  @Benchmark
+  public AdresseIP analyserIpv6() {
+    return AdresseIP.depuisTexte(textesIpv6[suivant++ & (ADRESSES - 1)]);
+  }
+}
@@ -0,0 +1,87 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Génère des fichiers de base synthétiques pour les mesures JMH.
+ * <p>
+ * L’enregistrement {@code i} s’appelle {@code h<i>.d<i % domaines>.bench.fr},
+ * avec un domaine pour {@link #MACHINES_PAR_DOMAINE} machines, et a pour
+ * adresse l’entier {@code i}. Les adresses à partir de {@code 2^31} ne sont
+ * jamais utilisées par la base et servent aux ajouts.
+ * </p>
+ */
+final class BaseSynthetique {
+  /** Nombre moyen de machines par domaine. */
+  static final int MACHINES_PAR_DOMAINE = 100;
+
+  private BaseSynthetique() {
+  }
+
+  /**
+   * Retourne le nombre de domaines d’une base de {@code taille} enregistrements.
+   *
+   * @param taille le nombre d’enregistrements
+   * @return le nombre de domaines
+   */
+  static int domaines(int taille) {
+    return Math.max(1, taille / MACHINES_PAR_DOMAINE);
+  }
+
+  /**
+   * Retourne le nom complet de l’enregistrement {@code i}.
+   *
+   * @param i      le rang de l’enregistrement
+   * @param taille le nombre d’enregistrements de la base
+   * @return le nom complet
+   */
+  static String nom(int i, int taille) {
+    return "h" + i + "." + domaine(i % domaines(taille));
+  }
+
+  /**
+   * Retourne le nom du domaine {@code d}.
+   *
+   * @param d le rang du domaine
+   * @return le nom du domaine
+   */
+  static String domaine(int d) {
+    return "d" + d + ".bench.fr";
+  }
+
+  /**
+   * Écrit une base de {@code taille} enregistrements dans un fichier temporaire.
+   *
+   * @param taille le nombre d’enregistrements
+   * @return le fichier créé
+   * @throws IOException si l’écriture échoue
+   */
+  static Path generer(int taille) throws IOException {
+    Path fichier = Files.createTempFile("dns_jmh_" + taille + "_", ".txt");
+    try (BufferedWriter sortie = Files.newBufferedWriter(fichier, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < taille; i++) {
+        sortie.write(nom(i, taille));
+        sortie.write(' ');
+        sortie.write(AdresseIP.depuisEntier(i).getIp());
+        sortie.newLine();
+      }
+    }
+    return fichier;
+  }
+
+  /**
+   * Supprime une base générée ainsi que son journal et son instantané.
+   *
+   * @param fichier le fichier de base
+   * @throws IOException si la suppression échoue
+   */
+  static void supprimer(Path fichier) throws IOException {
+    for (String suffixe : new String[] {"", ".journal", ".journal.compactage", ".bin", TableTriee.EXTENSION}) {
+      Files.deleteIfExists(fichier.resolveSibling(fichier.getFileName() + suffixe));
+    }
+  }
+}
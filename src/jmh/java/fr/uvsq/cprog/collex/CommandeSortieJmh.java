@@ -0,0 +1,110 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Débit des commandes {@code ls domaine} (une centaine de lignes) et
+ * {@code ls -R bench.fr} (toute la base) selon la sortie utilisée :
+ * <ul>
+ * <li>{@code tamponnee} — une {@link SortieTamponnee} vidée une fois par
+ * commande ;</li>
+ * <li>{@code println} — un {@link PrintStream} à vidage automatique, comme
+ * {@code System.out}, qui écrit et vide à chaque ligne ;</li>
+ * <li>{@code resultat} — un {@link ResultatCommande}, sans encodage.</li>
+ * </ul>
+ * Les octets sont écrits dans {@code /dev/null} lorsqu’il existe, pour que
+ * chaque vidage coûte un appel système.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CommandeSortieJmh {
+  @Param({"10000", "100000"})
+  public int taille;
+
+  @Param({"tamponnee", "println", "resultat"})
+  public String sortie;
+
+  private Path fichier;
+  private Dns dns;
+  private OutputStream flux;
+  private SortieCommande destination;
+  private ResultatCommande resultat;
+  private Commande[] listes;
+  private Commande zone;
+  private int suivant;
+
+  @Setup(Level.Trial)
+  public void preparer() throws IOException {
+    fichier = BaseSynthetique.generer(taille);
+    dns = new Dns(fichier);
+    Path nul = Path.of("/dev/null");
+    flux = Files.isWritable(nul) ? new FileOutputStream(nul.toFile()) : OutputStream.nullOutputStream();
+    switch (sortie) {
+      case "tamponnee":
+        destination = new SortieTamponnee(flux);
+        break;
+      case "println":
+        PrintStream console = new PrintStream(new BufferedOutputStream(flux), true);
+        destination = console::println;
+        break;
+      default:
+        resultat = new ResultatCommande();
+        destination = resultat;
+        break;
+    }
+    listes = new Commande[BaseSynthetique.domaines(taille)];
+    for (int d = 0; d < listes.length; d++) {
+      listes[d] = new CommandeList(dns, BaseSynthetique.domaine(d), false);
+    }
+    zone = new CommandeListRecursive(dns, "bench.fr");
+  }
+
+  @TearDown(Level.Trial)
+  public void nettoyer() throws IOException {
+    flux.close();
+    BaseSynthetique.supprimer(fichier);
+  }
+
+  private void executer(Commande commande) {
+    commande.execute(destination);
+    destination.vider();
+    if (resultat != null) {
+      resultat.effacer();
+    }
+  }
+
+  @Benchmark
+  public void listeDomaine() {
+    executer(listes[suivant++ % listes.length]);
+  }
+
+  @Benchmark
+  public void listeZone() {
+    executer(zone);
+  }
+}
@@ -0,0 +1,77 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Débit de {@code addItem} selon la taille de la base, et de {@code addItems}
+ * par lots de {@value #LOT} enregistrements, rapporté à l’enregistrement.
+ * <p>
+ * Le compactage automatique est désactivé pour que la mesure ne porte que sur
+ * l’ajout lui-même : contrôles d’unicité, écriture dans le journal et mise à
+ * jour des index.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DnsAjoutJmh {
+  private static final int LOT = 1_000;
+
+  @Param({"10000", "100000", "1000000", "10000000"})
+  public int taille;
+
+  private Path fichier;
+  private Dns dns;
+  private int suivant = Integer.MIN_VALUE;
+
+  @Setup(Level.Trial)
+  public void preparer() throws IOException {
+    fichier = BaseSynthetique.generer(taille);
+    dns = new Dns(fichier, Integer.MAX_VALUE);
+  }
+
+  @TearDown(Level.Trial)
+  public void nettoyer() throws IOException {
+    BaseSynthetique.supprimer(fichier);
+  }
+
+  @Benchmark
+  public void addItem() throws IOException {
+    int valeur = suivant++;
+    dns.addItem(AdresseIP.depuisEntier(valeur), new NomMachine("a" + (valeur & Integer.MAX_VALUE) + ".ajout.fr"));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LOT)
+  public void addItems() throws IOException {
+    List<DnsItem> lot = new ArrayList<>(LOT);
+    for (int i = 0; i < LOT; i++) {
+      int valeur = suivant++;
+      lot.add(new DnsItem(AdresseIP.depuisEntier(valeur),
+          new NomMachine("a" + (valeur & Integer.MAX_VALUE) + ".ajout.fr")));
+    }
+    dns.addItems(lot);
+  }
+}
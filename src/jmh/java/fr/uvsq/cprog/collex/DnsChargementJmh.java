@@ -0,0 +1,68 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Durée de chargement d’une base ({@code chargerBase}, appelé par le
+ * constructeur de {@link Dns}) depuis le fichier texte ou depuis l’instantané
+ * binaire. {@code decoder} ne mesure que la lecture des enregistrements, par
+ * {@link ChargeurBase} ou {@link InstantaneBinaire}, sans construire les index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DnsChargementJmh {
+  @Param({"10000", "100000", "1000000", "10000000"})
+  public int taille;
+
+  @Param({"texte", "instantane"})
+  public String format;
+
+  private Path fichier;
+  private Path instantane;
+
+  @Setup(Level.Trial)
+  public void preparer() throws IOException {
+    fichier = BaseSynthetique.generer(taille);
+    instantane = fichier.resolveSibling(fichier.getFileName() + ".bin");
+    if (format.equals("instantane")) {
+      new Dns(fichier).exporterInstantane();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void nettoyer() throws IOException {
+    BaseSynthetique.supprimer(fichier);
+  }
+
+  @Benchmark
+  public Dns chargerBase() throws IOException {
+    return new Dns(fichier);
+  }
+
+  @Benchmark
+  public List<DnsItem> decoder() throws IOException {
+    return format.equals("instantane") ? InstantaneBinaire.lire(instantane)
+        : ChargeurBase.charger(fichier);
+  }
+}
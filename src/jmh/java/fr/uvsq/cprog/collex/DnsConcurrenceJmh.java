@@ -0,0 +1,93 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Débit des recherches sur un {@link Dns} partagé pendant qu’un écrivain y
+ * ajoute des enregistrements sans interruption.
+ * <p>
+ * Chaque lecteur cherche un nom puis l’adresse trouvée, en partant d’un rang
+ * qui lui est propre. Le nombre de lecteurs se règle avec l’option
+ * {@code -tg} de JMH, par exemple {@code -tg 8,1} pour huit lecteurs et un
+ * écrivain ; le débit des recherches seules est mesuré par
+ * {@link DnsRechercheJmh} avec l’option {@code -t}.
+ * </p>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DnsConcurrenceJmh {
+  private static final int CLES = 1 << 16;
+
+  @Param({"100000", "1000000"})
+  public int taille;
+
+  private Path fichier;
+  private Dns dns;
+  private NomMachine[] noms;
+  private int ajout = Integer.MIN_VALUE;
+
+  @Setup(Level.Trial)
+  public void preparer() throws IOException {
+    fichier = BaseSynthetique.generer(taille);
+    dns = new Dns(fichier, Integer.MAX_VALUE);
+    noms = new NomMachine[CLES];
+    for (int k = 0; k < CLES; k++) {
+      noms[k] = new NomMachine(BaseSynthetique.nom((int) ((k * 2_654_435_761L) % taille), taille));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void nettoyer() throws IOException {
+    BaseSynthetique.supprimer(fichier);
+  }
+
+  /** Rang de la prochaine clé cherchée par un lecteur. */
+  @State(Scope.Thread)
+  public static class Curseur {
+    private int suivant;
+
+    @Setup(Level.Trial)
+    public void preparer() {
+      suivant = (int) Thread.currentThread().getId() * 7919;
+    }
+  }
+
+  @Benchmark
+  @Group("lectureEcriture")
+  @GroupThreads(3)
+  public DnsItem rechercher(Curseur curseur) {
+    DnsItem item = dns.getItem(noms[curseur.suivant++ & (CLES - 1)]);
+    return dns.getItem(item.getAdresseIP());
+  }
+
+  @Benchmark
+  @Group("lectureEcriture")
+  @GroupThreads(1)
+  public void ajouter() throws IOException {
+    int valeur = ajout++;
+    dns.addItem(AdresseIP.depuisEntier(valeur),
+        new NomMachine("a" + (valeur & Integer.MAX_VALUE) + ".ajout.fr"));
+  }
+}
@@ -0,0 +1,105 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare les moteurs de {@link BaseDns} : {@link Dns}, dans le tas,
+ * {@link DnsHorsTas} et {@link DnsTableTriee}, qui lit une table triée sur
+ * disque. Le débit des recherches exactes est mesuré ; la mémoire du tas
+ * occupée après le chargement (ou l’ouverture de la table) et, pour
+ * {@link DnsHorsTas}, la mémoire hors du tas sont affichées à la préparation.
+ * <p>
+ * Les clés recherchées sont préparées à l’avance et parcourues dans un ordre
+ * pseudo-aléatoire, comme dans {@link DnsRechercheJmh}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-XX:MaxDirectMemorySize=16g"})
+public class DnsMoteursJmh {
+  private static final int CLES = 1 << 16;
+
+  @Param({"100000", "1000000", "10000000"})
+  public int taille;
+
+  @Param({"tas", "horsTas", "table"})
+  public String moteur;
+
+  private Path fichier;
+  private BaseDns dns;
+  private NomMachine[] noms;
+  private AdresseIP[] adresses;
+  private int suivant;
+
+  @Setup(Level.Trial)
+  public void preparer() throws IOException {
+    fichier = BaseSynthetique.generer(taille);
+    MemoryMXBean memoire = ManagementFactory.getMemoryMXBean();
+    memoire.gc();
+    long avant = memoire.getHeapMemoryUsage().getUsed();
+    if (moteur.equals("table")) {
+      Path table = fichier.resolveSibling(fichier.getFileName() + TableTriee.EXTENSION);
+      TableTriee.convertir(fichier, table);
+      memoire.gc();
+      avant = memoire.getHeapMemoryUsage().getUsed();
+      dns = new DnsTableTriee(table);
+    } else {
+      dns = moteur.equals("tas") ? new Dns(fichier) : new DnsHorsTas(fichier);
+    }
+    memoire.gc();
+    long tas = memoire.getHeapMemoryUsage().getUsed() - avant;
+    long horsTas = dns instanceof DnsHorsTas ? ((DnsHorsTas) dns).getOctetsHorsTas() : 0;
+    System.out.printf("%n%s, %d enregistrements : tas %d octets/enregistrement, hors tas %d octets/enregistrement%n",
+        moteur, taille, tas / taille, horsTas / taille);
+    noms = new NomMachine[CLES];
+    adresses = new AdresseIP[CLES];
+    for (int k = 0; k < CLES; k++) {
+      int i = (int) ((k * 2_654_435_761L) % taille);
+      noms[k] = new NomMachine(BaseSynthetique.nom(i, taille));
+      adresses[k] = AdresseIP.depuisEntier(i);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void nettoyer() throws IOException {
+    if (dns instanceof DnsTableTriee) {
+      ((DnsTableTriee) dns).close();
+    }
+    BaseSynthetique.supprimer(fichier);
+  }
+
+  private int cle() {
+    return suivant++ & (CLES - 1);
+  }
+
+  @Benchmark
+  public DnsItem getItemParNom() {
+    return dns.getItem(noms[cle()]);
+  }
+
+  @Benchmark
+  public DnsItem getItemParAdresse() {
+    return dns.getItem(adresses[cle()]);
+  }
+}
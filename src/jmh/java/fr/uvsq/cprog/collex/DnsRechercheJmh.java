@@ -0,0 +1,146 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Débit des recherches ({@code getItem} par nom et par adresse), de la
+ * commande {@code ls} ({@code getItems}), des recherches par bloc CIDR
+ * ({@code /24}) et par préfixe de nom ({@code find}) selon la taille de la
+ * base. Les recherches par texte d’un petit ensemble de noms fréquents, dont
+ * la moitié sont absents, sont mesurées avec et sans le cache de recherche.
+ * Les recherches par texte de noms et d’adresses absents, tous différents,
+ * mesurent le rejet par les filtres de Bloom.
+ * <p>
+ * Les clés recherchées sont préparées à l’avance et parcourues dans un ordre
+ * pseudo-aléatoire, de sorte que la mesure ne comprend que la recherche.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DnsRechercheJmh {
+  private static final int CLES = 1 << 16;
+  private static final int FREQUENTS = 1 << 10;
+
+  @Param({"10000", "100000", "1000000", "10000000"})
+  public int taille;
+
+  private Path fichier;
+  private Dns dns;
+  private NomMachine[] noms;
+  private AdresseIP[] adresses;
+  private String[] nomsAbsents;
+  private String[] adressesAbsentes;
+  private String[] domaines;
+  private Cidr[] blocs;
+  private String[] motifs;
+  private String[] frequents;
+  private int suivant;
+
+  @Setup(Level.Trial)
+  public void preparer() throws IOException {
+    fichier = BaseSynthetique.generer(taille);
+    dns = new Dns(fichier);
+    noms = new NomMachine[CLES];
+    adresses = new AdresseIP[CLES];
+    nomsAbsents = new String[CLES];
+    adressesAbsentes = new String[CLES];
+    domaines = new String[CLES];
+    blocs = new Cidr[CLES];
+    motifs = new String[CLES];
+    frequents = new String[FREQUENTS];
+    for (int k = 0; k < FREQUENTS; k++) {
+      int i = (int) ((k * 2_654_435_761L) % taille);
+      frequents[k] = (k & 1) == 0 ? BaseSynthetique.nom(i, taille) : "absent" + k + ".bench.fr";
+    }
+    for (int k = 0; k < CLES; k++) {
+      int i = (int) ((k * 2_654_435_761L) % taille);
+      noms[k] = new NomMachine(BaseSynthetique.nom(i, taille));
+      adresses[k] = new AdresseIP(AdresseIP.depuisEntier(i).getIp());
+      nomsAbsents[k] = "absent" + k + ".bench.fr";
+      adressesAbsentes[k] = AdresseIP.depuisEntier(taille + i).getIp();
+      domaines[k] = BaseSynthetique.domaine(i % BaseSynthetique.domaines(taille));
+      blocs[k] = new Cidr(AdresseIP.depuisEntier(i), 24);
+      motifs[k] = "h" + i + ".*";
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void nettoyer() throws IOException {
+    BaseSynthetique.supprimer(fichier);
+  }
+
+  private int cle() {
+    return suivant++ & (CLES - 1);
+  }
+
+  @Benchmark
+  public DnsItem getItemParNom() {
+    return dns.getItem(noms[cle()]);
+  }
+
+  @Benchmark
+  public DnsItem getItemParNomTexteCache() {
+    return dns.getItemParNom(frequents[cle() & (FREQUENTS - 1)]);
+  }
+
+  @Benchmark
+  public DnsItem getItemParNomTexteSansCache() {
+    return dns.getItem(new NomMachine(frequents[cle() & (FREQUENTS - 1)]));
+  }
+
+  @Benchmark
+  public DnsItem getItemParAdresse() {
+    return dns.getItem(adresses[cle()]);
+  }
+
+  @Benchmark
+  public DnsItem getItemParNomTexteAbsent() {
+    return dns.getItemParNom(nomsAbsents[cle()]);
+  }
+
+  @Benchmark
+  public DnsItem getItemParAdresseTexteAbsente() {
+    return dns.getItemParAdresse(adressesAbsentes[cle()]);
+  }
+
+  @Benchmark
+  public List<DnsItem> getItemsParNom() {
+    return dns.getItems(domaines[cle()], false);
+  }
+
+  @Benchmark
+  public List<DnsItem> getItemsParAdresse() {
+    return dns.getItems(domaines[cle()], true);
+  }
+
+  @Benchmark
+  public List<DnsItem> getItemsParBloc() {
+    return dns.getItems(blocs[cle()]);
+  }
+
+  @Benchmark
+  public List<DnsItem> getItemsParMotif() {
+    return dns.getItemsParMotif(motifs[cle()], CommandeFind.LIMITE);
+  }
+}
@@ -0,0 +1,135 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Débit et latence de {@link ServeurDnsUdp} et de {@link ServeurDnsTcp} sur la
+ * boucle locale, avec plusieurs clients (un par thread de mesure, réglable
+ * avec l’option {@code -t} de JMH).
+ * <p>
+ * {@code udp} envoie une requête A et attend sa réponse. {@code tcp} envoie
+ * {@value #PAQUET} recherches de nom d’un seul envoi puis lit leurs réponses ;
+ * le débit est rapporté à la commande.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ServeursJmh {
+  private static final int ENREGISTREMENTS = 100_000;
+  private static final int PAQUET = 256;
+
+  private Path fichier;
+  private ServeurDnsUdp serveurUdp;
+  private ServeurDnsTcp serveurTcp;
+
+  @Setup(Level.Trial)
+  public void preparer() throws IOException {
+    fichier = BaseSynthetique.generer(ENREGISTREMENTS);
+    Dns dns = new Dns(fichier);
+    InetSocketAddress adresse = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+    serveurUdp = new ServeurDnsUdp(dns, adresse).demarrer();
+    serveurTcp = new ServeurDnsTcp(dns, adresse).demarrer();
+  }
+
+  @TearDown(Level.Trial)
+  public void nettoyer() throws IOException {
+    serveurUdp.close();
+    serveurTcp.close();
+    BaseSynthetique.supprimer(fichier);
+  }
+
+  /** Les connexions d’un client et le rang du prochain nom qu’il cherche. */
+  @State(Scope.Thread)
+  public static class Client {
+    private DatagramChannel udp;
+    private Socket tcp;
+    private OutputStream sortie;
+    private BufferedReader lecteur;
+    private final ByteBuffer reponse = ByteBuffer.allocate(CodecDns.TAILLE_MAX_UDP);
+    private final ByteBuffer requete = ByteBuffer.allocate(CodecDns.TAILLE_MAX_UDP);
+    private int suivant;
+
+    @Setup(Level.Trial)
+    public void connecter(ServeursJmh banc) throws IOException {
+      InetAddress boucle = InetAddress.getLoopbackAddress();
+      udp = DatagramChannel.open();
+      udp.connect(new InetSocketAddress(boucle, banc.serveurUdp.getPort()));
+      tcp = new Socket(boucle, banc.serveurTcp.getPort());
+      sortie = tcp.getOutputStream();
+      lecteur = new BufferedReader(new InputStreamReader(tcp.getInputStream(), StandardCharsets.UTF_8));
+      suivant = (int) Thread.currentThread().getId() * 7919;
+    }
+
+    @TearDown(Level.Trial)
+    public void fermer() throws IOException {
+      udp.close();
+      tcp.close();
+    }
+
+    private String nom() {
+      return BaseSynthetique.nom(Math.floorMod(suivant++ * 31, ENREGISTREMENTS), ENREGISTREMENTS);
+    }
+  }
+
+  @Benchmark
+  public int udp(Client client) throws IOException {
+    ByteBuffer requete = client.requete.clear();
+    requete.putShort((short) client.suivant).putShort((short) 0x0100).putShort((short) 1)
+        .putShort((short) 0).putShort((short) 0).putShort((short) 0);
+    for (String libelle : client.nom().split("\\.")) {
+      requete.put((byte) libelle.length()).put(libelle.getBytes(StandardCharsets.US_ASCII));
+    }
+    requete.put((byte) 0).putShort((short) CodecDns.TYPE_A).putShort((short) CodecDns.CLASSE_IN);
+    client.udp.write(requete.flip());
+    client.reponse.clear();
+    return client.udp.read(client.reponse);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PAQUET)
+  public int tcp(Client client) throws IOException {
+    StringBuilder requetes = new StringBuilder();
+    for (int i = 0; i < PAQUET; i++) {
+      requetes.append(client.nom()).append('\n');
+    }
+    client.sortie.write(requetes.toString().getBytes(StandardCharsets.UTF_8));
+    client.sortie.flush();
+    // Chaque réponse tient sur une ligne suivie d’une ligne vide.
+    int octets = 0;
+    for (int i = 0; i < 2 * PAQUET; i++) {
+      octets += client.lecteur.readLine().length();
+    }
+    return octets;
+  }
+}
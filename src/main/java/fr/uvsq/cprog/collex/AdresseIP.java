@@ -1,68 +1,294 @@
 package fr.uvsq.cprog.collex;
 
-import java.util.Objects;
-
 /**
- * Représente une adresse IPv4 et permet de la comparer à d'autres adresses IP.
+ * Représente une adresse IP, IPv4 (enregistrement {@code A}) ou IPv6
+ * (enregistrement {@code AAAA}), et permet de la comparer à d'autres adresses
+ * IP.
  * <p>
  * Cette classe est immuable : une fois créée, l'adresse IP ne peut pas être
  * modifiée. Elle vérifie la validité de l'adresse donnée (quatre octets entre 0
- * et 255).
+ * et 255, ou huit groupes hexadécimaux, éventuellement abrégés).
+ * </p>
+ * <p>
+ * L'adresse est conservée sous forme numérique, dans deux entiers 64 bits
+ * (poids fort puis poids faible) accompagnés de sa famille ; une adresse IPv4
+ * n'occupe que les 32 bits de poids faible. L'égalité, le hachage et l'ordre
+ * naturel en sont déduits sans allocation. La forme textuelle n'est construite
+ * qu'à la demande, et conservée pour une adresse IPv4.
+ * </p>
+ * <p>
+ * Dans l'ordre naturel, toutes les adresses IPv4 précèdent les adresses IPv6 ;
+ * au sein d'une même famille, les adresses sont comparées octet par octet.
  * </p>
  */
-public class AdresseIP implements Comparable<AdresseIP> {
-  private final String ip;
+public final class AdresseIP implements Comparable<AdresseIP> {
+  /** Le cache d'instances IPv4 canoniques compte 2^BITS_CACHE entrées. */
+  private static final int BITS_CACHE = 12;
+  private static final AdresseIP[] CACHE = new AdresseIP[1 << BITS_CACHE];
+
+  private final long poidsFort;
+  private final long poidsFaible;
+  private final boolean ipv6;
+  private String texte;
 
   /**
-   * Construit une nouvelle instance d'AdresseIP à partir d'une chaîne donnée.
+   * Construit une adresse IP à partir d'une chaîne donnée.
    *
-   * @param ipDonnee l'adresse IP à utiliser (au format "x.x.x.x")
+   * @param ipDonnee l'adresse IP à utiliser, au format "x.x.x.x" ou au format
+   *                 IPv6, abrégé ou non
    * @throws IllegalArgumentException si l'adresse IP n'est pas valide
    */
   public AdresseIP(String ipDonnee) {
-    if (!estValide(ipDonnee)) {
+    long v = ipDonnee == null ? Analyseur.INVALIDE : Analyseur.analyserIp(ipDonnee, 0, ipDonnee.length());
+    if (v != Analyseur.INVALIDE) {
+      this.poidsFort = 0;
+      this.poidsFaible = v;
+      this.ipv6 = false;
+      return;
+    }
+    AdresseIP v6 = ipDonnee == null ? null : Analyseur.analyserIpv6(ipDonnee, 0, ipDonnee.length());
+    if (v6 == null) {
       throw new IllegalArgumentException("Adresse ip invalide : " + ipDonnee);
     }
-    this.ip = ipDonnee;
+    this.poidsFort = v6.poidsFort;
+    this.poidsFaible = v6.poidsFaible;
+    this.ipv6 = true;
   }
 
   /**
-   * Vérifie si une chaîne représente une adresse IPv4 valide.
+   * Construit une adresse IPv4 à partir de sa valeur entière, sans passer par
+   * le cache d’instances.
    *
-   * @param ip la chaîne à vérifier
-   * @return {@code true} si l'adresse est valide, {@code false} sinon
+   * @param valeur l'adresse sous forme d'entier (premier octet en poids fort)
    */
-  public static boolean estValide(String ip) {
-    if (ip == null) {
-      return false;
+  AdresseIP(int valeur) {
+    this.poidsFort = 0;
+    this.poidsFaible = valeur & 0xFFFF_FFFFL;
+    this.ipv6 = false;
+  }
+
+  /**
+   * Construit une adresse IPv6 à partir de ses 128 bits.
+   *
+   * @param poidsFort   les 64 premiers bits de l'adresse
+   * @param poidsFaible les 64 derniers bits de l'adresse
+   */
+  AdresseIP(long poidsFort, long poidsFaible) {
+    this.poidsFort = poidsFort;
+    this.poidsFaible = poidsFaible;
+    this.ipv6 = true;
+  }
+
+  /**
+   * Retourne l'adresse IPv4 ou IPv6 décrite par une chaîne. Contrairement au
+   * constructeur, une adresse IPv4 est prise dans le cache d'instances de
+   * {@link #depuisEntier(int)}, et une adresse IPv6 n'est allouée qu'une fois.
+   *
+   * @param ip l'adresse au format {@code x.x.x.x} ou au format IPv6, abrégé ou
+   *           non
+   * @return l'adresse correspondante
+   * @throws IllegalArgumentException si la chaîne n'est une adresse valide
+   *                                  d'aucune des deux familles
+   */
+  public static AdresseIP depuisTexte(String ip) {
+    if (ip != null) {
+      long v = Analyseur.analyserIp(ip, 0, ip.length());
+      if (v != Analyseur.INVALIDE) {
+        return depuisEntier((int) v);
+      }
+      AdresseIP v6 = Analyseur.analyserIpv6(ip, 0, ip.length());
+      if (v6 != null) {
+        return v6;
+      }
     }
+    throw new IllegalArgumentException("Adresse ip invalide : " + ip);
+  }
 
-    String[] parties = ip.split("\\.");
-    if (parties.length != 4) {
-      return false;
+  /**
+   * Retourne l'adresse IPv4 correspondant à un entier 32 bits.
+   * <p>
+   * Les instances sont partagées au travers d'un petit cache à correspondance
+   * directe : deux appels successifs avec la même valeur retournent le plus
+   * souvent la même instance.
+   * </p>
+   *
+   * @param valeur l'adresse sous forme d'entier (premier octet en poids fort)
+   * @return l'adresse IPv4 correspondante
+   */
+  public static AdresseIP depuisEntier(int valeur) {
+    int index = (valeur * 0x9E3779B9) >>> (32 - BITS_CACHE);
+    AdresseIP enCache = CACHE[index];
+    if (enCache != null && enCache.poidsFaible == (valeur & 0xFFFF_FFFFL)) {
+      return enCache;
     }
+    AdresseIP adresse = new AdresseIP(valeur);
+    CACHE[index] = adresse;
+    return adresse;
+  }
+
+  /**
+   * Retourne l'adresse IPv6 correspondant à ses 128 bits.
+   *
+   * @param poidsFort   les 64 premiers bits de l'adresse
+   * @param poidsFaible les 64 derniers bits de l'adresse
+   * @return l'adresse IPv6 correspondante
+   */
+  public static AdresseIP depuisEntiers(long poidsFort, long poidsFaible) {
+    return new AdresseIP(poidsFort, poidsFaible);
+  }
 
-    for (String partie : parties) {
-      try {
-        int valeur = Integer.parseInt(partie);
-        if (valeur < 0 || valeur > 255) {
-          return false;
-        }
-      } catch (NumberFormatException e) {
-        return false;
+  /**
+   * Retourne l'adresse IP correspondant à un tableau de quatre octets (IPv4)
+   * ou de seize octets (IPv6).
+   *
+   * @param octets les octets de l'adresse, du premier au dernier
+   * @return l'adresse IP correspondante
+   * @throws IllegalArgumentException si le tableau ne contient ni quatre ni
+   *                                  seize octets
+   */
+  public static AdresseIP depuisOctets(byte[] octets) {
+    if (octets != null && octets.length == 4) {
+      return depuisEntier((octets[0] & 0xFF) << 24 | (octets[1] & 0xFF) << 16
+          | (octets[2] & 0xFF) << 8 | (octets[3] & 0xFF));
+    }
+    if (octets != null && octets.length == 16) {
+      long fort = 0;
+      long faible = 0;
+      for (int i = 0; i < 8; i++) {
+        fort = fort << 8 | (octets[i] & 0xFF);
+        faible = faible << 8 | (octets[i + 8] & 0xFF);
       }
+      return new AdresseIP(fort, faible);
     }
+    throw new IllegalArgumentException("Une adresse IP comporte quatre ou seize octets");
+  }
 
-    return true;
+  /**
+   * Vérifie si une chaîne représente une adresse IP valide, IPv4 ou IPv6 :
+   * c'est le cas si et seulement si le constructeur l'accepte.
+   *
+   * @param ip la chaîne à vérifier
+   * @return {@code true} si l'adresse est valide, {@code false} sinon
+   */
+  public static boolean estValide(String ip) {
+    return ip != null && (Analyseur.analyserIp(ip, 0, ip.length()) != Analyseur.INVALIDE
+        || Analyseur.analyserIpv6(ip, 0, ip.length()) != null);
+  }
+
+  /**
+   * Indique si l'adresse est une adresse IPv6.
+   *
+   * @return {@code true} pour une adresse IPv6, {@code false} pour une adresse
+   *         IPv4
+   */
+  public boolean estIpv6() {
+    return ipv6;
+  }
+
+  /**
+   * Retourne les 32 bits de poids faible de l'adresse : pour une adresse IPv4,
+   * l'adresse elle-même sous forme d'entier (premier octet en poids fort).
+   *
+   * @return la valeur entière de l'adresse IPv4
+   */
+  public int getValeur() {
+    return (int) poidsFaible;
+  }
+
+  /**
+   * Retourne les 64 premiers bits d'une adresse IPv6 ; zéro pour une adresse
+   * IPv4.
+   *
+   * @return les bits de poids fort
+   */
+  public long getPoidsFort() {
+    return poidsFort;
+  }
+
+  /**
+   * Retourne les 64 derniers bits d'une adresse IPv6 ; pour une adresse IPv4,
+   * sa valeur sans signe.
+   *
+   * @return les bits de poids faible
+   */
+  public long getPoidsFaible() {
+    return poidsFaible;
   }
 
   /**
-   * Retourne la représentation textuelle de l'adresse IP.
+   * Retourne la représentation textuelle de l'adresse IP : la forme pointée
+   * d'une adresse IPv4, ou la forme canonique d'une adresse IPv6 (RFC 5952) :
+   * chiffres hexadécimaux en minuscules sans zéros de tête, et la plus longue
+   * suite d'au moins deux groupes nuls (la première en cas d'égalité)
+   * remplacée par {@code ::}.
    *
    * @return la chaîne représentant l'adresse IP
    */
   public String getIp() {
-    return ip;
+    if (ipv6) {
+      return texteIpv6();
+    }
+    String t = texte;
+    if (t == null) {
+      int valeur = (int) poidsFaible;
+      t = new StringBuilder(15).append(valeur >>> 24).append('.').append(valeur >>> 16 & 0xFF)
+          .append('.').append(valeur >>> 8 & 0xFF).append('.').append(valeur & 0xFF).toString();
+      texte = t;
+    }
+    return t;
+  }
+
+  private int groupe(int i) {
+    return (int) ((i < 4 ? poidsFort : poidsFaible) >>> (48 - 16 * (i & 3))) & 0xFFFF;
+  }
+
+  private String texteIpv6() {
+    int debutZeros = -1;
+    int longueurZeros = 1;
+    for (int i = 0; i < 8;) {
+      int j = i;
+      while (j < 8 && groupe(j) == 0) {
+        j++;
+      }
+      if (j - i > longueurZeros) {
+        debutZeros = i;
+        longueurZeros = j - i;
+      }
+      i = j + 1;
+    }
+    StringBuilder resultat = new StringBuilder(39);
+    for (int i = 0; i < 8; i++) {
+      if (i == debutZeros) {
+        resultat.append("::");
+        i += longueurZeros - 1;
+        continue;
+      }
+      if (resultat.length() > 0 && resultat.charAt(resultat.length() - 1) != ':') {
+        resultat.append(':');
+      }
+      resultat.append(Integer.toHexString(groupe(i)));
+    }
+    return resultat.toString();
+  }
+
+  /**
+   * Retourne les octets de l'adresse, du premier au dernier : quatre pour une
+   * adresse IPv4, seize pour une adresse IPv6.
+   *
+   * @return un nouveau tableau d'octets
+   */
+  public byte[] getOctets() {
+    if (!ipv6) {
+      int valeur = (int) poidsFaible;
+      return new byte[] {(byte) (valeur >>> 24), (byte) (valeur >>> 16), (byte) (valeur >>> 8),
+          (byte) valeur};
+    }
+    byte[] octets = new byte[16];
+    for (int i = 0; i < 8; i++) {
+      octets[i] = (byte) (poidsFort >>> (56 - 8 * i));
+      octets[i + 8] = (byte) (poidsFaible >>> (56 - 8 * i));
+    }
+    return octets;
   }
 
   /**
@@ -83,7 +309,8 @@ public class AdresseIP implements Comparable<AdresseIP> {
     }
 
     AdresseIP adresseIP = (AdresseIP) o;
-    return Objects.equals(ip, adresseIP.ip);
+    return poidsFaible == adresseIP.poidsFaible && poidsFort == adresseIP.poidsFort
+        && ipv6 == adresseIP.ipv6;
   }
 
   /**
@@ -93,7 +320,10 @@ public class AdresseIP implements Comparable<AdresseIP> {
    */
   @Override
   public int hashCode() {
-    return Objects.hash(ip);
+    if (!ipv6) {
+      return (int) poidsFaible * 0x9E3779B9;
+    }
+    return Long.hashCode(poidsFort * 0x9E3779B97F4A7C15L + poidsFaible) * 0x9E3779B9;
   }
 
   /**
@@ -103,13 +333,15 @@ public class AdresseIP implements Comparable<AdresseIP> {
    */
   @Override
   public String toString() {
-    return ip;
+    return getIp();
   }
 
   /**
    * Compare cette adresse IP à une autre pour définir un ordre naturel.
    * <p>
-   * La comparaison s'effectue octet par octet (du premier au dernier).
+   * Une adresse IPv4 précède toute adresse IPv6. Au sein d'une même famille,
+   * la comparaison s'effectue octet par octet (du premier au dernier), ce qui
+   * revient à comparer les valeurs entières sans signe.
    * </p>
    *
    * @param o l'autre adresse IP à comparer
@@ -118,18 +350,10 @@ public class AdresseIP implements Comparable<AdresseIP> {
    */
   @Override
   public int compareTo(AdresseIP o) {
-    String[] thisParts = this.ip.split("\\.");
-    String[] otherParts = o.ip.split("\\.");
-
-    for (int i = 0; i < 4; i++) {
-      int thisOctet = Integer.parseInt(thisParts[i]);
-      int otherOctet = Integer.parseInt(otherParts[i]);
-      int cmp = Integer.compare(thisOctet, otherOctet);
-      if (cmp != 0) {
-        return cmp;
-      }
+    if (ipv6 != o.ipv6) {
+      return ipv6 ? 1 : -1;
     }
-    return 0;
+    int comparaison = Long.compareUnsigned(poidsFort, o.poidsFort);
+    return comparaison != 0 ? comparaison : Long.compareUnsigned(poidsFaible, o.poidsFaible);
   }
-
 }
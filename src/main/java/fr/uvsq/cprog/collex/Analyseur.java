@@ -0,0 +1,389 @@
+package fr.uvsq.cprog.collex;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Analyseur des adresses IPv4 et IPv6, des noms de machines et des lignes du fichier de
+ * base.
+ * <p>
+ * Les méthodes travaillent directement sur des octets ou sur une
+ * {@link CharSequence}, en une seule passe, sans expression régulière, sans
+ * découpage en sous-chaînes et sans exception pour signaler une entrée
+ * invalide. Seule la chaîne du nom complet est allouée lors du décodage d’une
+ * ligne.
+ * </p>
+ */
+final class Analyseur {
+  /** Valeur retournée par {@code analyserIp} pour une adresse invalide. */
+  static final long INVALIDE = -1L;
+
+  private Analyseur() {
+  }
+
+  /**
+   * Décode une adresse IPv4 au format {@code x.x.x.x}.
+   *
+   * @param texte le texte contenant l’adresse
+   * @param debut l’indice du premier caractère (inclus)
+   * @param fin   l’indice de fin (exclu)
+   * @return l’adresse sous forme d’entier 32 bits non signé, ou
+   *         {@link #INVALIDE} si le texte n’est pas une adresse valide
+   */
+  static long analyserIp(CharSequence texte, int debut, int fin) {
+    long adresse = 0;
+    int octets = 0;
+    int i = debut;
+    while (i < fin) {
+      int valeur = 0;
+      int chiffres = 0;
+      char c;
+      while (i < fin && (c = texte.charAt(i)) >= '0' && c <= '9') {
+        valeur = valeur * 10 + (c - '0');
+        if (valeur > 255) {
+          return INVALIDE;
+        }
+        chiffres++;
+        i++;
+      }
+      if (chiffres == 0) {
+        return INVALIDE;
+      }
+      adresse = adresse << 8 | valeur;
+      octets++;
+      if (i < fin) {
+        if (texte.charAt(i) != '.' || octets == 4 || i == fin - 1) {
+          return INVALIDE;
+        }
+        i++;
+      }
+    }
+    return octets == 4 ? adresse : INVALIDE;
+  }
+
+  /**
+   * Décode une adresse IPv4 au format {@code x.x.x.x} codée en ASCII.
+   *
+   * @param octets les octets contenant l’adresse
+   * @param debut  l’indice du premier octet (inclus)
+   * @param fin    l’indice de fin (exclu)
+   * @return l’adresse sous forme d’entier 32 bits non signé, ou
+   *         {@link #INVALIDE} si les octets ne forment pas une adresse valide
+   */
+  static long analyserIp(byte[] octets, int debut, int fin) {
+    long adresse = 0;
+    int parties = 0;
+    int i = debut;
+    while (i < fin) {
+      int valeur = 0;
+      int chiffres = 0;
+      byte b;
+      while (i < fin && (b = octets[i]) >= '0' && b <= '9') {
+        valeur = valeur * 10 + (b - '0');
+        if (valeur > 255) {
+          return INVALIDE;
+        }
+        chiffres++;
+        i++;
+      }
+      if (chiffres == 0) {
+        return INVALIDE;
+      }
+      adresse = adresse << 8 | valeur;
+      parties++;
+      if (i < fin) {
+        if (octets[i] != '.' || parties == 4 || i == fin - 1) {
+          return INVALIDE;
+        }
+        i++;
+      }
+    }
+    return parties == 4 ? adresse : INVALIDE;
+  }
+
+  /**
+   * Décode une adresse IPv6, éventuellement abrégée par {@code ::} et
+   * éventuellement terminée par une adresse IPv4 ({@code ::ffff:192.0.2.1}).
+   *
+   * @param texte le texte contenant l’adresse
+   * @param debut l’indice du premier caractère (inclus)
+   * @param fin   l’indice de fin (exclu)
+   * @return l’adresse, ou {@code null} si le texte n’est pas une adresse IPv6
+   *         valide
+   */
+  static AdresseIP analyserIpv6(CharSequence texte, int debut, int fin) {
+    return analyserIpv6(texte, null, debut, fin);
+  }
+
+  /**
+   * Décode une adresse IPv6 codée en ASCII.
+   *
+   * @param octets les octets contenant l’adresse
+   * @param debut  l’indice du premier octet (inclus)
+   * @param fin    l’indice de fin (exclu)
+   * @return l’adresse, ou {@code null} si les octets ne forment pas une adresse
+   *         IPv6 valide
+   */
+  static AdresseIP analyserIpv6(byte[] octets, int debut, int fin) {
+    return analyserIpv6(null, octets, debut, fin);
+  }
+
+  /**
+   * Décode une adresse IPv6 lue soit dans {@code texte}, soit dans
+   * {@code octets}. Les groupes qui précèdent {@code ::} et ceux qui le suivent
+   * sont accumulés séparément sur 128 bits, puis les premiers sont décalés à
+   * leur place.
+   */
+  private static AdresseIP analyserIpv6(CharSequence texte, byte[] octets, int debut, int fin) {
+    long fort = 0;
+    long faible = 0;
+    long fortApres = 0;
+    long faibleApres = 0;
+    int groupes = 0;
+    int compression = -1;
+    int i = debut;
+    if (fin - debut >= 2 && caractere(texte, octets, i) == ':') {
+      if (caractere(texte, octets, i + 1) != ':') {
+        return null;
+      }
+      compression = 0;
+      i += 2;
+    }
+    while (i < fin) {
+      int debutGroupe = i;
+      int valeur = 0;
+      int chiffres = 0;
+      int h;
+      while (i < fin && chiffres <= 4 && (h = hexadecimal(caractere(texte, octets, i))) >= 0) {
+        valeur = valeur << 4 | h;
+        chiffres++;
+        i++;
+      }
+      if (i < fin && caractere(texte, octets, i) == '.') {
+        // Adresse IPv4 finale : elle occupe les deux derniers groupes.
+        long ipv4 = texte != null ? analyserIp(texte, debutGroupe, fin) : analyserIp(octets, debutGroupe, fin);
+        if (ipv4 == INVALIDE || groupes > 6) {
+          return null;
+        }
+        if (compression < 0) {
+          fort = fort << 32 | faible >>> 32;
+          faible = faible << 32 | ipv4;
+        } else {
+          fortApres = fortApres << 32 | faibleApres >>> 32;
+          faibleApres = faibleApres << 32 | ipv4;
+        }
+        groupes += 2;
+        break;
+      }
+      if (chiffres == 0 || chiffres > 4 || groupes == 8) {
+        return null;
+      }
+      if (compression < 0) {
+        fort = fort << 16 | faible >>> 48;
+        faible = faible << 16 | valeur;
+      } else {
+        fortApres = fortApres << 16 | faibleApres >>> 48;
+        faibleApres = faibleApres << 16 | valeur;
+      }
+      groupes++;
+      if (i == fin) {
+        break;
+      }
+      if (caractere(texte, octets, i) != ':' || ++i == fin) {
+        return null;
+      }
+      if (caractere(texte, octets, i) == ':') {
+        if (compression >= 0) {
+          return null;
+        }
+        compression = groupes;
+        i++;
+      }
+    }
+    if (compression < 0) {
+      return groupes == 8 ? new AdresseIP(fort, faible) : null;
+    }
+    if (groupes > 7) {
+      return null;
+    }
+    int decalage = 16 * (8 - compression);
+    if (decalage >= 128) {
+      fort = 0;
+      faible = 0;
+    } else if (decalage >= 64) {
+      fort = faible << (decalage - 64);
+      faible = 0;
+    } else {
+      fort = fort << decalage | faible >>> (64 - decalage);
+      faible = faible << decalage;
+    }
+    return new AdresseIP(fort | fortApres, faible | faibleApres);
+  }
+
+  private static int caractere(CharSequence texte, byte[] octets, int i) {
+    return texte != null ? texte.charAt(i) : octets[i] & 0xFF;
+  }
+
+  private static int hexadecimal(int c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+    return -1;
+  }
+
+  /**
+   * Valide un nom de machine complet et retourne la position du point séparant
+   * le nom d’hôte du domaine.
+   * <p>
+   * Un nom valide contient au moins un point, qui n’est ni le premier ni le
+   * dernier caractère.
+   * </p>
+   *
+   * @param nom le nom complet à valider
+   * @return l’indice du premier point, ou {@code -1} si le nom est invalide
+   */
+  static int indexPoint(CharSequence nom) {
+    int longueur = nom.length();
+    for (int i = 0; i < longueur; i++) {
+      if (nom.charAt(i) == '.') {
+        return i > 0 && i < longueur - 1 ? i : -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Valide un motif de recherche de noms ({@code prefixe*} ou
+   * {@code *.domaine}) et sa limite de résultats.
+   *
+   * @param motif  le motif à valider
+   * @param limite le nombre maximal de résultats demandé
+   * @return la position de l’étoile : 0 pour {@code *.domaine}, la dernière
+   *         position pour {@code prefixe*}
+   * @throws IllegalArgumentException si le motif n’a pas l’une des deux formes
+   *                                  ou si la limite n’est pas strictement
+   *                                  positive
+   */
+  static int analyserMotif(String motif, int limite) {
+    if (limite <= 0) {
+      throw new IllegalArgumentException("Limite invalide : " + limite);
+    }
+    int etoile = motif.indexOf('*');
+    if (etoile < 0 || etoile != motif.lastIndexOf('*')
+        || (etoile != motif.length() - 1 && (etoile != 0 || !motif.startsWith("*.")))) {
+      throw new IllegalArgumentException("Motif invalide : " + motif);
+    }
+    return etoile;
+  }
+
+  /**
+   * Décode une ligne du fichier de base ({@code nom_complet adresse_ip}).
+   * <p>
+   * Une ligne rejetée ne lève pas d’exception : le motif du rejet, lorsqu’il
+   * doit être signalé, est donné par {@link #motifRejet(CharSequence)}.
+   * </p>
+   *
+   * @param ligne la ligne à décoder
+   * @return l’enregistrement décrit, ou {@code null} si la ligne ne comporte pas
+   *         exactement deux champs séparés par un espace ou si l’adresse IP ou
+   *         le nom sont invalides
+   */
+  static DnsItem analyserLigne(CharSequence ligne) {
+    int debut = 0;
+    int fin = ligne.length();
+    while (debut < fin && Character.isWhitespace(ligne.charAt(debut))) {
+      debut++;
+    }
+    while (fin > debut && Character.isWhitespace(ligne.charAt(fin - 1))) {
+      fin--;
+    }
+    int espace = -1;
+    for (int i = debut; i < fin; i++) {
+      if (ligne.charAt(i) == ' ') {
+        if (espace >= 0) {
+          return null;
+        }
+        espace = i;
+      }
+    }
+    if (espace < 0) {
+      return null;
+    }
+    long ip = analyserIp(ligne, espace + 1, fin);
+    AdresseIP adresse = ip != INVALIDE ? new AdresseIP((int) ip) : analyserIpv6(ligne, espace + 1, fin);
+    return adresse != null ? creer(ligne.subSequence(debut, espace).toString(), adresse) : null;
+  }
+
+  /**
+   * Décode une ligne du fichier de base codée en UTF-8.
+   *
+   * @param octets les octets contenant la ligne
+   * @param debut  l’indice du premier octet de la ligne (inclus)
+   * @param fin    l’indice de fin de la ligne (exclu), sans le saut de ligne
+   * @return l’enregistrement décrit, ou {@code null} si la ligne ne comporte pas
+   *         exactement deux champs séparés par un espace ou si l’adresse IP ou
+   *         le nom sont invalides
+   */
+  static DnsItem analyserLigne(byte[] octets, int debut, int fin) {
+    while (debut < fin && estBlanc(octets[debut])) {
+      debut++;
+    }
+    while (fin > debut && estBlanc(octets[fin - 1])) {
+      fin--;
+    }
+    int espace = -1;
+    for (int i = debut; i < fin; i++) {
+      if (octets[i] == ' ') {
+        if (espace >= 0) {
+          return null;
+        }
+        espace = i;
+      }
+    }
+    if (espace < 0) {
+      return null;
+    }
+    long ip = analyserIp(octets, espace + 1, fin);
+    AdresseIP adresse = ip != INVALIDE ? new AdresseIP((int) ip) : analyserIpv6(octets, espace + 1, fin);
+    return adresse != null
+        ? creer(new String(octets, debut, espace - debut, StandardCharsets.UTF_8), adresse)
+        : null;
+  }
+
+  private static DnsItem creer(String nom, AdresseIP adresse) {
+    int point = indexPoint(nom);
+    return point >= 0 ? new DnsItem(adresse, new NomMachine(nom, point)) : null;
+  }
+
+  /**
+   * Explique le rejet d’une ligne par {@link #analyserLigne(CharSequence)}.
+   * La ligne est analysée une seconde fois : cette méthode n’est appelée que
+   * pour signaler une erreur.
+   *
+   * @param ligne la ligne rejetée
+   * @return le motif du rejet, ou {@code null} si la ligne ne comporte pas
+   *         exactement deux champs séparés par un espace
+   */
+  static String motifRejet(CharSequence ligne) {
+    String texte = ligne.toString().strip();
+    int espace = texte.indexOf(' ');
+    if (espace < 0 || texte.indexOf(' ', espace + 1) >= 0) {
+      return null;
+    }
+    String ip = texte.substring(espace + 1);
+    if (analyserIp(ip, 0, ip.length()) == INVALIDE && analyserIpv6(ip, 0, ip.length()) == null) {
+      return "Adresse ip invalide : " + ip;
+    }
+    return "Nom complet invalide : " + texte.substring(0, espace);
+  }
+
+  private static boolean estBlanc(byte octet) {
+    return octet == ' ' || octet == '\t' || octet == '\r' || octet == '\n' || octet == '\f'
+        || octet == 0x0B;
+  }
+}
@@ -0,0 +1,144 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arbre radix binaire (Patricia) des enregistrements, indexé par les 32 bits de
+ * leur adresse IPv4.
+ * <p>
+ * Chaque nœud interne ne porte que le bit qui distingue ses deux sous-arbres,
+ * de sorte qu’un chemin compte au plus 32 nœuds internes quelle que soit la
+ * taille de la base. Le sous-arbre gauche (bit à 0) précède le droit : un
+ * parcours en profondeur rend les adresses dans l’ordre croissant. Tous les
+ * enregistrements d’un bloc CIDR forment au plus un sous-arbre, atteint en
+ * suivant les bits du préfixe : {@link #lister(Cidr)} s’exécute en temps
+ * proportionnel à la taille du résultat.
+ * </p>
+ * <p>
+ * Les ajouts doivent être sérialisés par l’appelant. Les lectures ne prennent
+ * aucun verrou : un ajout construit entièrement le nouveau nœud avant de le
+ * publier par une seule écriture {@code volatile}, si bien qu’un lecteur voit
+ * l’arbre soit avant, soit après l’ajout.
+ * </p>
+ */
+final class ArbreAdresses {
+  /** Nœud de l’arbre : {@code prefixe} contient les bits au-dessus de {@code bit}. */
+  private abstract static class Noeud {
+    final int prefixe;
+    final int bit;
+
+    Noeud(int prefixe, int bit) {
+      this.prefixe = prefixe;
+      this.bit = bit;
+    }
+  }
+
+  private static final class Feuille extends Noeud {
+    final DnsItem item;
+
+    Feuille(DnsItem item) {
+      super(item.getAdresseIP().getValeur(), -1);
+      this.item = item;
+    }
+  }
+
+  private static final class Interne extends Noeud {
+    volatile Noeud gauche;
+    volatile Noeud droite;
+
+    Interne(int prefixe, int bit, Noeud gauche, Noeud droite) {
+      super(prefixe, bit);
+      this.gauche = gauche;
+      this.droite = droite;
+    }
+
+    Noeud enfant(int cle) {
+      return (cle >>> bit & 1) == 0 ? gauche : droite;
+    }
+  }
+
+  private volatile Noeud racine;
+
+  /**
+   * Ajoute un enregistrement. Un enregistrement dont l’adresse est déjà
+   * présente, ou dont l’adresse est une adresse IPv6, est ignoré.
+   *
+   * @param item l’enregistrement à ajouter
+   * @return {@code true} si l’enregistrement a été ajouté
+   */
+  boolean ajouter(DnsItem item) {
+    if (item.getAdresseIP().estIpv6()) {
+      return false;
+    }
+    Feuille feuille = new Feuille(item);
+    int cle = feuille.prefixe;
+    Noeud n = racine;
+    if (n == null) {
+      racine = feuille;
+      return true;
+    }
+    // Une feuille quelconque atteinte en suivant les bits de la clé partage
+    // avec elle tous les bits au-dessus du premier bit qui les distingue.
+    while (n instanceof Interne) {
+      n = ((Interne) n).enfant(cle);
+    }
+    int difference = cle ^ n.prefixe;
+    if (difference == 0) {
+      return false;
+    }
+    int bitCritique = 31 - Integer.numberOfLeadingZeros(difference);
+
+    Interne parent = null;
+    n = racine;
+    while (n instanceof Interne && n.bit > bitCritique) {
+      parent = (Interne) n;
+      n = parent.enfant(cle);
+    }
+    int prefixe = cle & ~(int) ((1L << (bitCritique + 1)) - 1);
+    Interne nouveau = (cle >>> bitCritique & 1) == 0
+        ? new Interne(prefixe, bitCritique, feuille, n)
+        : new Interne(prefixe, bitCritique, n, feuille);
+    if (parent == null) {
+      racine = nouveau;
+    } else if ((cle >>> parent.bit & 1) == 0) {
+      parent.gauche = nouveau;
+    } else {
+      parent.droite = nouveau;
+    }
+    return true;
+  }
+
+  /**
+   * Retourne les enregistrements d’un bloc d’adresses, dans l’ordre croissant
+   * des adresses.
+   *
+   * @param bloc le bloc recherché
+   * @return une nouvelle liste des enregistrements du bloc
+   */
+  List<DnsItem> lister(Cidr bloc) {
+    List<DnsItem> resultat = new ArrayList<>();
+    int reseau = bloc.valeurReseau();
+    int premierBitLibre = 32 - bloc.getLongueur();
+    Noeud n = racine;
+    // Descente tant que le nœud distingue des bits du préfixe du bloc.
+    while (n instanceof Interne && n.bit >= premierBitLibre) {
+      n = ((Interne) n).enfant(reseau);
+    }
+    // Le sous-arbre atteint partage tous les bits du préfixe : il est
+    // entièrement dans le bloc ou entièrement en dehors.
+    if (n != null && bloc.contient(n.prefixe)) {
+      parcourir(n, resultat);
+    }
+    return resultat;
+  }
+
+  private static void parcourir(Noeud n, List<DnsItem> resultat) {
+    while (n instanceof Interne) {
+      Interne interne = (Interne) n;
+      parcourir(interne.gauche, resultat);
+      n = interne.droite;
+    }
+    resultat.add(((Feuille) n).item);
+  }
+}
@@ -0,0 +1,162 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Arbre des domaines, indexé par libellés inversés : {@code dept.uvsq.fr} est
+ * rangé sous {@code fr}, puis {@code uvsq}, puis {@code dept}.
+ * <p>
+ * Chaque nœud référence l’{@link IndexDomaine} des machines directement
+ * rattachées à son domaine et compte les enregistrements de toute sa zone
+ * (le domaine et ses sous-domaines), de sorte que la taille d’une zone se lit
+ * sans parcours. Une liste récursive ne visite que le sous-arbre du domaine
+ * demandé.
+ * </p>
+ * <p>
+ * Les ajouts doivent être sérialisés par l’appelant ; les lectures ne prennent
+ * aucun verrou. Les enfants d’un nœud sont rangés dans une liste à saut
+ * concurrente et les compteurs sont {@code volatile}.
+ * </p>
+ */
+final class ArbreDomaines {
+  private static final class Noeud {
+    final Map<String, Noeud> enfants = new ConcurrentSkipListMap<>();
+    volatile IndexDomaine index;
+    volatile long taille;
+  }
+
+  private final Noeud racine = new Noeud();
+
+  /**
+   * Enregistre l’ajout de {@code nombre} enregistrements au domaine donné, dont
+   * l’index est {@code index}.
+   *
+   * @param domaine le nom du domaine
+   * @param index   l’index des machines du domaine
+   * @param nombre  le nombre d’enregistrements ajoutés
+   */
+  void ajouter(String domaine, IndexDomaine index, int nombre) {
+    Noeud n = racine;
+    n.taille += nombre;
+    int fin = domaine.length();
+    while (fin > 0) {
+      int debut = domaine.lastIndexOf('.', fin - 1) + 1;
+      String libelle = domaine.substring(debut, fin);
+      Noeud enfant = n.enfants.get(libelle);
+      if (enfant == null) {
+        enfant = new Noeud();
+        n.enfants.put(libelle, enfant);
+      }
+      n = enfant;
+      n.taille += nombre;
+      fin = debut - 1;
+    }
+    if (n.index == null) {
+      n.index = index;
+    }
+  }
+
+  private Noeud trouver(String domaine) {
+    Noeud n = racine;
+    int fin = domaine.length();
+    while (fin > 0 && n != null) {
+      int debut = domaine.lastIndexOf('.', fin - 1) + 1;
+      n = n.enfants.get(domaine.substring(debut, fin));
+      fin = debut - 1;
+    }
+    return n;
+  }
+
+  /**
+   * Retourne le nombre d’enregistrements d’une zone : le domaine et tous ses
+   * sous-domaines.
+   *
+   * @param domaine le nom du domaine
+   * @return la taille de la zone, 0 si le domaine est inconnu
+   */
+  long tailleZone(String domaine) {
+    Noeud n = trouver(domaine);
+    return n == null ? 0 : n.taille;
+  }
+
+  /**
+   * Parcourt les enregistrements d’une zone dans l’ordre canonique des noms
+   * (libellés comparés de droite à gauche) : les machines d’un domaine et ses
+   * sous-domaines sont entremêlés selon leur libellé, et chaque sous-domaine
+   * est parcouru entièrement à sa place.
+   *
+   * @param domaine le nom du domaine
+   * @return un itérateur paresseux sur les enregistrements de la zone
+   */
+  Iterator<DnsItem> parcourir(String domaine) {
+    Noeud n = trouver(domaine);
+    return n == null ? Collections.emptyIterator() : new Parcours(n);
+  }
+
+  /** Parcours en profondeur, avec une pile explicite d’un cadre par niveau. */
+  private static final class Parcours implements Iterator<DnsItem> {
+    private static final class Cadre {
+      final Iterator<DnsItem> machines;
+      final Iterator<Map.Entry<String, Noeud>> sousDomaines;
+      DnsItem machine;
+      Map.Entry<String, Noeud> sousDomaine;
+
+      Cadre(Noeud n) {
+        IndexDomaine index = n.index;
+        machines = index == null ? Collections.emptyIterator() : index.parcourirParNom();
+        sousDomaines = n.enfants.entrySet().iterator();
+        machine = machines.hasNext() ? machines.next() : null;
+        sousDomaine = sousDomaines.hasNext() ? sousDomaines.next() : null;
+      }
+    }
+
+    private final Deque<Cadre> pile = new ArrayDeque<>();
+    private DnsItem suivant;
+
+    Parcours(Noeud depart) {
+      pile.push(new Cadre(depart));
+      avancer();
+    }
+
+    private void avancer() {
+      suivant = null;
+      while (!pile.isEmpty()) {
+        Cadre cadre = pile.peek();
+        if (cadre.machine != null && (cadre.sousDomaine == null
+            || cadre.machine.getNomMachine().comparerNomMachine(cadre.sousDomaine.getKey()) <= 0)) {
+          suivant = cadre.machine;
+          cadre.machine = cadre.machines.hasNext() ? cadre.machines.next() : null;
+          return;
+        }
+        if (cadre.sousDomaine != null) {
+          Noeud enfant = cadre.sousDomaine.getValue();
+          cadre.sousDomaine = cadre.sousDomaines.hasNext() ? cadre.sousDomaines.next() : null;
+          pile.push(new Cadre(enfant));
+        } else {
+          pile.pop();
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return suivant != null;
+    }
+
+    @Override
+    public DnsItem next() {
+      if (suivant == null) {
+        throw new NoSuchElementException();
+      }
+      DnsItem item = suivant;
+      avancer();
+      return item;
+    }
+  }
+}
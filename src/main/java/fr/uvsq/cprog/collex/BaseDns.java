@@ -0,0 +1,191 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Opérations d’une base d’associations entre noms de machines et adresses IP,
+ * telles que les utilisent les commandes de {@link DnsTUI} et les serveurs.
+ * <p>
+ * {@link Dns} garde ses enregistrements et ses index dans le tas ;
+ * {@link DnsHorsTas} les range hors du tas pour les très grandes bases. Le
+ * contrat de chaque opération est décrit par {@link Dns} ; les implémentations
+ * ne diffèrent que par leurs coûts.
+ * </p>
+ */
+public interface BaseDns {
+  /**
+   * Recherche l’enregistrement d’une adresse IP.
+   *
+   * @param ip l’adresse IP à rechercher
+   * @return l’enregistrement correspondant, ou {@code null} s’il n’existe pas
+   */
+  DnsItem getItem(AdresseIP ip);
+
+  /**
+   * Recherche l’enregistrement d’un nom de machine.
+   *
+   * @param nom le nom de machine à rechercher
+   * @return l’enregistrement correspondant, ou {@code null} s’il n’existe pas
+   */
+  DnsItem getItem(NomMachine nom);
+
+  /**
+   * Recherche l’enregistrement d’un nom de machine donné sous forme de texte.
+   *
+   * @param nomComplet le nom complet recherché
+   * @return l’enregistrement correspondant, ou {@code null} s’il n’existe pas
+   * @throws IllegalArgumentException si le nom est invalide
+   */
+  default DnsItem getItemParNom(String nomComplet) {
+    return getItem(new NomMachine(nomComplet));
+  }
+
+  /**
+   * Recherche l’enregistrement d’une adresse IPv4 ou IPv6 donnée sous forme de
+   * texte.
+   *
+   * @param adresse l’adresse recherchée
+   * @return l’enregistrement correspondant, ou {@code null} s’il n’existe pas
+   * @throws IllegalArgumentException si l’adresse est invalide
+   */
+  default DnsItem getItemParAdresse(String adresse) {
+    return getItem(AdresseIP.depuisTexte(adresse));
+  }
+
+  /**
+   * Retourne les enregistrements d’un domaine, triés par nom de machine.
+   *
+   * @param domaine le nom de domaine recherché
+   * @return la liste des enregistrements du domaine
+   */
+  default List<DnsItem> getItems(String domaine) {
+    return getItems(domaine, false);
+  }
+
+  /**
+   * Retourne les enregistrements d’un domaine, triés par nom de machine ou par
+   * adresse.
+   *
+   * @param domaine         le nom de domaine recherché
+   * @param trierParAdresse {@code true} pour trier par adresse IP,
+   *                        {@code false} pour trier par nom de machine
+   * @return la liste triée des enregistrements du domaine
+   */
+  List<DnsItem> getItems(String domaine, boolean trierParAdresse);
+
+  /**
+   * Parcourt les enregistrements d’un domaine par nom de machine, à partir du
+   * premier qui suit un nom donné, sans construire la liste complète du
+   * domaine.
+   * <p>
+   * L’implémentation par défaut filtre {@link #getItems(String)} : elle
+   * construit et trie tout le domaine à chaque appel, donc à chaque page d’un
+   * {@code ls} paginé. Les moteurs de ce paquetage la remplacent : {@link Dns}
+   * parcourt ses index triés, {@link DnsTableTriee} lit ses blocs à la demande
+   * et {@link DnsHorsTas} reprend dans son index trié hors du tas.
+   * </p>
+   *
+   * @param domaine le nom de domaine recherché
+   * @param apres   le dernier nom déjà lu, exclu du parcours, ou {@code null}
+   *                pour partir du début
+   * @return un itérateur sur les enregistrements triés par nom de machine
+   */
+  default Iterator<DnsItem> parcourirParNom(String domaine, NomMachine apres) {
+    return getItems(domaine).stream()
+        .filter(item -> apres == null || NomMachine.ORDRE_NOM_MACHINE.compare(item.getNomMachine(), apres) > 0)
+        .iterator();
+  }
+
+  /**
+   * Parcourt les enregistrements d’un domaine par adresse, à partir de la
+   * première qui suit une adresse donnée, sans construire la liste complète du
+   * domaine.
+   * <p>
+   * L’implémentation par défaut filtre {@link #getItems(String, boolean)} et
+   * trie donc tout le domaine à chaque appel. {@link Dns} parcourt son index
+   * par adresse, de même que {@link DnsHorsTas} ; {@link DnsTableTriee} ne
+   * retient que les enregistrements qui suivent {@code apres} et les extrait
+   * dans l’ordre à la demande.
+   * </p>
+   *
+   * @param domaine le nom de domaine recherché
+   * @param apres   la dernière adresse déjà lue, exclue du parcours, ou
+   *                {@code null} pour partir du début
+   * @return un itérateur sur les enregistrements triés par adresse IP
+   */
+  default Iterator<DnsItem> parcourirParAdresse(String domaine, AdresseIP apres) {
+    return getItems(domaine, true).stream()
+        .filter(item -> apres == null || item.getAdresseIP().compareTo(apres) > 0)
+        .iterator();
+  }
+
+  /**
+   * Retourne les enregistrements dont l’adresse appartient à un bloc CIDR.
+   *
+   * @param bloc le bloc d’adresses recherché
+   * @return la liste des enregistrements du bloc, triée par adresse IP
+   */
+  List<DnsItem> getItems(Cidr bloc);
+
+  /**
+   * Retourne les enregistrements d’un domaine et de tous ses sous-domaines,
+   * dans l’ordre canonique des noms DNS.
+   *
+   * @param domaine le nom de domaine recherché
+   * @return le flux trié des enregistrements de la zone
+   */
+  Stream<DnsItem> getItemsRecursif(String domaine);
+
+  /**
+   * Retourne le nombre d’enregistrements d’un domaine et de tous ses
+   * sous-domaines.
+   *
+   * @param domaine le nom de domaine
+   * @return la taille de la zone, 0 si le domaine est inconnu
+   */
+  long getTailleZone(String domaine);
+
+  /**
+   * Retourne les enregistrements dont le nom complet correspond à un motif
+   * {@code prefixe*} ou {@code *.domaine}, dans la limite d’un nombre de
+   * résultats.
+   *
+   * @param motif  le motif recherché
+   * @param limite le nombre maximal de résultats
+   * @return la liste des enregistrements correspondants, au plus {@code limite}
+   * @throws IllegalArgumentException si le motif ou la limite sont invalides
+   */
+  List<DnsItem> getItemsParMotif(String motif, int limite);
+
+  /**
+   * Retourne les métriques de la base.
+   *
+   * @return les métriques, publiables par JMX
+   */
+  MetriquesDns getMetriques();
+
+  /**
+   * Ajoute un enregistrement.
+   *
+   * @param ip  l’adresse IP à associer
+   * @param nom le nom de machine correspondant
+   * @throws IOException              si l’ajout ne peut pas être persisté
+   * @throws IllegalArgumentException si l’adresse IP ou le nom existent déjà
+   */
+  void addItem(AdresseIP ip, NomMachine nom) throws IOException;
+
+  /**
+   * Ajoute un lot d’enregistrements en une seule opération : tout le lot ou
+   * rien.
+   *
+   * @param lot les enregistrements à ajouter
+   * @throws IOException          si l’ajout ne peut pas être persisté
+   * @throws LotInvalideException si un enregistrement existe déjà dans la base
+   *                              ou apparaît deux fois dans le lot
+   */
+  void addItems(Collection<DnsItem> lot) throws IOException;
+}
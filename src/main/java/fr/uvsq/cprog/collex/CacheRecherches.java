@@ -0,0 +1,177 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache borné des résultats de recherche, indexé par le texte de la requête
+ * (nom complet ou adresse IP).
+ * <p>
+ * Une recherche fructueuse est conservée jusqu’à son éviction : un
+ * enregistrement n’est jamais modifié ni supprimé de la base. Une recherche
+ * infructueuse n’est conservée que pendant une durée limitée, et l’ajout de la
+ * clé correspondante l’invalide aussitôt ({@link #invalider(Supplier)}).
+ * </p>
+ * <p>
+ * L’éviction suit l’algorithme de l’horloge (CLOCK), approximation de LRU : les
+ * entrées occupent les cases d’un anneau et portent un bit de référence, mis à
+ * un par chaque lecture. Pour libérer une case, l’aiguille parcourt l’anneau en
+ * effaçant les bits qu’elle rencontre et évince la première entrée non
+ * référencée depuis son dernier passage.
+ * </p>
+ * <p>
+ * Les lectures ne prennent aucun verrou. Les insertions et les invalidations
+ * sont sérialisées ; chaque invalidation incrémente une génération, et une
+ * insertion est abandonnée si une invalidation a eu lieu depuis le début de la
+ * recherche dont elle conserve le résultat. Ainsi, une recherche infructueuse
+ * concurrente d’un ajout ne peut pas masquer cet ajout.
+ * </p>
+ */
+final class CacheRecherches {
+  /** Entrée du cache : l’enregistrement trouvé, ou {@code null} pour une absence. */
+  static final class Entree {
+    final String cle;
+    final DnsItem item;
+    final long expiration;
+    final int position;
+    volatile boolean reference;
+
+    Entree(String cle, DnsItem item, long expiration, int position) {
+      this.cle = cle;
+      this.item = item;
+      this.expiration = expiration;
+      this.position = position;
+    }
+  }
+
+  private final int capacite;
+  private final long ttlAbsence;
+  private final MetriquesDns metriques;
+  private final Map<String, Entree> entrees;
+  private final Entree[] anneau;
+  private int occupees;
+  private int aiguille;
+  private volatile long generation;
+
+  /**
+   * Construit un cache vide.
+   *
+   * @param capacite   le nombre maximal d’entrées ; 0 désactive le cache
+   * @param ttlAbsence la durée de conservation d’une recherche infructueuse,
+   *                   en nanosecondes
+   * @param metriques  les métriques où compter succès, échecs et évictions
+   */
+  CacheRecherches(int capacite, long ttlAbsence, MetriquesDns metriques) {
+    if (capacite < 0 || ttlAbsence < 0) {
+      throw new IllegalArgumentException("Taille ou durée de cache invalide");
+    }
+    this.capacite = capacite;
+    this.ttlAbsence = ttlAbsence;
+    this.metriques = metriques;
+    this.entrees = new ConcurrentHashMap<>(Math.max(16, capacite * 4 / 3 + 1));
+    this.anneau = new Entree[capacite];
+  }
+
+  /**
+   * Retourne la génération courante, à lire avant d’interroger la base.
+   *
+   * @return la génération à passer à {@link #inserer}
+   */
+  long generation() {
+    return generation;
+  }
+
+  /**
+   * Cherche une requête dans le cache et compte un succès ou un échec.
+   *
+   * @param cle le texte de la requête
+   * @return l’entrée valide de la requête, ou {@code null} si elle est absente
+   *         ou expirée
+   */
+  Entree trouver(String cle) {
+    Entree entree = entrees.get(cle);
+    if (entree == null || entree.item == null && System.nanoTime() - entree.expiration > 0) {
+      metriques.cacheEchec();
+      return null;
+    }
+    if (!entree.reference) {
+      entree.reference = true;
+    }
+    metriques.cacheSucces();
+    return entree;
+  }
+
+  /**
+   * Conserve le résultat d’une recherche, sauf si une invalidation a eu lieu
+   * depuis la génération donnée.
+   *
+   * @param cle        le texte de la requête
+   * @param item       l’enregistrement trouvé, ou {@code null} s’il n’existe pas
+   * @param generation la génération lue avant la recherche
+   */
+  synchronized void inserer(String cle, DnsItem item, long generation) {
+    if (capacite == 0 || generation != this.generation) {
+      return;
+    }
+    Entree ancienne = entrees.get(cle);
+    int position;
+    if (ancienne != null) {
+      position = ancienne.position;
+    } else if (occupees < capacite) {
+      position = occupees++;
+    } else {
+      position = victime();
+      Entree evincee = anneau[position];
+      if (evincee != null) {
+        entrees.remove(evincee.cle, evincee);
+        metriques.cacheEviction();
+      }
+    }
+    Entree entree = new Entree(cle, item, item == null ? System.nanoTime() + ttlAbsence : 0, position);
+    anneau[position] = entree;
+    entrees.put(cle, entree);
+  }
+
+  /** Avance l’aiguille jusqu’à une case libre ou non référencée. */
+  private int victime() {
+    while (true) {
+      int position = aiguille;
+      aiguille = aiguille + 1 == capacite ? 0 : aiguille + 1;
+      Entree entree = anneau[position];
+      if (entree == null || !entree.reference) {
+        return position;
+      }
+      entree.reference = false;
+    }
+  }
+
+  /**
+   * Retire une requête du cache et empêche la conservation des recherches en
+   * cours.
+   * <p>
+   * La clé n’est calculée que si le cache contient des entrées : le chargement
+   * de la base n’a pas à construire le texte de chaque adresse.
+   * </p>
+   *
+   * @param cle fournit le texte de la requête
+   */
+  synchronized void invalider(Supplier<String> cle) {
+    generation++;
+    if (!entrees.isEmpty()) {
+      Entree entree = entrees.remove(cle.get());
+      if (entree != null) {
+        anneau[entree.position] = null;
+      }
+    }
+  }
+
+  /**
+   * Retourne le nombre d’entrées du cache, expirées comprises.
+   *
+   * @return le nombre d’entrées
+   */
+  int taille() {
+    return entrees.size();
+  }
+}
@@ -0,0 +1,140 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Chargeur parallèle d’un fichier de base DNS.
+ * <p>
+ * Le fichier est découpé en morceaux dont les bornes sont alignées sur des fins
+ * de ligne. Chaque morceau est projeté en mémoire ({@link FileChannel#map}) et
+ * décodé par une tâche du pool fork-join commun, ligne par ligne, avec
+ * {@link Analyseur#analyserLigne(byte[], int, int)} ; les résultats sont
+ * ensuite concaténés dans l’ordre du fichier.
+ * </p>
+ */
+final class ChargeurBase {
+  /** Taille visée pour un morceau décodé par une seule tâche. */
+  static final int TAILLE_MORCEAU = 8 * 1024 * 1024;
+
+  private ChargeurBase() {
+  }
+
+  /**
+   * Décode tous les enregistrements d’un fichier de base, dans l’ordre du
+   * fichier.
+   *
+   * @param fichier le fichier de base à lire
+   * @return la liste des enregistrements décodés
+   * @throws IOException              si une erreur de lecture se produit
+   * @throws IllegalArgumentException si une ligne contient une adresse IP ou un
+   *                                  nom de machine invalide
+   */
+  static List<DnsItem> charger(Path fichier) throws IOException {
+    return charger(fichier, TAILLE_MORCEAU);
+  }
+
+  /**
+   * Décode tous les enregistrements d’un fichier de base en le découpant en
+   * morceaux d’environ {@code tailleMorceau} octets.
+   *
+   * @param fichier       le fichier de base à lire
+   * @param tailleMorceau la taille visée pour chaque morceau, en octets
+   * @return la liste des enregistrements décodés
+   * @throws IOException si une erreur de lecture se produit
+   */
+  static List<DnsItem> charger(Path fichier, int tailleMorceau) throws IOException {
+    try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+      List<Morceau> morceaux = new ArrayList<>();
+      long taille = canal.size();
+      long debut = 0;
+      while (debut < taille) {
+        long fin = finDeLigneApres(canal, Math.min(taille, debut + tailleMorceau), taille);
+        morceaux.add(new Morceau(canal.map(FileChannel.MapMode.READ_ONLY, debut, fin - debut)));
+        debut = fin;
+      }
+
+      List<DnsItem> items = new ArrayList<>();
+      for (Morceau morceau : ForkJoinTask.invokeAll(morceaux)) {
+        items.addAll(morceau.join());
+      }
+      return items;
+    }
+  }
+
+  /**
+   * Retourne la position qui suit la première fin de ligne située à partir de
+   * {@code position}, ou la taille du fichier s’il n’y en a pas.
+   */
+  private static long finDeLigneApres(FileChannel canal, long position, long taille) throws IOException {
+    ByteBuffer tampon = ByteBuffer.allocate(256);
+    long courant = position;
+    while (courant < taille) {
+      tampon.clear();
+      int lus = canal.read(tampon, courant);
+      for (int i = 0; i < lus; i++) {
+        if (tampon.get(i) == '\n') {
+          return courant + i + 1;
+        }
+      }
+      courant += lus;
+    }
+    return taille;
+  }
+
+  /**
+   * Tâche décodant les lignes d’un morceau projeté en mémoire.
+   */
+  private static final class Morceau extends RecursiveTask<List<DnsItem>> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient MappedByteBuffer contenu;
+
+    Morceau(MappedByteBuffer contenu) {
+      this.contenu = contenu;
+    }
+
+    @Override
+    protected List<DnsItem> compute() {
+      List<DnsItem> items = new ArrayList<>();
+      byte[] ligne = new byte[256];
+      int longueur = 0;
+      while (contenu.hasRemaining()) {
+        byte octet = contenu.get();
+        if (octet == '\n') {
+          decoder(ligne, longueur, items);
+          longueur = 0;
+        } else {
+          if (longueur == ligne.length) {
+            ligne = Arrays.copyOf(ligne, ligne.length * 2);
+          }
+          ligne[longueur++] = octet;
+        }
+      }
+      decoder(ligne, longueur, items);
+      return items;
+    }
+
+    private static void decoder(byte[] ligne, int longueur, List<DnsItem> items) {
+      DnsItem item = Analyseur.analyserLigne(ligne, 0, longueur);
+      if (item != null) {
+        items.add(item);
+        return;
+      }
+      String motif = Analyseur.motifRejet(new String(ligne, 0, longueur, StandardCharsets.UTF_8));
+      if (motif != null) {
+        throw new IllegalArgumentException(motif);
+      }
+    }
+  }
+}
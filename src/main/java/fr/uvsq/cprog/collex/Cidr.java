@@ -0,0 +1,148 @@
+package fr.uvsq.cprog.collex;
+
+/**
+ * Représente un bloc d’adresses IPv4 en notation CIDR ({@code a.b.c.d/n}).
+ * <p>
+ * Cette classe est immuable. Les bits de l’adresse situés après le préfixe
+ * sont ignorés : {@code 193.51.31.90/16} désigne le bloc
+ * {@code 193.51.0.0/16}.
+ * </p>
+ */
+public final class Cidr {
+  private final int reseau;
+  private final int longueur;
+
+  /**
+   * Construit un bloc à partir de sa notation CIDR.
+   *
+   * @param notation le bloc au format {@code a.b.c.d/n}, avec {@code n} entre 0
+   *                 et 32
+   * @throws IllegalArgumentException si la notation n’est pas valide
+   */
+  public Cidr(String notation) {
+    int barre = notation == null ? -1 : notation.indexOf('/');
+    long adresse = barre < 0 ? Analyseur.INVALIDE : Analyseur.analyserIp(notation, 0, barre);
+    int n = barre < 0 ? -1 : longueur(notation, barre + 1);
+    if (adresse == Analyseur.INVALIDE || n < 0) {
+      throw new IllegalArgumentException("Bloc CIDR invalide : " + notation);
+    }
+    this.longueur = n;
+    this.reseau = (int) adresse & masque(n);
+  }
+
+  /**
+   * Construit le bloc de longueur {@code longueur} contenant une adresse.
+   *
+   * @param adresse  une adresse IPv4 du bloc
+   * @param longueur la longueur du préfixe, entre 0 et 32
+   * @throws IllegalArgumentException si la longueur est hors de l’intervalle
+   *                                  ou si l’adresse est une adresse IPv6
+   */
+  public Cidr(AdresseIP adresse, int longueur) {
+    if (adresse.estIpv6()) {
+      throw new IllegalArgumentException("Bloc CIDR invalide : " + adresse + "/" + longueur);
+    }
+    if (longueur < 0 || longueur > 32) {
+      throw new IllegalArgumentException("Longueur de préfixe invalide : " + longueur);
+    }
+    this.longueur = longueur;
+    this.reseau = adresse.getValeur() & masque(longueur);
+  }
+
+  private static int longueur(String texte, int debut) {
+    int fin = texte.length();
+    if (debut == fin || fin - debut > 2) {
+      return -1;
+    }
+    int n = 0;
+    for (int i = debut; i < fin; i++) {
+      char c = texte.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      n = n * 10 + (c - '0');
+    }
+    return n <= 32 ? n : -1;
+  }
+
+  /**
+   * Retourne le masque de sous-réseau d’un préfixe de longueur donnée.
+   *
+   * @param longueur la longueur du préfixe, entre 0 et 32
+   * @return le masque, premiers bits à 1
+   */
+  static int masque(int longueur) {
+    return longueur == 0 ? 0 : -1 << (32 - longueur);
+  }
+
+  /**
+   * Indique si une chaîne est un bloc CIDR valide.
+   *
+   * @param notation la chaîne à tester
+   * @return {@code true} si la chaîne est au format {@code a.b.c.d/n}
+   */
+  public static boolean estValide(String notation) {
+    int barre = notation == null ? -1 : notation.indexOf('/');
+    return barre >= 0 && Analyseur.analyserIp(notation, 0, barre) != Analyseur.INVALIDE
+        && longueur(notation, barre + 1) >= 0;
+  }
+
+  /**
+   * Retourne l’adresse de réseau (première adresse) du bloc.
+   *
+   * @return la première adresse du bloc
+   */
+  public AdresseIP getReseau() {
+    return AdresseIP.depuisEntier(reseau);
+  }
+
+  /**
+   * Retourne la longueur du préfixe.
+   *
+   * @return le nombre de bits fixés, entre 0 et 32
+   */
+  public int getLongueur() {
+    return longueur;
+  }
+
+  /**
+   * Indique si une adresse appartient au bloc.
+   *
+   * @param adresse l’adresse à tester
+   * @return {@code true} si l’adresse est dans le bloc, {@code false} sinon
+   *         et pour toute adresse IPv6
+   */
+  public boolean contient(AdresseIP adresse) {
+    return !adresse.estIpv6() && contient(adresse.getValeur());
+  }
+
+  boolean contient(int adresse) {
+    return (adresse & masque(longueur)) == reseau;
+  }
+
+  int valeurReseau() {
+    return reseau;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cidr)) {
+      return false;
+    }
+    Cidr autre = (Cidr) o;
+    return reseau == autre.reseau && longueur == autre.longueur;
+  }
+
+  @Override
+  public int hashCode() {
+    return reseau * 31 + longueur;
+  }
+
+  @Override
+  public String toString() {
+    return getReseau().getIp() + "/" + longueur;
+  }
+}
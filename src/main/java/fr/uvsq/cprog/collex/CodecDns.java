@@ -0,0 +1,291 @@
+package fr.uvsq.cprog.collex;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Décodage des requêtes et encodage des réponses du protocole DNS (RFC 1035).
+ * <p>
+ * Seules les requêtes standard ({@code QUERY}) à une question sont traitées :
+ * une question de type {@code A} ou {@code AAAA} est résolue par
+ * {@link Dns#getItemParNom(String)}, au travers de son cache, une question de type {@code PTR} sur un nom
+ * {@code d.c.b.a.in-addr.arpa} ou sur les 32 chiffres hexadécimaux inversés
+ * d’un nom {@code ip6.arpa} par {@link Dns#getItem(AdresseIP)}. Une machine
+ * n’a qu’une adresse : elle répond soit aux questions {@code A}, soit aux
+ * questions {@code AAAA}. La réponse
+ * est écrite dans un tampon fourni par l’appelant, ce qui permet de réutiliser
+ * les mêmes tampons d’une requête à l’autre.
+ * </p>
+ * <p>
+ * Si l’enregistrement de la réponse ne tient pas dans ce tampon, il est omis
+ * et le bit {@code TC} de l’en-tête est levé, comme le prévoit la RFC 1035
+ * pour un message tronqué : le client sait qu’il doit interroger autrement.
+ * </p>
+ */
+final class CodecDns {
+  /** Taille maximale d’un message DNS sur UDP sans extension. */
+  static final int TAILLE_MAX_UDP = 512;
+  /** Durée de validité annoncée pour les réponses, en secondes. */
+  static final int TTL = 300;
+
+  static final int TYPE_A = 1;
+  static final int TYPE_PTR = 12;
+  static final int TYPE_AAAA = 28;
+  static final int CLASSE_IN = 1;
+  static final int CLASSE_ANY = 255;
+
+  static final int RCODE_OK = 0;
+  static final int RCODE_FORMAT = 1;
+  static final int RCODE_NOM_INEXISTANT = 3;
+  static final int RCODE_NON_IMPLEMENTE = 4;
+
+  private static final int TAILLE_EN_TETE = 12;
+  /** Pointeur vers le nom, type, classe, TTL et longueur des données. */
+  private static final int TAILLE_DEBUT_ENREGISTREMENT = 12;
+  private static final int DRAPEAU_TC = 0x0200;
+  private static final String SUFFIXE_PTR = ".in-addr.arpa";
+  private static final String SUFFIXE_PTR6 = ".ip6.arpa";
+  /** Longueur d’un nom {@code ip6.arpa} complet : 32 chiffres et 32 points. */
+  private static final int LONGUEUR_PTR6 = 64 + SUFFIXE_PTR6.length() - 1;
+
+  private CodecDns() {
+  }
+
+  /**
+   * Calcule la réponse à une requête DNS.
+   *
+   * @param requete la requête reçue, entre sa position et sa limite
+   * @param reponse le tampon dans lequel écrire la réponse, vidé au préalable ;
+   *                il est prêt à être lu au retour
+   * @param dns     la base interrogée
+   * @param nom     un tampon de travail réutilisable pour le nom demandé
+   * @return {@code true} si une réponse a été écrite, {@code false} si la
+   *         requête doit être ignorée (message trop court ou déjà une réponse)
+   */
+  static boolean repondre(ByteBuffer requete, ByteBuffer reponse, BaseDns dns, StringBuilder nom) {
+    reponse.clear();
+    int debut = requete.position();
+    int taille = requete.remaining();
+    if (taille < TAILLE_EN_TETE) {
+      return false;
+    }
+    int identifiant = requete.getShort(debut) & 0xFFFF;
+    int drapeaux = requete.getShort(debut + 2) & 0xFFFF;
+    if ((drapeaux & 0x8000) != 0) {
+      return false;
+    }
+    int opcode = drapeaux >> 11 & 0xF;
+    int questions = requete.getShort(debut + 4) & 0xFFFF;
+    if (opcode != 0) {
+      ecrireEnTete(reponse, identifiant, drapeaux, RCODE_NON_IMPLEMENTE, 0, 0);
+      reponse.flip();
+      return true;
+    }
+
+    int finQuestion = questions == 1 ? lireNom(requete, debut + TAILLE_EN_TETE, debut + taille, nom) : -1;
+    if (finQuestion < 0 || finQuestion + 4 > debut + taille) {
+      ecrireEnTete(reponse, identifiant, drapeaux, RCODE_FORMAT, 0, 0);
+      reponse.flip();
+      return true;
+    }
+    int type = requete.getShort(finQuestion) & 0xFFFF;
+    int classe = requete.getShort(finQuestion + 2) & 0xFFFF;
+    finQuestion += 4;
+
+    boolean inverse = aPourSuffixe(nom, SUFFIXE_PTR);
+    boolean inverse6 = !inverse && aPourSuffixe(nom, SUFFIXE_PTR6);
+    int rcode = RCODE_NOM_INEXISTANT;
+    DnsItem item = null;
+    if (classe != CLASSE_IN && classe != CLASSE_ANY) {
+      rcode = RCODE_NON_IMPLEMENTE;
+    } else if (inverse || inverse6) {
+      AdresseIP adresse = inverse ? adresseInverse(nom) : adresseInverse6(nom);
+      item = adresse == null ? null : dns.getItem(adresse);
+    } else {
+      String texte = nom.toString();
+      item = NomMachine.estValide(texte) ? dns.getItemParNom(texte) : null;
+    }
+    if (item != null) {
+      rcode = RCODE_OK;
+    }
+
+    ecrireEnTete(reponse, identifiant, drapeaux, rcode, 1, 0);
+    for (int i = debut + TAILLE_EN_TETE; i < finQuestion; i++) {
+      reponse.put(requete.get(i));
+    }
+    AdresseIP trouvee = item != null ? item.getAdresseIP() : null;
+    // Les types demandés sont exclusifs : une réponse qui ne tient pas n’est
+    // écrite par aucune branche. Un nom ASCII occupe un octet par caractère,
+    // plus le premier et le dernier octet de longueur.
+    if (type == TYPE_A && trouvee != null && !trouvee.estIpv6() && !inverse && tient(reponse, 4)) {
+      ecrireDebutEnregistrement(reponse, TYPE_A);
+      reponse.putShort((short) 4);
+      reponse.putInt(trouvee.getValeur());
+      reponse.putShort(6, (short) 1);
+    } else if (type == TYPE_AAAA && trouvee != null && trouvee.estIpv6() && !inverse6
+        && tient(reponse, 16)) {
+      ecrireDebutEnregistrement(reponse, TYPE_AAAA);
+      reponse.putShort((short) 16);
+      reponse.putLong(trouvee.getPoidsFort());
+      reponse.putLong(trouvee.getPoidsFaible());
+      reponse.putShort(6, (short) 1);
+    } else if (item != null && type == TYPE_PTR && (inverse || inverse6)
+        && tient(reponse, item.getNomMachine().getNomComplet().length() + 2)) {
+      int debutEnregistrement = reponse.position();
+      ecrireDebutEnregistrement(reponse, TYPE_PTR);
+      int positionLongueur = reponse.position();
+      reponse.putShort((short) 0);
+      if (ecrireNom(reponse, item.getNomMachine().getNomComplet())) {
+        reponse.putShort(positionLongueur, (short) (reponse.position() - positionLongueur - 2));
+        reponse.putShort(6, (short) 1);
+      } else {
+        reponse.position(debutEnregistrement);
+      }
+    }
+    reponse.flip();
+    return true;
+  }
+
+  private static void ecrireEnTete(ByteBuffer reponse, int identifiant, int drapeauxRequete, int rcode,
+      int questions, int reponses) {
+    // QR = 1, opcode et RD recopiés, AA = 1, RA = 0.
+    int drapeaux = 0x8000 | (drapeauxRequete & 0x7800) | 0x0400 | (drapeauxRequete & 0x0100) | rcode;
+    reponse.putShort((short) identifiant);
+    reponse.putShort((short) drapeaux);
+    reponse.putShort((short) questions);
+    reponse.putShort((short) reponses);
+    reponse.putShort((short) 0);
+    reponse.putShort((short) 0);
+  }
+
+  /**
+   * Indique si un enregistrement de {@code donnees} octets tient dans la
+   * réponse, et lève sinon le bit {@code TC} de son en-tête.
+   */
+  private static boolean tient(ByteBuffer reponse, int donnees) {
+    if (reponse.remaining() >= TAILLE_DEBUT_ENREGISTREMENT + donnees) {
+      return true;
+    }
+    reponse.putShort(2, (short) (reponse.getShort(2) | DRAPEAU_TC));
+    return false;
+  }
+
+  private static void ecrireDebutEnregistrement(ByteBuffer reponse, int type) {
+    reponse.putShort((short) 0xC00C); // pointeur vers le nom de la question
+    reponse.putShort((short) type);
+    reponse.putShort((short) CLASSE_IN);
+    reponse.putInt(TTL);
+  }
+
+  /**
+   * Lit un nom non compressé sous forme de suite de libellés.
+   *
+   * @return la position qui suit le nom, ou {@code -1} si le nom est mal formé
+   */
+  private static int lireNom(ByteBuffer message, int position, int fin, StringBuilder nom) {
+    nom.setLength(0);
+    while (position < fin) {
+      int longueur = message.get(position++) & 0xFF;
+      if (longueur == 0) {
+        return position;
+      }
+      if (longueur > 63 || position + longueur > fin || nom.length() + longueur + 1 > 255) {
+        return -1;
+      }
+      if (nom.length() > 0) {
+        nom.append('.');
+      }
+      for (int i = 0; i < longueur; i++) {
+        nom.append((char) (message.get(position++) & 0xFF));
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Écrit un nom sous forme de suite de libellés.
+   *
+   * @return {@code false} si le nom ne peut pas être codé (libellé vide ou de
+   *         plus de 63 caractères, nom de plus de 255 octets ou caractère non
+   *         ASCII)
+   */
+  private static boolean ecrireNom(ByteBuffer message, String nom) {
+    if (nom.length() > 253) {
+      return false;
+    }
+    int debut = 0;
+    for (int i = 0; i <= nom.length(); i++) {
+      if (i == nom.length() || nom.charAt(i) == '.') {
+        int longueur = i - debut;
+        if (longueur == 0 || longueur > 63) {
+          return false;
+        }
+        message.put((byte) longueur);
+        for (int j = debut; j < i; j++) {
+          char c = nom.charAt(j);
+          if (c > 0x7F) {
+            return false;
+          }
+          message.put((byte) c);
+        }
+        debut = i + 1;
+      }
+    }
+    message.put((byte) 0);
+    return true;
+  }
+
+  private static boolean aPourSuffixe(CharSequence nom, String suffixeInverse) {
+    int longueur = nom.length();
+    int suffixe = suffixeInverse.length();
+    if (longueur <= suffixe) {
+      return false;
+    }
+    for (int i = 0; i < suffixe; i++) {
+      if (Character.toLowerCase(nom.charAt(longueur - suffixe + i)) != suffixeInverse.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Décode l’adresse d’un nom {@code d.c.b.a.in-addr.arpa}.
+   *
+   * @return l’adresse {@code a.b.c.d}, ou {@code null} si le nom ne désigne pas
+   *         une adresse complète
+   */
+  private static AdresseIP adresseInverse(CharSequence nom) {
+    long inverse = Analyseur.analyserIp(nom, 0, nom.length() - SUFFIXE_PTR.length());
+    if (inverse == Analyseur.INVALIDE) {
+      return null;
+    }
+    return AdresseIP.depuisEntier(Integer.reverseBytes((int) inverse));
+  }
+
+  /**
+   * Décode l’adresse d’un nom {@code ip6.arpa}, formé des 32 chiffres
+   * hexadécimaux de l’adresse, du dernier au premier, séparés par des points.
+   *
+   * @return l’adresse, ou {@code null} si le nom ne désigne pas une adresse
+   *         complète
+   */
+  private static AdresseIP adresseInverse6(CharSequence nom) {
+    if (nom.length() != LONGUEUR_PTR6) {
+      return null;
+    }
+    long fort = 0;
+    long faible = 0;
+    for (int k = 0; k < 32; k++) {
+      int chiffre = Character.digit(nom.charAt(2 * k), 16);
+      if (chiffre < 0 || nom.charAt(2 * k + 1) != '.') {
+        return null;
+      }
+      if (k < 16) {
+        faible |= (long) chiffre << (4 * k);
+      } else {
+        fort |= (long) chiffre << (4 * (k - 16));
+      }
+    }
+    return new AdresseIP(fort, faible);
+  }
+}
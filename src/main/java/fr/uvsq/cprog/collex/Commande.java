@@ -1,5 +1,29 @@
 package fr.uvsq.cprog.collex;
 
+/**
+ * Commande exécutable issue de l’analyse d’une ligne saisie.
+ * <p>
+ * Une commande écrit son résultat sur la {@link SortieCommande} qui lui est
+ * fournie et ne la vide pas : c’est à l’appelant de décider quand le texte
+ * accumulé part vers sa destination. La même commande sert ainsi la console,
+ * le serveur TCP ou un banc d’essai.
+ * </p>
+ */
 public interface Commande {
-  void execute();
+  /**
+   * Exécute la commande.
+   *
+   * @param sortie la sortie sur laquelle écrire le résultat
+   */
+  void execute(SortieCommande sortie);
+
+  /**
+   * Exécute la commande en écrivant le résultat sur {@code System.out}, vidé à
+   * la fin de la commande.
+   */
+  default void execute() {
+    SortieTamponnee sortie = new SortieTamponnee(System.out);
+    execute(sortie);
+    sortie.vider();
+  }
 }
@@ -10,7 +10,7 @@ import java.io.IOException;
  * </p>
  */
 public class CommandeAdd implements Commande {
-  private final Dns dns;
+  private final BaseDns dns;
   private final String adresseIp;
   private final String nomMachine;
 
@@ -21,7 +21,7 @@ public class CommandeAdd implements Commande {
    * @param adresseIp  l’adresse IP à ajouter
    * @param nomMachine le nom de machine correspondant
    */
-  public CommandeAdd(Dns dns, String adresseIp, String nomMachine) {
+  public CommandeAdd(BaseDns dns, String adresseIp, String nomMachine) {
     this.dns = dns;
     this.adresseIp = adresseIp;
     this.nomMachine = nomMachine;
@@ -35,14 +35,16 @@ public class CommandeAdd implements Commande {
    * erreur survient (données invalides ou problème d’écriture), un message
    * d’erreur est affiché.
    * </p>
+   *
+   * @param sortie la sortie sur laquelle écrire le résultat
    */
   @Override
-  public void execute() {
+  public void execute(SortieCommande sortie) {
     try {
-      dns.addItem(new AdresseIP(adresseIp), new NomMachine(nomMachine));
-      System.out.println("Ajout réussi : " + adresseIp + " " + nomMachine);
+      dns.addItem(AdresseIP.depuisTexte(adresseIp), new NomMachine(nomMachine));
+      sortie.ligne("Ajout réussi : " + adresseIp + " " + nomMachine);
     } catch (IllegalArgumentException | IOException e) {
-      System.out.println("ERREUR : " + e.getMessage());
+      sortie.ligne("ERREUR : " + e.getMessage());
     }
   }
 }
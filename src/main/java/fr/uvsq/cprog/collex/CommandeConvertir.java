@@ -0,0 +1,48 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Commande permettant de convertir un fichier de base entre le format texte et
+ * le format d’instantané binaire.
+ * <p>
+ * Le format du fichier source est détecté automatiquement : un instantané est
+ * converti en fichier texte, un fichier texte en instantané. Une destination
+ * portant l’extension {@value TableTriee#EXTENSION} reçoit une
+ * {@link TableTriee}, à partir d’un fichier texte ou d’un instantané.
+ * </p>
+ */
+public class CommandeConvertir implements Commande {
+  private final String source;
+  private final String destination;
+
+  /**
+   * Construit une nouvelle commande de conversion.
+   *
+   * @param source      le fichier à convertir
+   * @param destination le fichier à produire
+   */
+  public CommandeConvertir(String source, String destination) {
+    this.source = source;
+    this.destination = destination;
+  }
+
+  /**
+   * Exécute la conversion et affiche le nombre d’enregistrements convertis, ou
+   * un message d’erreur si la conversion échoue.
+   *
+   * @param sortie la sortie sur laquelle écrire le résultat
+   */
+  @Override
+  public void execute(SortieCommande sortie) {
+    try {
+      int nombre = destination.endsWith(TableTriee.EXTENSION)
+          ? TableTriee.convertir(Path.of(source), Path.of(destination))
+          : InstantaneBinaire.convertir(Path.of(source), Path.of(destination));
+      sortie.ligne("Conversion réussie : " + nombre + " enregistrements écrits dans " + destination);
+    } catch (IllegalArgumentException | IOException e) {
+      sortie.ligne("ERREUR : Conversion impossible : " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.List;
+
+/**
+ * Commande permettant de rechercher les machines dont le nom complet
+ * correspond à un motif {@code prefixe*} ou {@code *.domaine} (voir
+ * {@link Dns#getItemsParMotif(String, int)}).
+ * <p>
+ * Le nombre de résultats affichés est limité ; lorsque la limite est atteinte,
+ * un message l’indique.
+ * </p>
+ */
+public class CommandeFind implements Commande {
+  /** Nombre maximal de résultats affichés par défaut. */
+  public static final int LIMITE = 100;
+
+  private final BaseDns dns;
+  private final String motif;
+  private final int limite;
+
+  /**
+   * Construit une commande de recherche limitée à {@link #LIMITE} résultats.
+   *
+   * @param dns   l’objet {@code Dns} sur lequel effectuer la recherche
+   * @param motif le motif recherché
+   */
+  public CommandeFind(BaseDns dns, String motif) {
+    this(dns, motif, LIMITE);
+  }
+
+  /**
+   * Construit une commande de recherche.
+   *
+   * @param dns    l’objet {@code Dns} sur lequel effectuer la recherche
+   * @param motif  le motif recherché
+   * @param limite le nombre maximal de résultats affichés
+   */
+  public CommandeFind(BaseDns dns, String motif, int limite) {
+    this.dns = dns;
+    this.motif = motif;
+    this.limite = limite;
+  }
+
+  /**
+   * Exécute la commande : affiche les machines trouvées avec leur adresse IP,
+   * un message si aucune ne correspond, ou un message d’erreur si le motif ou
+   * la limite est invalide.
+   *
+   * @param sortie la sortie sur laquelle écrire le résultat
+   */
+  @Override
+  public void execute(SortieCommande sortie) {
+    List<DnsItem> items;
+    try {
+      // Un résultat de plus que la limite indique si la liste est tronquée.
+      items = dns.getItemsParMotif(motif, limite == Integer.MAX_VALUE ? limite : limite + 1);
+    } catch (IllegalArgumentException e) {
+      sortie.ligne("ERREUR : " + e.getMessage());
+      return;
+    }
+    if (items.isEmpty()) {
+      sortie.ligne("Pas de machines correspondant à " + motif);
+      return;
+    }
+    for (DnsItem item : items.subList(0, Math.min(limite, items.size()))) {
+      sortie.ligne(item.getAdresseIP().getIp() + " " + item.getNomMachine().getNomComplet());
+    }
+    if (items.size() > limite) {
+      sortie.ligne("(résultats limités à " + limite + ")");
+    }
+  }
+}
@@ -10,7 +10,7 @@ package fr.uvsq.cprog.collex;
  * </p>
  */
 public class CommandeGetAdresse implements Commande {
-  private final Dns dns;
+  private final BaseDns dns;
   private final String nomMachineComplet;
 
   /**
@@ -21,7 +21,7 @@ public class CommandeGetAdresse implements Commande {
    *                          recherche
    * @param nomMachineComplet le nom complet de la machine recherchée
    */
-  public CommandeGetAdresse(Dns dns, String nomMachineComplet) {
+  public CommandeGetAdresse(BaseDns dns, String nomMachineComplet) {
     this.dns = dns;
     this.nomMachineComplet = nomMachineComplet;
   }
@@ -32,14 +32,16 @@ public class CommandeGetAdresse implements Commande {
    * Si l’entrée est trouvée, l’adresse IP est affichée. Sinon, un message
    * d’erreur est imprimé pour indiquer que la machine n’a pas été trouvée.
    * </p>
+   *
+   * @param sortie la sortie sur laquelle écrire le résultat
    */
   @Override
-  public void execute() {
-    DnsItem item = dns.getItem(new NomMachine(nomMachineComplet));
+  public void execute(SortieCommande sortie) {
+    DnsItem item = dns.getItemParNom(nomMachineComplet);
     if (item == null) {
-      System.out.println("ERREUR : Machine introuvable pour le nom " + nomMachineComplet);
+      sortie.ligne("ERREUR : Machine introuvable pour le nom " + nomMachineComplet);
     } else {
-      System.out.println(item.getAdresseIP().getIp());
+      sortie.ligne(item.getAdresseIP().getIp());
     }
   }
 
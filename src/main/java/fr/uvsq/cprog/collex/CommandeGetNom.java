@@ -10,7 +10,7 @@ package fr.uvsq.cprog.collex;
  * </p>
  */
 public class CommandeGetNom implements Commande {
-  private final Dns dns;
+  private final BaseDns dns;
   private final String adresseIp;
 
   /**
@@ -20,7 +20,7 @@ public class CommandeGetNom implements Commande {
    * @param dns       l’objet {@code Dns} sur lequel effectuer la recherche
    * @param adresseIp l’adresse IP de la machine recherchée
    */
-  public CommandeGetNom(Dns dns, String adresseIp) {
+  public CommandeGetNom(BaseDns dns, String adresseIp) {
     this.dns = dns;
     this.adresseIp = adresseIp;
   }
@@ -32,14 +32,16 @@ public class CommandeGetNom implements Commande {
    * machine est affiché. Sinon, un message d’erreur est imprimé pour indiquer que
    * l’adresse IP n’a pas été trouvée.
    * </p>
+   *
+   * @param sortie la sortie sur laquelle écrire le résultat
    */
   @Override
-  public void execute() {
-    DnsItem item = dns.getItem(new AdresseIP(adresseIp));
+  public void execute(SortieCommande sortie) {
+    DnsItem item = dns.getItemParAdresse(adresseIp);
     if (item == null) {
-      System.out.println("ERREUR : Adresse IP introuvable " + adresseIp);
+      sortie.ligne("ERREUR : Adresse IP introuvable " + adresseIp);
     } else {
-      System.out.println(item.getNomMachine().getNomComplet());
+      sortie.ligne(item.getNomMachine().getNomComplet());
     }
   }
 
@@ -0,0 +1,145 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Commande permettant d’importer un fichier au format de la base DNS
+ * ({@code nom_complet adresse_ip} par ligne) dans une base en cours
+ * d’utilisation.
+ * <p>
+ * Le fichier est lu en flux et ajouté par lots de {@link #TAILLE_LOT}
+ * enregistrements avec {@link Dns#addItems} : la mémoire utilisée par l’import
+ * reste bornée quelle que soit la taille du fichier, et chaque lot est écrit
+ * dans le journal en une seule fois. Les enregistrements en conflit avec la
+ * base ou avec le reste du lot sont écartés, les lignes invalides ignorées ;
+ * les deux sont comptés. La progression et le débit sont affichés après chaque
+ * lot.
+ * </p>
+ */
+public class CommandeImport implements Commande {
+  /** Nombre d’enregistrements ajoutés en une fois. */
+  public static final int TAILLE_LOT = 10_000;
+
+  private final BaseDns dns;
+  private final String fichier;
+  private final int tailleLot;
+
+  /**
+   * Construit une nouvelle commande d’import.
+   *
+   * @param dns     l’objet {@code Dns} à mettre à jour
+   * @param fichier le fichier à importer
+   */
+  public CommandeImport(BaseDns dns, String fichier) {
+    this(dns, fichier, TAILLE_LOT);
+  }
+
+  /**
+   * Construit une nouvelle commande d’import avec une taille de lot donnée.
+   *
+   * @param dns       l’objet {@code Dns} à mettre à jour
+   * @param fichier   le fichier à importer
+   * @param tailleLot le nombre d’enregistrements ajoutés en une fois
+   */
+  CommandeImport(BaseDns dns, String fichier, int tailleLot) {
+    this.dns = dns;
+    this.fichier = fichier;
+    this.tailleLot = tailleLot;
+  }
+
+  /**
+   * Exécute l’import, affiche la progression après chaque lot puis un bilan.
+   * Chaque ligne de progression est vidée aussitôt sur la sortie. Si le fichier
+   * ne peut pas être lu, un message d’erreur est affiché ; les lots déjà ajoutés
+   * restent dans la base.
+   *
+   * @param sortie la sortie sur laquelle écrire le résultat
+   */
+  @Override
+  public void execute(SortieCommande sortie) {
+    long debut = System.nanoTime();
+    long lues = 0;
+    long ajoutes = 0;
+    long conflits = 0;
+    long invalides = 0;
+    List<DnsItem> lot = new ArrayList<>(tailleLot);
+    try (BufferedReader lecteur = Files.newBufferedReader(Path.of(fichier), StandardCharsets.UTF_8)) {
+      String ligne;
+      while ((ligne = lecteur.readLine()) != null) {
+        lues++;
+        if (ligne.isBlank()) {
+          continue;
+        }
+        DnsItem item = Analyseur.analyserLigne(ligne);
+        if (item == null) {
+          invalides++;
+          continue;
+        }
+        lot.add(item);
+        if (lot.size() == tailleLot) {
+          int valides = ajouter(lot);
+          ajoutes += valides;
+          conflits += lot.size() - valides;
+          lot.clear();
+          sortie.ligne("Import : " + lues + " lignes lues, " + ajoutes + " ajouts ("
+              + debit(ajoutes, debut) + " enregistrements/s)");
+          sortie.vider();
+        }
+      }
+      int valides = ajouter(lot);
+      ajoutes += valides;
+      conflits += lot.size() - valides;
+    } catch (IOException e) {
+      sortie.ligne("ERREUR : Import impossible : " + e.getMessage());
+      return;
+    }
+    sortie.ligne("Import terminé : " + ajoutes + " ajouts, " + conflits + " conflits, " + invalides
+        + " lignes invalides en " + (System.nanoTime() - debut) / 1_000_000 + " ms ("
+        + debit(ajoutes, debut) + " enregistrements/s)");
+  }
+
+  /**
+   * Ajoute un lot en écartant les enregistrements en conflit.
+   *
+   * @param lot les enregistrements à ajouter
+   * @return le nombre d’enregistrements ajoutés
+   * @throws IOException si une erreur d’écriture du journal se produit
+   */
+  private int ajouter(List<DnsItem> lot) throws IOException {
+    List<DnsItem> restants = lot;
+    while (true) {
+      try {
+        dns.addItems(restants);
+        return restants.size();
+      } catch (LotInvalideException e) {
+        // Un ajout concurrent peut créer un nouveau conflit : on recommence
+        // jusqu’à ce que le lot restant soit accepté.
+        Set<DnsItem> refuses = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (LotInvalideException.Conflit conflit : e.getConflits()) {
+          refuses.add(conflit.getItem());
+        }
+        List<DnsItem> acceptes = new ArrayList<>(restants.size());
+        for (DnsItem item : restants) {
+          if (!refuses.contains(item)) {
+            acceptes.add(item);
+          }
+        }
+        restants = acceptes;
+      }
+    }
+  }
+
+  private static long debit(long nombre, long debut) {
+    long duree = Math.max(1, System.nanoTime() - debut);
+    return nombre * 1_000_000_000L / duree;
+  }
+}
@@ -1,6 +1,8 @@
 package fr.uvsq.cprog.collex;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
 
 /**
  * Commande permettant de lister les machines d’un domaine donné dans la base
@@ -10,12 +12,27 @@ import java.util.List;
  * l’option spécifiée lors de la création de la commande. Si aucune machine
  * n’existe pour le domaine, un message approprié est affiché.
  * </p>
+ * <p>
+ * Les enregistrements sont lus un à un dans l’index du domaine
+ * ({@link BaseDns#parcourirParNom(String, NomMachine)},
+ * {@link BaseDns#parcourirParAdresse(String, AdresseIP)}) et écrits sur la
+ * sortie au fur et à mesure, dans un même {@link StringBuilder} : la mémoire
+ * utilisée ne dépend pas de la taille du domaine. Avec une limite, seule une
+ * page est écrite ; si d’autres machines suivent, une dernière ligne
+ * {@code Suite : jeton} donne le curseur à passer à la commande suivante pour
+ * reprendre la liste juste après. Le curseur désigne la dernière machine
+ * écrite, et non un rang : les ajouts faits entre deux pages ne décalent pas
+ * la suite.
+ * </p>
  */
 public class CommandeList implements Commande {
+  private static final Base64.Encoder ENCODEUR = Base64.getUrlEncoder().withoutPadding();
 
-  private final Dns dns;
+  private final BaseDns dns;
   private final String domaine;
   private final boolean trierParAdresse;
+  private final int limite;
+  private final String curseur;
 
   /**
    * Construit une commande de liste des machines pour un domaine donné.
@@ -25,32 +42,90 @@ public class CommandeList implements Commande {
    * @param trierParAdresse {@code true} pour trier par adresse IP, {@code false}
    *                        pour trier par nom
    */
-  public CommandeList(Dns dns, String domaine, boolean trierParAdresse) {
+  public CommandeList(BaseDns dns, String domaine, boolean trierParAdresse) {
+    this(dns, domaine, trierParAdresse, Integer.MAX_VALUE, null);
+  }
+
+  /**
+   * Construit une commande listant une page des machines d’un domaine.
+   *
+   * @param dns             l’objet {@code Dns} sur lequel effectuer la recherche
+   * @param domaine         le domaine dont on souhaite lister les machines
+   * @param trierParAdresse {@code true} pour trier par adresse IP, {@code false}
+   *                        pour trier par nom
+   * @param limite          le nombre maximal de machines écrites
+   * @param curseur         le jeton {@code Suite} de la page précédente, ou
+   *                        {@code null} pour la première page
+   */
+  public CommandeList(BaseDns dns, String domaine, boolean trierParAdresse, int limite, String curseur) {
     this.dns = dns;
     this.domaine = domaine;
     this.trierParAdresse = trierParAdresse;
+    this.limite = limite;
+    this.curseur = curseur;
   }
 
   /**
    * Exécute la commande de liste des machines.
    * <p>
-   * Affiche toutes les machines du domaine demandé avec leur adresse IP. Si
-   * aucune machine n’est trouvée, affiche un message indiquant l’absence
-   * d’enregistrements pour ce domaine.
+   * Affiche les machines du domaine demandé avec leur adresse IP, dans la
+   * limite demandée. Si aucune machine n’est trouvée, affiche un message
+   * indiquant l’absence d’enregistrements pour ce domaine.
    * </p>
+   *
+   * @param sortie la sortie sur laquelle écrire le résultat
    */
   @Override
-  public void execute() {
-    List<DnsItem> items = dns.getItems(domaine, trierParAdresse);
-    if (items.isEmpty()) {
-      System.out.println("Pas de machines pour le domaine " + domaine);
+  public void execute(SortieCommande sortie) {
+    if (limite <= 0) {
+      sortie.ligne("ERREUR : Limite invalide : " + limite);
+      return;
+    }
+    Iterator<DnsItem> items;
+    try {
+      items = parcourir();
+    } catch (IllegalArgumentException e) {
+      sortie.ligne("ERREUR : Curseur invalide : " + curseur);
+      return;
+    }
+    if (curseur == null && !items.hasNext()) {
+      sortie.ligne("Pas de machines pour le domaine " + domaine);
       return;
     }
 
-    for (DnsItem item : items) {
-      System.out.println(item.getAdresseIP().getIp() + " " + item.getNomMachine().getNomComplet());
+    StringBuilder ligne = new StringBuilder(128);
+    DnsItem dernier = null;
+    for (int n = 0; n < limite && items.hasNext(); n++) {
+      dernier = items.next();
+      ligne.setLength(0);
+      sortie.ligne(ligne.append(dernier.getAdresseIP().getIp()).append(' ')
+          .append(dernier.getNomMachine().getNomComplet()));
+    }
+    if (dernier != null && items.hasNext()) {
+      sortie.ligne("Suite : " + jeton(dernier));
     }
+  }
 
+  private Iterator<DnsItem> parcourir() {
+    if (curseur == null) {
+      return trierParAdresse ? dns.parcourirParAdresse(domaine, null) : dns.parcourirParNom(domaine, null);
+    }
+    String cle = new String(Base64.getUrlDecoder().decode(curseur), StandardCharsets.UTF_8);
+    if (trierParAdresse && cle.startsWith("a")) {
+      return dns.parcourirParAdresse(domaine, AdresseIP.depuisTexte(cle.substring(1)));
+    }
+    if (!trierParAdresse && cle.startsWith("n")) {
+      return dns.parcourirParNom(domaine, new NomMachine(cle.substring(1) + "." + domaine));
+    }
+    throw new IllegalArgumentException("Curseur d'un autre ordre : " + curseur);
   }
 
+  /**
+   * Construit le curseur désignant une machine : l’ordre de la liste suivi de
+   * sa clé dans cet ordre (nom d’hôte ou adresse), en Base64 sans remplissage.
+   */
+  private String jeton(DnsItem dernier) {
+    String cle = trierParAdresse ? "a" + dernier.getAdresseIP().getIp() : "n" + dernier.getNomMachine().getNomMachine();
+    return ENCODEUR.encodeToString(cle.getBytes(StandardCharsets.UTF_8));
+  }
 }
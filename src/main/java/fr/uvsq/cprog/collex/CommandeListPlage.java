@@ -0,0 +1,48 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.List;
+
+/**
+ * Commande permettant de lister les machines dont l’adresse appartient à un
+ * bloc CIDR (par exemple {@code 193.51.0.0/16}), triées par adresse IP.
+ */
+public class CommandeListPlage implements Commande {
+  private final BaseDns dns;
+  private final String bloc;
+
+  /**
+   * Construit une commande de liste des machines d’un bloc d’adresses.
+   *
+   * @param dns  l’objet {@code Dns} sur lequel effectuer la recherche
+   * @param bloc le bloc au format {@code a.b.c.d/n}
+   */
+  public CommandeListPlage(BaseDns dns, String bloc) {
+    this.dns = dns;
+    this.bloc = bloc;
+  }
+
+  /**
+   * Exécute la commande : affiche les machines du bloc avec leur adresse IP, un
+   * message si le bloc est vide, ou un message d’erreur si le bloc est mal
+   * formé.
+   *
+   * @param sortie la sortie sur laquelle écrire le résultat
+   */
+  @Override
+  public void execute(SortieCommande sortie) {
+    List<DnsItem> items;
+    try {
+      items = dns.getItems(new Cidr(bloc));
+    } catch (IllegalArgumentException e) {
+      sortie.ligne("ERREUR : " + e.getMessage());
+      return;
+    }
+    if (items.isEmpty()) {
+      sortie.ligne("Pas de machines dans le bloc " + bloc);
+      return;
+    }
+    for (DnsItem item : items) {
+      sortie.ligne(item.getAdresseIP().getIp() + " " + item.getNomMachine().getNomComplet());
+    }
+  }
+}
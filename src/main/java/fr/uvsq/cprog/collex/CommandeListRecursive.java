@@ -0,0 +1,46 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.Iterator;
+
+/**
+ * Commande permettant de lister les machines d’un domaine et de tous ses
+ * sous-domaines, dans l’ordre canonique des noms DNS.
+ * <p>
+ * Les machines sont affichées au fur et à mesure du parcours de l’arbre des
+ * domaines, sans construire la liste complète au préalable.
+ * </p>
+ */
+public class CommandeListRecursive implements Commande {
+  private final BaseDns dns;
+  private final String domaine;
+
+  /**
+   * Construit une commande de liste récursive d’un domaine.
+   *
+   * @param dns     l’objet {@code Dns} sur lequel effectuer la recherche
+   * @param domaine le nom du domaine
+   */
+  public CommandeListRecursive(BaseDns dns, String domaine) {
+    this.dns = dns;
+    this.domaine = domaine;
+  }
+
+  /**
+   * Exécute la commande : affiche les machines de la zone avec leur adresse IP,
+   * ou un message si la zone est vide.
+   *
+   * @param sortie la sortie sur laquelle écrire le résultat
+   */
+  @Override
+  public void execute(SortieCommande sortie) {
+    Iterator<DnsItem> items = dns.getItemsRecursif(domaine).iterator();
+    if (!items.hasNext()) {
+      sortie.ligne("Pas de machines dans la zone " + domaine);
+      return;
+    }
+    while (items.hasNext()) {
+      DnsItem item = items.next();
+      sortie.ligne(item.getAdresseIP().getIp() + " " + item.getNomMachine().getNomComplet());
+    }
+  }
+}
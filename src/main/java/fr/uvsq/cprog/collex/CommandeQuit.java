@@ -6,8 +6,9 @@ public class CommandeQuit implements Commande {
   }
   
   @Override
-  public void execute() {
-    System.out.println("Fin du programme.");
+  public void execute(SortieCommande sortie) {
+    sortie.ligne("Fin du programme.");
+    sortie.vider();
     //throw new ExitException(); // Uniquement pour faire le test.
     System.exit(0);
   }
@@ -0,0 +1,32 @@
+package fr.uvsq.cprog.collex;
+
+/**
+ * Commande permettant d’afficher le nombre de machines d’un domaine et de tous
+ * ses sous-domaines. Le nombre est lu dans l’arbre des domaines, sans parcourir
+ * la zone.
+ */
+public class CommandeTailleZone implements Commande {
+  private final BaseDns dns;
+  private final String domaine;
+
+  /**
+   * Construit une commande de taille de zone.
+   *
+   * @param dns     l’objet {@code Dns} interrogé
+   * @param domaine le nom du domaine
+   */
+  public CommandeTailleZone(BaseDns dns, String domaine) {
+    this.dns = dns;
+    this.domaine = domaine;
+  }
+
+  /**
+   * Exécute la commande : affiche la taille de la zone.
+   *
+   * @param sortie la sortie sur laquelle écrire le résultat
+   */
+  @Override
+  public void execute(SortieCommande sortie) {
+    sortie.ligne(domaine + " : " + dns.getTailleZone(domaine) + " machine(s)");
+  }
+}
@@ -1,14 +1,39 @@
 package fr.uvsq.cprog.collex;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Properties;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Représente un service DNS capable de gérer une base d’associations entre des
@@ -19,14 +44,106 @@ import java.util.stream.Collectors;
  * persistées dans un fichier texte défini dans un fichier de configuration
  * {@code config.properties}.
  * </p>
+ * <p>
+ * Deux index (adresse IP → item et nom complet → item) sont maintenus à côté de
+ * la liste des enregistrements afin que les recherches et les contrôles
+ * d’unicité de {@link #addItem} s’effectuent en temps constant. Un index par
+ * domaine, trié par nom de machine et par adresse, sert la commande
+ * {@code ls} sans filtrer ni trier toute la base ; un arbre des domaines par
+ * libellés inversés sert les listes récursives ({@code ls -R}) et la taille des
+ * zones ; un arbre radix sur les adresses sert les recherches par bloc CIDR
+ * ({@code ls -r}). Les noms complets sont enfin rangés dans une liste à saut
+ * triée qui sert les recherches par préfixe ({@code find}).
+ * </p>
+ * <p>
+ * Chaque ajout est écrit à la fin d’un journal ({@code <base>.journal}) plutôt
+ * que de réécrire toute la base. Lorsque le journal dépasse un seuil, un
+ * compactage en tâche de fond réécrit la base complète dans un fichier
+ * temporaire, le substitue atomiquement à l’ancien, puis supprime la partie du
+ * journal ainsi intégrée. Au démarrage, la base puis le journal sont rejoués.
+ * </p>
+ * <p>
+ * Si un instantané binaire ({@code <base>.bin}, voir {@link InstantaneBinaire})
+ * correspondant au fichier de base est présent, il est chargé à la place du
+ * fichier texte. Il est créé par {@link #exporterInstantane()} puis tenu à jour
+ * à chaque compactage.
+ * </p>
+ * <p>
+ * Une instance peut être partagée entre plusieurs fils d’exécution. Les index
+ * reposent sur des structures concurrentes non bloquantes : les lectures
+ * ({@code getItem}, {@code getItems}) ne prennent aucun verrou et ne sont
+ * jamais bloquées par un ajout. Les ajouts sont sérialisés par un verrou, ce
+ * qui rend atomiques les contrôles d’unicité et l’insertion.
+ * </p>
+ * <p>
+ * Les recherches par texte ({@link #getItemParNom(String)},
+ * {@link #getItemParAdresse(String)}) passent par un cache borné qui conserve
+ * aussi, pour une durée limitée, les recherches infructueuses ; chaque ajout
+ * invalide précisément les entrées de son nom et de son adresse.
+ * </p>
+ * <p>
+ * Deux filtres de Bloom ({@link FiltreBloom}), sur les noms complets et sur les
+ * adresses, précèdent les index dans les recherches par texte : la plupart des
+ * recherches de clés absentes sont rejetées par un seul accès au filtre, sans
+ * toucher aux index ni au cache. Les filtres sont construits à la fin du
+ * chargement, complétés à chaque ajout, et reconstruits plus grands lorsque la
+ * base dépasse la capacité pour laquelle ils ont été dimensionnés.
+ * </p>
  */
-public class Dns {
+public class Dns implements BaseDns {
+  /** Nombre d’enregistrements journalisés déclenchant un compactage. */
+  public static final int SEUIL_COMPACTAGE = 10_000;
+  /** Nombre maximal d’entrées de chacun des caches de recherche. */
+  public static final int TAILLE_CACHE = 10_000;
+  /** Durée de conservation d’une recherche infructueuse, en millisecondes. */
+  public static final long TTL_ABSENCE_CACHE = 5_000;
+  /** Taux de faux positifs visé des filtres de Bloom. */
+  public static final double FPP_FILTRES = 0.01;
+
+  /** Capacité minimale d’un filtre de Bloom, en nombre de clés. */
+  private static final int CAPACITE_MIN_FILTRES = 1024;
+
+  /** Fil d’exécution des compactages en tâche de fond, partagé par les bases. */
+  static final ExecutorService COMPACTEUR = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "dns-compactage");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   private final List<DnsItem> items = new ArrayList<>();
+  private final Map<AdresseIP, DnsItem> parAdresse = new ConcurrentHashMap<>();
+  private final Map<String, DnsItem> parNom = new ConcurrentHashMap<>();
+  private final NavigableMap<String, DnsItem> parNomTrie = new ConcurrentSkipListMap<>();
+  private final Map<String, IndexDomaine> domaines = new ConcurrentHashMap<>();
+  private final ArbreAdresses arbre = new ArbreAdresses();
+  private final ArbreDomaines arbreDomaines = new ArbreDomaines();
   private final Path fichierBase;
+  private final Path fichierJournal;
+  private final Path fichierJournalCompacte;
+  private final Path fichierInstantane;
+  private final int seuilCompactage;
+  private final Object verrou = new Object();
+  private final Object verrouCompactage = new Object();
+  private final AtomicBoolean compactagePlanifie = new AtomicBoolean();
+  private final MetriquesDns metriques = new MetriquesDns();
+  private volatile CacheRecherches cacheNoms;
+  private volatile CacheRecherches cacheAdresses;
+  private volatile FiltreBloom filtreNoms;
+  private volatile FiltreBloom filtreAdresses;
+  private double fppFiltres = FPP_FILTRES;
+  private int enregistrementsJournal;
 
   /**
    * Construit une instance de {@code Dns} en utilisant le fichier défini dans le
    * fichier {@code config.properties} du classpath.
+   * <p>
+   * La propriété facultative {@code dns.journal.seuil} fixe le nombre d’ajouts
+   * journalisés au-delà duquel la base est compactée. Les propriétés
+   * facultatives {@code dns.cache.taille} et {@code dns.cache.ttlAbsence} (en
+   * millisecondes) configurent les caches de recherche (voir
+   * {@link #configurerCache(int, long)}), et {@code dns.bloom.fpp} le taux de
+   * faux positifs des filtres de Bloom (voir {@link #configurerFiltres(double)}).
+   * </p>
    *
    * @throws IOException              si une erreur d’entrée/sortie se produit
    *                                  lors du chargement du fichier de
@@ -35,19 +152,18 @@ public class Dns {
    *                                  introuvable ou mal configuré
    */
   public Dns() throws IOException {
-    Properties props = new Properties();
-    try (var inputStream = getClass().getClassLoader().getResourceAsStream("config.properties")) {
-      if (inputStream == null) {
-        throw new IllegalArgumentException("Fichier config.properties introuvable dans le classpath");
-      }
-      props.load(inputStream);
-    }
-    String fichier = props.getProperty("dns.file");
-    if (fichier == null || fichier.isBlank()) {
-      throw new IllegalArgumentException("Le fichier de base doit être défini dans config.properties");
+    this(chargerConfiguration());
+  }
+
+  private Dns(Properties props) throws IOException {
+    this(fichierConfigure(props),
+        Integer.parseInt(props.getProperty("dns.journal.seuil", String.valueOf(SEUIL_COMPACTAGE))));
+    configurerCache(Integer.parseInt(props.getProperty("dns.cache.taille", String.valueOf(TAILLE_CACHE))),
+        Long.parseLong(props.getProperty("dns.cache.ttlAbsence", String.valueOf(TTL_ABSENCE_CACHE))));
+    String fpp = props.getProperty("dns.bloom.fpp");
+    if (fpp != null) {
+      configurerFiltres(Double.parseDouble(fpp));
     }
-    fichierBase = Path.of(fichier);
-    chargerBase();
   }
 
   /**
@@ -59,16 +175,68 @@ public class Dns {
    *                     chargement de la base
    */
   public Dns(Path fichierBase) throws IOException {
+    this(fichierBase, SEUIL_COMPACTAGE);
+  }
+
+  /**
+   * Construit une instance de {@code Dns} à partir d’un fichier de base
+   * spécifique et d’un seuil de compactage du journal.
+   *
+   * @param fichierBase     le chemin vers le fichier contenant la base DNS
+   * @param seuilCompactage le nombre d’ajouts journalisés au-delà duquel la base
+   *                        est compactée en tâche de fond
+   * @throws IOException              si une erreur d’entrée/sortie se produit
+   *                                  lors du chargement de la base
+   * @throws IllegalArgumentException si le seuil n’est pas strictement positif
+   */
+  public Dns(Path fichierBase, int seuilCompactage) throws IOException {
+    if (seuilCompactage <= 0) {
+      throw new IllegalArgumentException("Le seuil de compactage doit être positif");
+    }
     this.fichierBase = fichierBase;
-    items.clear();
+    this.fichierJournal = fichierBase.resolveSibling(fichierBase.getFileName() + ".journal");
+    this.fichierJournalCompacte = fichierBase.resolveSibling(fichierBase.getFileName() + ".journal.compactage");
+    this.fichierInstantane = fichierBase.resolveSibling(fichierBase.getFileName() + ".bin");
+    this.seuilCompactage = seuilCompactage;
+    configurerCache(TAILLE_CACHE, TTL_ABSENCE_CACHE);
+    long debut = System.nanoTime();
     chargerBase();
+    construireFiltres(0);
+    metriques.chargement(System.nanoTime() - debut, parAdresse.size());
+  }
+
+  static Properties chargerConfiguration() throws IOException {
+    Properties props = new Properties();
+    try (var inputStream = Dns.class.getClassLoader().getResourceAsStream("config.properties")) {
+      if (inputStream == null) {
+        throw new IllegalArgumentException("Fichier config.properties introuvable dans le classpath");
+      }
+      props.load(inputStream);
+    }
+    return props;
+  }
+
+  static Path fichierConfigure(Properties props) {
+    String fichier = props.getProperty("dns.file");
+    if (fichier == null || fichier.isBlank()) {
+      throw new IllegalArgumentException("Le fichier de base doit être défini dans config.properties");
+    }
+    return Path.of(fichier);
   }
 
   /**
-   * Charge les enregistrements DNS à partir du fichier de base.
+   * Charge les enregistrements DNS à partir du fichier de base puis rejoue le
+   * journal des ajouts.
    * <p>
    * Chaque ligne du fichier doit contenir un nom de machine et une adresse IP
    * séparés par un espace. Si le fichier n’existe pas encore, il est créé vide.
+   * Le fichier de base est lu depuis son instantané binaire lorsque celui-ci
+   * existe et lui correspond, sinon il est décodé en parallèle par
+   * {@link ChargeurBase}. Les
+   * lignes en conflit avec un enregistrement déjà chargé (même adresse ou même
+   * nom) sont ignorées : la première occurrence est conservée. Ainsi, un journal
+   * déjà intégré à la base par un compactage interrompu peut être rejoué sans
+   * effet.
    * </p>
    *
    * @throws IOException si une erreur d’entrée/sortie se produit pendant la
@@ -77,16 +245,191 @@ public class Dns {
   private void chargerBase() throws IOException {
     if (!Files.exists(fichierBase)) {
       Files.createFile(fichierBase);
-      return;
+    } else if (!chargerInstantane()) {
+      for (DnsItem item : ChargeurBase.charger(fichierBase)) {
+        indexerSiAbsent(item);
+      }
+    }
+    if (Files.exists(fichierJournalCompacte)) {
+      enregistrementsJournal += chargerJournal(fichierJournalCompacte);
+    }
+    if (Files.exists(fichierJournal)) {
+      enregistrementsJournal += chargerJournal(fichierJournal);
+    }
+  }
+
+  /**
+   * Charge la base depuis son instantané binaire.
+   * <p>
+   * L’instantané n’est utilisé que s’il a été écrit pour la version actuelle du
+   * fichier de base (même taille et même date de modification). Un instantané
+   * illisible ou corrompu est signalé puis ignoré.
+   * </p>
+   * <p>
+   * Les tables de hachage sont dimensionnées une seule fois pour tout
+   * l’instantané, et l’index trié par nom est rempli dans l’ordre précalculé
+   * par l’instantané, sans tri ni insertion au hasard.
+   * </p>
+   *
+   * @return {@code true} si la base a été chargée depuis l’instantané
+   * @throws IOException si les attributs du fichier de base sont illisibles
+   */
+  private boolean chargerInstantane() throws IOException {
+    if (!Files.exists(fichierInstantane)) {
+      return false;
+    }
+    InstantaneBinaire.Contenu contenu;
+    try {
+      contenu = InstantaneBinaire.lireContenu(fichierInstantane);
+    } catch (IOException e) {
+      System.err.println("ERREUR : Instantané ignoré : " + e.getMessage());
+      return false;
+    }
+    if (contenu.tailleSource != Files.size(fichierBase)
+        || contenu.dateSource != Files.getLastModifiedTime(fichierBase).toMillis()) {
+      return false;
     }
-    List<String> lignes = Files.readAllLines(fichierBase);
-    for (String ligne : lignes) {
-      String[] es = ligne.strip().split(" ");
-      if (es.length == 2) {
-        AdresseIP ip = new AdresseIP(es[1]);
-        NomMachine nom = new NomMachine(es[0]);
-        items.add(new DnsItem(ip, nom));
+    List<DnsItem> tous = contenu.parNomComplet != null ? contenu.parNomComplet : contenu.items();
+    items.addAll(tous);
+    parAdresse.putAll(vueIndex(tous, DnsItem::getAdresseIP));
+    parNom.putAll(vueIndex(tous, item -> item.getNomMachine().getNomComplet()));
+    for (DnsItem item : tous) {
+      parNomTrie.put(item.getNomMachine().getNomComplet(), item);
+      arbre.ajouter(item);
+    }
+    for (int d = 0; d < contenu.parNom.size(); d++) {
+      List<DnsItem> groupe = contenu.parNom.get(d);
+      List<DnsItem> groupeParAdresse;
+      if (contenu.parAdresse != null) {
+        groupeParAdresse = contenu.parAdresse.get(d);
+      } else {
+        groupeParAdresse = new ArrayList<>(groupe);
+        groupeParAdresse.sort(Comparator.comparing(DnsItem::getAdresseIP));
+      }
+      IndexDomaine index = new IndexDomaine();
+      index.ajouterTries(groupe, groupeParAdresse);
+      String domaine = groupe.get(0).getNomMachine().getNomDomaine();
+      domaines.put(domaine, index);
+      arbreDomaines.ajouter(domaine, index, groupe.size());
+    }
+    return true;
+  }
+
+  /**
+   * Présente une liste d’enregistrements sans doublon comme une table indexée
+   * par une clé, sans la copier : {@link ConcurrentHashMap#putAll(Map)}
+   * dimensionne alors la table de destination une seule fois.
+   *
+   * @param liste les enregistrements
+   * @param cle   la clé d’un enregistrement
+   * @return une vue en lecture seule de la liste
+   */
+  private static <K> Map<K, DnsItem> vueIndex(List<DnsItem> liste, Function<DnsItem, K> cle) {
+    return new AbstractMap<>() {
+      @Override
+      public Set<Entry<K, DnsItem>> entrySet() {
+        return new AbstractSet<>() {
+          @Override
+          public int size() {
+            return liste.size();
+          }
+
+          @Override
+          public Iterator<Entry<K, DnsItem>> iterator() {
+            Iterator<DnsItem> suivants = liste.iterator();
+            return new Iterator<>() {
+              @Override
+              public boolean hasNext() {
+                return suivants.hasNext();
+              }
+
+              @Override
+              public Entry<K, DnsItem> next() {
+                DnsItem item = suivants.next();
+                return new SimpleImmutableEntry<>(cle.apply(item), item);
+              }
+            };
+          }
+        };
       }
+    };
+  }
+
+  /**
+   * Rejoue un journal d’ajouts, après en avoir retiré l’éventuel ajout
+   * interrompu ({@link #retirerAjoutInterrompu(Path)}). Une ligne invalide est
+   * ignorée.
+   *
+   * @param journal le fichier journal à rejouer
+   * @return le nombre d’enregistrements décodés
+   * @throws IOException si une erreur de lecture se produit
+   */
+  private int chargerJournal(Path journal) throws IOException {
+    retirerAjoutInterrompu(journal);
+    int decodees = 0;
+    for (String ligne : Files.readAllLines(journal)) {
+      DnsItem item = Analyseur.analyserLigne(ligne);
+      if (item != null) {
+        decodees++;
+        indexerSiAbsent(item);
+      }
+    }
+    return decodees;
+  }
+
+  /**
+   * Retire du journal sa dernière ligne si elle n’est pas terminée par une fin
+   * de ligne.
+   * <p>
+   * Une telle ligne est un ajout interrompu, même si son début forme un
+   * enregistrement valide ({@code 10.0.0.12} écrit à la place de
+   * {@code 10.0.0.123}) : elle ne doit pas être rejouée, ni prolongée par les
+   * ajouts suivants.
+   * </p>
+   *
+   * @param journal le fichier journal
+   * @throws IOException si une erreur d’entrée/sortie se produit
+   */
+  static void retirerAjoutInterrompu(Path journal) throws IOException {
+    try (FileChannel canal = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long taille = canal.size();
+      long fin = taille;
+      ByteBuffer bloc = ByteBuffer.allocate(4096);
+      chercher:
+      while (fin > 0) {
+        int longueur = (int) Math.min(bloc.capacity(), fin);
+        long debut = fin - longueur;
+        bloc.clear().limit(longueur);
+        while (bloc.hasRemaining()) {
+          if (canal.read(bloc, debut + bloc.position()) < 0) {
+            break;
+          }
+        }
+        for (int i = longueur - 1; i >= 0; i--) {
+          if (bloc.get(i) == '\n') {
+            fin = debut + i + 1;
+            break chercher;
+          }
+        }
+        fin = debut;
+      }
+      if (fin < taille) {
+        canal.truncate(fin);
+        canal.force(true);
+      }
+    }
+  }
+
+  /**
+   * Indexe un enregistrement chargé, sauf si son adresse ou son nom est déjà
+   * présent.
+   *
+   * @param item l’enregistrement à indexer
+   */
+  private void indexerSiAbsent(DnsItem item) {
+    if (!parAdresse.containsKey(item.getAdresseIP())
+        && !parNom.containsKey(item.getNomMachine().getNomComplet())) {
+      indexer(item);
     }
   }
 
@@ -97,8 +440,12 @@ public class Dns {
    * @return l’objet {@code DnsItem} correspondant, ou {@code null} si aucun
    *         enregistrement n’est trouvé
    */
+  @Override
   public DnsItem getItem(AdresseIP ip) {
-    return items.stream().filter(item -> item.getAdresseIP().equals(ip)).findFirst().orElse(null);
+    MetriquesDns.CompteursRecherches recherche = metriques.debutRecherche();
+    DnsItem item = parAdresse.get(ip);
+    metriques.rechercheAdresse(item != null, recherche);
+    return item;
   }
 
   /**
@@ -108,8 +455,158 @@ public class Dns {
    * @return l’objet {@code DnsItem} correspondant, ou {@code null} si aucun
    *         enregistrement n’est trouvé
    */
+  @Override
   public DnsItem getItem(NomMachine nom) {
-    return items.stream().filter(item -> item.getNomMachine().equals(nom)).findFirst().orElse(null);
+    MetriquesDns.CompteursRecherches recherche = metriques.debutRecherche();
+    DnsItem item = parNom.get(nom.getNomComplet());
+    metriques.rechercheNom(item != null, recherche);
+    return item;
+  }
+
+  /**
+   * Recherche, au travers du cache, l’enregistrement d’un nom de machine donné
+   * sous forme de texte.
+   * <p>
+   * Une requête déjà vue, fructueuse ou non, est servie par le cache sans
+   * construire de {@link NomMachine} ni interroger l’index. Une requête
+   * infructueuse n’est conservée que pendant la durée configurée, et l’ajout du
+   * nom l’invalide immédiatement.
+   * </p>
+   * <p>
+   * Hors du cache, un nom absent est le plus souvent rejeté par le filtre de
+   * Bloom des noms, sans consulter l’index ni occuper une entrée du cache : les
+   * sondes automatiques, qui demandent surtout des noms inexistants et rarement
+   * deux fois le même, n’en évincent pas les requêtes fréquentes.
+   * </p>
+   *
+   * @param nomComplet le nom complet recherché
+   * @return l’enregistrement correspondant, ou {@code null} s’il n’existe pas
+   * @throws IllegalArgumentException si le nom est invalide
+   */
+  @Override
+  public DnsItem getItemParNom(String nomComplet) {
+    CacheRecherches cache = cacheNoms;
+    long generation = cache.generation();
+    CacheRecherches.Entree entree = cache.trouver(nomComplet);
+    if (entree != null) {
+      return entree.item;
+    }
+    NomMachine nom = new NomMachine(nomComplet);
+    if (!filtreNoms.peutContenir(nom.getNomComplet().hashCode())) {
+      metriques.filtreRejet();
+      metriques.rechercheNom(false, null);
+      return null;
+    }
+    DnsItem item = getItem(nom);
+    if (item == null) {
+      metriques.filtreFauxPositif();
+    }
+    cache.inserer(nomComplet, item, generation);
+    return item;
+  }
+
+  /**
+   * Recherche, au travers du cache, l’enregistrement d’une adresse IPv4 ou IPv6
+   * donnée sous forme de texte.
+   * <p>
+   * Le cache fonctionne comme pour {@link #getItemParNom(String)}. Seules les
+   * requêtes écrites sous la forme canonique de l’adresse y sont conservées, de
+   * sorte que l’ajout d’une adresse invalide toutes les entrées qui la
+   * désignent. Une adresse absente est filtrée comme un nom absent.
+   * </p>
+   *
+   * @param adresse l’adresse recherchée
+   * @return l’enregistrement correspondant, ou {@code null} s’il n’existe pas
+   * @throws IllegalArgumentException si l’adresse est invalide
+   */
+  @Override
+  public DnsItem getItemParAdresse(String adresse) {
+    CacheRecherches cache = cacheAdresses;
+    long generation = cache.generation();
+    CacheRecherches.Entree entree = cache.trouver(adresse);
+    if (entree != null) {
+      return entree.item;
+    }
+    AdresseIP ip = AdresseIP.depuisTexte(adresse);
+    if (!filtreAdresses.peutContenir(ip.hashCode())) {
+      metriques.filtreRejet();
+      metriques.rechercheAdresse(false, null);
+      return null;
+    }
+    DnsItem item = getItem(ip);
+    if (item == null) {
+      metriques.filtreFauxPositif();
+    }
+    if (ip.getIp().equals(adresse)) {
+      cache.inserer(adresse, item, generation);
+    }
+    return item;
+  }
+
+  /**
+   * Remplace les caches de recherche par des caches vides.
+   *
+   * @param taille           le nombre maximal d’entrées de chaque cache (noms
+   *                         et adresses) ; 0 désactive les caches
+   * @param ttlAbsenceMillis la durée de conservation d’une recherche
+   *                         infructueuse, en millisecondes
+   * @throws IllegalArgumentException si la taille ou la durée est négative
+   */
+  public void configurerCache(int taille, long ttlAbsenceMillis) {
+    long ttl = TimeUnit.MILLISECONDS.toNanos(ttlAbsenceMillis);
+    CacheRecherches noms = new CacheRecherches(taille, ttl, metriques);
+    CacheRecherches adresses = new CacheRecherches(taille, ttl, metriques);
+    // Sous le verrou des ajouts : un ajout invalide soit les anciens caches
+    // avant qu’ils ne soient remplacés, soit les nouveaux.
+    synchronized (verrou) {
+      cacheNoms = noms;
+      cacheAdresses = adresses;
+    }
+  }
+
+  /**
+   * Reconstruit les filtres de Bloom des noms et des adresses pour un nouveau
+   * taux de faux positifs.
+   * <p>
+   * Le taux visé est atteint lorsque la base compte une fois et demie le nombre
+   * d’enregistrements présents à la construction ; il est plus faible avant.
+   * Un taux plus bas coûte environ 0,7 octet par enregistrement et par filtre
+   * chaque fois qu’il est divisé par dix.
+   * </p>
+   *
+   * @param fpp le taux de faux positifs visé, strictement entre 0 et 1
+   * @throws IllegalArgumentException si le taux est hors de cet intervalle
+   */
+  public void configurerFiltres(double fpp) {
+    if (!(fpp > 0 && fpp < 1)) {
+      throw new IllegalArgumentException("Taux de faux positifs invalide : " + fpp);
+    }
+    synchronized (verrou) {
+      fppFiltres = fpp;
+      construireFiltres(0);
+    }
+  }
+
+  /**
+   * Construit des filtres de Bloom contenant tous les enregistrements indexés,
+   * dimensionnés pour en accueillir la moitié en plus, puis les publie. Appelée
+   * sous le verrou des ajouts, ou par le constructeur.
+   *
+   * @param ajouts le nombre d’enregistrements sur le point d’être indexés, pour
+   *               lesquels de la place est réservée
+   */
+  private void construireFiltres(int ajouts) {
+    long attendus = (long) items.size() + ajouts;
+    long capacite = Math.max(CAPACITE_MIN_FILTRES, attendus + attendus / 2);
+    FiltreBloom noms = new FiltreBloom(capacite, fppFiltres);
+    FiltreBloom adresses = new FiltreBloom(capacite, fppFiltres);
+    for (DnsItem item : items) {
+      noms.ajouter(item.getNomMachine().getNomComplet().hashCode());
+      adresses.ajouter(item.getAdresseIP().hashCode());
+    }
+    filtreNoms = noms;
+    filtreAdresses = adresses;
+    metriques.filtres(noms.octets() + adresses.octets());
   }
 
   /**
@@ -121,6 +618,7 @@ public class Dns {
    * @param domaine le nom de domaine recherché
    * @return la liste des éléments {@code DnsItem} appartenant à ce domaine
    */
+  @Override
   public List<DnsItem> getItems(String domaine) {
     return getItems(domaine, false);
   }
@@ -134,62 +632,414 @@ public class Dns {
    *                        {@code false} pour trier par nom de machine
    * @return la liste triée des éléments {@code DnsItem} appartenant à ce domaine
    */
+  @Override
   public List<DnsItem> getItems(String domaine, boolean trierParAdresse) {
-    List<DnsItem> filtres = items.stream().filter(item -> item.getNomMachine().getNomDomaine().equals(domaine))
-        .collect(Collectors.toList());
+    long debut = System.nanoTime();
+    IndexDomaine index = domaines.get(domaine);
+    List<DnsItem> resultat = index == null ? new ArrayList<>() : index.lister(trierParAdresse);
+    metriques.liste(System.nanoTime() - debut);
+    return resultat;
+  }
+
+  /**
+   * Parcourt les enregistrements d’un domaine par nom de machine directement
+   * dans son index trié : ni copie ni tri, quelle que soit la taille du
+   * domaine.
+   *
+   * @param domaine le nom de domaine recherché
+   * @param apres   le dernier nom déjà lu, exclu du parcours, ou {@code null}
+   * @return un itérateur sur les enregistrements triés par nom de machine
+   */
+  @Override
+  public Iterator<DnsItem> parcourirParNom(String domaine, NomMachine apres) {
+    IndexDomaine index = domaines.get(domaine);
+    if (index == null) {
+      return Collections.emptyIterator();
+    }
+    return apres == null ? index.parcourirParNom() : index.parcourirParNom(apres);
+  }
+
+  /**
+   * Parcourt les enregistrements d’un domaine par adresse directement dans son
+   * index trié.
+   *
+   * @param domaine le nom de domaine recherché
+   * @param apres   la dernière adresse déjà lue, exclue du parcours, ou
+   *                {@code null}
+   * @return un itérateur sur les enregistrements triés par adresse IP
+   */
+  @Override
+  public Iterator<DnsItem> parcourirParAdresse(String domaine, AdresseIP apres) {
+    IndexDomaine index = domaines.get(domaine);
+    return index == null ? Collections.emptyIterator() : index.parcourirParAdresse(apres);
+  }
+
+  /**
+   * Retourne les enregistrements dont l’adresse appartient à un bloc CIDR, par
+   * exemple {@code 193.51.0.0/16}.
+   * <p>
+   * Les enregistrements sont rangés dans un arbre radix sur les bits de leur
+   * adresse : le résultat est obtenu trié par adresse, en temps proportionnel à
+   * sa taille et indépendant de celle de la base.
+   * </p>
+   *
+   * @param bloc le bloc d’adresses recherché
+   * @return la liste des enregistrements du bloc, triée par adresse IP
+   */
+  @Override
+  public List<DnsItem> getItems(Cidr bloc) {
+    long debut = System.nanoTime();
+    List<DnsItem> resultat = arbre.lister(bloc);
+    metriques.plage(System.nanoTime() - debut);
+    return resultat;
+  }
+
+  /**
+   * Retourne les enregistrements d’un domaine et de tous ses sous-domaines :
+   * {@code getItemsRecursif("uvsq.fr")} contient {@code www.uvsq.fr} comme
+   * {@code pc1.dept.uvsq.fr}.
+   * <p>
+   * Le flux est paresseux : il ne parcourt que le sous-arbre du domaine, au fur
+   * et à mesure de sa consommation, sans copier les résultats. Il est trié dans
+   * l’ordre canonique des noms DNS, libellés comparés de droite à gauche. Un
+   * ajout concurrent au parcours peut y apparaître ou non.
+   * </p>
+   *
+   * @param domaine le nom de domaine recherché
+   * @return le flux trié des enregistrements de la zone
+   */
+  @Override
+  public Stream<DnsItem> getItemsRecursif(String domaine) {
+    Spliterator<DnsItem> parcours = Spliterators.spliteratorUnknownSize(
+        arbreDomaines.parcourir(domaine), Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(parcours, false);
+  }
 
-    Comparator<DnsItem> comparateur;
-    if (trierParAdresse) {
-      comparateur = Comparator.comparing(DnsItem::getAdresseIP);
+  /**
+   * Retourne le nombre d’enregistrements d’un domaine et de tous ses
+   * sous-domaines. Le nombre est tenu à jour à chaque ajout et lu sans
+   * parcours.
+   *
+   * @param domaine le nom de domaine
+   * @return la taille de la zone, 0 si le domaine est inconnu
+   */
+  @Override
+  public long getTailleZone(String domaine) {
+    return arbreDomaines.tailleZone(domaine);
+  }
+
+  /**
+   * Retourne les enregistrements dont le nom complet correspond à un motif, dans
+   * la limite d’un nombre de résultats. Deux formes de motif sont reconnues :
+   * <ul>
+   * <li>{@code prefixe*} — les noms complets commençant par {@code prefixe},
+   * triés par ordre alphabétique ({@code web-*}, {@code www.uvsq.*}) ;</li>
+   * <li>{@code *.domaine} — les machines du domaine et de ses sous-domaines,
+   * dans l’ordre de {@link #getItemsRecursif(String)}.</li>
+   * </ul>
+   * <p>
+   * Les deux formes sont servies par un index trié : le coût d’une recherche
+   * dépend du nombre de résultats retournés, pas de la taille de la base.
+   * </p>
+   *
+   * @param motif  le motif recherché
+   * @param limite le nombre maximal de résultats
+   * @return la liste des enregistrements correspondants, au plus {@code limite}
+   * @throws IllegalArgumentException si le motif n’a pas l’une des deux formes
+   *                                  reconnues ou si la limite n’est pas
+   *                                  strictement positive
+   */
+  @Override
+  public List<DnsItem> getItemsParMotif(String motif, int limite) {
+    int etoile = Analyseur.analyserMotif(motif, limite);
+    long debut = System.nanoTime();
+    List<DnsItem> resultat = new ArrayList<>();
+    if (etoile == motif.length() - 1) {
+      String prefixe = motif.substring(0, etoile);
+      for (Map.Entry<String, DnsItem> entree : parNomTrie.tailMap(prefixe).entrySet()) {
+        if (resultat.size() == limite || !entree.getKey().startsWith(prefixe)) {
+          break;
+        }
+        resultat.add(entree.getValue());
+      }
     } else {
-      comparateur = Comparator.comparing(item -> item.getNomMachine().getNomMachine());
+      Iterator<DnsItem> parcours = arbreDomaines.parcourir(motif.substring(2));
+      while (resultat.size() < limite && parcours.hasNext()) {
+        resultat.add(parcours.next());
+      }
     }
+    metriques.motif(System.nanoTime() - debut);
+    return resultat;
+  }
 
-    filtres.sort(comparateur);
-    return filtres;
+  /**
+   * Retourne les métriques de cette base : compteurs de recherches et latences
+   * des opérations, publiables par JMX.
+   *
+   * @return les métriques de la base
+   */
+  @Override
+  public MetriquesDns getMetriques() {
+    return metriques;
   }
 
   /**
    * Ajoute un nouvel enregistrement DNS dans la base.
    * <p>
    * Vérifie que l’adresse IP et le nom de machine ne sont pas déjà présents avant
-   * l’ajout, puis met à jour le fichier de base.
+   * l’ajout, puis ajoute l’enregistrement à la fin du journal. Un compactage est
+   * planifié en tâche de fond lorsque le journal atteint le seuil configuré.
    * </p>
    *
    * @param ip  l’adresse IP à associer
    * @param nom le nom de machine correspondant
    * @throws IOException              si une erreur d’entrée/sortie se produit
-   *                                  lors de la mise à jour du fichier
+   *                                  lors de l’écriture du journal
    * @throws IllegalArgumentException si l’adresse IP ou le nom existent déjà dans
    *                                  la base
    */
+  @Override
   public void addItem(AdresseIP ip, NomMachine nom) throws IOException {
-    if (getItem(ip) != null) {
-      throw new IllegalArgumentException("ERREUR : L'adresse IP existe déjà !");
+    long debut = System.nanoTime();
+    boolean compacter;
+    synchronized (verrou) {
+      if (parAdresse.containsKey(ip)) {
+        metriques.ajoutsRefuses(1);
+        throw new IllegalArgumentException("ERREUR : L'adresse IP existe déjà !");
+      }
+      if (parNom.containsKey(nom.getNomComplet())) {
+        metriques.ajoutsRefuses(1);
+        throw new IllegalArgumentException("ERREUR : Le nom de machine existe déjà !");
+      }
+      DnsItem nouvelItem = new DnsItem(ip, nom);
+      journaliser(List.of(nouvelItem));
+      indexer(nouvelItem);
+      invaliderCache(nouvelItem);
+      compacter = ++enregistrementsJournal >= seuilCompactage;
     }
-    if (getItem(nom) != null) {
-      throw new IllegalArgumentException("ERREUR : Le nom de machine existe déjà !");
+    metriques.ajout(System.nanoTime() - debut);
+    if (compacter) {
+      planifierCompactage();
     }
-    DnsItem nouvelItem = new DnsItem(ip, nom);
-    items.add(nouvelItem);
-    majFichier();
   }
 
   /**
-   * Met à jour le fichier de base pour refléter le contenu actuel de la liste
-   * {@code items}.
+   * Ajoute un lot d’enregistrements DNS dans la base, en une seule opération.
    * <p>
-   * Le fichier est entièrement réécrit à chaque appel avec la liste des
-   * enregistrements au format texte : {@code nom_complet adresse_ip}.
+   * Chaque enregistrement est contrôlé une seule fois, contre la base et contre
+   * les enregistrements qui le précèdent dans le lot. Tous les conflits sont
+   * relevés avant de décider : si le lot en contient, rien n’est ajouté et une
+   * {@link LotInvalideException} les rapporte tous. Sinon le lot entier est
+   * écrit dans le journal en une seule écriture, puis indexé. Les lecteurs
+   * concurrents peuvent observer le lot en cours d’indexation. La durée du lot
+   * compte pour une mesure de la latence d’ajout.
    * </p>
    *
-   * @throws IOException si une erreur d’écriture se produit lors de la mise à
-   *                     jour du fichier
+   * @param lot les enregistrements à ajouter
+   * @throws IOException          si une erreur d’entrée/sortie se produit lors
+   *                              de l’écriture du journal
+   * @throws LotInvalideException si un enregistrement existe déjà dans la base
+   *                              ou apparaît deux fois dans le lot
+   */
+  @Override
+  public void addItems(Collection<DnsItem> lot) throws IOException {
+    long debut = System.nanoTime();
+    boolean compacter;
+    synchronized (verrou) {
+      Set<AdresseIP> adressesLot = new HashSet<>(lot.size() * 2);
+      Set<String> nomsLot = new HashSet<>(lot.size() * 2);
+      List<LotInvalideException.Conflit> conflits = new ArrayList<>();
+      for (DnsItem item : lot) {
+        AdresseIP ip = item.getAdresseIP();
+        String nom = item.getNomMachine().getNomComplet();
+        if (parAdresse.containsKey(ip)) {
+          conflits.add(new LotInvalideException.Conflit(item, "L'adresse IP existe déjà"));
+        } else if (!adressesLot.add(ip)) {
+          conflits.add(new LotInvalideException.Conflit(item, "L'adresse IP est en double dans le lot"));
+        }
+        if (parNom.containsKey(nom)) {
+          conflits.add(new LotInvalideException.Conflit(item, "Le nom de machine existe déjà"));
+        } else if (!nomsLot.add(nom)) {
+          conflits.add(new LotInvalideException.Conflit(item, "Le nom de machine est en double dans le lot"));
+        }
+      }
+      if (!conflits.isEmpty()) {
+        metriques.ajoutsRefuses(conflits.size());
+        throw new LotInvalideException(conflits);
+      }
+      if (lot.isEmpty()) {
+        return;
+      }
+      journaliser(lot);
+      for (DnsItem item : lot) {
+        indexer(item);
+        invaliderCache(item);
+      }
+      enregistrementsJournal += lot.size();
+      compacter = enregistrementsJournal >= seuilCompactage;
+    }
+    metriques.ajout(System.nanoTime() - debut);
+    if (compacter) {
+      planifierCompactage();
+    }
+  }
+
+  /**
+   * Enregistre un item dans les filtres de Bloom, dans la liste, dans les index
+   * de recherche et dans l’index de son domaine.
+   *
+   * @param item l’item à enregistrer
+   */
+  private void indexer(DnsItem item) {
+    // Pendant le chargement les filtres n’existent pas encore : ils sont
+    // construits d’un coup à la fin. Ensuite, la clé entre dans les filtres
+    // avant les index : une clé visible dans un index n’est jamais rejetée.
+    if (filtreNoms != null) {
+      if (filtreNoms.estPlein()) {
+        construireFiltres(1);
+      }
+      filtreNoms.ajouter(item.getNomMachine().getNomComplet().hashCode());
+      filtreAdresses.ajouter(item.getAdresseIP().hashCode());
+    }
+    items.add(item);
+    parAdresse.put(item.getAdresseIP(), item);
+    parNom.put(item.getNomMachine().getNomComplet(), item);
+    parNomTrie.put(item.getNomMachine().getNomComplet(), item);
+    String domaine = item.getNomMachine().getNomDomaine();
+    IndexDomaine index = domaines.computeIfAbsent(domaine, d -> new IndexDomaine());
+    index.ajouter(item);
+    arbreDomaines.ajouter(domaine, index, 1);
+    arbre.ajouter(item);
+  }
+
+  /**
+   * Retire des caches les recherches du nom et de l’adresse d’un item qui vient
+   * d’être indexé. Le chargement de la base n’invalide rien : les caches sont
+   * alors vides et aucune recherche n’est en cours.
+   *
+   * @param item l’item ajouté
+   */
+  private void invaliderCache(DnsItem item) {
+    cacheNoms.invalider(item.getNomMachine()::getNomComplet);
+    cacheAdresses.invalider(item.getAdresseIP()::getIp);
+  }
+
+  /**
+   * Ajoute des enregistrements à la fin du journal.
+   *
+   * @param lot les enregistrements à journaliser
+   * @throws IOException si une erreur d’écriture se produit
+   */
+  private void journaliser(Collection<DnsItem> lot) throws IOException {
+    long debut = System.nanoTime();
+    ecrireJournal(fichierJournal, lot);
+    metriques.journal(System.nanoTime() - debut);
+  }
+
+  /**
+   * Ajoute des enregistrements à la fin d’un journal, en une seule écriture
+   * forcée sur le disque avant de rendre la main : un ajout confirmé survit à
+   * un arrêt brutal.
+   *
+   * @param journal le fichier journal, créé s’il n’existe pas
+   * @param lot     les enregistrements à journaliser
+   * @throws IOException si une erreur d’écriture se produit
+   */
+  static void ecrireJournal(Path journal, Collection<DnsItem> lot) throws IOException {
+    StringBuilder texte = new StringBuilder(lot.size() * 32);
+    for (DnsItem item : lot) {
+      texte.append(ligne(item)).append(System.lineSeparator());
+    }
+    ByteBuffer octets = StandardCharsets.UTF_8.encode(CharBuffer.wrap(texte));
+    try (FileChannel canal = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND)) {
+      while (octets.hasRemaining()) {
+        canal.write(octets);
+      }
+      canal.force(false);
+    }
+  }
+
+  /**
+   * Planifie un compactage en tâche de fond, sauf s’il en existe déjà un en
+   * attente.
+   */
+  private void planifierCompactage() {
+    if (compactagePlanifie.compareAndSet(false, true)) {
+      COMPACTEUR.execute(() -> {
+        compactagePlanifie.set(false);
+        try {
+          compacter();
+        } catch (IOException e) {
+          System.err.println("ERREUR : Compactage de la base impossible : " + e.getMessage());
+        }
+      });
+    }
+  }
+
+  /**
+   * Intègre le journal dans le fichier de base.
+   * <p>
+   * Le journal courant est d’abord mis de côté, de sorte que les ajouts
+   * concurrents continuent dans un nouveau journal. La base complète est ensuite
+   * écrite dans un fichier temporaire qui remplace atomiquement l’ancienne base ;
+   * le journal mis de côté n’est supprimé qu’après ce remplacement. Une
+   * interruption à n’importe quelle étape laisse donc une base et un journal
+   * cohérents. L’instantané binaire, s’il existe, est réécrit avec la base.
+   * </p>
+   *
+   * @throws IOException si une erreur d’entrée/sortie se produit
+   */
+  public void compacter() throws IOException {
+    compacter(false);
+  }
+
+  /**
+   * Compacte la base puis écrit son instantané binaire ({@code <base>.bin}),
+   * qui sera chargé à la place du fichier texte aux démarrages suivants.
+   *
+   * @throws IOException si une erreur d’entrée/sortie se produit
+   */
+  public void exporterInstantane() throws IOException {
+    compacter(true);
+  }
+
+  private void compacter(boolean forcer) throws IOException {
+    synchronized (verrouCompactage) {
+      long debut = System.nanoTime();
+      List<DnsItem> copie;
+      synchronized (verrou) {
+        if (!Files.exists(fichierJournalCompacte)) {
+          if (Files.exists(fichierJournal)) {
+            Files.move(fichierJournal, fichierJournalCompacte, StandardCopyOption.ATOMIC_MOVE);
+          } else if (!forcer) {
+            return;
+          }
+        }
+        enregistrementsJournal = 0;
+        copie = new ArrayList<>(items);
+      }
+      List<String> lignes = copie.stream().map(Dns::ligne).collect(Collectors.toList());
+      Path temporaire = fichierBase.resolveSibling(fichierBase.getFileName() + ".tmp");
+      Files.write(temporaire, lignes);
+      Files.move(temporaire, fichierBase, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      if (forcer || Files.exists(fichierInstantane)) {
+        InstantaneBinaire.ecrire(copie, fichierInstantane, Files.size(fichierBase),
+            Files.getLastModifiedTime(fichierBase).toMillis());
+      }
+      Files.deleteIfExists(fichierJournalCompacte);
+      metriques.compactage(System.nanoTime() - debut);
+    }
+  }
+
+  /**
+   * Retourne la représentation d’un enregistrement au format du fichier de base :
+   * {@code nom_complet adresse_ip}.
+   *
+   * @param item l’enregistrement à formater
+   * @return la ligne correspondante
    */
-  private void majFichier() throws IOException {
-    List<String> lignes = items.stream()
-        .map(item -> item.getNomMachine().getNomComplet() + " " + item.getAdresseIP().getIp())
-        .collect(Collectors.toList());
-    Files.write(fichierBase, lignes, StandardOpenOption.TRUNCATE_EXISTING);
+  static String ligne(DnsItem item) {
+    return item.getNomMachine().getNomComplet() + " " + item.getAdresseIP().getIp();
   }
 }
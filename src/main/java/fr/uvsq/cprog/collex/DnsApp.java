@@ -1,5 +1,16 @@
 package fr.uvsq.cprog.collex;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Classe principale de l’application DNS en mode console.
  * <p>
@@ -9,7 +20,7 @@ package fr.uvsq.cprog.collex;
  * </p>
  */
 public class DnsApp {
-  private final Dns dns;
+  private final BaseDns dns;
   private final DnsTUI tui;
 
   /**
@@ -20,7 +31,7 @@ public class DnsApp {
    *
    * @param dns le service {@code Dns} à utiliser
    */
-  public DnsApp(Dns dns) {
+  public DnsApp(BaseDns dns) {
     this.dns = dns;
     this.tui = new DnsTUI(dns);
   }
@@ -29,14 +40,23 @@ public class DnsApp {
    * Démarre la boucle principale de l’application.
    * <p>
    * Lit les commandes saisies par l’utilisateur via la TUI et les exécute. La
-   * boucle continue indéfiniment jusqu’à l’exécution d’une commande
+   * durée d’exécution de chaque commande est enregistrée dans les métriques de
+   * la base. La boucle continue indéfiniment jusqu’à l’exécution d’une commande
    * {@code CommandeQuit}.
    * </p>
+   * <p>
+   * Toutes les commandes écrivent sur une même {@link SortieTamponnee}, vidée
+   * une fois le résultat complet, avant l’invite suivante.
+   * </p>
    */
   public void run() {
+    SortieTamponnee sortie = new SortieTamponnee(System.out);
     while (true) {
       Commande cmd = tui.nextCommande();
-      cmd.execute();
+      long debut = System.nanoTime();
+      cmd.execute(sortie);
+      dns.getMetriques().commande(cmd, System.nanoTime() - debut);
+      sortie.vider();
       // Quitter si CommandeQuit (optionnel, car CommandeQuit fait System.exit)
       if (cmd instanceof CommandeQuit) {
         break;
@@ -44,6 +64,30 @@ public class DnsApp {
     }
   }
 
+  /**
+   * Exécute sans invite les commandes lues sur une entrée, puis écrit le bilan
+   * du lot sur {@code System.err}.
+   * <p>
+   * Les résultats sont écrits sur {@code System.out} par une
+   * {@link SortieTamponnee}, vidée une seule fois à la fin du lot.
+   * </p>
+   *
+   * @param entree l’entrée, lue ligne à ligne
+   * @throws IOException si la lecture de l’entrée échoue
+   */
+  public void runLot(BufferedReader entree) throws IOException {
+    TraitementParLot lot = new TraitementParLot(dns);
+    SortieTamponnee sortie = new SortieTamponnee(System.out);
+    try {
+      lot.executer(entree, sortie);
+    } finally {
+      sortie.vider();
+      SortieTamponnee bilan = new SortieTamponnee(System.err);
+      lot.rapport(bilan);
+      bilan.vider();
+    }
+  }
+
   /**
    * Point d’entrée de l’application.
    * <p>
@@ -51,14 +95,80 @@ public class DnsApp {
    * et le fichier de base DNS, puis démarre l’application. En cas d’erreur, un
    * message est affiché et la trace de l’exception est imprimée.
    * </p>
+   * <p>
+   * Avec l’option {@code --udp port}, un serveur DNS sur UDP
+   * ({@link ServeurDnsUdp}) est démarré en plus de l’interface textuelle ; avec
+   * l’option {@code --tcp port}, un serveur acceptant sur TCP les recherches,
+   * listes et ajouts de la TUI ({@link ServeurDnsTcp}), sur l’adresse de
+   * bouclage seulement.
+   * </p>
+   * <p>
+   * Avec l’option {@code --hors-tas}, la base est chargée dans un
+   * {@link DnsHorsTas}, qui range ses enregistrements hors du tas, plutôt que
+   * dans un {@link Dns}. Avec l’option {@code --table fichier.sst}, la base est
+   * servie en lecture seule depuis une {@link TableTriee} sur disque
+   * ({@link DnsTableTriee}), sans être chargée.
+   * </p>
+   * <p>
+   * Avec l’option {@code --lot fichier}, les commandes du fichier, ou de
+   * l’entrée standard si le fichier est {@code -}, sont exécutées sans invite
+   * par {@link #runLot(BufferedReader)} au lieu de la boucle interactive.
+   * </p>
+   * <p>
+   * Les métriques de la base sont publiées par JMX sous le nom
+   * {@code fr.uvsq.cprog.collex:type=Dns,name="dns"}.
+   * </p>
    *
-   * @param args les arguments de ligne de commande (non utilisés)
+   * @param args les arguments de ligne de commande
+   *             ({@code [--hors-tas | --table fichier] [--udp port] [--tcp port] [--lot fichier]})
    */
   public static void main(String[] args) {
     try {
-      Dns dns = new Dns(); // Charge config.properties et fichier DNS
+      List<String> options = Arrays.asList(args);
+      int table = options.indexOf("--table");
+      BaseDns dns;
+      if (table >= 0 && table + 1 < args.length) {
+        dns = new DnsTableTriee(Path.of(args[table + 1]));
+      } else if (options.contains("--hors-tas")) {
+        dns = new DnsHorsTas(); // Charge config.properties et fichier DNS
+      } else {
+        dns = new Dns(); // Charge config.properties et fichier DNS
+      }
+      dns.getMetriques().publier("dns");
+      String lot = null;
+      for (int i = 0; i < args.length; i++) {
+        if (args[i].equals("--hors-tas")) {
+          continue;
+        }
+        if (args[i].equals("--table") && i + 1 < args.length) {
+          i++;
+          continue;
+        }
+        if (args[i].equals("--lot") && i + 1 < args.length) {
+          lot = args[++i];
+        } else if (args[i].equals("--udp") && i + 1 < args.length) {
+          ServeurDnsUdp serveur = new ServeurDnsUdp(dns, Integer.parseInt(args[++i])).demarrer();
+          System.out.println("Serveur DNS UDP en écoute sur le port " + serveur.getPort());
+        } else if (args[i].equals("--tcp") && i + 1 < args.length) {
+          ServeurDnsTcp serveur = new ServeurDnsTcp(dns, Integer.parseInt(args[++i])).demarrer();
+          System.out.println("Serveur de commandes TCP en écoute sur " + serveur.getAdresse().getHostAddress()
+              + ", port " + serveur.getPort());
+        } else {
+          throw new IllegalArgumentException("Option inconnue : " + args[i] + ". Usage: DnsApp [--hors-tas | --table fichier] [--udp port] [--tcp port] [--lot fichier]");
+        }
+      }
       DnsApp app = new DnsApp(dns);
-      app.run();
+      if (lot == null) {
+        app.run();
+        return;
+      }
+      boolean entreeStandard = lot.equals("-");
+      InputStream flux = entreeStandard ? System.in : Files.newInputStream(Path.of(lot));
+      Charset encodage = entreeStandard ? Charset.defaultCharset() : StandardCharsets.UTF_8;
+      try (BufferedReader entree = new BufferedReader(new InputStreamReader(flux, encodage),
+          TraitementParLot.TAILLE_LECTURE)) {
+        app.runLot(entree);
+      }
     } catch (Exception e) {
       System.err.println("Erreur lors du lancement de l'application : " + e.getMessage());
       e.printStackTrace();
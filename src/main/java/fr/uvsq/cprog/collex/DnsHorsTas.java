@@ -0,0 +1,1194 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+/**
+ * Base DNS dont les enregistrements et les index sont rangés hors du tas, pour
+ * les bases de plusieurs centaines de millions d’enregistrements.
+ * <p>
+ * Un enregistrement de {@link Dns} coûte plus de 200 octets de tas répartis en
+ * plusieurs objets que le ramasse-miettes doit parcourir. Ici, chaque
+ * enregistrement est une suite d’octets dans une {@link MemoireHorsTas} :
+ * </p>
+ * <pre>
+ *   0  suivant   long   adresse + 1 de l’enregistrement précédent du même
+ *                       domaine, 0 pour le premier
+ *   8  hachage   int    String#hashCode du nom complet
+ *  12  domaine   int    identifiant du domaine
+ *  16  en-tête   short  longueur du nom d’hôte en UTF-8, bit 15 pour IPv6
+ *  18  adresse   4 ou 16 octets
+ *  22  hôte      octets UTF-8 du nom d’hôte (34 pour IPv6)
+ * </pre>
+ * <p>
+ * La taille est arrondie à un multiple de 8 octets : 32 octets pour
+ * {@code www.uvsq.fr 193.51.31.90}. Les noms de domaine, peu nombreux, sont les
+ * seuls objets conservés dans le tas, une fois chacun, et les enregistrements
+ * les désignent par leur identifiant. Les deux index
+ * (nom complet et adresse) sont des tables à adressage ouvert hors du tas :
+ * chaque case contient l’adresse de l’enregistrement et 16 bits du hachage de
+ * sa clé, ce qui écarte presque toujours une case sans lire l’enregistrement.
+ * Les {@link DnsItem} ne sont construits qu’au moment de les retourner : la
+ * taille du tas et le travail du ramasse-miettes ne dépendent pas de celle de
+ * la base. La mémoire directe utilisable est bornée par l’option
+ * {@code -XX:MaxDirectMemorySize} de la JVM.
+ * </p>
+ * <p>
+ * Les recherches exactes coûtent un ou deux accès mémoire, comme avec
+ * {@link Dns}. {@code ls} lit l’un des deux index triés du domaine, suites
+ * hors du tas de 8 octets par enregistrement construites au premier
+ * {@code ls} et complétées par fusion au premier qui suit des ajouts ; une
+ * page d’un {@code ls} paginé y reprend par dichotomie. Une recherche par bloc
+ * CIDR lit de même un index trié des adresses IPv4 de toute la base, à partir
+ * du début du bloc. Les autres opérations sont plus lentes : {@code ls -R}
+ * parcourt les listes chaînées de la zone ; une recherche {@code prefixe*}
+ * parcourt la base en ne construisant d’objets que pour les noms retenus.
+ * </p>
+ * <p>
+ * La base est chargée depuis le même fichier texte et le même journal que
+ * {@link Dns}, et chaque ajout est écrit à la fin du journal. Comme pour
+ * {@link Dns}, le journal est intégré au fichier de base par un compactage en
+ * tâche de fond dès qu’il dépasse un seuil : les enregistrements sont relus
+ * hors du tas et écrits en flux dans le nouveau fichier, sans copie de la base
+ * dans le tas. Les lectures ne prennent aucun verrou et les ajouts sont
+ * sérialisés.
+ * </p>
+ */
+public class DnsHorsTas implements BaseDns {
+  private static final int SUIVANT = 0;
+  private static final int HACHAGE = 8;
+  private static final int DOMAINE = 12;
+  private static final int EN_TETE = 16;
+  private static final int ADRESSE = 18;
+  private static final int BIT_IPV6 = 0x8000;
+  private static final int LONGUEUR_MAX = 0x7FFF;
+  private static final int CAPACITE_INITIALE = 1 << 12;
+
+  private final Path fichierBase;
+  private final Path fichierJournal;
+  private final Path fichierJournalCompacte;
+  private final int seuilCompactage;
+  private final Object verrouCompactage = new Object();
+  private final AtomicBoolean compactagePlanifie = new AtomicBoolean();
+  private final MemoireHorsTas enregistrements = new MemoireHorsTas(0);
+  private final Map<String, Domaine> domaines = new ConcurrentHashMap<>();
+  private final Object verrou = new Object();
+  private final MetriquesDns metriques = new MetriquesDns();
+  private volatile Table parNom = new Table(CAPACITE_INITIALE);
+  private volatile Table parAdresse = new Table(CAPACITE_INITIALE);
+  private volatile Domaine[] parIdentifiant = new Domaine[16];
+  private final Object verrouIpv4 = new Object();
+  private volatile IndexTrie parIpv4;
+  private volatile long fin;
+  private int nombreDomaines;
+  private volatile long nombre;
+  private int enregistrementsJournal;
+
+  /**
+   * Construit une base hors du tas à partir du fichier défini dans le fichier
+   * {@code config.properties} du classpath. La propriété facultative
+   * {@code dns.journal.seuil} fixe, comme pour {@link Dns}, le nombre d’ajouts
+   * journalisés au-delà duquel la base est compactée.
+   *
+   * @throws IOException              si une erreur d’entrée/sortie se produit
+   *                                  lors du chargement de la configuration ou
+   *                                  de la base
+   * @throws IllegalArgumentException si le fichier {@code config.properties} est
+   *                                  introuvable ou mal configuré
+   */
+  public DnsHorsTas() throws IOException {
+    this(Dns.chargerConfiguration());
+  }
+
+  private DnsHorsTas(Properties props) throws IOException {
+    this(Dns.fichierConfigure(props), Integer.parseInt(
+        props.getProperty("dns.journal.seuil", String.valueOf(Dns.SEUIL_COMPACTAGE))));
+  }
+
+  /**
+   * Construit une base hors du tas à partir d’un fichier de base au format de
+   * {@link Dns}, avec le seuil de compactage par défaut
+   * ({@link Dns#SEUIL_COMPACTAGE}).
+   *
+   * @param fichierBase le chemin vers le fichier contenant la base DNS
+   * @throws IOException              si une erreur d’entrée/sortie se produit
+   *                                  lors du chargement
+   * @throws IllegalArgumentException si une ligne du fichier de base contient
+   *                                  une adresse IP ou un nom invalide
+   */
+  public DnsHorsTas(Path fichierBase) throws IOException {
+    this(fichierBase, Dns.SEUIL_COMPACTAGE);
+  }
+
+  /**
+   * Construit une base hors du tas à partir d’un fichier de base au format de
+   * {@link Dns}, puis rejoue son journal. Le fichier est lu en flux : la mémoire
+   * du tas utilisée par le chargement ne dépend pas de sa taille. Comme pour
+   * {@link Dns}, une ligne en conflit avec un enregistrement déjà chargé est
+   * ignorée, de même qu’une ligne invalide du journal ; une dernière ligne
+   * interrompue est retirée du journal sans être rejouée.
+   *
+   * @param fichierBase     le chemin vers le fichier contenant la base DNS
+   * @param seuilCompactage le nombre d’ajouts journalisés au-delà duquel la base
+   *                        est compactée en tâche de fond
+   * @throws IOException              si une erreur d’entrée/sortie se produit
+   *                                  lors du chargement
+   * @throws IllegalArgumentException si une ligne du fichier de base contient
+   *                                  une adresse IP ou un nom invalide, ou si le
+   *                                  seuil n’est pas strictement positif
+   */
+  public DnsHorsTas(Path fichierBase, int seuilCompactage) throws IOException {
+    if (seuilCompactage <= 0) {
+      throw new IllegalArgumentException("Le seuil de compactage doit être positif");
+    }
+    this.fichierBase = fichierBase;
+    this.fichierJournal = fichierBase.resolveSibling(fichierBase.getFileName() + ".journal");
+    this.fichierJournalCompacte =
+        fichierBase.resolveSibling(fichierBase.getFileName() + ".journal.compactage");
+    this.seuilCompactage = seuilCompactage;
+    long debut = System.nanoTime();
+    if (!Files.exists(fichierBase)) {
+      Files.createFile(fichierBase);
+    }
+    charger(fichierBase, false);
+    if (Files.exists(fichierJournalCompacte)) {
+      Dns.retirerAjoutInterrompu(fichierJournalCompacte);
+      enregistrementsJournal += charger(fichierJournalCompacte, true);
+    }
+    if (Files.exists(fichierJournal)) {
+      Dns.retirerAjoutInterrompu(fichierJournal);
+      enregistrementsJournal += charger(fichierJournal, true);
+    }
+    metriques.chargement(System.nanoTime() - debut, nombre);
+  }
+
+  /**
+   * Charge les lignes d’un fichier au format de la base.
+   *
+   * @return le nombre d’enregistrements ajoutés
+   */
+  private long charger(Path fichier, boolean ignorerInvalides) throws IOException {
+    long avant = nombre;
+    try (BufferedReader lecteur = Files.newBufferedReader(fichier, StandardCharsets.UTF_8)) {
+      String ligne;
+      while ((ligne = lecteur.readLine()) != null) {
+        DnsItem item = Analyseur.analyserLigne(ligne);
+        if (item == null && !ignorerInvalides) {
+          String motif = Analyseur.motifRejet(ligne);
+          if (motif != null) {
+            throw new IllegalArgumentException(motif);
+          }
+        }
+        if (item != null && chercherAdresse(item.getAdresseIP()) < 0
+            && chercherNom(item.getNomMachine().getNomComplet()) < 0) {
+          inserer(item);
+        }
+      }
+    }
+    return nombre - avant;
+  }
+
+  /**
+   * Retourne le nombre d’enregistrements de la base.
+   *
+   * @return le nombre d’enregistrements
+   */
+  public long getNombre() {
+    return nombre;
+  }
+
+  /**
+   * Retourne la mémoire occupée hors du tas par les enregistrements et les
+   * index.
+   *
+   * @return la taille en octets des segments alloués
+   */
+  public long getOctetsHorsTas() {
+    long octets = enregistrements.octets() + parNom.cases.octets() + parAdresse.cases.octets();
+    IndexTrie ipv4 = parIpv4;
+    octets += ipv4 == null ? 0 : ipv4.positions.octets();
+    for (Domaine d : domaines.values()) {
+      IndexTrie index = d.parNom;
+      octets += index == null ? 0 : index.positions.octets();
+      index = d.parAdresse;
+      octets += index == null ? 0 : index.positions.octets();
+    }
+    return octets;
+  }
+
+  @Override
+  public DnsItem getItem(AdresseIP ip) {
+    MetriquesDns.CompteursRecherches recherche = metriques.debutRecherche();
+    long enregistrement = chercherAdresse(ip);
+    metriques.rechercheAdresse(enregistrement >= 0, recherche);
+    return enregistrement < 0 ? null : vue(enregistrement);
+  }
+
+  @Override
+  public DnsItem getItem(NomMachine nom) {
+    MetriquesDns.CompteursRecherches recherche = metriques.debutRecherche();
+    long enregistrement = chercherNom(nom.getNomComplet());
+    metriques.rechercheNom(enregistrement >= 0, recherche);
+    return enregistrement < 0 ? null : vue(enregistrement);
+  }
+
+  @Override
+  public List<DnsItem> getItems(String domaine, boolean trierParAdresse) {
+    long debut = System.nanoTime();
+    List<DnsItem> resultat = new ArrayList<>();
+    Iterator<DnsItem> parcours = trierParAdresse ? parcourirParAdresse(domaine, null)
+        : parcourirParNom(domaine, null);
+    parcours.forEachRemaining(resultat::add);
+    metriques.liste(System.nanoTime() - debut);
+    return resultat;
+  }
+
+  /**
+   * Parcourt les enregistrements d’un domaine par nom de machine, à partir du
+   * premier qui suit {@code apres}.
+   * <p>
+   * Le parcours lit l’index trié du domaine à partir de la position de
+   * {@code apres}, trouvée par dichotomie, et ne construit un {@link DnsItem}
+   * que pour les enregistrements lus : une page de {@code k} lignes coûte
+   * {@code O(log n + k)}, en temps comme en mémoire. L’index est mis à jour
+   * au premier parcours qui suit des ajouts au domaine.
+   * </p>
+   *
+   * @param domaine le nom de domaine recherché
+   * @param apres   le dernier nom déjà lu, exclu du parcours, ou {@code null}
+   * @return un itérateur sur les enregistrements triés par nom de machine
+   */
+  @Override
+  public Iterator<DnsItem> parcourirParNom(String domaine, NomMachine apres) {
+    String hote = apres == null ? null : apres.getNomMachine();
+    return parcourirDomaine(domaine, false,
+        hote == null ? e -> true : e -> comparerHote(e, hote) > 0);
+  }
+
+  /**
+   * Parcourt les enregistrements d’un domaine par adresse, à partir de la
+   * première qui suit {@code apres}, comme
+   * {@link #parcourirParNom(String, NomMachine)}.
+   *
+   * @param domaine le nom de domaine recherché
+   * @param apres   la dernière adresse déjà lue, exclue du parcours, ou
+   *                {@code null}
+   * @return un itérateur sur les enregistrements triés par adresse IP
+   */
+  @Override
+  public Iterator<DnsItem> parcourirParAdresse(String domaine, AdresseIP apres) {
+    return parcourirDomaine(domaine, true,
+        apres == null ? e -> true : e -> comparerAdresse(e, apres) > 0);
+  }
+
+  private Iterator<DnsItem> parcourirDomaine(String domaine, boolean parAdresse,
+      LongPredicate retenu) {
+    Domaine d = domaines.get(domaine);
+    if (d == null) {
+      return Collections.emptyIterator();
+    }
+    IndexTrie index = indexTrie(d, parAdresse);
+    return new ParcoursIndex(index, premierRetenu(index, retenu));
+  }
+
+  /**
+   * Cherche par dichotomie le premier enregistrement retenu d’un index, les
+   * enregistrements retenus formant la fin de l’index.
+   *
+   * @return le rang du premier enregistrement retenu, ou la taille de l’index
+   */
+  private static long premierRetenu(IndexTrie index, LongPredicate retenu) {
+    long bas = 0;
+    long haut = index.nombre;
+    while (bas < haut) {
+      long milieu = (bas + haut) >>> 1;
+      if (retenu.test(index.position(milieu))) {
+        haut = milieu;
+      } else {
+        bas = milieu + 1;
+      }
+    }
+    return bas;
+  }
+
+  /**
+   * Retourne l’index trié d’un domaine, après y avoir fusionné les
+   * enregistrements ajoutés depuis sa construction. Ceux-ci sont en tête de la
+   * liste chaînée : ils sont lus jusqu’au dernier enregistrement indexé, triés,
+   * puis fusionnés avec l’index dans un nouvel index. Les lecteurs de l’ancien
+   * index n’en sont pas affectés.
+   *
+   * @param d          le domaine
+   * @param parAdresse {@code true} pour l’ordre des adresses, {@code false} pour
+   *                   celui des noms de machine
+   * @return un index contenant au moins les enregistrements publiés avant
+   *         l’appel
+   */
+  private IndexTrie indexTrie(Domaine d, boolean parAdresse) {
+    IndexTrie index = parAdresse ? d.parAdresse : d.parNom;
+    long tete = d.tete;
+    if (index != null && index.repere == tete) {
+      return index;
+    }
+    synchronized (d) {
+      index = parAdresse ? d.parAdresse : d.parNom;
+      tete = d.tete;
+      if (index != null && index.repere == tete) {
+        return index;
+      }
+      long dernier = index == null ? 0 : index.repere;
+      long[] nouveaux = new long[16];
+      int nombreNouveaux = 0;
+      for (long suivant = tete; suivant != dernier;
+          suivant = enregistrements.lireLong(suivant - 1 + SUIVANT)) {
+        if (nombreNouveaux == nouveaux.length) {
+          nouveaux = Arrays.copyOf(nouveaux, nombreNouveaux * 2);
+        }
+        nouveaux[nombreNouveaux++] = suivant - 1;
+      }
+      OrdreEnregistrements ordre = parAdresse ? this::comparerAdresses : this::comparerHotes;
+      trier(nouveaux, nombreNouveaux, ordre);
+      index = fusionner(index, nouveaux, nombreNouveaux, ordre, tete);
+      if (parAdresse) {
+        d.parAdresse = index;
+      } else {
+        d.parNom = index;
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Retourne l’index trié des enregistrements IPv4 de la base, après y avoir
+   * fusionné ceux ajoutés depuis sa construction, comme
+   * {@link #indexTrie(Domaine, boolean)}. Les enregistrements sont rangés dans
+   * l’ordre des ajouts : les nouveaux sont ceux qui suivent la fin de la
+   * mémoire relevée à la construction de l’index.
+   *
+   * @return un index contenant au moins les enregistrements IPv4 publiés avant
+   *         l’appel
+   */
+  private IndexTrie indexIpv4() {
+    IndexTrie index = parIpv4;
+    long limite = fin;
+    if (index != null && index.repere == limite) {
+      return index;
+    }
+    synchronized (verrouIpv4) {
+      index = parIpv4;
+      limite = fin;
+      if (index != null && index.repere == limite) {
+        return index;
+      }
+      long[] nouveaux = new long[16];
+      int nombreNouveaux = 0;
+      for (long e = index == null ? 0 : index.repere; e < limite; e = apres(e)) {
+        if (!estVide(e) && !estIpv6(e)) {
+          if (nombreNouveaux == nouveaux.length) {
+            nouveaux = Arrays.copyOf(nouveaux, nombreNouveaux * 2);
+          }
+          nouveaux[nombreNouveaux++] = e;
+        }
+      }
+      trier(nouveaux, nombreNouveaux, this::comparerAdresses);
+      index = fusionner(index, nouveaux, nombreNouveaux, this::comparerAdresses, limite);
+      parIpv4 = index;
+      return index;
+    }
+  }
+
+  /**
+   * Fusionne un index trié et des enregistrements triés dans un nouvel index.
+   *
+   * @param ancien   l’index existant, ou {@code null}
+   * @param nouveaux les enregistrements à ajouter, triés
+   * @param nombre   le nombre d’enregistrements de {@code nouveaux}
+   * @param ordre    l’ordre des deux suites
+   * @param repere   le repère du nouvel index
+   * @return le nouvel index
+   */
+  private static IndexTrie fusionner(IndexTrie ancien, long[] nouveaux, int nombre,
+      OrdreEnregistrements ordre, long repere) {
+    long anciens = ancien == null ? 0 : ancien.nombre;
+    IndexTrie index = new IndexTrie(anciens + nombre, repere);
+    long i = 0;
+    int j = 0;
+    for (long k = 0; k < index.nombre; k++) {
+      long e;
+      if (j == nombre || i < anciens && ordre.comparer(ancien.position(i), nouveaux[j]) < 0) {
+        e = ancien.position(i++);
+      } else {
+        e = nouveaux[j++];
+      }
+      index.positions.ecrireLong(k * 8, e);
+    }
+    return index;
+  }
+
+  /** Trie les {@code nombre} premières adresses d’un tableau par un tri par tas. */
+  private static void trier(long[] tas, int nombre, OrdreEnregistrements ordre) {
+    for (int i = nombre / 2 - 1; i >= 0; i--) {
+      descendre(tas, i, nombre, ordre);
+    }
+    for (int taille = nombre - 1; taille > 0; taille--) {
+      long premier = tas[0];
+      tas[0] = tas[taille];
+      tas[taille] = premier;
+      descendre(tas, 0, taille, ordre);
+    }
+  }
+
+  /** Rétablit un tas dont le plus grand élément est en tête, à partir de {@code i}. */
+  private static void descendre(long[] tas, int i, int taille, OrdreEnregistrements ordre) {
+    long e = tas[i];
+    while (2 * i + 1 < taille) {
+      int enfant = 2 * i + 1;
+      if (enfant + 1 < taille && ordre.comparer(tas[enfant + 1], tas[enfant]) > 0) {
+        enfant++;
+      }
+      if (ordre.comparer(e, tas[enfant]) >= 0) {
+        break;
+      }
+      tas[i] = tas[enfant];
+      i = enfant;
+    }
+    tas[i] = e;
+  }
+
+  /**
+   * Retourne les enregistrements dont l’adresse appartient à un bloc CIDR.
+   * <p>
+   * La première adresse du bloc est cherchée par dichotomie dans l’index trié
+   * des adresses IPv4, qui est ensuite lu jusqu’à la fin du bloc : le coût est
+   * proportionnel au nombre d’enregistrements retournés, quelle que soit la
+   * taille du bloc.
+   * </p>
+   *
+   * @param bloc le bloc d’adresses recherché
+   * @return la liste des enregistrements du bloc, triée par adresse IP
+   */
+  @Override
+  public List<DnsItem> getItems(Cidr bloc) {
+    long debut = System.nanoTime();
+    List<DnsItem> resultat = new ArrayList<>();
+    IndexTrie index = indexIpv4();
+    int reseau = bloc.valeurReseau();
+    long i = premierRetenu(index,
+        e -> Integer.compareUnsigned(enregistrements.lireInt(e + ADRESSE), reseau) >= 0);
+    for (; i < index.nombre; i++) {
+      long e = index.position(i);
+      if (!bloc.contient(enregistrements.lireInt(e + ADRESSE))) {
+        break;
+      }
+      resultat.add(vue(e));
+    }
+    metriques.plage(System.nanoTime() - debut);
+    return resultat;
+  }
+
+  /**
+   * Retourne les enregistrements d’un domaine et de ses sous-domaines, dans
+   * l’ordre canonique des noms DNS. Les listes des domaines de la zone sont
+   * parcourues puis triées avant que le flux ne soit retourné.
+   *
+   * @param domaine le nom de domaine recherché
+   * @return le flux trié des enregistrements de la zone
+   */
+  @Override
+  public Stream<DnsItem> getItemsRecursif(String domaine) {
+    List<DnsItem> resultat = new ArrayList<>();
+    for (Domaine d : domaines.values()) {
+      if (dansZone(d.nom, domaine)) {
+        ajouterDomaine(d, resultat);
+      }
+    }
+    resultat.sort((a, b) -> comparerCanonique(a.getNomMachine().getNomComplet(),
+        b.getNomMachine().getNomComplet()));
+    return resultat.stream();
+  }
+
+  @Override
+  public long getTailleZone(String domaine) {
+    long taille = 0;
+    for (Domaine d : domaines.values()) {
+      if (dansZone(d.nom, domaine)) {
+        taille += d.nombre;
+      }
+    }
+    return taille;
+  }
+
+  /**
+   * Retourne les enregistrements dont le nom complet correspond à un motif. Un
+   * motif {@code prefixe*} parcourt toute la base et ne conserve que les
+   * {@code limite} premiers noms dans l’ordre alphabétique ; un motif
+   * {@code *.domaine} est servi par {@link #getItemsRecursif(String)}.
+   *
+   * @param motif  le motif recherché
+   * @param limite le nombre maximal de résultats
+   * @return la liste des enregistrements correspondants, au plus {@code limite}
+   * @throws IllegalArgumentException si le motif ou la limite sont invalides
+   */
+  @Override
+  public List<DnsItem> getItemsParMotif(String motif, int limite) {
+    int etoile = Analyseur.analyserMotif(motif, limite);
+    long debut = System.nanoTime();
+    List<DnsItem> resultat;
+    if (etoile == motif.length() - 1) {
+      String prefixe = motif.substring(0, etoile);
+      Comparator<DnsItem> ordre = Comparator.comparing(item -> item.getNomMachine().getNomComplet());
+      // Les plus grands en tête, pour écarter le dernier retenu en temps constant.
+      PriorityQueue<DnsItem> retenus = new PriorityQueue<>(ordre.reversed());
+      parcourir(e -> {
+        if (commencePar(e, prefixe)) {
+          retenus.add(vue(e));
+          if (retenus.size() > limite) {
+            retenus.poll();
+          }
+        }
+      });
+      resultat = new ArrayList<>(retenus);
+      resultat.sort(ordre);
+    } else {
+      resultat = new ArrayList<>();
+      getItemsRecursif(motif.substring(2)).limit(limite).forEach(resultat::add);
+    }
+    metriques.motif(System.nanoTime() - debut);
+    return resultat;
+  }
+
+  @Override
+  public MetriquesDns getMetriques() {
+    return metriques;
+  }
+
+  @Override
+  public void addItem(AdresseIP ip, NomMachine nom) throws IOException {
+    long debut = System.nanoTime();
+    boolean compacter;
+    synchronized (verrou) {
+      if (chercherAdresse(ip) >= 0) {
+        metriques.ajoutsRefuses(1);
+        throw new IllegalArgumentException("ERREUR : L'adresse IP existe déjà !");
+      }
+      if (chercherNom(nom.getNomComplet()) >= 0) {
+        metriques.ajoutsRefuses(1);
+        throw new IllegalArgumentException("ERREUR : Le nom de machine existe déjà !");
+      }
+      DnsItem item = new DnsItem(ip, nom);
+      verifierLongueur(item);
+      journaliser(List.of(item));
+      inserer(item);
+      compacter = ++enregistrementsJournal >= seuilCompactage;
+    }
+    metriques.ajout(System.nanoTime() - debut);
+    if (compacter) {
+      planifierCompactage();
+    }
+  }
+
+  @Override
+  public void addItems(Collection<DnsItem> lot) throws IOException {
+    long debut = System.nanoTime();
+    boolean compacter;
+    synchronized (verrou) {
+      Set<AdresseIP> adressesLot = new HashSet<>(lot.size() * 2);
+      Set<String> nomsLot = new HashSet<>(lot.size() * 2);
+      List<LotInvalideException.Conflit> conflits = new ArrayList<>();
+      for (DnsItem item : lot) {
+        AdresseIP ip = item.getAdresseIP();
+        String nom = item.getNomMachine().getNomComplet();
+        verifierLongueur(item);
+        if (chercherAdresse(ip) >= 0) {
+          conflits.add(new LotInvalideException.Conflit(item, "L'adresse IP existe déjà"));
+        } else if (!adressesLot.add(ip)) {
+          conflits.add(new LotInvalideException.Conflit(item, "L'adresse IP est en double dans le lot"));
+        }
+        if (chercherNom(nom) >= 0) {
+          conflits.add(new LotInvalideException.Conflit(item, "Le nom de machine existe déjà"));
+        } else if (!nomsLot.add(nom)) {
+          conflits.add(new LotInvalideException.Conflit(item, "Le nom de machine est en double dans le lot"));
+        }
+      }
+      if (!conflits.isEmpty()) {
+        metriques.ajoutsRefuses(conflits.size());
+        throw new LotInvalideException(conflits);
+      }
+      if (lot.isEmpty()) {
+        return;
+      }
+      journaliser(lot);
+      for (DnsItem item : lot) {
+        inserer(item);
+      }
+      enregistrementsJournal += lot.size();
+      compacter = enregistrementsJournal >= seuilCompactage;
+    }
+    metriques.ajout(System.nanoTime() - debut);
+    if (compacter) {
+      planifierCompactage();
+    }
+  }
+
+  private static void verifierLongueur(DnsItem item) {
+    if (item.getNomMachine().getNomMachineUtf8().length > LONGUEUR_MAX) {
+      throw new IllegalArgumentException("Nom de machine trop long : " + item.getNomMachine());
+    }
+  }
+
+  private void journaliser(Collection<DnsItem> lot) throws IOException {
+    long debut = System.nanoTime();
+    Dns.ecrireJournal(fichierJournal, lot);
+    metriques.journal(System.nanoTime() - debut);
+  }
+
+  /**
+   * Planifie un compactage en tâche de fond, sauf s’il en existe déjà un en
+   * attente.
+   */
+  private void planifierCompactage() {
+    if (compactagePlanifie.compareAndSet(false, true)) {
+      Dns.COMPACTEUR.execute(() -> {
+        compactagePlanifie.set(false);
+        try {
+          compacter();
+        } catch (IOException e) {
+          System.err.println("ERREUR : Compactage de la base impossible : " + e.getMessage());
+        }
+      });
+    }
+  }
+
+  /**
+   * Intègre le journal dans le fichier de base, comme {@link Dns#compacter()}.
+   * <p>
+   * Le journal courant est mis de côté sous le verrou des ajouts, qui
+   * continuent dans un nouveau journal, et la fin de la mémoire des
+   * enregistrements est relevée. Les enregistrements qui la précèdent ne sont
+   * plus modifiés : ils sont relus sans verrou, dans l’ordre des ajouts, et
+   * écrits en flux dans un fichier temporaire qui remplace atomiquement
+   * l’ancienne base. Le journal mis de côté n’est supprimé qu’ensuite.
+   * </p>
+   *
+   * @throws IOException si une erreur d’entrée/sortie se produit
+   */
+  public void compacter() throws IOException {
+    synchronized (verrouCompactage) {
+      long debut = System.nanoTime();
+      long limite;
+      synchronized (verrou) {
+        if (!Files.exists(fichierJournalCompacte)) {
+          if (!Files.exists(fichierJournal)) {
+            return;
+          }
+          Files.move(fichierJournal, fichierJournalCompacte, StandardCopyOption.ATOMIC_MOVE);
+        }
+        enregistrementsJournal = 0;
+        limite = fin;
+      }
+      Path temporaire = fichierBase.resolveSibling(fichierBase.getFileName() + ".tmp");
+      try (BufferedWriter sortie = Files.newBufferedWriter(temporaire, StandardCharsets.UTF_8)) {
+        for (long e = 0; e < limite; e = apres(e)) {
+          if (!estVide(e)) {
+            sortie.write(Dns.ligne(vue(e)));
+            sortie.newLine();
+          }
+        }
+      }
+      Files.move(temporaire, fichierBase, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      Files.deleteIfExists(fichierJournalCompacte);
+      metriques.compactage(System.nanoTime() - debut);
+    }
+  }
+
+  /**
+   * Écrit un enregistrement hors du tas puis le publie dans les index et dans la
+   * liste de son domaine. Appelée sous le verrou, ou par le constructeur.
+   *
+   * @param item l’enregistrement à ranger
+   */
+  private void inserer(DnsItem item) {
+    NomMachine nom = item.getNomMachine();
+    AdresseIP ip = item.getAdresseIP();
+    byte[] hote = nom.getNomMachineUtf8();
+    boolean ipv6 = ip.estIpv6();
+    Domaine domaine = domaine(nom.getNomDomaine());
+    long e = enregistrements.allouer(ADRESSE + (ipv6 ? 16 : 4) + hote.length);
+    enregistrements.ecrireLong(e + SUIVANT, domaine.tete);
+    enregistrements.ecrireInt(e + HACHAGE, nom.getNomComplet().hashCode());
+    enregistrements.ecrireInt(e + DOMAINE, domaine.identifiant);
+    enregistrements.ecrireShort(e + EN_TETE, (short) (hote.length | (ipv6 ? BIT_IPV6 : 0)));
+    if (ipv6) {
+      enregistrements.ecrireLong(e + ADRESSE, ip.getPoidsFort());
+      enregistrements.ecrireLong(e + ADRESSE + 8, ip.getPoidsFaible());
+    } else {
+      enregistrements.ecrireInt(e + ADRESSE, ip.getValeur());
+    }
+    enregistrements.ecrire(debutHote(e), hote, hote.length);
+    // Les écritures volatiles des index publient l’enregistrement complet.
+    parNom = placer(parNom, e, hacherNom(nom.getNomComplet().hashCode()), true);
+    parAdresse = placer(parAdresse, e, hacherAdresse(e), false);
+    domaine.tete = e + 1;
+    domaine.nombre++;
+    nombre++;
+    fin = enregistrements.fin();
+  }
+
+  private Domaine domaine(String nom) {
+    Domaine domaine = domaines.get(nom);
+    if (domaine == null) {
+      Domaine[] tableau = parIdentifiant;
+      if (nombreDomaines == tableau.length) {
+        tableau = Arrays.copyOf(tableau, tableau.length * 2);
+      }
+      domaine = new Domaine(nom, nombreDomaines);
+      tableau[nombreDomaines++] = domaine;
+      parIdentifiant = tableau;
+      domaines.put(nom, domaine);
+    }
+    return domaine;
+  }
+
+  /**
+   * Place un enregistrement dans une table, en la remplaçant d’abord par une
+   * table deux fois plus grande si elle est remplie aux trois quarts.
+   *
+   * @return la table contenant l’enregistrement
+   */
+  private Table placer(Table table, long enregistrement, long hachage, boolean parNomComplet) {
+    if (table.occupees >= table.capacite() - (table.capacite() >> 2)) {
+      Table agrandie = new Table(table.capacite() * 2);
+      for (long i = 0; i < table.capacite(); i++) {
+        long valeur = table.cases.lireLong(i * 8);
+        if (valeur != 0) {
+          long e = (valeur >>> 16) - 1;
+          agrandie.placer(valeur, parNomComplet
+              ? hacherNom(enregistrements.lireInt(e + HACHAGE)) : hacherAdresse(e));
+        }
+      }
+      table = agrandie;
+    }
+    table.placer((enregistrement + 1) << 16 | hachage >>> 48, hachage);
+    return table;
+  }
+
+  private long chercherNom(String nomComplet) {
+    Table table = parNom;
+    long hachage = hacherNom(nomComplet.hashCode());
+    for (long i = hachage & table.masque; ; i = (i + 1) & table.masque) {
+      long valeur = table.cases.lireLongVolatile(i * 8);
+      if (valeur == 0) {
+        return -1;
+      }
+      long e = (valeur >>> 16) - 1;
+      if ((valeur & 0xFFFF) == hachage >>> 48 && nomEgal(e, nomComplet)) {
+        return e;
+      }
+    }
+  }
+
+  private long chercherAdresse(AdresseIP ip) {
+    if (!ip.estIpv6()) {
+      return chercherIpv4(ip.getValeur());
+    }
+    Table table = parAdresse;
+    long hachage = hacherIpv6(ip.getPoidsFort(), ip.getPoidsFaible());
+    for (long i = hachage & table.masque; ; i = (i + 1) & table.masque) {
+      long valeur = table.cases.lireLongVolatile(i * 8);
+      if (valeur == 0) {
+        return -1;
+      }
+      long e = (valeur >>> 16) - 1;
+      if ((valeur & 0xFFFF) == hachage >>> 48 && estIpv6(e)
+          && enregistrements.lireLong(e + ADRESSE) == ip.getPoidsFort()
+          && enregistrements.lireLong(e + ADRESSE + 8) == ip.getPoidsFaible()) {
+        return e;
+      }
+    }
+  }
+
+  private long chercherIpv4(int ip) {
+    Table table = parAdresse;
+    long hachage = FiltreBloom.melanger(ip);
+    for (long i = hachage & table.masque; ; i = (i + 1) & table.masque) {
+      long valeur = table.cases.lireLongVolatile(i * 8);
+      if (valeur == 0) {
+        return -1;
+      }
+      long e = (valeur >>> 16) - 1;
+      if ((valeur & 0xFFFF) == hachage >>> 48 && !estIpv6(e) && enregistrements.lireInt(e + ADRESSE) == ip) {
+        return e;
+      }
+    }
+  }
+
+  private static long hacherNom(int hashCode) {
+    return FiltreBloom.melanger(hashCode);
+  }
+
+  private static long hacherIpv6(long poidsFort, long poidsFaible) {
+    return FiltreBloom.melanger(poidsFort ^ FiltreBloom.melanger(poidsFaible));
+  }
+
+  private long hacherAdresse(long e) {
+    return estIpv6(e)
+        ? hacherIpv6(enregistrements.lireLong(e + ADRESSE), enregistrements.lireLong(e + ADRESSE + 8))
+        : FiltreBloom.melanger(enregistrements.lireInt(e + ADRESSE));
+  }
+
+  private boolean estIpv6(long e) {
+    return (enregistrements.lireShort(e + EN_TETE) & BIT_IPV6) != 0;
+  }
+
+  private int longueurHote(long e) {
+    return enregistrements.lireShort(e + EN_TETE) & LONGUEUR_MAX;
+  }
+
+  private long debutHote(long e) {
+    return e + ADRESSE + (estIpv6(e) ? 16 : 4);
+  }
+
+  private String domaineDe(long e) {
+    return parIdentifiant[enregistrements.lireInt(e + DOMAINE)].nom;
+  }
+
+  /**
+   * Compare le nom complet d’un enregistrement à un texte sans construire de
+   * chaîne, sauf si le nom d’hôte n’est pas en ASCII.
+   */
+  private boolean nomEgal(long e, String nomComplet) {
+    int longueur = longueurHote(e);
+    long hote = debutHote(e);
+    if (nomComplet.length() <= longueur) {
+      return false;
+    }
+    for (int i = 0; i < longueur; i++) {
+      byte octet = enregistrements.lireOctet(hote + i);
+      if (octet < 0) {
+        return nomComplet(e).equals(nomComplet);
+      }
+      if (nomComplet.charAt(i) != octet) {
+        return false;
+      }
+    }
+    String domaine = domaineDe(e);
+    return nomComplet.length() == longueur + 1 + domaine.length()
+        && nomComplet.charAt(longueur) == '.'
+        && nomComplet.startsWith(domaine, longueur + 1);
+  }
+
+  /** Indique si le nom complet d’un enregistrement commence par un préfixe. */
+  private boolean commencePar(long e, String prefixe) {
+    int longueur = longueurHote(e);
+    long hote = debutHote(e);
+    int communs = Math.min(longueur, prefixe.length());
+    for (int i = 0; i < communs; i++) {
+      byte octet = enregistrements.lireOctet(hote + i);
+      if (octet < 0) {
+        return nomComplet(e).startsWith(prefixe);
+      }
+      if (prefixe.charAt(i) != octet) {
+        return false;
+      }
+    }
+    if (prefixe.length() <= longueur) {
+      return true;
+    }
+    String domaine = domaineDe(e);
+    int reste = prefixe.length() - longueur - 1;
+    return prefixe.charAt(longueur) == '.' && reste <= domaine.length()
+        && domaine.regionMatches(0, prefixe, longueur + 1, reste);
+  }
+
+  /**
+   * Compare les noms d’hôte de deux enregistrements dans l’ordre de
+   * {@link NomMachine#ORDRE_NOM_MACHINE}, sans construire de chaîne tant
+   * qu’ils sont en ASCII.
+   */
+  private int comparerHotes(long a, long b) {
+    int longueurA = longueurHote(a);
+    int longueurB = longueurHote(b);
+    long hoteA = debutHote(a);
+    long hoteB = debutHote(b);
+    for (int i = 0; i < Math.min(longueurA, longueurB); i++) {
+      byte octetA = enregistrements.lireOctet(hoteA + i);
+      byte octetB = enregistrements.lireOctet(hoteB + i);
+      if (octetA < 0 || octetB < 0) {
+        return hote(a).compareTo(hote(b));
+      }
+      if (octetA != octetB) {
+        return octetA - octetB;
+      }
+    }
+    return longueurA - longueurB;
+  }
+
+  /**
+   * Compare le nom d’hôte d’un enregistrement à un texte, comme
+   * {@link #comparerHotes(long, long)}.
+   */
+  private int comparerHote(long e, String hote) {
+    int longueur = longueurHote(e);
+    long debut = debutHote(e);
+    for (int i = 0; i < Math.min(longueur, hote.length()); i++) {
+      byte octet = enregistrements.lireOctet(debut + i);
+      if (octet < 0) {
+        return hote(e).compareTo(hote);
+      }
+      if (octet != hote.charAt(i)) {
+        return octet - hote.charAt(i);
+      }
+    }
+    return longueur - hote.length();
+  }
+
+  /** Compare les adresses de deux enregistrements dans l’ordre naturel des {@link AdresseIP}. */
+  private int comparerAdresses(long a, long b) {
+    boolean ipv6 = estIpv6(a);
+    if (ipv6 != estIpv6(b)) {
+      return ipv6 ? 1 : -1;
+    }
+    if (!ipv6) {
+      return Integer.compareUnsigned(enregistrements.lireInt(a + ADRESSE),
+          enregistrements.lireInt(b + ADRESSE));
+    }
+    int cmp = Long.compareUnsigned(enregistrements.lireLong(a + ADRESSE),
+        enregistrements.lireLong(b + ADRESSE));
+    return cmp != 0 ? cmp : Long.compareUnsigned(enregistrements.lireLong(a + ADRESSE + 8),
+        enregistrements.lireLong(b + ADRESSE + 8));
+  }
+
+  /**
+   * Compare l’adresse d’un enregistrement à une adresse, comme
+   * {@link #comparerAdresses(long, long)}.
+   */
+  private int comparerAdresse(long e, AdresseIP ip) {
+    if (!ip.estIpv6()) {
+      return estIpv6(e) ? 1
+          : Integer.compareUnsigned(enregistrements.lireInt(e + ADRESSE), ip.getValeur());
+    }
+    if (!estIpv6(e)) {
+      return -1;
+    }
+    int cmp = Long.compareUnsigned(enregistrements.lireLong(e + ADRESSE), ip.getPoidsFort());
+    return cmp != 0 ? cmp
+        : Long.compareUnsigned(enregistrements.lireLong(e + ADRESSE + 8), ip.getPoidsFaible());
+  }
+
+  private String hote(long e) {
+    byte[] octets = new byte[longueurHote(e)];
+    enregistrements.lire(debutHote(e), octets, octets.length);
+    return new String(octets, StandardCharsets.UTF_8);
+  }
+
+  private String nomComplet(long e) {
+    return hote(e) + "." + domaineDe(e);
+  }
+
+  /**
+   * Construit l’objet {@link DnsItem} d’un enregistrement.
+   *
+   * @param e l’adresse de l’enregistrement
+   * @return un nouvel objet, indépendant de la mémoire hors du tas
+   */
+  private DnsItem vue(long e) {
+    AdresseIP ip = estIpv6(e)
+        ? new AdresseIP(enregistrements.lireLong(e + ADRESSE), enregistrements.lireLong(e + ADRESSE + 8))
+        : new AdresseIP(enregistrements.lireInt(e + ADRESSE));
+    String hote = hote(e);
+    return new DnsItem(ip, new NomMachine(hote + "." + domaineDe(e), hote.length()));
+  }
+
+  private void ajouterDomaine(Domaine domaine, List<DnsItem> resultat) {
+    for (long suivant = domaine.tete; suivant != 0; suivant = enregistrements.lireLong(suivant - 1 + SUIVANT)) {
+      resultat.add(vue(suivant - 1));
+    }
+  }
+
+  /**
+   * Appelle une action pour chaque enregistrement publié, dans l’ordre des
+   * ajouts.
+   *
+   * @param action l’action, qui reçoit l’adresse de l’enregistrement
+   */
+  private void parcourir(LongConsumer action) {
+    long limite = fin;
+    for (long e = 0; e < limite; e = apres(e)) {
+      if (!estVide(e)) {
+        action.accept(e);
+      }
+    }
+  }
+
+  /** Indique si une position est une fin de segment laissée vide par l’allocation. */
+  private boolean estVide(long e) {
+    return MemoireHorsTas.resteSegment(e) < ADRESSE || enregistrements.lireShort(e + EN_TETE) == 0;
+  }
+
+  /** Retourne la position qui suit un enregistrement ou une fin de segment vide. */
+  private long apres(long e) {
+    return estVide(e) ? MemoireHorsTas.segmentSuivant(e)
+        : (debutHote(e) + longueurHote(e) + 7) & ~7L;
+  }
+
+  private static boolean dansZone(String domaine, String zone) {
+    return domaine.equals(zone) || domaine.length() > zone.length() && domaine.endsWith(zone)
+        && domaine.charAt(domaine.length() - zone.length() - 1) == '.';
+  }
+
+  /**
+   * Compare deux noms complets dans l’ordre canonique des noms DNS : libellés
+   * comparés de droite à gauche, un nom précédant ceux qu’il prolonge.
+   */
+  static int comparerCanonique(String a, String b) {
+    int finA = a.length();
+    int finB = b.length();
+    while (finA >= 0 && finB >= 0) {
+      int pointA = a.lastIndexOf('.', finA - 1);
+      int pointB = b.lastIndexOf('.', finB - 1);
+      int longueurA = finA - pointA - 1;
+      int longueurB = finB - pointB - 1;
+      for (int i = 0; i < Math.min(longueurA, longueurB); i++) {
+        int cmp = Character.compare(a.charAt(pointA + 1 + i), b.charAt(pointB + 1 + i));
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      if (longueurA != longueurB) {
+        return Integer.compare(longueurA, longueurB);
+      }
+      finA = pointA;
+      finB = pointB;
+    }
+    return Integer.compare(finA, finB);
+  }
+
+  /** Ordre total sur les enregistrements, désignés par leur adresse hors du tas. */
+  private interface OrdreEnregistrements {
+    int comparer(long a, long b);
+  }
+
+  /**
+   * Suite hors du tas des adresses d’enregistrements, triée par nom de machine
+   * ou par adresse IP : celles d’un domaine, ou celles des adresses IPv4 de
+   * toute la base. Un index n’est plus modifié une fois publié.
+   */
+  private static final class IndexTrie {
+    final MemoireHorsTas positions;
+    final long nombre;
+    /**
+     * Dernier enregistrement indexé : valeur de {@link Domaine#tete} pour un
+     * domaine, fin de la mémoire des enregistrements pour les adresses IPv4.
+     */
+    final long repere;
+
+    IndexTrie(long nombre, long repere) {
+      this.positions = new MemoireHorsTas(nombre * 8);
+      this.nombre = nombre;
+      this.repere = repere;
+    }
+
+    long position(long i) {
+      return positions.lireLong(i * 8);
+    }
+  }
+
+  /**
+   * Itérateur sur un index trié à partir d’un rang, qui ne construit l’objet
+   * {@link DnsItem} que des enregistrements lus.
+   */
+  private final class ParcoursIndex implements Iterator<DnsItem> {
+    private final IndexTrie index;
+    private long suivant;
+
+    ParcoursIndex(IndexTrie index, long debut) {
+      this.index = index;
+      this.suivant = debut;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return suivant < index.nombre;
+    }
+
+    @Override
+    public DnsItem next() {
+      if (suivant >= index.nombre) {
+        throw new NoSuchElementException();
+      }
+      return vue(index.position(suivant++));
+    }
+  }
+
+  /**
+   * Un domaine : son nom, rangé une seule fois dans le tas, sa liste chaînée et
+   * ses index triés, construits au premier parcours.
+   */
+  private static final class Domaine {
+    final String nom;
+    final int identifiant;
+    /** Adresse + 1 du dernier enregistrement ajouté au domaine, 0 s’il est vide. */
+    volatile long tete;
+    volatile long nombre;
+    volatile IndexTrie parNom;
+    volatile IndexTrie parAdresse;
+
+    Domaine(String nom, int identifiant) {
+      this.nom = nom;
+      this.identifiant = identifiant;
+    }
+  }
+
+  /**
+   * Table de hachage à adressage ouvert et sondage linéaire hors du tas. Chaque
+   * case contient {@code (adresse + 1) << 16 | étiquette}, l’étiquette étant
+   * formée des 16 bits de poids fort du hachage ; 0 marque une case vide.
+   */
+  private static final class Table {
+    final MemoireHorsTas cases;
+    final long masque;
+    long occupees;
+
+    Table(long capacite) {
+      this.cases = new MemoireHorsTas(capacite * 8);
+      this.masque = capacite - 1;
+    }
+
+    long capacite() {
+      return masque + 1;
+    }
+
+    void placer(long valeur, long hachage) {
+      long i = hachage & masque;
+      while (cases.lireLong(i * 8) != 0) {
+        i = (i + 1) & masque;
+      }
+      cases.ecrireLongVolatile(i * 8, valeur);
+      occupees++;
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package fr.uvsq.cprog.collex;
 
 import java.util.Scanner;
+import java.util.Set;
 
 /**
  * Interface utilisateur en mode texte (TUI) pour interagir avec le service DNS.
@@ -11,8 +12,18 @@ import java.util.Scanner;
  * </p>
  */
 public class DnsTUI {
+  /**
+   * Commandes acceptées de clients distants : recherches, listes et ajouts.
+   * Les commandes qui lisent ou écrivent des fichiers ({@code convert},
+   * {@code import}) ou arrêtent le programme ({@code quit}) n’en font pas
+   * partie.
+   */
+  private static final Set<Class<?>> COMMANDES_DISTANTES = Set.of(CommandeGetNom.class,
+      CommandeGetAdresse.class, CommandeFind.class, CommandeList.class, CommandeListPlage.class,
+      CommandeListRecursive.class, CommandeTailleZone.class, CommandeAdd.class);
+
   private final Scanner scanner;
-  private final Dns dns;
+  private final BaseDns dns;
 
   /**
    * Construit une interface utilisateur textuelle en utilisant un {@code Dns}
@@ -23,7 +34,7 @@ public class DnsTUI {
    *
    * @param dns l’objet DNS sur lequel s’appuient les commandes utilisateur
    */
-  public DnsTUI(Dns dns) {
+  public DnsTUI(BaseDns dns) {
     this.dns = dns;
     this.scanner = new Scanner(System.in);
   }
@@ -35,7 +46,7 @@ public class DnsTUI {
    * @param dns     l’objet DNS à manipuler
    * @param scanner le scanner utilisé pour lire les entrées utilisateur
    */
-  public DnsTUI(Dns dns, Scanner scanner) {
+  public DnsTUI(BaseDns dns, Scanner scanner) {
     this.dns = dns;
     this.scanner = scanner;
   }
@@ -46,12 +57,29 @@ public class DnsTUI {
    * <p>
    * Les commandes reconnues sont :
    * <ul>
-   * <li><b>ls [-a] domaine</b> — liste les machines d’un domaine (option
-   * <code>-a</code> pour trier par adresse IP)</li>
+   * <li><b>ls [-a] [-n limite] [-s curseur] domaine</b> — liste les machines
+   * d’un domaine (option <code>-a</code> pour trier par adresse IP) ; avec
+   * <code>-n</code>, au plus <code>limite</code> machines suivies, s’il en
+   * reste, du curseur à passer à <code>-s</code> pour lire la suite</li>
+   * <li><b>ls -r a.b.c.d/n</b> — liste, par adresse, les machines d’un bloc
+   * d’adresses CIDR</li>
+   * <li><b>ls -R domaine</b> — liste les machines d’un domaine et de tous ses
+   * sous-domaines</li>
+   * <li><b>ls -c domaine</b> — affiche le nombre de machines d’un domaine et de
+   * tous ses sous-domaines</li>
+   * <li><b>find [-n limite] motif</b> — recherche les machines dont le nom
+   * complet correspond à un motif <code>prefixe*</code> ou
+   * <code>*.domaine</code></li>
    * <li><b>add adresse.ip nom.qualifie.machine</b> — ajoute une nouvelle entrée
-   * DNS</li>
+   * DNS, d’adresse IPv4 ou IPv6</li>
+   * <li><b>convert source destination</b> — convertit un fichier de base entre
+   * les formats texte et instantané binaire, ou en table triée si la
+   * destination porte l’extension <code>.sst</code></li>
+   * <li><b>import fichier</b> — ajoute en flux les enregistrements d’un fichier
+   * au format de la base</li>
    * <li><b>quit</b> — quitte le programme</li>
-   * <li><b>adresse.ip</b> — affiche le nom de machine associé</li>
+   * <li><b>adresse.ip</b> — affiche le nom de machine associé à une adresse
+   * IPv4 ou IPv6</li>
    * <li><b>nom.qualifie.machine</b> — affiche l’adresse IP associée</li>
    * </ul>
    * Si la commande est invalide, une commande d’erreur est retournée.
@@ -61,10 +89,27 @@ public class DnsTUI {
    */
   public Commande nextCommande() {
     System.out.print("> ");
-    String ligne = scanner.nextLine().trim();
+    return analyser(dns, scanner.nextLine());
+  }
+
+  /**
+   * Interprète une ligne de commande selon la grammaire décrite dans
+   * {@link #nextCommande()}.
+   * <p>
+   * Cette méthode ne lit rien et n’affiche rien : elle est partagée par
+   * l’interface textuelle et par le traitement par lot. Les lignes reçues de
+   * clients distants passent par {@link #analyserDistante(BaseDns, String)}.
+   * </p>
+   *
+   * @param dns   l’objet DNS sur lequel s’appuient les commandes
+   * @param ligne la ligne saisie
+   * @return un objet {@code Commande} à exécuter
+   */
+  public static Commande analyser(BaseDns dns, String ligne) {
+    ligne = ligne.trim();
 
     if (ligne.isEmpty()) {
-      return () -> System.out.println("Commande vide, veuillez réessayer.");
+      return sortie -> sortie.ligne("Commande vide, veuillez réessayer.");
     }
 
     if (ligne.equalsIgnoreCase("quit")) {
@@ -78,27 +123,72 @@ public class DnsTUI {
       boolean trierParAdresse = false;
       String domaine;
 
-      if (tokens.length == 2) {
-        domaine = tokens[1];
-      } else if (tokens.length == 3 && tokens[1].equals("-a")) {
-        trierParAdresse = true;
-        domaine = tokens[2];
-      } else {
-        return () -> System.out.println("ERREUR : Commande 'ls' invalide. Usage: ls [-a] domaine");
+      if (tokens.length == 3 && tokens[1].equals("-r")) {
+        return new CommandeListPlage(dns, tokens[2]);
+      } else if (tokens.length == 3 && tokens[1].equals("-R")) {
+        return new CommandeListRecursive(dns, tokens[2]);
+      } else if (tokens.length == 3 && tokens[1].equals("-c")) {
+        return new CommandeTailleZone(dns, tokens[2]);
+      }
+      int limite = Integer.MAX_VALUE;
+      String curseur = null;
+      int i = 1;
+      for (; i < tokens.length - 1; i++) {
+        if (tokens[i].equals("-a") && !trierParAdresse) {
+          trierParAdresse = true;
+        } else if (tokens[i].equals("-n") && i + 2 < tokens.length && tokens[i + 1].matches("\\d{1,9}")) {
+          limite = Integer.parseInt(tokens[++i]);
+        } else if (tokens[i].equals("-s") && i + 2 < tokens.length && curseur == null) {
+          curseur = tokens[++i];
+        } else {
+          break;
+        }
+      }
+      if (i != tokens.length - 1 || tokens[i].startsWith("-")) {
+        return sortie -> sortie.ligne("ERREUR : Commande 'ls' invalide. Usage: ls [-a] [-n limite] [-s curseur] domaine"
+            + " | ls -R|-c domaine | ls -r bloc/cidr");
       }
-      return new CommandeList(dns, domaine, trierParAdresse);
+      domaine = tokens[i];
+      return new CommandeList(dns, domaine, trierParAdresse, limite, curseur);
     }
 
     // Commande "add" => add adresse.ip nom.qualifie.machine
     if (tokens[0].equalsIgnoreCase("add")) {
       if (tokens.length != 3) {
-        return () -> System.out.println("ERREUR : Commande 'add' invalide. Usage: add adresse.ip nom.qualifie.machine");
+        return sortie -> sortie.ligne("ERREUR : Commande 'add' invalide. Usage: add adresse.ip nom.qualifie.machine");
       }
       return new CommandeAdd(dns, tokens[1], tokens[2]);
     }
 
-    // Si le premier token semble être une IP (chiffres et points)
-    if (ligne.matches("^\\d+(\\.\\d+){3}$")) {
+    // Commande "convert" => convert source destination
+    if (tokens[0].equalsIgnoreCase("convert")) {
+      if (tokens.length != 3) {
+        return sortie -> sortie.ligne("ERREUR : Commande 'convert' invalide. Usage: convert source destination");
+      }
+      return new CommandeConvertir(tokens[1], tokens[2]);
+    }
+
+    // Commande "import" => import fichier
+    if (tokens[0].equalsIgnoreCase("import")) {
+      if (tokens.length != 2) {
+        return sortie -> sortie.ligne("ERREUR : Commande 'import' invalide. Usage: import fichier");
+      }
+      return new CommandeImport(dns, tokens[1]);
+    }
+
+    // Commande "find" => find [-n limite] motif
+    if (tokens[0].equalsIgnoreCase("find")) {
+      if (tokens.length == 2) {
+        return new CommandeFind(dns, tokens[1]);
+      }
+      if (tokens.length == 4 && tokens[1].equals("-n") && tokens[2].matches("\\d{1,9}")) {
+        return new CommandeFind(dns, tokens[3], Integer.parseInt(tokens[2]));
+      }
+      return sortie -> sortie.ligne("ERREUR : Commande 'find' invalide. Usage: find [-n limite] prefixe* | *.domaine");
+    }
+
+    // Si le premier token semble être une IP (chiffres et points, ou IPv6)
+    if (ligne.matches("^\\d+(\\.\\d+){3}$") || AdresseIP.estValide(ligne)) {
       // Adresse IP → afficher nom machine
       return new CommandeGetNom(dns, ligne);
     }
@@ -109,7 +199,31 @@ public class DnsTUI {
     }
 
     // Commande inconnue
-    return () -> System.out.println("ERREUR : Commande non reconnue. Veuillez réessayer.");
+    return sortie -> sortie.ligne("ERREUR : Commande non reconnue. Veuillez réessayer.");
+  }
+
+  /**
+   * Interprète une ligne reçue d’un client distant, dans la grammaire réduite
+   * aux recherches ({@code adresse.ip}, {@code nom.qualifie.machine},
+   * {@code find}), aux listes ({@code ls}) et aux ajouts ({@code add}).
+   * <p>
+   * Les autres commandes de {@link #analyser(BaseDns, String)} donnent une
+   * commande d’erreur : un client ne peut ni lire, ni écrire de fichier, ni
+   * arrêter le programme.
+   * </p>
+   *
+   * @param dns   l’objet DNS sur lequel s’appuient les commandes
+   * @param ligne la ligne reçue
+   * @return un objet {@code Commande} à exécuter
+   */
+  public static Commande analyserDistante(BaseDns dns, String ligne) {
+    Commande commande = analyser(dns, ligne);
+    // Les commandes d’erreur sont des expressions lambda.
+    if (COMMANDES_DISTANTES.contains(commande.getClass()) || commande.getClass().isSynthetic()) {
+      return commande;
+    }
+    String nom = ligne.trim().split("\\s+", 2)[0];
+    return sortie -> sortie.ligne("ERREUR : Commande '" + nom + "' non autorisée à distance.");
   }
 
   /**
@@ -0,0 +1,510 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+
+/**
+ * Base DNS en lecture seule servie directement depuis une {@link TableTriee}
+ * sur disque, sans charger ses enregistrements.
+ * <p>
+ * À l’ouverture, seuls l’en-tête et l’index clairsemé de la table sont lus :
+ * une clé par bloc de {@value TableTriee#TAILLE_BLOC} octets, soit environ un
+ * centième de la taille du fichier. Une recherche exacte cherche le bloc par
+ * dichotomie dans l’index, puis lit ce seul bloc par une lecture positionnée et
+ * le parcourt. {@code ls} lit les blocs consécutifs de son domaine dans la
+ * suite triée par nom, et une recherche par bloc CIDR ceux de sa plage dans la
+ * suite triée par adresse.
+ * </p>
+ * <p>
+ * Les clés étant rangées par domaine, {@code ls -R}, la taille des zones et
+ * les recherches {@code prefixe*} parcourent toute la suite triée par nom, un
+ * bloc à la fois, en ne construisant d’objets que pour les enregistrements
+ * retenus.
+ * </p>
+ * <p>
+ * Les lectures sont sûres entre plusieurs fils d’exécution : chaque fil lit ses
+ * blocs dans son propre tampon. Les ajouts sont refusés.
+ * </p>
+ */
+public class DnsTableTriee implements BaseDns, Closeable {
+  private final FileChannel canal;
+  private final long nombre;
+  private final TableTriee.Index parNom;
+  private final TableTriee.Index parAdresse;
+  private final int tailleBloc;
+  private final ThreadLocal<ByteBuffer> tampons;
+  private final MetriquesDns metriques = new MetriquesDns();
+
+  /**
+   * Ouvre une table triée.
+   *
+   * @param fichier le fichier de la table
+   * @throws IOException si le fichier est illisible, corrompu ou d’une version
+   *                     inconnue
+   */
+  public DnsTableTriee(Path fichier) throws IOException {
+    long debut = System.nanoTime();
+    this.canal = FileChannel.open(fichier, StandardOpenOption.READ);
+    TableTriee.Sommaire sommaire;
+    try {
+      sommaire = TableTriee.lireSommaire(canal, fichier);
+    } catch (IOException e) {
+      canal.close();
+      throw e;
+    }
+    this.nombre = sommaire.nombre;
+    this.parNom = sommaire.parNom;
+    this.parAdresse = sommaire.parAdresse;
+    this.tailleBloc = sommaire.tailleBloc;
+    this.tampons = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(tailleBloc));
+    metriques.chargement(System.nanoTime() - debut, nombre);
+  }
+
+  /**
+   * Retourne le nombre d’enregistrements de la table.
+   *
+   * @return le nombre d’enregistrements
+   */
+  public long getNombre() {
+    return nombre;
+  }
+
+  @Override
+  public DnsItem getItem(AdresseIP ip) {
+    MetriquesDns.CompteursRecherches recherche = metriques.debutRecherche();
+    DnsItem item = chercher(parAdresse, TableTriee.cleAdresse(ip));
+    metriques.rechercheAdresse(item != null, recherche);
+    return item;
+  }
+
+  @Override
+  public DnsItem getItem(NomMachine nom) {
+    MetriquesDns.CompteursRecherches recherche = metriques.debutRecherche();
+    DnsItem item = chercher(parNom, TableTriee.cleNom(nom.getNomDomaine(), nom.getNomMachine()));
+    metriques.rechercheNom(item != null, recherche);
+    return item;
+  }
+
+  private DnsItem chercher(TableTriee.Index index, byte[] cle) {
+    int numero = index.dernierBloc(cle);
+    if (numero < 0) {
+      return null;
+    }
+    ByteBuffer bloc = lireBloc(index.position(numero));
+    for (int e = 0; TableTriee.existe(bloc, e); e = TableTriee.suivant(bloc, e)) {
+      int cmp = index.comparer(bloc, e, cle);
+      if (cmp == 0) {
+        return TableTriee.decoder(bloc, e);
+      }
+      if (cmp > 0) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public List<DnsItem> getItems(String domaine, boolean trierParAdresse) {
+    long debut = System.nanoTime();
+    byte[] prefixe = TableTriee.cleNom(domaine, "");
+    List<DnsItem> resultat = new ArrayList<>();
+    parcourir(parNom, parNom.dernierBloc(prefixe), (bloc, e) -> {
+      int cmp = comparerPrefixe(bloc, e, prefixe);
+      if (cmp == 0) {
+        resultat.add(TableTriee.decoder(bloc, e));
+      }
+      return cmp <= 0;
+    });
+    // Déjà rangés par nom d’hôte en octets UTF-8 ; le tri rétablit l’ordre des
+    // caractères pour les rares noms hors du plan multilingue de base.
+    resultat.sort(trierParAdresse ? Comparator.comparing(DnsItem::getAdresseIP)
+        : Comparator.comparing(DnsItem::getNomMachine, NomMachine.ORDRE_NOM_MACHINE));
+    metriques.liste(System.nanoTime() - debut);
+    return resultat;
+  }
+
+  /**
+   * Parcourt les enregistrements d’un domaine par nom de machine en lisant ses
+   * blocs l’un après l’autre, à la demande : la mémoire utilisée est celle d’un
+   * bloc, quelle que soit la taille du domaine. Les noms sont rangés dans
+   * l’ordre de leurs octets UTF-8, qui ne diffère de celui de
+   * {@link #getItems(String)} que pour les caractères hors du plan multilingue
+   * de base.
+   *
+   * @param domaine le nom de domaine recherché
+   * @param apres   le dernier nom déjà lu, exclu du parcours, ou {@code null}
+   * @return un itérateur sur les enregistrements triés par nom de machine
+   */
+  @Override
+  public Iterator<DnsItem> parcourirParNom(String domaine, NomMachine apres) {
+    return new ParcoursDomaine(TableTriee.cleNom(domaine, ""),
+        apres == null ? null : TableTriee.cleNom(domaine, apres.getNomMachine()));
+  }
+
+  /**
+   * Parcourt les enregistrements d’un domaine par adresse. Les blocs du
+   * domaine sont lus une fois ; seuls les enregistrements dont l’adresse, lue
+   * dans le bloc, suit {@code apres} sont décodés et rangés dans une file de
+   * priorité, dont l’itérateur les extrait à la demande. Une page ne trie donc
+   * pas tout le domaine.
+   *
+   * @param domaine le nom de domaine recherché
+   * @param apres   la dernière adresse déjà lue, exclue du parcours, ou
+   *                {@code null}
+   * @return un itérateur sur les enregistrements triés par adresse IP
+   */
+  @Override
+  public Iterator<DnsItem> parcourirParAdresse(String domaine, AdresseIP apres) {
+    byte[] prefixe = TableTriee.cleNom(domaine, "");
+    PriorityQueue<DnsItem> retenus =
+        new PriorityQueue<>(Comparator.comparing(DnsItem::getAdresseIP));
+    parcourir(parNom, parNom.dernierBloc(prefixe), (bloc, e) -> {
+      int cmp = comparerPrefixe(bloc, e, prefixe);
+      if (cmp == 0 && (apres == null || comparerAdresse(bloc, e, apres) > 0)) {
+        retenus.add(TableTriee.decoder(bloc, e));
+      }
+      return cmp <= 0;
+    });
+    return new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return !retenus.isEmpty();
+      }
+
+      @Override
+      public DnsItem next() {
+        DnsItem item = retenus.poll();
+        if (item == null) {
+          throw new NoSuchElementException();
+        }
+        return item;
+      }
+    };
+  }
+
+  /** Compare l’adresse d’un enregistrement, lue dans son bloc, à une adresse. */
+  private static int comparerAdresse(ByteBuffer bloc, int e, AdresseIP adresse) {
+    boolean ipv6 = TableTriee.estIpv6(bloc, e);
+    if (!adresse.estIpv6()) {
+      return ipv6 ? 1 : Integer.compareUnsigned(bloc.getInt(e + 2), adresse.getValeur());
+    }
+    if (!ipv6) {
+      return -1;
+    }
+    int cmp = Long.compareUnsigned(bloc.getLong(e + 2), adresse.getPoidsFort());
+    return cmp != 0 ? cmp : Long.compareUnsigned(bloc.getLong(e + 10), adresse.getPoidsFaible());
+  }
+
+  @Override
+  public List<DnsItem> getItems(Cidr bloc) {
+    long debut = System.nanoTime();
+    int reseau = bloc.valeurReseau();
+    int dernier = reseau | ~Cidr.masque(bloc.getLongueur());
+    List<DnsItem> resultat = new ArrayList<>();
+    parcourir(parAdresse, parAdresse.dernierBloc(TableTriee.cleAdresse(bloc.getReseau())), (tampon, e) -> {
+      if (TableTriee.estIpv6(tampon, e)) {
+        return false;
+      }
+      int adresse = tampon.getInt(e + 2);
+      if (Integer.compareUnsigned(adresse, dernier) > 0) {
+        return false;
+      }
+      if (Integer.compareUnsigned(adresse, reseau) >= 0) {
+        resultat.add(TableTriee.decoder(tampon, e));
+      }
+      return true;
+    });
+    metriques.plage(System.nanoTime() - debut);
+    return resultat;
+  }
+
+  /**
+   * Retourne les enregistrements d’un domaine et de ses sous-domaines, dans
+   * l’ordre canonique des noms DNS. Toute la suite triée par nom est parcourue,
+   * puis les enregistrements retenus sont triés avant que le flux ne soit
+   * retourné.
+   *
+   * @param domaine le nom de domaine recherché
+   * @return le flux trié des enregistrements de la zone
+   */
+  @Override
+  public Stream<DnsItem> getItemsRecursif(String domaine) {
+    byte[] zone = domaine.getBytes(StandardCharsets.UTF_8);
+    List<DnsItem> resultat = new ArrayList<>();
+    parcourir(parNom, 0, (bloc, e) -> {
+      if (dansZone(bloc, e, zone)) {
+        resultat.add(TableTriee.decoder(bloc, e));
+      }
+      return true;
+    });
+    resultat.sort((a, b) -> DnsHorsTas.comparerCanonique(a.getNomMachine().getNomComplet(),
+        b.getNomMachine().getNomComplet()));
+    return resultat.stream();
+  }
+
+  @Override
+  public long getTailleZone(String domaine) {
+    byte[] zone = domaine.getBytes(StandardCharsets.UTF_8);
+    long[] taille = {0};
+    parcourir(parNom, 0, (bloc, e) -> {
+      if (dansZone(bloc, e, zone)) {
+        taille[0]++;
+      }
+      return true;
+    });
+    return taille[0];
+  }
+
+  /**
+   * Retourne les enregistrements dont le nom complet correspond à un motif. Un
+   * motif {@code prefixe*} parcourt toute la suite triée par nom et ne conserve
+   * que les {@code limite} premiers noms dans l’ordre alphabétique ; un motif
+   * {@code *.domaine} est servi par {@link #getItemsRecursif(String)}.
+   *
+   * @param motif  le motif recherché
+   * @param limite le nombre maximal de résultats
+   * @return la liste des enregistrements correspondants, au plus {@code limite}
+   * @throws IllegalArgumentException si le motif ou la limite sont invalides
+   */
+  @Override
+  public List<DnsItem> getItemsParMotif(String motif, int limite) {
+    int etoile = Analyseur.analyserMotif(motif, limite);
+    long debut = System.nanoTime();
+    List<DnsItem> resultat;
+    if (etoile == motif.length() - 1) {
+      String prefixe = motif.substring(0, etoile);
+      byte[] octets = prefixe.getBytes(StandardCharsets.UTF_8);
+      Comparator<DnsItem> ordre = Comparator.comparing(item -> item.getNomMachine().getNomComplet());
+      // Les plus grands en tête, pour écarter le dernier retenu en temps constant.
+      PriorityQueue<DnsItem> retenus = new PriorityQueue<>(ordre.reversed());
+      parcourir(parNom, 0, (bloc, e) -> {
+        if (hoteCompatible(bloc, e, octets)) {
+          DnsItem item = TableTriee.decoder(bloc, e);
+          if (item.getNomMachine().getNomComplet().startsWith(prefixe)) {
+            retenus.add(item);
+            if (retenus.size() > limite) {
+              retenus.poll();
+            }
+          }
+        }
+        return true;
+      });
+      resultat = new ArrayList<>(retenus);
+      resultat.sort(ordre);
+    } else {
+      resultat = new ArrayList<>();
+      getItemsRecursif(motif.substring(2)).limit(limite).forEach(resultat::add);
+    }
+    metriques.motif(System.nanoTime() - debut);
+    return resultat;
+  }
+
+  @Override
+  public MetriquesDns getMetriques() {
+    return metriques;
+  }
+
+  /**
+   * Refuse l’ajout : une table triée est en lecture seule.
+   *
+   * @param ip  l’adresse IP à associer
+   * @param nom le nom de machine correspondant
+   * @throws IOException toujours
+   */
+  @Override
+  public void addItem(AdresseIP ip, NomMachine nom) throws IOException {
+    metriques.ajoutsRefuses(1);
+    throw new IOException("La base est en lecture seule");
+  }
+
+  /**
+   * Refuse l’ajout : une table triée est en lecture seule.
+   *
+   * @param lot les enregistrements à ajouter
+   * @throws IOException toujours
+   */
+  @Override
+  public void addItems(Collection<DnsItem> lot) throws IOException {
+    metriques.ajoutsRefuses(lot.size());
+    throw new IOException("La base est en lecture seule");
+  }
+
+  /**
+   * Ferme le fichier de la table.
+   *
+   * @throws IOException si la fermeture échoue
+   */
+  @Override
+  public void close() throws IOException {
+    canal.close();
+  }
+
+  /**
+   * Lit un bloc dans le tampon du fil d’exécution courant, par une lecture
+   * positionnée qui ne déplace pas la position partagée du canal.
+   */
+  private ByteBuffer lireBloc(long position) {
+    return lireBloc(tampons.get(), position);
+  }
+
+  private ByteBuffer lireBloc(ByteBuffer bloc, long position) {
+    bloc.clear();
+    try {
+      while (bloc.hasRemaining()) {
+        if (canal.read(bloc, position + bloc.position()) < 0) {
+          throw new IOException("Table triée tronquée à la position " + position);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bloc.flip();
+  }
+
+  /** Action appliquée à chaque enregistrement parcouru. */
+  @FunctionalInterface
+  private interface Visiteur {
+    /**
+     * Traite un enregistrement.
+     *
+     * @param bloc           le bloc lu, valable jusqu’au retour
+     * @param enregistrement la position de l’enregistrement dans le bloc
+     * @return {@code false} pour arrêter le parcours
+     */
+    boolean visiter(ByteBuffer bloc, int enregistrement);
+  }
+
+  /**
+   * Parcourt une suite dans l’ordre, à partir d’un bloc, jusqu’à la fin ou
+   * jusqu’à ce que le visiteur demande l’arrêt.
+   */
+  private void parcourir(TableTriee.Index index, int premierBloc, Visiteur visiteur) {
+    for (int numero = Math.max(premierBloc, 0); numero < index.blocs(); numero++) {
+      ByteBuffer bloc = lireBloc(index.position(numero));
+      for (int e = 0; TableTriee.existe(bloc, e); e = TableTriee.suivant(bloc, e)) {
+        if (!visiteur.visiter(bloc, e)) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Parcours paresseux des enregistrements d’un domaine dans la suite triée
+   * par nom. Il lit ses blocs dans son propre tampon, pour que les recherches
+   * faites entre deux appels à {@link #next()} ne le perturbent pas.
+   */
+  private final class ParcoursDomaine implements Iterator<DnsItem> {
+    private final byte[] prefixe;
+    private final ByteBuffer bloc = ByteBuffer.allocate(tailleBloc);
+    private int numero;
+    private int enregistrement = -1;
+    private boolean termine;
+
+    ParcoursDomaine(byte[] prefixe, byte[] apres) {
+      this.prefixe = prefixe;
+      byte[] depart = apres == null ? prefixe : apres;
+      this.numero = Math.max(parNom.dernierBloc(depart), 0);
+      avancer(e -> {
+        int cmp = comparerPrefixe(bloc, e, prefixe);
+        return cmp < 0 || cmp == 0 && apres != null && parNom.comparer(bloc, e, apres) <= 0;
+      });
+    }
+
+    /** Place le parcours sur le premier enregistrement que {@code ignorer} n’écarte pas. */
+    private void avancer(IntPredicate ignorer) {
+      while (!termine) {
+        if (enregistrement < 0) {
+          if (numero >= parNom.blocs()) {
+            termine = true;
+            return;
+          }
+          lireBloc(bloc, parNom.position(numero++));
+          enregistrement = 0;
+        }
+        if (!TableTriee.existe(bloc, enregistrement)) {
+          enregistrement = -1;
+        } else if (ignorer.test(enregistrement)) {
+          enregistrement = TableTriee.suivant(bloc, enregistrement);
+        } else {
+          termine = comparerPrefixe(bloc, enregistrement, prefixe) != 0;
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !termine;
+    }
+
+    @Override
+    public DnsItem next() {
+      if (termine) {
+        throw new NoSuchElementException();
+      }
+      DnsItem item = TableTriee.decoder(bloc, enregistrement);
+      enregistrement = TableTriee.suivant(bloc, enregistrement);
+      avancer(e -> false);
+      return item;
+    }
+  }
+
+  /**
+   * Compare le début de la clé d’un enregistrement à un préfixe.
+   *
+   * @return un entier négatif si la clé précède les clés commençant par le
+   *         préfixe, 0 si elle commence par le préfixe, positif si elle les suit
+   */
+  private static int comparerPrefixe(ByteBuffer bloc, int e, byte[] prefixe) {
+    int longueur = TableTriee.longueurCle(bloc, e);
+    int cmp = TableTriee.comparerOctets(bloc, TableTriee.debutCle(bloc, e), Math.min(longueur, prefixe.length),
+        prefixe, 0, Math.min(longueur, prefixe.length));
+    return cmp != 0 ? cmp : longueur < prefixe.length ? -1 : 0;
+  }
+
+  /** Indique si le domaine d’un enregistrement est une zone ou l’un de ses sous-domaines. */
+  private static boolean dansZone(ByteBuffer bloc, int e, byte[] zone) {
+    int debut = TableTriee.debutCle(bloc, e);
+    int fin = debut;
+    while (bloc.get(fin) != 0) {
+      fin++;
+    }
+    int longueur = fin - debut;
+    if (longueur < zone.length || longueur > zone.length && bloc.get(fin - zone.length - 1) != '.') {
+      return false;
+    }
+    return TableTriee.comparerOctets(bloc, fin - zone.length, zone.length, zone, 0, zone.length) == 0;
+  }
+
+  /**
+   * Écarte sans décodage un enregistrement dont le nom d’hôte diffère du début
+   * d’un préfixe.
+   */
+  private static boolean hoteCompatible(ByteBuffer bloc, int e, byte[] prefixe) {
+    int debut = TableTriee.debutCle(bloc, e);
+    int fin = debut + TableTriee.longueurCle(bloc, e);
+    int hote = debut;
+    while (bloc.get(hote) != 0) {
+      hote++;
+    }
+    hote++;
+    int communs = Math.min(fin - hote, prefixe.length);
+    return TableTriee.comparerOctets(bloc, hote, communs, prefixe, 0, communs) == 0;
+  }
+}
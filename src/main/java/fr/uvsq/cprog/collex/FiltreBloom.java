@@ -0,0 +1,192 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtre de Bloom par blocs sur les codes de hachage des clés d’un index.
+ * <p>
+ * Le filtre répond « absente » sans erreur pour une clé jamais ajoutée, sauf
+ * faux positif, dont la probabilité est fixée à la construction pour un nombre
+ * de clés donné. Les bits d’une clé sont tous choisis dans un même bloc de 512
+ * bits, soit une ligne de cache : un test coûte deux mélanges de bits (un de
+ * plus par tranche de sept bits par clé) et un seul accès mémoire aléatoire.
+ * Les blocs se remplissent inégalement, ce qui dégrade le taux de faux
+ * positifs d’un filtre classique de même taille : le filtre est donc
+ * dimensionné d’après le taux propre aux filtres par blocs (voir
+ * {@link #tauxEstime(long, long, int)}), au prix de 5 à 30 % de bits
+ * supplémentaires selon le taux visé. Les clés sont réduites à leur code de
+ * hachage sur 32 bits : les collisions de ces codes ajoutent au taux environ
+ * une unité pour 2<sup>32</sup> par clé du filtre (0,02 % pour un million de
+ * clés).
+ * </p>
+ * <p>
+ * Les ajouts doivent être sérialisés par l’appelant. Les bits sont publiés par
+ * des écritures {@code volatile} : un test qui suit un ajout le voit.
+ * </p>
+ */
+final class FiltreBloom {
+  private static final int BITS_PAR_BLOC = 512;
+  private static final int MOTS_PAR_BLOC = BITS_PAR_BLOC / 64;
+  private static final int BITS_POSITION = 9;
+  /** Positions indépendantes tirées d’un même mélange de 64 bits. */
+  private static final int POSITIONS_PAR_MELANGE = 64 / BITS_POSITION;
+
+  private final AtomicLongArray mots;
+  private final long blocs;
+  private final int fonctions;
+  private final long capacite;
+  private long nombre;
+
+  /**
+   * Construit un filtre vide.
+   *
+   * @param capacite le nombre de clés prévu
+   * @param fpp      la probabilité de faux positif visée lorsque le filtre
+   *                 contient {@code capacite} clés, entre 0 et 1 exclus
+   * @throws IllegalArgumentException si un paramètre est hors de son domaine
+   */
+  FiltreBloom(long capacite, double fpp) {
+    if (capacite <= 0 || !(fpp > 0 && fpp < 1)) {
+      throw new IllegalArgumentException(
+          "Paramètres de filtre invalides : " + capacite + ", " + fpp);
+    }
+    // Taille d’un filtre classique, puis agrandie jusqu’à atteindre le taux visé.
+    double bits = -capacite * Math.log(fpp) / (Math.log(2) * Math.log(2));
+    long nbBlocs = Math.max(1, (long) Math.ceil(bits / BITS_PAR_BLOC));
+    while (tauxEstime(capacite, nbBlocs, fonctionsOptimales(capacite, nbBlocs)) > fpp) {
+      nbBlocs += nbBlocs / 32 + 1;
+    }
+    if (nbBlocs * MOTS_PAR_BLOC > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Filtre trop grand : " + capacite + ", " + fpp);
+    }
+    this.mots = new AtomicLongArray((int) (nbBlocs * MOTS_PAR_BLOC));
+    this.blocs = nbBlocs;
+    this.fonctions = fonctionsOptimales(capacite, nbBlocs);
+    this.capacite = capacite;
+  }
+
+  /**
+   * Ajoute une clé.
+   *
+   * @param hachage le code de hachage de la clé
+   */
+  void ajouter(int hachage) {
+    long h = melanger(hachage);
+    int base = bloc(h);
+    long g = h;
+    for (int i = 0; i < fonctions; i++) {
+      if (i % POSITIONS_PAR_MELANGE == 0) {
+        g = melanger(g);
+      }
+      int bit = (int) g & (BITS_PAR_BLOC - 1);
+      g >>>= BITS_POSITION;
+      int indice = base + (bit >>> 6);
+      long mot = mots.get(indice);
+      long masque = 1L << bit;
+      if ((mot & masque) == 0) {
+        mots.set(indice, mot | masque);
+      }
+    }
+    nombre++;
+  }
+
+  /**
+   * Indique si une clé peut avoir été ajoutée.
+   *
+   * @param hachage le code de hachage de la clé
+   * @return {@code false} si la clé n’a certainement pas été ajoutée,
+   *         {@code true} si elle l’a peut-être été
+   */
+  boolean peutContenir(int hachage) {
+    long h = melanger(hachage);
+    int base = bloc(h);
+    long g = h;
+    for (int i = 0; i < fonctions; i++) {
+      if (i % POSITIONS_PAR_MELANGE == 0) {
+        g = melanger(g);
+      }
+      int bit = (int) g & (BITS_PAR_BLOC - 1);
+      g >>>= BITS_POSITION;
+      if ((mots.get(base + (bit >>> 6)) & 1L << bit) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Nombre de bits par clé minimisant le taux d’un filtre classique de même taille. */
+  private static int fonctionsOptimales(long capacite, long nbBlocs) {
+    return Math.max(1, (int) Math.round(nbBlocs * BITS_PAR_BLOC / (double) capacite * Math.log(2)));
+  }
+
+  /**
+   * Estime le taux de faux positifs d’un filtre par blocs plein.
+   * <p>
+   * Le nombre de clés d’un bloc suit une loi de Poisson de moyenne
+   * {@code capacite / nbBlocs} ; le taux est la moyenne, pondérée par cette
+   * loi, du taux d’un bloc contenant {@code i} clés.
+   * </p>
+   *
+   * @param capacite  le nombre de clés du filtre
+   * @param nbBlocs   le nombre de blocs de 512 bits
+   * @param fonctions le nombre de bits par clé
+   * @return le taux de faux positifs attendu
+   */
+  static double tauxEstime(long capacite, long nbBlocs, int fonctions) {
+    double moyenne = (double) capacite / nbBlocs;
+    long fin = (long) (moyenne + 10 * Math.sqrt(moyenne) + 10);
+    double vide = 1 - 1.0 / BITS_PAR_BLOC;
+    double taux = 0;
+    double logProbabilite = -moyenne;
+    for (long i = 0; i <= fin; i++) {
+      if (i > 0) {
+        logProbabilite += Math.log(moyenne / i);
+      }
+      double occupe = 1 - Math.pow(vide, (double) fonctions * i);
+      taux += Math.exp(logProbabilite) * Math.pow(occupe, fonctions);
+    }
+    return taux;
+  }
+
+  /** Choisit le bloc à partir des 32 bits de poids fort, sans division. */
+  private int bloc(long h) {
+    return (int) (((h >>> 32) * blocs) >>> 32) * MOTS_PAR_BLOC;
+  }
+
+  /** Finaliseur de MurmurHash3 : chaque bit d’entrée influe sur chaque bit de sortie. */
+  static long melanger(long x) {
+    x ^= x >>> 33;
+    x *= 0xFF51AFD7ED558CCDL;
+    x ^= x >>> 33;
+    x *= 0xC4CEB9FE1A85EC53L;
+    x ^= x >>> 33;
+    return x;
+  }
+
+  /**
+   * Indique si le filtre a atteint le nombre de clés prévu à sa construction.
+   *
+   * @return {@code true} si un nouvel ajout dépasserait la capacité
+   */
+  boolean estPlein() {
+    return nombre >= capacite;
+  }
+
+  /**
+   * Retourne la taille du tableau de bits.
+   *
+   * @return la taille en octets
+   */
+  long octets() {
+    return mots.length() * 8L;
+  }
+
+  /**
+   * Retourne le nombre de fonctions de hachage (bits par clé).
+   *
+   * @return le nombre de bits positionnés par un ajout
+   */
+  int fonctions() {
+    return fonctions;
+  }
+}
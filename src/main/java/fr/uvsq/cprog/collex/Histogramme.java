@@ -0,0 +1,128 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de durées en nanosecondes, enregistrable sans verrou ni
+ * allocation depuis plusieurs fils d’exécution.
+ * <p>
+ * Les valeurs sont réparties dans des classes logarithmiques : chaque
+ * puissance de deux est découpée en {@link #SOUS_CLASSES} classes de même
+ * largeur, ce qui borne l’erreur relative d’un quantile à 12,5 %. Les valeurs
+ * inférieures à {@link #SOUS_CLASSES} ont chacune leur classe.
+ * </p>
+ */
+final class Histogramme {
+  private static final int SOUS_CLASSES = 8;
+  private static final int BITS_SOUS_CLASSES = 3;
+  private static final int CLASSES = (64 - BITS_SOUS_CLASSES + 1) * SOUS_CLASSES;
+
+  private final AtomicLongArray effectifs = new AtomicLongArray(CLASSES);
+  private final LongAdder nombre = new LongAdder();
+  private final LongAdder total = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Enregistre une durée.
+   *
+   * @param nanos la durée en nanosecondes ; une valeur négative compte pour 0
+   */
+  void enregistrer(long nanos) {
+    long valeur = Math.max(0, nanos);
+    effectifs.incrementAndGet(classe(valeur));
+    nombre.increment();
+    total.add(valeur);
+    long precedent = max.get();
+    while (valeur > precedent && !max.compareAndSet(precedent, valeur)) {
+      precedent = max.get();
+    }
+  }
+
+  /**
+   * Retourne le nombre de durées enregistrées.
+   *
+   * @return le nombre de valeurs
+   */
+  long nombre() {
+    return nombre.sum();
+  }
+
+  /**
+   * Retourne la moyenne des durées enregistrées.
+   *
+   * @return la moyenne en nanosecondes, ou 0 si l’histogramme est vide
+   */
+  long moyenne() {
+    long n = nombre.sum();
+    return n == 0 ? 0 : total.sum() / n;
+  }
+
+  /**
+   * Retourne la plus grande durée enregistrée.
+   *
+   * @return le maximum en nanosecondes
+   */
+  long max() {
+    return max.get();
+  }
+
+  /**
+   * Estime un quantile des durées enregistrées.
+   *
+   * @param q le quantile, entre 0 et 1 (0,99 pour le 99e centile)
+   * @return la borne supérieure de la classe contenant le quantile, sans
+   *         dépasser le maximum, ou 0 si l’histogramme est vide
+   */
+  long quantile(double q) {
+    long[] copie = new long[CLASSES];
+    long n = 0;
+    for (int i = 0; i < CLASSES; i++) {
+      copie[i] = effectifs.get(i);
+      n += copie[i];
+    }
+    if (n == 0) {
+      return 0;
+    }
+    long rang = Math.max(1, (long) Math.ceil(q * n));
+    long cumul = 0;
+    for (int i = 0; i < CLASSES; i++) {
+      cumul += copie[i];
+      if (cumul >= rang) {
+        return Math.min(borneSuperieure(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Retourne la classe d’une valeur positive.
+   *
+   * @param valeur la valeur
+   * @return l’indice de sa classe
+   */
+  static int classe(long valeur) {
+    if (valeur < SOUS_CLASSES) {
+      return (int) valeur;
+    }
+    int exposant = 63 - Long.numberOfLeadingZeros(valeur);
+    int sousClasse = (int) (valeur >>> (exposant - BITS_SOUS_CLASSES)) & (SOUS_CLASSES - 1);
+    return (exposant - BITS_SOUS_CLASSES + 1) * SOUS_CLASSES + sousClasse;
+  }
+
+  /**
+   * Retourne la plus grande valeur appartenant à une classe.
+   *
+   * @param classe l’indice de la classe
+   * @return la borne supérieure (incluse) de la classe
+   */
+  static long borneSuperieure(int classe) {
+    if (classe < SOUS_CLASSES) {
+      return classe;
+    }
+    int exposant = classe / SOUS_CLASSES + BITS_SOUS_CLASSES - 1;
+    long debut = (long) (SOUS_CLASSES + classe % SOUS_CLASSES) << (exposant - BITS_SOUS_CLASSES);
+    return debut + (1L << (exposant - BITS_SOUS_CLASSES)) - 1;
+  }
+}
@@ -0,0 +1,105 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index des machines d’un même domaine, maintenu trié selon les deux ordres
+ * utilisés par la commande {@code ls}.
+ * <p>
+ * Les entrées sont rangées à la fois par nom de machine (sans le domaine) et
+ * par adresse IP. Chaque ajout est inséré à sa place, de sorte qu’une liste
+ * triée se construit en un temps proportionnel à sa taille.
+ * </p>
+ * <p>
+ * Les deux ordres sont des listes à saut concurrentes : l’index peut être lu
+ * pendant un ajout sans verrou. Une lecture concurrente d’un ajout peut voir
+ * ou non le nouvel enregistrement, mais jamais un état incohérent.
+ * </p>
+ */
+class IndexDomaine {
+  private final NavigableMap<NomMachine, DnsItem> parNomMachine = new ConcurrentSkipListMap<>(NomMachine.ORDRE_NOM_MACHINE);
+  private final NavigableMap<AdresseIP, DnsItem> parAdresse = new ConcurrentSkipListMap<>();
+
+  /**
+   * Ajoute un enregistrement à l’index.
+   *
+   * @param item l’enregistrement à ajouter, qui doit appartenir au domaine
+   */
+  void ajouter(DnsItem item) {
+    parNomMachine.put(item.getNomMachine(), item);
+    parAdresse.put(item.getAdresseIP(), item);
+  }
+
+  /**
+   * Ajoute des enregistrements déjà triés selon les deux ordres de l’index,
+   * par exemple ceux d’un instantané binaire.
+   *
+   * @param parNom     les enregistrements triés par nom de machine
+   * @param parAdresse les mêmes enregistrements triés par adresse IP
+   */
+  void ajouterTries(List<DnsItem> parNom, List<DnsItem> parAdresse) {
+    for (DnsItem item : parNom) {
+      parNomMachine.put(item.getNomMachine(), item);
+    }
+    for (DnsItem item : parAdresse) {
+      this.parAdresse.put(item.getAdresseIP(), item);
+    }
+  }
+
+  /**
+   * Retourne les enregistrements du domaine triés par nom de machine ou par
+   * adresse IP.
+   *
+   * @param trierParAdresse {@code true} pour trier par adresse IP, {@code false}
+   *                        pour trier par nom de machine
+   * @return une nouvelle liste triée des enregistrements
+   */
+  List<DnsItem> lister(boolean trierParAdresse) {
+    return new ArrayList<>(trierParAdresse ? parAdresse.values() : parNomMachine.values());
+  }
+
+  /**
+   * Parcourt les enregistrements du domaine par nom de machine, sans les
+   * copier. Le parcours voit ou non les ajouts qui lui sont concurrents.
+   *
+   * @return un itérateur sur les enregistrements triés par nom de machine
+   */
+  Iterator<DnsItem> parcourirParNom() {
+    return parNomMachine.values().iterator();
+  }
+
+  /**
+   * Parcourt, sans les copier, les enregistrements dont le nom de machine suit
+   * un nom donné.
+   *
+   * @param apres le nom exclu à partir duquel parcourir
+   * @return un itérateur sur les enregistrements triés par nom de machine
+   */
+  Iterator<DnsItem> parcourirParNom(NomMachine apres) {
+    return parNomMachine.tailMap(apres, false).values().iterator();
+  }
+
+  /**
+   * Parcourt, sans les copier, les enregistrements dont l’adresse suit une
+   * adresse donnée, ou tous si elle est {@code null}.
+   *
+   * @param apres l’adresse exclue à partir de laquelle parcourir
+   * @return un itérateur sur les enregistrements triés par adresse IP
+   */
+  Iterator<DnsItem> parcourirParAdresse(AdresseIP apres) {
+    return (apres == null ? parAdresse : parAdresse.tailMap(apres, false)).values().iterator();
+  }
+
+  /**
+   * Retourne le nombre d’enregistrements du domaine.
+   *
+   * @return la taille de l’index
+   */
+  int taille() {
+    return parAdresse.size();
+  }
+}
@@ -0,0 +1,427 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Format binaire compact d’un instantané de la base DNS.
+ * <p>
+ * Un instantané se charge sans analyse de texte ni revalidation. Il contient,
+ * dans l’ordre (entiers en gros-boutiste) :
+ * </p>
+ * <ul>
+ * <li>un en-tête : le nombre magique {@code DNSB}, la version du format, des
+ * drapeaux, la taille et la date de modification du fichier texte dont il est
+ * l’image, le nombre de domaines et le nombre d’enregistrements ;</li>
+ * <li>la table des domaines, sans doublon (longueur sur 16 bits puis octets
+ * UTF-8) ;</li>
+ * <li>les enregistrements regroupés par domaine et triés par nom d’hôte :
+ * pour chaque domaine, le nombre d’enregistrements puis, pour chacun, la
+ * longueur du nom d’hôte sur 16 bits (dont le bit de poids fort signale une
+ * adresse IPv6), l’adresse (IPv4 sur 32 bits ou IPv6 sur 128 bits) et les
+ * octets UTF-8 du nom d’hôte ;</li>
+ * <li>facultativement ({@link #DRAPEAU_INDEX_ADRESSES}), l’index précalculé par
+ * adresse : pour chaque domaine, les positions de ses enregistrements dans
+ * l’ordre des adresses IP ;</li>
+ * <li>facultativement ({@link #DRAPEAU_INDEX_NOMS}), l’index précalculé par nom
+ * complet : les rangs de tous les enregistrements, dans l’ordre de leur
+ * section, triés par nom complet ;</li>
+ * <li>la somme de contrôle CRC32 de tout ce qui précède, sur 64 bits.</li>
+ * </ul>
+ * <p>
+ * Le fichier est lu par fenêtres projetées en mémoire de taille bornée : un
+ * instantané peut dépasser 2 Gio.
+ * </p>
+ */
+public final class InstantaneBinaire {
+  /** Version courante du format. */
+  public static final short VERSION = 2;
+  /** Drapeau signalant la présence de l’index précalculé par adresse. */
+  public static final short DRAPEAU_INDEX_ADRESSES = 1;
+  /** Drapeau signalant la présence de l’index précalculé par nom complet. */
+  public static final short DRAPEAU_INDEX_NOMS = 2;
+
+  private static final int MAGIE = 0x444E5342;
+  private static final int TAILLE_EN_TETE = 4 + 2 + 2 + 8 + 8 + 4 + 4;
+  private static final int BIT_IPV6 = 0x8000;
+  private static final int LONGUEUR_MAX = 0x7FFF;
+  /** Taille des fenêtres projetées en mémoire lors de la lecture. */
+  private static final int TAILLE_FENETRE = 1 << 30;
+
+  private InstantaneBinaire() {
+  }
+
+  /**
+   * Contenu décodé d’un instantané, regroupé par domaine.
+   */
+  static final class Contenu {
+    /** Taille du fichier texte source au moment de l’écriture. */
+    final long tailleSource;
+    /** Date de modification du fichier texte source au moment de l’écriture. */
+    final long dateSource;
+    /** Pour chaque domaine, ses enregistrements triés par nom d’hôte. */
+    final List<List<DnsItem>> parNom = new ArrayList<>();
+    /** Pour chaque domaine, ses enregistrements triés par adresse, ou {@code null}. */
+    final List<List<DnsItem>> parAdresse;
+    /** Tous les enregistrements triés par nom complet, ou {@code null}. */
+    List<DnsItem> parNomComplet;
+    /** Nombre total d’enregistrements. */
+    int nombre;
+
+    Contenu(long tailleSource, long dateSource, boolean avecIndex) {
+      this.tailleSource = tailleSource;
+      this.dateSource = dateSource;
+      this.parAdresse = avecIndex ? new ArrayList<>() : null;
+    }
+
+    /**
+     * Retourne tous les enregistrements, domaine par domaine.
+     *
+     * @return la liste des enregistrements
+     */
+    List<DnsItem> items() {
+      List<DnsItem> items = new ArrayList<>();
+      parNom.forEach(items::addAll);
+      return items;
+    }
+  }
+
+  /**
+   * Écrit un instantané contenant les enregistrements donnés, avec les index
+   * précalculés par adresse et par nom complet.
+   *
+   * @param items   les enregistrements à écrire
+   * @param fichier le fichier de destination, remplacé atomiquement
+   * @throws IOException si une erreur d’écriture se produit
+   */
+  public static void ecrire(Collection<DnsItem> items, Path fichier) throws IOException {
+    ecrire(items, fichier, 0, 0);
+  }
+
+  /**
+   * Écrit un instantané en indiquant le fichier texte dont il est l’image.
+   *
+   * @param items        les enregistrements à écrire
+   * @param fichier      le fichier de destination, remplacé atomiquement
+   * @param tailleSource la taille du fichier texte source
+   * @param dateSource   la date de modification du fichier texte source, en ms
+   * @throws IOException si une erreur d’écriture se produit
+   */
+  static void ecrire(Collection<DnsItem> items, Path fichier, long tailleSource, long dateSource)
+      throws IOException {
+    Map<String, List<DnsItem>> parDomaine = new TreeMap<>();
+    for (DnsItem item : items) {
+      parDomaine.computeIfAbsent(item.getNomMachine().getNomDomaine(), d -> new ArrayList<>()).add(item);
+    }
+    Comparator<DnsItem> ordreNom = Comparator.comparing(DnsItem::getNomMachine, NomMachine.ORDRE_NOM_MACHINE);
+
+    Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+    CRC32 crc = new CRC32();
+    try (OutputStream flux = Files.newOutputStream(temporaire)) {
+      DataOutputStream sortie = new DataOutputStream(
+          new BufferedOutputStream(new CheckedOutputStream(flux, crc), 1 << 16));
+      sortie.writeInt(MAGIE);
+      sortie.writeShort(VERSION);
+      sortie.writeShort(DRAPEAU_INDEX_ADRESSES | DRAPEAU_INDEX_NOMS);
+      sortie.writeLong(tailleSource);
+      sortie.writeLong(dateSource);
+      sortie.writeInt(parDomaine.size());
+      sortie.writeInt(items.size());
+
+      for (String domaine : parDomaine.keySet()) {
+        ecrireChaine(sortie, domaine);
+      }
+      List<DnsItem> ordreSection = new ArrayList<>(items.size());
+      for (List<DnsItem> groupe : parDomaine.values()) {
+        groupe.sort(ordreNom);
+        ordreSection.addAll(groupe);
+        sortie.writeInt(groupe.size());
+        for (DnsItem item : groupe) {
+          byte[] hote = encoder(item.getNomMachine().getNomMachine(), LONGUEUR_MAX);
+          AdresseIP adresse = item.getAdresseIP();
+          if (adresse.estIpv6()) {
+            sortie.writeShort(hote.length | BIT_IPV6);
+            sortie.writeLong(adresse.getPoidsFort());
+            sortie.writeLong(adresse.getPoidsFaible());
+          } else {
+            sortie.writeShort(hote.length);
+            sortie.writeInt(adresse.getValeur());
+          }
+          sortie.write(hote);
+        }
+      }
+      for (List<DnsItem> groupe : parDomaine.values()) {
+        Integer[] positions = new Integer[groupe.size()];
+        for (int i = 0; i < positions.length; i++) {
+          positions[i] = i;
+        }
+        Arrays.sort(positions, Comparator.comparing(i -> groupe.get(i).getAdresseIP()));
+        for (int position : positions) {
+          sortie.writeInt(position);
+        }
+      }
+      Integer[] rangs = new Integer[ordreSection.size()];
+      for (int i = 0; i < rangs.length; i++) {
+        rangs[i] = i;
+      }
+      Arrays.sort(rangs,
+          Comparator.comparing(i -> ordreSection.get(i).getNomMachine().getNomComplet()));
+      for (int rang : rangs) {
+        sortie.writeInt(rang);
+      }
+      sortie.flush();
+      new DataOutputStream(flux).writeLong(crc.getValue());
+    }
+    Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void ecrireChaine(DataOutputStream sortie, String chaine) throws IOException {
+    byte[] octets = encoder(chaine, 0xFFFF);
+    sortie.writeShort(octets.length);
+    sortie.write(octets);
+  }
+
+  private static byte[] encoder(String chaine, int longueurMax) throws IOException {
+    byte[] octets = chaine.getBytes(StandardCharsets.UTF_8);
+    if (octets.length > longueurMax) {
+      throw new IOException("Nom trop long pour un instantané : " + chaine);
+    }
+    return octets;
+  }
+
+  /**
+   * Lit tous les enregistrements d’un instantané.
+   *
+   * @param fichier le fichier à lire
+   * @return les enregistrements, regroupés par domaine et triés par nom d’hôte
+   * @throws IOException si le fichier est illisible, corrompu ou d’une version
+   *                     inconnue
+   */
+  public static List<DnsItem> lire(Path fichier) throws IOException {
+    return lireContenu(fichier).items();
+  }
+
+  /**
+   * Lit un instantané en conservant le regroupement par domaine et l’index
+   * précalculé par adresse.
+   *
+   * @param fichier le fichier à lire
+   * @return le contenu décodé
+   * @throws IOException si le fichier est illisible, corrompu ou d’une version
+   *                     inconnue
+   */
+  static Contenu lireContenu(Path fichier) throws IOException {
+    return lireContenu(fichier, TAILLE_FENETRE);
+  }
+
+  /**
+   * Lit un instantané par fenêtres projetées d’au plus {@code tailleFenetre}
+   * octets.
+   *
+   * @param fichier       le fichier à lire
+   * @param tailleFenetre la taille maximale d’une fenêtre, en octets
+   * @return le contenu décodé
+   * @throws IOException si le fichier est illisible, corrompu ou d’une version
+   *                     inconnue
+   */
+  static Contenu lireContenu(Path fichier, int tailleFenetre) throws IOException {
+    try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+      long taille = canal.size();
+      if (taille < TAILLE_EN_TETE + 8) {
+        throw new IOException("Taille d'instantané invalide : " + fichier);
+      }
+      long fin = taille - 8;
+      CRC32 crc = new CRC32();
+      for (long position = 0; position < fin; position += tailleFenetre) {
+        long longueur = Math.min(tailleFenetre, fin - position);
+        crc.update(canal.map(FileChannel.MapMode.READ_ONLY, position, longueur));
+      }
+      ByteBuffer somme = ByteBuffer.allocate(8);
+      while (somme.hasRemaining() && canal.read(somme, fin + somme.position()) >= 0) {
+        continue;
+      }
+      if (crc.getValue() != somme.getLong(0)) {
+        throw new IOException("Somme de contrôle invalide : " + fichier);
+      }
+      Lecteur tampon = new Lecteur(canal, fin, tailleFenetre);
+      if (tampon.getInt() != MAGIE) {
+        throw new IOException("Ce fichier n'est pas un instantané DNS : " + fichier);
+      }
+      short version = tampon.getShort();
+      if (version != VERSION) {
+        throw new IOException("Version d'instantané non prise en charge : " + version);
+      }
+      short drapeaux = tampon.getShort();
+      Contenu contenu = new Contenu(tampon.getLong(), tampon.getLong(),
+          (drapeaux & DRAPEAU_INDEX_ADRESSES) != 0);
+      int nbDomaines = tampon.getInt();
+      contenu.nombre = tampon.getInt();
+      DnsItem[] section = new DnsItem[contenu.nombre];
+      int rang = 0;
+
+      byte[][] domaines = new byte[nbDomaines][];
+      int[] longueursDomaines = new int[nbDomaines];
+      for (int d = 0; d < nbDomaines; d++) {
+        domaines[d] = new byte[Short.toUnsignedInt(tampon.getShort())];
+        tampon.get(domaines[d], 0, domaines[d].length);
+        longueursDomaines[d] = new String(domaines[d], StandardCharsets.UTF_8).length();
+      }
+
+      byte[] nom = new byte[256];
+      for (int d = 0; d < nbDomaines; d++) {
+        int nombre = tampon.getInt();
+        List<DnsItem> groupe = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+          int entete = Short.toUnsignedInt(tampon.getShort());
+          int longueurHote = entete & LONGUEUR_MAX;
+          AdresseIP ip = (entete & BIT_IPV6) != 0
+              ? new AdresseIP(tampon.getLong(), tampon.getLong())
+              : new AdresseIP(tampon.getInt());
+          int longueur = longueurHote + 1 + domaines[d].length;
+          if (nom.length < longueur) {
+            nom = new byte[Math.max(longueur, nom.length * 2)];
+          }
+          tampon.get(nom, 0, longueurHote);
+          nom[longueurHote] = '.';
+          System.arraycopy(domaines[d], 0, nom, longueurHote + 1, domaines[d].length);
+          String nomComplet = new String(nom, 0, longueur, StandardCharsets.UTF_8);
+          DnsItem item = new DnsItem(ip,
+              new NomMachine(nomComplet, nomComplet.length() - longueursDomaines[d] - 1));
+          groupe.add(item);
+          section[rang++] = item;
+        }
+        contenu.parNom.add(groupe);
+      }
+
+      if (contenu.parAdresse != null) {
+        for (List<DnsItem> groupe : contenu.parNom) {
+          List<DnsItem> triee = new ArrayList<>(groupe.size());
+          for (int i = 0; i < groupe.size(); i++) {
+            triee.add(groupe.get(tampon.getInt()));
+          }
+          contenu.parAdresse.add(triee);
+        }
+      }
+      if ((drapeaux & DRAPEAU_INDEX_NOMS) != 0) {
+        DnsItem[] parNomComplet = new DnsItem[section.length];
+        for (int i = 0; i < parNomComplet.length; i++) {
+          parNomComplet[i] = section[tampon.getInt()];
+        }
+        contenu.parNomComplet = Arrays.asList(parNomComplet);
+      }
+      return contenu;
+    } catch (IndexOutOfBoundsException | BufferUnderflowException | NegativeArraySizeException e) {
+      throw new IOException("Instantané tronqué : " + fichier, e);
+    }
+  }
+
+  /**
+   * Lecture séquentielle d’un fichier projeté en mémoire par fenêtres
+   * successives. Une valeur à cheval sur deux fenêtres est lue dans une
+   * nouvelle fenêtre commençant à sa position.
+   */
+  private static final class Lecteur {
+    private final FileChannel canal;
+    private final long fin;
+    private final int tailleFenetre;
+    private ByteBuffer fenetre = ByteBuffer.allocate(0);
+    private long debutFenetre;
+
+    Lecteur(FileChannel canal, long fin, int tailleFenetre) {
+      this.canal = canal;
+      this.fin = fin;
+      this.tailleFenetre = tailleFenetre;
+    }
+
+    private ByteBuffer disponible(int octets) throws IOException {
+      if (fenetre.remaining() < octets) {
+        long position = debutFenetre + fenetre.position();
+        if (fin - position < octets) {
+          throw new BufferUnderflowException();
+        }
+        fenetre = canal.map(FileChannel.MapMode.READ_ONLY, position,
+            Math.min(Math.max(tailleFenetre, octets), fin - position));
+        debutFenetre = position;
+      }
+      return fenetre;
+    }
+
+    short getShort() throws IOException {
+      return disponible(2).getShort();
+    }
+
+    int getInt() throws IOException {
+      return disponible(4).getInt();
+    }
+
+    long getLong() throws IOException {
+      return disponible(8).getLong();
+    }
+
+    void get(byte[] destination, int debut, int longueur) throws IOException {
+      disponible(longueur).get(destination, debut, longueur);
+    }
+  }
+
+  /**
+   * Indique si un fichier commence par l’en-tête d’un instantané binaire.
+   *
+   * @param fichier le fichier à examiner
+   * @return {@code true} si le fichier est un instantané, {@code false} sinon
+   * @throws IOException si une erreur de lecture se produit
+   */
+  public static boolean estInstantane(Path fichier) throws IOException {
+    try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+      ByteBuffer magie = ByteBuffer.allocate(4);
+      while (magie.hasRemaining() && canal.read(magie) >= 0) {
+        continue;
+      }
+      return !magie.hasRemaining() && magie.getInt(0) == MAGIE;
+    }
+  }
+
+  /**
+   * Convertit un fichier d’un format vers l’autre : un instantané binaire est
+   * converti en fichier texte et un fichier texte en instantané binaire.
+   *
+   * @param source      le fichier à convertir, dont le format est détecté
+   * @param destination le fichier à produire
+   * @return le nombre d’enregistrements convertis
+   * @throws IOException              si une erreur d’entrée/sortie se produit
+   * @throws IllegalArgumentException si le fichier texte contient une ligne
+   *                                  invalide
+   */
+  public static int convertir(Path source, Path destination) throws IOException {
+    if (estInstantane(source)) {
+      List<DnsItem> items = lire(source);
+      List<String> lignes = new ArrayList<>(items.size());
+      for (DnsItem item : items) {
+        lignes.add(item.getNomMachine().getNomComplet() + " " + item.getAdresseIP().getIp());
+      }
+      Files.write(destination, lignes);
+      return items.size();
+    }
+    List<DnsItem> items = ChargeurBase.charger(source);
+    ecrire(items, destination);
+    return items.size();
+  }
+}
@@ -0,0 +1,80 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.List;
+
+/**
+ * Exception levée par {@link Dns#addItems} lorsqu’un lot contient au moins un
+ * enregistrement en conflit avec la base ou avec le reste du lot.
+ * <p>
+ * Tous les conflits du lot sont rapportés, pas seulement le premier, afin que
+ * l’appelant puisse corriger ou écarter les enregistrements fautifs en une
+ * seule fois.
+ * </p>
+ */
+public class LotInvalideException extends IllegalArgumentException {
+  private static final long serialVersionUID = 1L;
+
+  private final transient List<Conflit> conflits;
+
+  /**
+   * Construit l’exception à partir des conflits détectés.
+   *
+   * @param conflits les conflits du lot, dans l’ordre du lot
+   */
+  public LotInvalideException(List<Conflit> conflits) {
+    super("ERREUR : " + conflits.size() + " enregistrement(s) en conflit dans le lot, aucun ajout effectué");
+    this.conflits = List.copyOf(conflits);
+  }
+
+  /**
+   * Retourne les conflits détectés.
+   *
+   * @return la liste non modifiable des conflits, dans l’ordre du lot
+   */
+  public List<Conflit> getConflits() {
+    return conflits;
+  }
+
+  /**
+   * Un enregistrement du lot et la raison pour laquelle il ne peut pas être
+   * ajouté.
+   */
+  public static final class Conflit {
+    private final DnsItem item;
+    private final String motif;
+
+    /**
+     * Construit un conflit.
+     *
+     * @param item  l’enregistrement refusé
+     * @param motif la raison du refus
+     */
+    public Conflit(DnsItem item, String motif) {
+      this.item = item;
+      this.motif = motif;
+    }
+
+    /**
+     * Retourne l’enregistrement refusé.
+     *
+     * @return l’enregistrement
+     */
+    public DnsItem getItem() {
+      return item;
+    }
+
+    /**
+     * Retourne la raison du refus.
+     *
+     * @return le motif
+     */
+    public String getMotif() {
+      return motif;
+    }
+
+    @Override
+    public String toString() {
+      return item.getNomMachine().getNomComplet() + " " + item.getAdresseIP().getIp() + " : " + motif;
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package fr.uvsq.cprog.collex;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Mémoire hors du tas adressée sur 64 bits, faite de segments
+ * {@link ByteBuffer#allocateDirect directs} de {@link #TAILLE_SEGMENT} octets.
+ * <p>
+ * Un {@code ByteBuffer} ne dépasse pas 2 Gio ; le découpage en segments permet
+ * de ranger plusieurs dizaines de gigaoctets derrière une seule adresse
+ * {@code long}. Les segments sont alloués à la demande par
+ * {@link #allouer(int)} et ne sont jamais libérés ni déplacés : une adresse
+ * reste valide tant que la mémoire est référencée. Le tas ne contient que le
+ * tableau des segments, soit quelques octets par mégaoctet rangé.
+ * </p>
+ * <p>
+ * Les écritures doivent être sérialisées par l’appelant. Les lectures peuvent
+ * être concurrentes : une donnée écrite avant un
+ * {@link #ecrireLongVolatile(long, long)} est visible de tout lecteur qui
+ * observe la valeur écrite par {@link #lireLongVolatile(long)}.
+ * </p>
+ */
+final class MemoireHorsTas {
+  /** Nombre de bits d’une position dans un segment. */
+  static final int BITS_SEGMENT = 22;
+  /** Taille d’un segment, en octets (4 Mio). */
+  static final int TAILLE_SEGMENT = 1 << BITS_SEGMENT;
+
+  private static final int MASQUE_SEGMENT = TAILLE_SEGMENT - 1;
+  private static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private volatile ByteBuffer[] segments;
+  private long fin;
+  private volatile long octets;
+
+  /**
+   * Crée une mémoire dont les {@code taille} premiers octets sont alloués et
+   * mis à zéro. Une mémoire plus petite qu’un segment n’occupe que la taille
+   * demandée, mais ne peut plus être agrandie par {@link #allouer(int)}.
+   *
+   * @param taille le nombre d’octets à allouer d’emblée
+   */
+  MemoireHorsTas(long taille) {
+    int nombre = (int) ((taille + MASQUE_SEGMENT) >>> BITS_SEGMENT);
+    ByteBuffer[] initiaux = new ByteBuffer[nombre];
+    for (int i = 0; i < nombre; i++) {
+      initiaux[i] = nouveauSegment(nombre == 1 ? (int) taille : TAILLE_SEGMENT);
+    }
+    this.segments = initiaux;
+    this.fin = taille;
+    this.octets = nombre == 1 ? taille : (long) nombre * TAILLE_SEGMENT;
+  }
+
+  private static ByteBuffer nouveauSegment(int taille) {
+    return ByteBuffer.allocateDirect(taille).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Réserve une zone contiguë à la suite des précédentes, alignée sur 8 octets.
+   * Une zone ne franchit jamais la fin d’un segment : le reste du segment est
+   * alors laissé à zéro et la zone commence au segment suivant.
+   *
+   * @param taille la taille de la zone, au plus {@link #TAILLE_SEGMENT}
+   * @return l’adresse de la zone
+   */
+  long allouer(int taille) {
+    long debut = fin;
+    if ((debut & MASQUE_SEGMENT) + taille > TAILLE_SEGMENT) {
+      debut = (debut | MASQUE_SEGMENT) + 1;
+    }
+    int segment = (int) ((debut + taille - 1) >>> BITS_SEGMENT);
+    ByteBuffer[] courants = segments;
+    if (segment >= courants.length) {
+      ByteBuffer[] agrandis = Arrays.copyOf(courants, segment + 1);
+      for (int i = courants.length; i <= segment; i++) {
+        agrandis[i] = nouveauSegment(TAILLE_SEGMENT);
+      }
+      segments = agrandis;
+      octets = (long) agrandis.length * TAILLE_SEGMENT;
+    }
+    fin = (debut + taille + 7) & ~7L;
+    return debut;
+  }
+
+  /**
+   * Retourne la fin de la dernière zone allouée.
+   *
+   * @return l’adresse qui suit la dernière zone
+   */
+  long fin() {
+    return fin;
+  }
+
+  /**
+   * Retourne l’adresse du début du segment qui suit une adresse donnée.
+   *
+   * @param adresse une adresse
+   * @return le début du segment suivant
+   */
+  static long segmentSuivant(long adresse) {
+    return (adresse | MASQUE_SEGMENT) + 1;
+  }
+
+  /**
+   * Retourne la place restante dans le segment d’une adresse.
+   *
+   * @param adresse une adresse
+   * @return le nombre d’octets entre l’adresse et la fin de son segment
+   */
+  static int resteSegment(long adresse) {
+    return TAILLE_SEGMENT - (int) (adresse & MASQUE_SEGMENT);
+  }
+
+  /**
+   * Retourne la mémoire allouée hors du tas.
+   *
+   * @return la taille cumulée des segments, en octets
+   */
+  long octets() {
+    return octets;
+  }
+
+  private ByteBuffer segment(long adresse) {
+    return segments[(int) (adresse >>> BITS_SEGMENT)];
+  }
+
+  private static int position(long adresse) {
+    return (int) (adresse & MASQUE_SEGMENT);
+  }
+
+  byte lireOctet(long adresse) {
+    return segment(adresse).get(position(adresse));
+  }
+
+  short lireShort(long adresse) {
+    return segment(adresse).getShort(position(adresse));
+  }
+
+  int lireInt(long adresse) {
+    return segment(adresse).getInt(position(adresse));
+  }
+
+  long lireLong(long adresse) {
+    return segment(adresse).getLong(position(adresse));
+  }
+
+  void lire(long adresse, byte[] destination, int longueur) {
+    segment(adresse).get(position(adresse), destination, 0, longueur);
+  }
+
+  void ecrireShort(long adresse, short valeur) {
+    segment(adresse).putShort(position(adresse), valeur);
+  }
+
+  void ecrireInt(long adresse, int valeur) {
+    segment(adresse).putInt(position(adresse), valeur);
+  }
+
+  void ecrireLong(long adresse, long valeur) {
+    segment(adresse).putLong(position(adresse), valeur);
+  }
+
+  void ecrire(long adresse, byte[] source, int longueur) {
+    segment(adresse).put(position(adresse), source, 0, longueur);
+  }
+
+  /**
+   * Lit un {@code long} avec la sémantique d’un champ {@code volatile}.
+   *
+   * @param adresse une adresse alignée sur 8 octets
+   * @return la valeur lue
+   */
+  long lireLongVolatile(long adresse) {
+    return (long) LONGS.getVolatile(segment(adresse), position(adresse));
+  }
+
+  /**
+   * Écrit un {@code long} avec la sémantique d’un champ {@code volatile}.
+   *
+   * @param adresse une adresse alignée sur 8 octets
+   * @param valeur  la valeur à écrire
+   */
+  void ecrireLongVolatile(long adresse, long valeur) {
+    LONGS.setVolatile(segment(adresse), position(adresse), valeur);
+  }
+}
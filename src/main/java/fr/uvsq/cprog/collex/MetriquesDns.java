@@ -0,0 +1,377 @@
+package fr.uvsq.cprog.collex;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Compteurs et histogrammes de latence d’une base {@link Dns} et des commandes
+ * exécutées sur elle.
+ * <p>
+ * L’enregistrement d’une mesure ne prend aucun verrou et n’alloue rien : les
+ * compteurs sont des {@link LongAdder} et les histogrammes des tableaux
+ * atomiques de taille fixe (voir {@link Histogramme}). Seule la première
+ * exécution d’un nouveau type de commande crée son histogramme. Les recherches,
+ * bien plus fréquentes, sont comptées par chaque fil d’exécution dans ses
+ * propres compteurs, sans instruction atomique, et leurs durées sont
+ * échantillonnées (voir {@link #debutRecherche()}). Les
+ * résumés (médiane, 99e centile, maximum) ne sont calculés qu’à la lecture,
+ * par JMX.
+ * </p>
+ */
+public final class MetriquesDns implements MetriquesDnsMXBean {
+  /**
+   * Une recherche sur ce nombre (une puissance de deux) est chronométrée en
+   * moyenne : un échantillon coûte deux lectures d’horloge et trois mises à
+   * jour atomiques de l’histogramme, soit plus que la recherche elle-même.
+   */
+  static final int ECHANTILLONNAGE_RECHERCHES = 1024;
+
+  private static final String COMMANDE_INVALIDE = "CommandeInvalide";
+
+  private final Histogramme rechercheNom = new Histogramme();
+  private final Histogramme rechercheAdresse = new Histogramme();
+  private final Histogramme liste = new Histogramme();
+  private final Histogramme plage = new Histogramme();
+  private final Histogramme motif = new Histogramme();
+  private final Histogramme ajout = new Histogramme();
+  private final Histogramme journal = new Histogramme();
+  private final Histogramme compactage = new Histogramme();
+  private final Map<String, Histogramme> commandes = new ConcurrentSkipListMap<>();
+  private final Map<Class<?>, Histogramme> commandesParType = new ConcurrentHashMap<>();
+  private final Queue<CompteursRecherches> compteursRecherches = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<CompteursRecherches> compteursLocaux = ThreadLocal.withInitial(() -> {
+    CompteursRecherches compteurs = new CompteursRecherches();
+    compteursRecherches.add(compteurs);
+    return compteurs;
+  });
+  private final LongAdder ajoutsRefuses = new LongAdder();
+  private final LongAdder cacheSucces = new LongAdder();
+  private final LongAdder cacheEchecs = new LongAdder();
+  private final LongAdder cacheEvictions = new LongAdder();
+  private final LongAdder filtreRejets = new LongAdder();
+  private final LongAdder filtreFauxPositifs = new LongAdder();
+  private volatile long octetsFiltres;
+  private volatile long dureeChargement;
+  private volatile long enregistrementsCharges;
+
+  MetriquesDns() {
+  }
+
+  /**
+   * Publie ces métriques sur le serveur de MBeans de la plateforme, sous le nom
+   * {@code fr.uvsq.cprog.collex:type=Dns,name=<nom>}.
+   *
+   * @param nom le nom distinguant cette base des autres
+   * @return le nom JMX sous lequel les métriques sont publiées
+   * @throws JMException si la publication échoue, par exemple si le nom est
+   *                     déjà utilisé
+   */
+  public ObjectName publier(String nom) throws JMException {
+    ObjectName nomJmx = new ObjectName("fr.uvsq.cprog.collex:type=Dns,name=" + ObjectName.quote(nom));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, nomJmx);
+    return nomJmx;
+  }
+
+  /**
+   * Décide si la recherche qui commence doit être chronométrée.
+   * <p>
+   * Une recherche coûte quelques dizaines de nanosecondes, autant qu’un appel à
+   * {@link System#nanoTime()} : seule une recherche sur
+   * {@link #ECHANTILLONNAGE_RECHERCHES} en moyenne est chronométrée. Chaque fil
+   * d’exécution décompte les recherches jusqu’au prochain échantillon ; l’écart
+   * entre deux échantillons est tiré au hasard, pour qu’une alternance régulière
+   * de recherches par nom et par adresse soit échantillonnée des deux côtés.
+   * Les compteurs de recherches fructueuses et infructueuses restent exacts.
+   * </p>
+   * <p>
+   * Les compteurs du fil d’exécution sont retournés pour être passés à
+   * {@link #rechercheNom(boolean, CompteursRecherches)} ou
+   * {@link #rechercheAdresse(boolean, CompteursRecherches)} à la fin de la
+   * recherche : ils ne sont cherchés qu’une fois par recherche.
+   * </p>
+   *
+   * @return les compteurs du fil d’exécution, qui retiennent l’instant de
+   *         début de la recherche si elle est chronométrée
+   */
+  CompteursRecherches debutRecherche() {
+    CompteursRecherches compteurs = compteursLocaux.get();
+    compteurs.debut = --compteurs.avantEchantillon > 0 ? 0 : compteurs.echantillonner();
+    return compteurs;
+  }
+
+  /**
+   * Compte une recherche par nom.
+   *
+   * @param trouvee   {@code true} si l’enregistrement existe
+   * @param compteurs les compteurs retournés par {@link #debutRecherche()}, ou
+   *                  {@code null} pour une recherche écartée sans être
+   *                  chronométrée
+   */
+  void rechercheNom(boolean trouvee, CompteursRecherches compteurs) {
+    compterRecherche(trouvee, rechercheNom, compteurs);
+  }
+
+  /**
+   * Compte une recherche par adresse, comme
+   * {@link #rechercheNom(boolean, CompteursRecherches)}.
+   */
+  void rechercheAdresse(boolean trouvee, CompteursRecherches compteurs) {
+    compterRecherche(trouvee, rechercheAdresse, compteurs);
+  }
+
+  private void compterRecherche(boolean trouvee, Histogramme histogramme,
+      CompteursRecherches compteurs) {
+    if (compteurs == null) {
+      compteursLocaux.get().compter(trouvee);
+      return;
+    }
+    compteurs.compter(trouvee);
+    if (compteurs.debut != 0) {
+      histogramme.enregistrer(System.nanoTime() - compteurs.debut);
+    }
+  }
+
+  void liste(long nanos) {
+    liste.enregistrer(nanos);
+  }
+
+  void plage(long nanos) {
+    plage.enregistrer(nanos);
+  }
+
+  void motif(long nanos) {
+    motif.enregistrer(nanos);
+  }
+
+  /** Mesure un ajout réussi, d’un enregistrement ou d’un lot entier. */
+  void ajout(long nanos) {
+    ajout.enregistrer(nanos);
+  }
+
+  void ajoutsRefuses(int nombre) {
+    ajoutsRefuses.add(nombre);
+  }
+
+  void cacheSucces() {
+    cacheSucces.increment();
+  }
+
+  void cacheEchec() {
+    cacheEchecs.increment();
+  }
+
+  void cacheEviction() {
+    cacheEvictions.increment();
+  }
+
+  void filtreRejet() {
+    filtreRejets.increment();
+  }
+
+  void filtreFauxPositif() {
+    filtreFauxPositifs.increment();
+  }
+
+  void filtres(long octets) {
+    octetsFiltres = octets;
+  }
+
+  void journal(long nanos) {
+    journal.enregistrer(nanos);
+  }
+
+  void compactage(long nanos) {
+    compactage.enregistrer(nanos);
+  }
+
+  void chargement(long nanos, long enregistrements) {
+    dureeChargement = nanos;
+    enregistrementsCharges = enregistrements;
+  }
+
+  /**
+   * Enregistre la durée d’exécution d’une commande, regroupée par type de
+   * commande. Les commandes d’erreur de {@link DnsTUI} partagent un même
+   * histogramme.
+   *
+   * @param commande la commande exécutée
+   * @param nanos    sa durée d’exécution en nanosecondes
+   */
+  void commande(Commande commande, long nanos) {
+    Class<?> type = commande.getClass();
+    Histogramme histogramme = commandesParType.get(type);
+    if (histogramme == null) {
+      histogramme = commandesParType.computeIfAbsent(type,
+          t -> commandes.computeIfAbsent(nomCommande(t), n -> new Histogramme()));
+    }
+    histogramme.enregistrer(nanos);
+  }
+
+  @Override
+  public long getRecherchesTrouvees() {
+    long somme = 0;
+    for (CompteursRecherches compteurs : compteursRecherches) {
+      somme += (long) CompteursRecherches.TROUVEES.getOpaque(compteurs);
+    }
+    return somme;
+  }
+
+  @Override
+  public long getRecherchesManquees() {
+    long somme = 0;
+    for (CompteursRecherches compteurs : compteursRecherches) {
+      somme += (long) CompteursRecherches.MANQUEES.getOpaque(compteurs);
+    }
+    return somme;
+  }
+
+  @Override
+  public long getAjoutsRefuses() {
+    return ajoutsRefuses.sum();
+  }
+
+  @Override
+  public long getCacheSucces() {
+    return cacheSucces.sum();
+  }
+
+  @Override
+  public long getCacheEchecs() {
+    return cacheEchecs.sum();
+  }
+
+  @Override
+  public long getCacheEvictions() {
+    return cacheEvictions.sum();
+  }
+
+  @Override
+  public long getFiltreRejets() {
+    return filtreRejets.sum();
+  }
+
+  @Override
+  public long getFiltreFauxPositifs() {
+    return filtreFauxPositifs.sum();
+  }
+
+  @Override
+  public double getFiltreTauxFauxPositifs() {
+    long fauxPositifs = filtreFauxPositifs.sum();
+    long absences = fauxPositifs + filtreRejets.sum();
+    return absences == 0 ? 0 : (double) fauxPositifs / absences;
+  }
+
+  @Override
+  public long getFiltreOctets() {
+    return octetsFiltres;
+  }
+
+  @Override
+  public long getDureeChargementMillis() {
+    return dureeChargement / 1_000_000;
+  }
+
+  @Override
+  public long getEnregistrementsCharges() {
+    return enregistrementsCharges;
+  }
+
+  @Override
+  public List<StatistiquesLatence> getLatences() {
+    List<StatistiquesLatence> latences = new ArrayList<>();
+    ajouterSiMesure(latences, "getItem(nom)", rechercheNom);
+    ajouterSiMesure(latences, "getItem(adresse)", rechercheAdresse);
+    ajouterSiMesure(latences, "getItems", liste);
+    ajouterSiMesure(latences, "getItems(cidr)", plage);
+    ajouterSiMesure(latences, "getItemsParMotif", motif);
+    ajouterSiMesure(latences, "addItem", ajout);
+    ajouterSiMesure(latences, "journal", journal);
+    ajouterSiMesure(latences, "compactage", compactage);
+    commandes.forEach((nom, histogramme) -> ajouterSiMesure(latences, nom, histogramme));
+    return latences;
+  }
+
+  private static void ajouterSiMesure(List<StatistiquesLatence> latences, String operation,
+      Histogramme histogramme) {
+    if (histogramme.nombre() > 0) {
+      latences.add(StatistiquesLatence.resumer(operation, histogramme));
+    }
+  }
+
+  /**
+   * Retourne le nom affiché d’un type de commande. Les commandes produites par
+   * une expression lambda sont les réponses de {@link DnsTUI} aux saisies
+   * invalides.
+   */
+  static String nomCommande(Class<?> type) {
+    return type.isSynthetic() || type.isAnonymousClass() ? COMMANDE_INVALIDE : type.getSimpleName();
+  }
+
+  /**
+   * Compteurs de recherches d’un fil d’exécution, qui est seul à les écrire.
+   * Les écritures opaques, sans barrière, sont lues par JMX sans verrou ; le
+   * total lu peut omettre les toutes dernières recherches des autres fils.
+   */
+  static final class CompteursRecherches {
+    static final VarHandle TROUVEES;
+    static final VarHandle MANQUEES;
+
+    static {
+      try {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        TROUVEES = lookup.findVarHandle(CompteursRecherches.class, "trouvees", long.class);
+        MANQUEES = lookup.findVarHandle(CompteursRecherches.class, "manquees", long.class);
+      } catch (ReflectiveOperationException e) {
+        throw new ExceptionInInitializerError(e);
+      }
+    }
+
+    private long trouvees;
+    private long manquees;
+    /** Nombre de recherches restant jusqu’au prochain échantillon. */
+    private int avantEchantillon = 1;
+    private int alea = (int) System.nanoTime() | 1;
+    /** Instant de début de la recherche en cours, 0 si elle n’est pas chronométrée. */
+    private long debut;
+
+    private CompteursRecherches() {
+    }
+
+    void compter(boolean trouvee) {
+      if (trouvee) {
+        TROUVEES.setOpaque(this, trouvees + 1);
+      } else {
+        MANQUEES.setOpaque(this, manquees + 1);
+      }
+    }
+
+    /**
+     * Tire l’écart jusqu’au prochain échantillon, de moyenne
+     * {@link MetriquesDns#ECHANTILLONNAGE_RECHERCHES}, et chronomètre la
+     * recherche en cours. Hors du chemin courant de
+     * {@link MetriquesDns#debutRecherche()}, qui reste assez
+     * court pour être intégré aux recherches par le compilateur.
+     *
+     * @return l’instant de début de la recherche, jamais nul
+     */
+    long echantillonner() {
+      alea ^= alea << 13;
+      alea ^= alea >>> 17;
+      alea ^= alea << 5;
+      avantEchantillon = 1 + (alea & (2 * ECHANTILLONNAGE_RECHERCHES - 2));
+      return System.nanoTime() | 1;
+    }
+  }
+}
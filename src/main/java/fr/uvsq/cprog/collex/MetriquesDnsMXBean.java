@@ -0,0 +1,115 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.List;
+
+/**
+ * Interface de gestion (JMX) exposant les compteurs et les latences d’une base
+ * {@link Dns}.
+ * <p>
+ * Elle est publiée sur le serveur de MBeans de la plateforme par
+ * {@link MetriquesDns#publier(String)} et consultable avec {@code jconsole} ou
+ * tout client JMX.
+ * </p>
+ */
+public interface MetriquesDnsMXBean {
+  /**
+   * Retourne le nombre de recherches ({@code getItem}) ayant trouvé un
+   * enregistrement.
+   *
+   * @return le nombre de recherches fructueuses
+   */
+  long getRecherchesTrouvees();
+
+  /**
+   * Retourne le nombre de recherches ({@code getItem}) n’ayant trouvé aucun
+   * enregistrement.
+   *
+   * @return le nombre de recherches infructueuses
+   */
+  long getRecherchesManquees();
+
+  /**
+   * Retourne le nombre d’ajouts refusés pour cause de doublon.
+   *
+   * @return le nombre d’ajouts refusés
+   */
+  long getAjoutsRefuses();
+
+  /**
+   * Retourne le nombre de recherches servies par le cache, présences et
+   * absences confondues.
+   *
+   * @return le nombre de succès du cache
+   */
+  long getCacheSucces();
+
+  /**
+   * Retourne le nombre de recherches que le cache n’a pas pu servir et qui ont
+   * interrogé la base.
+   *
+   * @return le nombre d’échecs du cache
+   */
+  long getCacheEchecs();
+
+  /**
+   * Retourne le nombre d’entrées évincées du cache pour faire de la place.
+   *
+   * @return le nombre d’évictions
+   */
+  long getCacheEvictions();
+
+  /**
+   * Retourne le nombre de recherches rejetées par un filtre de Bloom sans
+   * consulter les index.
+   *
+   * @return le nombre de rejets
+   */
+  long getFiltreRejets();
+
+  /**
+   * Retourne le nombre de recherches qu’un filtre de Bloom a laissé passer pour
+   * une clé absente de la base.
+   *
+   * @return le nombre de faux positifs
+   */
+  long getFiltreFauxPositifs();
+
+  /**
+   * Retourne le taux de faux positifs mesuré des filtres de Bloom : la part des
+   * recherches de clés absentes que les filtres n’ont pas rejetées.
+   *
+   * @return le taux, entre 0 et 1, ou 0 si aucune clé absente n’a été cherchée
+   */
+  double getFiltreTauxFauxPositifs();
+
+  /**
+   * Retourne la mémoire occupée par les filtres de Bloom des noms et des
+   * adresses.
+   *
+   * @return la taille cumulée des deux filtres, en octets
+   */
+  long getFiltreOctets();
+
+  /**
+   * Retourne la durée du chargement de la base au démarrage.
+   *
+   * @return la durée en millisecondes
+   */
+  long getDureeChargementMillis();
+
+  /**
+   * Retourne le nombre d’enregistrements présents après le chargement.
+   *
+   * @return le nombre d’enregistrements chargés
+   */
+  long getEnregistrementsCharges();
+
+  /**
+   * Retourne les statistiques de latence de chaque opération de la base et de
+   * chaque type de commande exécuté. Pour les recherches ({@code getItem}),
+   * seul un échantillon des appels est chronométré.
+   *
+   * @return une statistique par opération ayant au moins une mesure
+   */
+  List<StatistiquesLatence> getLatences();
+}
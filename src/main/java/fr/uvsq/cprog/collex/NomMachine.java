@@ -1,6 +1,7 @@
 package fr.uvsq.cprog.collex;
 
-import java.util.Objects;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
 
 /**
  * Représente un nom de machine complet, composé d’un nom d’hôte et d’un nom de
@@ -10,11 +11,35 @@ import java.util.Objects;
  * machine et "exemple.com" le domaine. Cette classe est immuable : ses champs
  * ne peuvent pas être modifiés après création.
  * </p>
+ * <p>
+ * Seul le nom complet est conservé, avec la position du point qui sépare le
+ * nom d’hôte du domaine ; ces deux parties sont extraites à la demande. Les
+ * noms de domaine, peu nombreux et partagés par de nombreuses machines, sont
+ * retrouvés dans un petit cache plutôt que réextraits à chaque appel.
+ * </p>
  */
 public class NomMachine {
+  /**
+   * Ordre des noms selon leur nom d’hôte (la partie avant le premier point),
+   * calculé sans extraire de sous-chaîne.
+   */
+  public static final Comparator<NomMachine> ORDRE_NOM_MACHINE = (a, b) -> {
+    int longueur = Math.min(a.indexPoint, b.indexPoint);
+    for (int i = 0; i < longueur; i++) {
+      int cmp = Character.compare(a.nomComplet.charAt(i), b.nomComplet.charAt(i));
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(a.indexPoint, b.indexPoint);
+  };
+
+  /** Le cache des noms de domaine compte 2^BITS_CACHE entrées. */
+  private static final int BITS_CACHE = 10;
+  private static final String[] DOMAINES = new String[1 << BITS_CACHE];
+
   private final String nomComplet;
-  private final String nomMachine;
-  private final String nomDomaine;
+  private final int indexPoint;
 
   /**
    * Construit une instance de {@code NomMachine} à partir d’un nom complet.
@@ -23,14 +48,25 @@ public class NomMachine {
    * @throws IllegalArgumentException si le nom complet n’est pas valide
    */
   public NomMachine(String nomComplet) {
-    if (!estValide(nomComplet)) {
+    int index = nomComplet == null ? -1 : Analyseur.indexPoint(nomComplet);
+    if (index < 0) {
       throw new IllegalArgumentException("Nom complet invalide : " + nomComplet);
     }
 
     this.nomComplet = nomComplet;
-    int index = nomComplet.indexOf('.');
-    this.nomMachine = nomComplet.substring(0, index);
-    this.nomDomaine = nomComplet.substring(index + 1);
+    this.indexPoint = index;
+  }
+
+  /**
+   * Construit une instance de {@code NomMachine} à partir d’un nom complet déjà
+   * validé.
+   *
+   * @param nomComplet le nom complet (incluant le domaine)
+   * @param indexPoint la position du premier point dans {@code nomComplet}
+   */
+  NomMachine(String nomComplet, int indexPoint) {
+    this.nomComplet = nomComplet;
+    this.indexPoint = indexPoint;
   }
 
   /**
@@ -44,16 +80,7 @@ public class NomMachine {
    * @return {@code true} si le nom est valide, {@code false} sinon
    */
   public static boolean estValide(String nom) {
-    if (nom == null || nom.isBlank()) {
-      return false;
-    }
-
-    int index = nom.indexOf('.');
-    if (index <= 0 || index == nom.length() - 1) {
-      return false;
-    }
-
-    return true;
+    return nom != null && Analyseur.indexPoint(nom) >= 0;
   }
 
   /**
@@ -71,16 +98,74 @@ public class NomMachine {
    * @return le nom d’hôte de la machine
    */
   public String getNomMachine() {
-    return nomMachine;
+    return nomComplet.substring(0, indexPoint);
+  }
+
+  /**
+   * Retourne le nom d’hôte de la machine codé en UTF-8, sans extraire de
+   * sous-chaîne lorsqu’il est en ASCII.
+   *
+   * @return un nouveau tableau contenant le nom d’hôte
+   */
+  byte[] getNomMachineUtf8() {
+    byte[] octets = new byte[indexPoint];
+    for (int i = 0; i < indexPoint; i++) {
+      char c = nomComplet.charAt(i);
+      if (c >= 0x80) {
+        return getNomMachine().getBytes(StandardCharsets.UTF_8);
+      }
+      octets[i] = (byte) c;
+    }
+    return octets;
+  }
+
+  /**
+   * Compare le nom d’hôte de la machine à une chaîne, comme
+   * {@link String#compareTo(String)}, sans extraire de sous-chaîne.
+   *
+   * @param nom le nom d’hôte à comparer
+   * @return un nombre négatif, nul ou positif selon que le nom d’hôte précède,
+   *         égale ou suit {@code nom}
+   */
+  int comparerNomMachine(String nom) {
+    int longueur = Math.min(indexPoint, nom.length());
+    for (int i = 0; i < longueur; i++) {
+      char a = nomComplet.charAt(i);
+      char b = nom.charAt(i);
+      if (a != b) {
+        return a - b;
+      }
+    }
+    return indexPoint - nom.length();
   }
 
   /**
    * Retourne le nom de domaine associé à la machine (après le premier point).
+   * <p>
+   * Le domaine est d’abord cherché dans un cache à correspondance directe,
+   * partagé par toutes les instances : tant qu’il y figure, l’appel ne crée
+   * aucune chaîne et retourne la même instance pour toutes les machines du
+   * domaine.
+   * </p>
    *
    * @return le nom de domaine
    */
   public String getNomDomaine() {
-    return nomDomaine;
+    int debut = indexPoint + 1;
+    int longueur = nomComplet.length() - debut;
+    int hachage = 0;
+    for (int i = debut; i < nomComplet.length(); i++) {
+      hachage = 31 * hachage + nomComplet.charAt(i);
+    }
+    int index = (hachage * 0x9E3779B9) >>> (32 - BITS_CACHE);
+    String enCache = DOMAINES[index];
+    if (enCache != null && enCache.length() == longueur
+        && nomComplet.regionMatches(debut, enCache, 0, longueur)) {
+      return enCache;
+    }
+    String domaine = nomComplet.substring(debut);
+    DOMAINES[index] = domaine;
+    return domaine;
   }
 
   /**
@@ -101,7 +186,7 @@ public class NomMachine {
     }
 
     NomMachine machine = (NomMachine) o;
-    return Objects.equals(nomComplet, machine.nomComplet);
+    return nomComplet.equals(machine.nomComplet);
   }
 
   /**
@@ -111,7 +196,7 @@ public class NomMachine {
    */
   @Override
   public int hashCode() {
-    return Objects.hash(nomComplet);
+    return nomComplet.hashCode();
   }
 
   /**
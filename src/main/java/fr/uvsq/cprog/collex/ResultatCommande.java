@@ -0,0 +1,37 @@
+package fr.uvsq.cprog.collex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sortie conservant en mémoire les lignes écrites par une commande.
+ * <p>
+ * Elle permet d’exploiter le résultat sans l’encoder ni le relire, par
+ * exemple dans les tests ou les bancs d’essai.
+ * </p>
+ */
+public class ResultatCommande implements SortieCommande {
+  private final List<String> lignes = new ArrayList<>();
+
+  @Override
+  public void ligne(CharSequence ligne) {
+    lignes.add(ligne.toString());
+  }
+
+  /**
+   * Retourne les lignes écrites, dans l’ordre.
+   *
+   * @return une vue non modifiable des lignes
+   */
+  public List<String> getLignes() {
+    return Collections.unmodifiableList(lignes);
+  }
+
+  /**
+   * Oublie les lignes écrites, pour réutiliser ce résultat.
+   */
+  public void effacer() {
+    lignes.clear();
+  }
+}
@@ -0,0 +1,199 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serveur TCP exposant la grammaire de {@link DnsTUI} à plusieurs clients
+ * simultanés partageant une même base {@link Dns}.
+ * <p>
+ * Le serveur n’authentifie pas ses clients : par défaut, il n’écoute que sur
+ * l’adresse de bouclage, et sa grammaire est réduite aux recherches, aux listes
+ * et aux ajouts ({@link DnsTUI#analyserDistante(BaseDns, String)}), sans accès
+ * aux fichiers. Une ligne de plus de {@link #LONGUEUR_MAX_LIGNE} caractères
+ * n’est pas conservée : elle est ignorée et reçoit une réponse d’erreur.
+ * </p>
+ * <p>
+ * Chaque ligne reçue est interprétée puis exécutée ; sa réponse est suivie
+ * d’une ligne vide. Un client peut envoyer
+ * de nombreuses commandes sans attendre les réponses : elles sont traitées dans
+ * l’ordre de réception et les réponses ne sont envoyées sur le réseau que
+ * lorsqu’aucune autre commande n’est déjà disponible. La commande {@code quit}
+ * ferme la connexion sans arrêter le serveur.
+ * </p>
+ */
+public class ServeurDnsTcp implements Closeable {
+  /** Longueur maximale d’une ligne reçue, en caractères. */
+  public static final int LONGUEUR_MAX_LIGNE = 4096;
+
+  private final BaseDns dns;
+  private final ServerSocket socketServeur;
+  private final Set<Socket> connexions = ConcurrentHashMap.newKeySet();
+  private final Thread accueil;
+
+  /**
+   * Ouvre un serveur sur le port donné de l’adresse de bouclage : seuls les
+   * clients de la machine locale peuvent s’y connecter.
+   *
+   * @param dns  la base interrogée
+   * @param port le port d’écoute, ou 0 pour un port libre choisi par le système
+   * @throws IOException si le port ne peut pas être ouvert
+   */
+  public ServeurDnsTcp(BaseDns dns, int port) throws IOException {
+    this(dns, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+  }
+
+  /**
+   * Ouvre un serveur sur l’adresse donnée. Une adresse autre que celle de
+   * bouclage expose la base, sans authentification, à tous les clients qui
+   * peuvent l’atteindre.
+   *
+   * @param dns     la base interrogée
+   * @param adresse l’adresse d’écoute
+   * @throws IOException si l’adresse ne peut pas être ouverte
+   */
+  public ServeurDnsTcp(BaseDns dns, InetSocketAddress adresse) throws IOException {
+    this.dns = dns;
+    this.socketServeur = new ServerSocket();
+    this.socketServeur.bind(adresse);
+    this.accueil = new Thread(this::accepter, "dns-tcp");
+    this.accueil.setDaemon(true);
+  }
+
+  /**
+   * Démarre l’acceptation des connexions.
+   *
+   * @return ce serveur
+   */
+  public ServeurDnsTcp demarrer() {
+    accueil.start();
+    return this;
+  }
+
+  /**
+   * Retourne l’adresse sur laquelle le serveur écoute.
+   *
+   * @return l’adresse locale
+   */
+  public InetAddress getAdresse() {
+    return socketServeur.getInetAddress();
+  }
+
+  /**
+   * Retourne le port sur lequel le serveur écoute.
+   *
+   * @return le port local
+   */
+  public int getPort() {
+    return socketServeur.getLocalPort();
+  }
+
+  private void accepter() {
+    while (!socketServeur.isClosed()) {
+      try {
+        Socket socket = socketServeur.accept();
+        socket.setTcpNoDelay(true);
+        connexions.add(socket);
+        Thread fil = new Thread(() -> servir(socket), "dns-tcp-" + socket.getPort());
+        fil.setDaemon(true);
+        fil.start();
+      } catch (IOException e) {
+        if (!socketServeur.isClosed()) {
+          System.err.println("ERREUR : Connexion refusée : " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void servir(Socket socket) {
+    try (socket;
+        BufferedReader lecteur = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+      SortieTamponnee sortie = new SortieTamponnee(socket.getOutputStream(), StandardCharsets.UTF_8);
+      StringBuilder tampon = new StringBuilder();
+      while (lireLigne(lecteur, tampon)) {
+        if (tampon.length() > LONGUEUR_MAX_LIGNE) {
+          sortie.ligne("ERREUR : Ligne de plus de " + LONGUEUR_MAX_LIGNE + " caractères ignorée.");
+          sortie.ligne("");
+          continue;
+        }
+        String ligne = tampon.toString();
+        if (ligne.trim().equalsIgnoreCase("quit")) {
+          sortie.ligne("Fin de la connexion.");
+          sortie.vider();
+          break;
+        }
+        Commande commande = DnsTUI.analyserDistante(dns, ligne);
+        long debut = System.nanoTime();
+        commande.execute(sortie);
+        dns.getMetriques().commande(commande, System.nanoTime() - debut);
+        sortie.ligne("");
+        // Les réponses aux commandes déjà reçues partent ensemble.
+        if (!lecteur.ready()) {
+          sortie.vider();
+        }
+      }
+    } catch (SocketException | UncheckedIOException e) {
+      // Connexion fermée par le client ou par close().
+    } catch (IOException e) {
+      System.err.println("ERREUR : Connexion interrompue : " + e.getMessage());
+    } finally {
+      connexions.remove(socket);
+    }
+  }
+
+  /**
+   * Lit une ligne sans en garder plus de {@link #LONGUEUR_MAX_LIGNE} + 1
+   * caractères : au-delà, la fin de la ligne est lue sans être conservée et le
+   * tampon dépasse la limite.
+   *
+   * @param lecteur le flux de la connexion
+   * @param tampon  reçoit la ligne, sans sa fin de ligne
+   * @return {@code false} si la connexion est fermée avant toute donnée
+   * @throws IOException si la lecture échoue
+   */
+  private static boolean lireLigne(BufferedReader lecteur, StringBuilder tampon) throws IOException {
+    tampon.setLength(0);
+    int caractere;
+    while ((caractere = lecteur.read()) >= 0) {
+      if (caractere == '\n') {
+        break;
+      }
+      if (tampon.length() <= LONGUEUR_MAX_LIGNE) {
+        tampon.append((char) caractere);
+      }
+    }
+    if (caractere < 0 && tampon.length() == 0) {
+      return false;
+    }
+    int fin = tampon.length();
+    if (fin > 0 && fin <= LONGUEUR_MAX_LIGNE && tampon.charAt(fin - 1) == '\r') {
+      tampon.setLength(fin - 1);
+    }
+    return true;
+  }
+
+  /**
+   * Arrête le serveur et ferme toutes les connexions ouvertes.
+   *
+   * @throws IOException si la fermeture échoue
+   */
+  @Override
+  public void close() throws IOException {
+    socketServeur.close();
+    for (Socket socket : connexions) {
+      socket.close();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Serveur DNS sur UDP répondant aux requêtes {@code A} et {@code PTR} à partir
+ * d’une base {@link Dns}.
+ * <p>
+ * Le serveur fonctionne en boucle d’événements sur un seul fil d’exécution :
+ * chaque datagramme est reçu, traité par {@link CodecDns} puis la réponse est
+ * renvoyée, en réutilisant toujours les mêmes tampons de réception et
+ * d’émission. Les recherches dans {@link Dns} ne bloquant pas, un seul fil
+ * suffit à servir de nombreux clients.
+ * </p>
+ */
+public class ServeurDnsUdp implements Closeable {
+  private final BaseDns dns;
+  private final DatagramChannel canal;
+  private final Thread boucle;
+
+  /**
+   * Ouvre un serveur sur le port donné de toutes les interfaces.
+   *
+   * @param dns  la base interrogée
+   * @param port le port d’écoute, ou 0 pour un port libre choisi par le système
+   * @throws IOException si le port ne peut pas être ouvert
+   */
+  public ServeurDnsUdp(BaseDns dns, int port) throws IOException {
+    this(dns, new InetSocketAddress(port));
+  }
+
+  /**
+   * Ouvre un serveur sur l’adresse donnée.
+   *
+   * @param dns     la base interrogée
+   * @param adresse l’adresse d’écoute
+   * @throws IOException si l’adresse ne peut pas être ouverte
+   */
+  public ServeurDnsUdp(BaseDns dns, InetSocketAddress adresse) throws IOException {
+    this.dns = dns;
+    this.canal = DatagramChannel.open().bind(adresse);
+    this.boucle = new Thread(this::servir, "dns-udp");
+    this.boucle.setDaemon(true);
+  }
+
+  /**
+   * Démarre la boucle de traitement des requêtes.
+   *
+   * @return ce serveur
+   */
+  public ServeurDnsUdp demarrer() {
+    boucle.start();
+    return this;
+  }
+
+  /**
+   * Retourne le port sur lequel le serveur écoute.
+   *
+   * @return le port local
+   * @throws IOException si l’adresse locale ne peut pas être lue
+   */
+  public int getPort() throws IOException {
+    return ((InetSocketAddress) canal.getLocalAddress()).getPort();
+  }
+
+  private void servir() {
+    ByteBuffer requete = ByteBuffer.allocateDirect(CodecDns.TAILLE_MAX_UDP);
+    ByteBuffer reponse = ByteBuffer.allocateDirect(CodecDns.TAILLE_MAX_UDP);
+    StringBuilder nom = new StringBuilder(255);
+    while (canal.isOpen()) {
+      try {
+        requete.clear();
+        SocketAddress client = canal.receive(requete);
+        requete.flip();
+        if (CodecDns.repondre(requete, reponse, dns, nom)) {
+          canal.send(reponse, client);
+        }
+      } catch (AsynchronousCloseException e) {
+        return;
+      } catch (IOException | RuntimeException e) {
+        System.err.println("ERREUR : Requête DNS ignorée : " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Arrête le serveur et libère le port.
+   *
+   * @throws IOException si la fermeture échoue
+   */
+  @Override
+  public void close() throws IOException {
+    canal.close();
+  }
+}
@@ -0,0 +1,32 @@
+package fr.uvsq.cprog.collex;
+
+/**
+ * Destination du résultat d’une {@link Commande}.
+ * <p>
+ * Une commande y écrit ses lignes une à une ; la sortie peut les accumuler
+ * dans un tampon ({@link SortieTamponnee}) ou les conserver telles quelles
+ * ({@link ResultatCommande}). Rien n’oblige une sortie à transmettre une ligne
+ * avant l’appel à {@link #vider()}.
+ * </p>
+ */
+public interface SortieCommande {
+  /**
+   * Écrit une ligne de résultat, sans fin de ligne.
+   * <p>
+   * La séquence n’est lue que pendant l’appel : la commande peut réutiliser
+   * un même {@link StringBuilder} pour toutes ses lignes.
+   * </p>
+   *
+   * @param ligne le texte de la ligne
+   */
+  void ligne(CharSequence ligne);
+
+  /**
+   * Transmet à la destination tout ce qui a été écrit jusqu’ici.
+   * <p>
+   * Par défaut, ne fait rien.
+   * </p>
+   */
+  default void vider() {
+  }
+}
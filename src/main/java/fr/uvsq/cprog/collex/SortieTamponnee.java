@@ -0,0 +1,112 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Sortie accumulant les lignes dans un tampon et les écrivant par paquets sur
+ * un flux d’octets.
+ * <p>
+ * Les lignes sont ajoutées à un tampon de caractères ; dès qu’il atteint
+ * {@link #TAILLE_TAMPON} caractères, il est encodé dans un tampon d’octets
+ * réutilisé et écrit sur le flux en un seul appel, sans vider le flux. Le
+ * reste n’est écrit, et le flux vidé, qu’à l’appel de {@link #vider()} : une
+ * fois par commande dans la console, une fois par paquet de commandes reçues
+ * sur TCP.
+ * </p>
+ * <p>
+ * Contrairement à {@link java.io.PrintStream}, cette sortie n’est pas
+ * synchronisée et ne doit être utilisée que par un fil à la fois. Une erreur
+ * d’écriture est levée sous forme d’{@link UncheckedIOException}.
+ * </p>
+ */
+public class SortieTamponnee implements SortieCommande {
+  /** Nombre de caractères accumulés avant chaque écriture sur le flux. */
+  static final int TAILLE_TAMPON = 1 << 16;
+
+  private final OutputStream flux;
+  private final CharsetEncoder encodeur;
+  private final String finDeLigne = System.lineSeparator();
+  private final StringBuilder texte = new StringBuilder(TAILLE_TAMPON + 256);
+  private final ByteBuffer octets;
+
+  /**
+   * Construit une sortie écrivant dans l’encodage par défaut de la plateforme,
+   * celui de {@code System.out}.
+   *
+   * @param flux le flux de destination
+   */
+  public SortieTamponnee(OutputStream flux) {
+    this(flux, Charset.defaultCharset());
+  }
+
+  /**
+   * Construit une sortie écrivant dans l’encodage donné.
+   *
+   * @param flux     le flux de destination
+   * @param encodage l’encodage des caractères
+   */
+  public SortieTamponnee(OutputStream flux, Charset encodage) {
+    this.flux = flux;
+    this.encodeur = encodage.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.octets = ByteBuffer.allocate((int) (TAILLE_TAMPON * encodeur.averageBytesPerChar()) + 1024);
+  }
+
+  @Override
+  public void ligne(CharSequence ligne) {
+    texte.append(ligne).append(finDeLigne);
+    if (texte.length() >= TAILLE_TAMPON) {
+      ecrire();
+    }
+  }
+
+  /**
+   * Écrit le texte en attente et vide le flux.
+   *
+   * @throws UncheckedIOException si l’écriture échoue
+   */
+  @Override
+  public void vider() {
+    ecrire();
+    try {
+      flux.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void ecrire() {
+    if (texte.length() == 0) {
+      return;
+    }
+    try {
+      CharBuffer caracteres = CharBuffer.wrap(texte);
+      while (encodeur.encode(caracteres, octets, true).isOverflow()) {
+        envoyer();
+      }
+      while (encodeur.flush(octets).isOverflow()) {
+        envoyer();
+      }
+      envoyer();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      encodeur.reset();
+      octets.clear();
+      texte.setLength(0);
+    }
+  }
+
+  private void envoyer() throws IOException {
+    flux.write(octets.array(), 0, octets.position());
+    octets.clear();
+  }
+}
@@ -0,0 +1,122 @@
+package fr.uvsq.cprog.collex;
+
+import java.beans.ConstructorProperties;
+import java.util.Locale;
+
+/**
+ * Résumé des latences d’une opération, exposé par {@link MetriquesDnsMXBean}.
+ * Les durées sont en nanosecondes : une recherche dure bien moins d’une
+ * microseconde.
+ */
+public class StatistiquesLatence {
+  private final String operation;
+  private final long nombre;
+  private final long moyenneNanos;
+  private final long p50Nanos;
+  private final long p99Nanos;
+  private final long maxNanos;
+
+  /**
+   * Construit un résumé de latences.
+   *
+   * @param operation    le nom de l’opération
+   * @param nombre       le nombre de mesures
+   * @param moyenneNanos la durée moyenne en nanosecondes
+   * @param p50Nanos     la médiane en nanosecondes
+   * @param p99Nanos     le 99e centile en nanosecondes
+   * @param maxNanos     la durée maximale en nanosecondes
+   */
+  @ConstructorProperties({"operation", "nombre", "moyenneNanos", "p50Nanos", "p99Nanos", "maxNanos"})
+  public StatistiquesLatence(String operation, long nombre, long moyenneNanos, long p50Nanos, long p99Nanos,
+      long maxNanos) {
+    this.operation = operation;
+    this.nombre = nombre;
+    this.moyenneNanos = moyenneNanos;
+    this.p50Nanos = p50Nanos;
+    this.p99Nanos = p99Nanos;
+    this.maxNanos = maxNanos;
+  }
+
+  /**
+   * Construit le résumé d’un histogramme.
+   *
+   * @param operation  le nom de l’opération
+   * @param histogramme les durées mesurées
+   * @return le résumé
+   */
+  static StatistiquesLatence resumer(String operation, Histogramme histogramme) {
+    return new StatistiquesLatence(operation, histogramme.nombre(), histogramme.moyenne(),
+        histogramme.quantile(0.5), histogramme.quantile(0.99), histogramme.max());
+  }
+
+  /**
+   * Formate une durée en microsecondes avec trois décimales, pour que les
+   * durées inférieures à la microseconde restent lisibles.
+   *
+   * @param nanos la durée en nanosecondes
+   * @return la durée suivie de l’unité, par exemple {@code 0.184 µs}
+   */
+  static String formater(long nanos) {
+    return String.format(Locale.ROOT, "%.3f µs", nanos / 1_000.0);
+  }
+
+  /**
+   * Retourne le nom de l’opération.
+   *
+   * @return le nom de l’opération
+   */
+  public String getOperation() {
+    return operation;
+  }
+
+  /**
+   * Retourne le nombre de mesures.
+   *
+   * @return le nombre de mesures
+   */
+  public long getNombre() {
+    return nombre;
+  }
+
+  /**
+   * Retourne la durée moyenne en nanosecondes.
+   *
+   * @return la durée moyenne en nanosecondes
+   */
+  public long getMoyenneNanos() {
+    return moyenneNanos;
+  }
+
+  /**
+   * Retourne la médiane en nanosecondes.
+   *
+   * @return la médiane en nanosecondes
+   */
+  public long getP50Nanos() {
+    return p50Nanos;
+  }
+
+  /**
+   * Retourne le 99e centile en nanosecondes.
+   *
+   * @return le 99e centile en nanosecondes
+   */
+  public long getP99Nanos() {
+    return p99Nanos;
+  }
+
+  /**
+   * Retourne la durée maximale en nanosecondes.
+   *
+   * @return la durée maximale en nanosecondes
+   */
+  public long getMaxNanos() {
+    return maxNanos;
+  }
+
+  @Override
+  public String toString() {
+    return operation + " : " + nombre + " mesures, moyenne " + formater(moyenneNanos) + ", p50 "
+        + formater(p50Nanos) + ", p99 " + formater(p99Nanos) + ", max " + formater(maxNanos);
+  }
+}
@@ -0,0 +1,500 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Format sur disque d’une base DNS en lecture seule, à la manière d’une
+ * SSTable : deux suites d’enregistrements triées, découpées en blocs de taille
+ * fixe, et un index clairsemé donnant la première clé de chaque bloc.
+ * <p>
+ * Le fichier contient, dans l’ordre (entiers en gros-boutiste) :
+ * </p>
+ * <ul>
+ * <li>un en-tête, dans le premier bloc : le nombre magique {@code DNST}, la
+ * version du format, des drapeaux, le nombre d’enregistrements, la taille des
+ * blocs, le nombre de blocs de chaque suite et la position de l’index ;</li>
+ * <li>les blocs de la suite triée par nom, puis ceux de la suite triée par
+ * adresse. Un bloc ne contient que des enregistrements entiers : longueur de la
+ * clé sur 16 bits (dont le bit de poids fort signale une adresse IPv6),
+ * adresse (IPv4 sur 32 bits ou IPv6 sur 128 bits) puis clé ; une longueur nulle
+ * marque la fin du bloc ;</li>
+ * <li>l’index : pour chaque bloc, sa première clé de tri (longueur sur 16 bits
+ * puis octets) ;</li>
+ * <li>la somme de contrôle CRC32 de l’en-tête et de l’index, sur 64 bits.</li>
+ * </ul>
+ * <p>
+ * La clé d’un enregistrement est formée des octets UTF-8 du domaine, d’un octet
+ * nul et des octets UTF-8 du nom d’hôte : comparées comme des octets non
+ * signés, les clés regroupent les machines d’un domaine et les rangent par nom
+ * d’hôte. La clé de tri de la suite par adresse est un octet de famille (0 pour
+ * IPv4, 1 pour IPv6) suivi de l’adresse, ce qui reproduit l’ordre de
+ * {@link AdresseIP#compareTo(AdresseIP)}.
+ * </p>
+ */
+public final class TableTriee {
+  /** Version courante du format. */
+  public static final short VERSION = 1;
+  /** Taille d’un bloc, en octets. */
+  public static final int TAILLE_BLOC = 4096;
+  /** Extension des fichiers de table triée, reconnue par {@link CommandeConvertir}. */
+  public static final String EXTENSION = ".sst";
+
+  private static final int MAGIE = 0x444E5354;
+  private static final int TAILLE_EN_TETE = 4 + 2 + 2 + 8 + 4 + 4 + 4 + 8;
+  private static final int BIT_IPV6 = 0x8000;
+  private static final int LONGUEUR_CLE = 0x7FFF;
+  private static final int LONGUEUR_MAX = TAILLE_BLOC - 2 - 16;
+
+  private TableTriee() {
+  }
+
+  /**
+   * En-tête et index clairsemé d’une table, seule partie du fichier gardée en
+   * mémoire.
+   */
+  static final class Sommaire {
+    /** Nombre d’enregistrements de la table. */
+    final long nombre;
+    /** Taille d’un bloc, en octets. */
+    final int tailleBloc;
+    /** Index des blocs de la suite triée par nom. */
+    final Index parNom;
+    /** Index des blocs de la suite triée par adresse. */
+    final Index parAdresse;
+
+    Sommaire(long nombre, int tailleBloc, Index parNom, Index parAdresse) {
+      this.nombre = nombre;
+      this.tailleBloc = tailleBloc;
+      this.parNom = parNom;
+      this.parAdresse = parAdresse;
+    }
+  }
+
+  /**
+   * Index clairsemé d’une suite : la première clé de chacun de ses blocs, mises
+   * bout à bout dans un seul tableau.
+   */
+  static final class Index {
+    private final byte[] cles;
+    private final int[] debuts;
+    private final long premierBloc;
+    private final int tailleBloc;
+    private final boolean parAdresse;
+
+    Index(byte[] cles, int[] debuts, long premierBloc, int tailleBloc, boolean parAdresse) {
+      this.cles = cles;
+      this.debuts = debuts;
+      this.premierBloc = premierBloc;
+      this.tailleBloc = tailleBloc;
+      this.parAdresse = parAdresse;
+    }
+
+    /**
+     * Retourne le nombre de blocs de la suite.
+     *
+     * @return le nombre de blocs
+     */
+    int blocs() {
+      return debuts.length - 1;
+    }
+
+    /**
+     * Retourne la position d’un bloc dans le fichier.
+     *
+     * @param bloc le numéro du bloc dans la suite
+     * @return sa position, en octets
+     */
+    long position(int bloc) {
+      return premierBloc + (long) bloc * tailleBloc;
+    }
+
+    /**
+     * Cherche par dichotomie le dernier bloc dont la première clé est
+     * inférieure ou égale à une clé : c’est le seul qui peut la contenir.
+     *
+     * @param cle la clé de tri recherchée
+     * @return le numéro du bloc, ou -1 si la clé précède toute la suite
+     */
+    int dernierBloc(byte[] cle) {
+      int bas = 0;
+      int haut = blocs() - 1;
+      while (bas <= haut) {
+        int milieu = (bas + haut) >>> 1;
+        if (Arrays.compareUnsigned(cles, debuts[milieu], debuts[milieu + 1], cle, 0, cle.length) <= 0) {
+          bas = milieu + 1;
+        } else {
+          haut = milieu - 1;
+        }
+      }
+      return haut;
+    }
+
+    /**
+     * Compare la clé de tri d’un enregistrement à une clé.
+     *
+     * @param bloc          le bloc lu
+     * @param enregistrement la position de l’enregistrement dans le bloc
+     * @param cle           la clé de tri
+     * @return un entier négatif, nul ou positif selon que l’enregistrement
+     *         précède, égale ou suit la clé
+     */
+    int comparer(ByteBuffer bloc, int enregistrement, byte[] cle) {
+      if (!parAdresse) {
+        return comparerOctets(bloc, debutCle(bloc, enregistrement), longueurCle(bloc, enregistrement),
+            cle, 0, cle.length);
+      }
+      int famille = estIpv6(bloc, enregistrement) ? 1 : 0;
+      if (famille != cle[0]) {
+        return Integer.compare(famille, cle[0]);
+      }
+      return comparerOctets(bloc, enregistrement + 2, famille == 1 ? 16 : 4, cle, 1, cle.length - 1);
+    }
+  }
+
+  /**
+   * Écrit une table triée contenant les enregistrements donnés. Comme au
+   * chargement d’un {@link Dns}, un enregistrement dont le nom ou l’adresse a
+   * déjà été rencontré est ignoré.
+   * <p>
+   * Les enregistrements sont encodés et triés en mémoire avant l’écriture ;
+   * seule la lecture de la table se passe de charger la base.
+   * </p>
+   *
+   * @param items   les enregistrements à écrire
+   * @param fichier le fichier de destination, remplacé atomiquement
+   * @return le nombre d’enregistrements écrits
+   * @throws IOException si une erreur d’écriture se produit ou si un nom est
+   *                     trop long pour tenir dans un bloc
+   */
+  public static int ecrire(Collection<DnsItem> items, Path fichier) throws IOException {
+    List<byte[]> enregistrements = new ArrayList<>(items.size());
+    Set<AdresseIP> adresses = new HashSet<>(items.size() * 2);
+    Set<String> noms = new HashSet<>(items.size() * 2);
+    for (DnsItem item : items) {
+      String nom = item.getNomMachine().getNomComplet();
+      if (!adresses.contains(item.getAdresseIP()) && !noms.contains(nom)) {
+        adresses.add(item.getAdresseIP());
+        noms.add(nom);
+        enregistrements.add(encoder(item));
+      }
+    }
+
+    Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+    ByteArrayOutputStream octetsIndex = new ByteArrayOutputStream();
+    DataOutputStream index = new DataOutputStream(octetsIndex);
+    try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      enregistrements.sort(TableTriee::comparerNoms);
+      int blocsNoms = ecrireSuite(canal, TAILLE_BLOC, enregistrements, false, index);
+      enregistrements.sort(TableTriee::comparerAdresses);
+      int blocsAdresses = ecrireSuite(canal, TAILLE_BLOC * (1L + blocsNoms), enregistrements, true, index);
+      long positionIndex = TAILLE_BLOC * (1L + blocsNoms + blocsAdresses);
+
+      ByteBuffer enTete = ByteBuffer.allocate(TAILLE_EN_TETE);
+      enTete.putInt(MAGIE).putShort(VERSION).putShort((short) 0).putLong(enregistrements.size())
+          .putInt(TAILLE_BLOC).putInt(blocsNoms).putInt(blocsAdresses).putLong(positionIndex);
+      byte[] octets = octetsIndex.toByteArray();
+      CRC32 crc = new CRC32();
+      crc.update(enTete.array());
+      crc.update(octets);
+      ecrireTout(canal, enTete.flip(), 0);
+      ecrireTout(canal, ByteBuffer.wrap(octets), positionIndex);
+      ecrireTout(canal, ByteBuffer.allocate(8).putLong(0, crc.getValue()), positionIndex + octets.length);
+    }
+    Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return enregistrements.size();
+  }
+
+  /**
+   * Écrit une suite triée bloc par bloc et ajoute la première clé de chaque
+   * bloc à l’index.
+   *
+   * @return le nombre de blocs écrits
+   */
+  private static int ecrireSuite(FileChannel canal, long position, List<byte[]> enregistrements,
+      boolean parAdresse, DataOutputStream index) throws IOException {
+    ByteBuffer bloc = ByteBuffer.allocate(TAILLE_BLOC);
+    int blocs = 0;
+    for (byte[] enregistrement : enregistrements) {
+      if (bloc.remaining() < enregistrement.length) {
+        ecrireTout(canal, bloc.clear(), position + (long) blocs++ * TAILLE_BLOC);
+        Arrays.fill(bloc.array(), (byte) 0);
+        bloc.clear();
+      }
+      if (bloc.position() == 0) {
+        byte[] cle = parAdresse ? cleTriAdresse(enregistrement) : cleNom(enregistrement);
+        index.writeShort(cle.length);
+        index.write(cle);
+      }
+      bloc.put(enregistrement);
+    }
+    if (bloc.position() > 0) {
+      ecrireTout(canal, bloc.clear(), position + (long) blocs++ * TAILLE_BLOC);
+    }
+    return blocs;
+  }
+
+  private static void ecrireTout(FileChannel canal, ByteBuffer tampon, long position) throws IOException {
+    while (tampon.hasRemaining()) {
+      position += canal.write(tampon, position);
+    }
+  }
+
+  private static byte[] encoder(DnsItem item) throws IOException {
+    NomMachine nom = item.getNomMachine();
+    byte[] cle = cleNom(nom.getNomDomaine(), nom.getNomMachine());
+    if (cle.length > LONGUEUR_MAX) {
+      throw new IOException("Nom trop long pour une table triée : " + nom);
+    }
+    AdresseIP adresse = item.getAdresseIP();
+    boolean ipv6 = adresse.estIpv6();
+    ByteBuffer enregistrement = ByteBuffer.allocate(2 + (ipv6 ? 16 : 4) + cle.length);
+    enregistrement.putShort((short) (cle.length | (ipv6 ? BIT_IPV6 : 0)));
+    if (ipv6) {
+      enregistrement.putLong(adresse.getPoidsFort());
+      enregistrement.putLong(adresse.getPoidsFaible());
+    } else {
+      enregistrement.putInt(adresse.getValeur());
+    }
+    return enregistrement.put(cle).array();
+  }
+
+  private static int debutCle(byte[] enregistrement) {
+    return (enregistrement[0] & 0x80) != 0 ? 18 : 6;
+  }
+
+  private static byte[] cleNom(byte[] enregistrement) {
+    return Arrays.copyOfRange(enregistrement, debutCle(enregistrement), enregistrement.length);
+  }
+
+  private static byte[] cleTriAdresse(byte[] enregistrement) {
+    byte[] cle = Arrays.copyOfRange(enregistrement, 1, debutCle(enregistrement));
+    cle[0] = (byte) ((enregistrement[0] & 0x80) != 0 ? 1 : 0);
+    return cle;
+  }
+
+  private static int comparerNoms(byte[] a, byte[] b) {
+    return Arrays.compareUnsigned(a, debutCle(a), a.length, b, debutCle(b), b.length);
+  }
+
+  private static int comparerAdresses(byte[] a, byte[] b) {
+    int cmp = Boolean.compare((a[0] & 0x80) != 0, (b[0] & 0x80) != 0);
+    return cmp != 0 ? cmp : Arrays.compareUnsigned(a, 2, debutCle(a), b, 2, debutCle(b));
+  }
+
+  /**
+   * Retourne la clé d’un nom : domaine, octet nul puis nom d’hôte. Avec un nom
+   * d’hôte vide, la clé est le préfixe commun à toutes les machines du domaine.
+   *
+   * @param domaine le nom de domaine
+   * @param hote    le nom d’hôte, éventuellement vide
+   * @return la clé, en octets UTF-8
+   */
+  static byte[] cleNom(String domaine, String hote) {
+    byte[] octetsDomaine = domaine.getBytes(StandardCharsets.UTF_8);
+    byte[] octetsHote = hote.getBytes(StandardCharsets.UTF_8);
+    byte[] cle = Arrays.copyOf(octetsDomaine, octetsDomaine.length + 1 + octetsHote.length);
+    System.arraycopy(octetsHote, 0, cle, octetsDomaine.length + 1, octetsHote.length);
+    return cle;
+  }
+
+  /**
+   * Retourne la clé de tri d’une adresse dans la suite par adresse.
+   *
+   * @param adresse l’adresse IPv4 ou IPv6
+   * @return l’octet de famille suivi des octets de l’adresse
+   */
+  static byte[] cleAdresse(AdresseIP adresse) {
+    byte[] octets = adresse.getOctets();
+    byte[] cle = new byte[octets.length + 1];
+    cle[0] = (byte) (adresse.estIpv6() ? 1 : 0);
+    System.arraycopy(octets, 0, cle, 1, octets.length);
+    return cle;
+  }
+
+  /**
+   * Indique si un bloc contient un enregistrement à une position donnée.
+   *
+   * @param bloc           le bloc lu
+   * @param enregistrement la position dans le bloc
+   * @return {@code false} à la fin des enregistrements du bloc
+   */
+  static boolean existe(ByteBuffer bloc, int enregistrement) {
+    return enregistrement <= bloc.limit() - 2 && bloc.getShort(enregistrement) != 0;
+  }
+
+  static boolean estIpv6(ByteBuffer bloc, int enregistrement) {
+    return (bloc.getShort(enregistrement) & BIT_IPV6) != 0;
+  }
+
+  static int longueurCle(ByteBuffer bloc, int enregistrement) {
+    return bloc.getShort(enregistrement) & LONGUEUR_CLE;
+  }
+
+  static int debutCle(ByteBuffer bloc, int enregistrement) {
+    return enregistrement + (estIpv6(bloc, enregistrement) ? 18 : 6);
+  }
+
+  /**
+   * Retourne la position de l’enregistrement qui suit.
+   *
+   * @param bloc           le bloc lu
+   * @param enregistrement la position d’un enregistrement
+   * @return la position de l’enregistrement suivant
+   */
+  static int suivant(ByteBuffer bloc, int enregistrement) {
+    return debutCle(bloc, enregistrement) + longueurCle(bloc, enregistrement);
+  }
+
+  /**
+   * Compare une zone d’un bloc à une partie d’un tableau, octet par octet non
+   * signé.
+   */
+  static int comparerOctets(ByteBuffer bloc, int debut, int longueur, byte[] cle, int debutCle,
+      int longueurCle) {
+    int communs = Math.min(longueur, longueurCle);
+    for (int i = 0; i < communs; i++) {
+      int cmp = Byte.compareUnsigned(bloc.get(debut + i), cle[debutCle + i]);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(longueur, longueurCle);
+  }
+
+  /**
+   * Construit l’objet {@link DnsItem} d’un enregistrement.
+   *
+   * @param bloc           le bloc lu
+   * @param enregistrement la position de l’enregistrement dans le bloc
+   * @return un nouvel objet, indépendant du bloc
+   */
+  static DnsItem decoder(ByteBuffer bloc, int enregistrement) {
+    AdresseIP ip = estIpv6(bloc, enregistrement)
+        ? new AdresseIP(bloc.getLong(enregistrement + 2), bloc.getLong(enregistrement + 10))
+        : new AdresseIP(bloc.getInt(enregistrement + 2));
+    byte[] cle = new byte[longueurCle(bloc, enregistrement)];
+    bloc.get(debutCle(bloc, enregistrement), cle);
+    int separateur = 0;
+    while (cle[separateur] != 0) {
+      separateur++;
+    }
+    String domaine = new String(cle, 0, separateur, StandardCharsets.UTF_8);
+    String hote = new String(cle, separateur + 1, cle.length - separateur - 1, StandardCharsets.UTF_8);
+    return new DnsItem(ip, new NomMachine(hote + "." + domaine, hote.length()));
+  }
+
+  /**
+   * Lit l’en-tête et l’index clairsemé d’une table, sans lire ses blocs.
+   *
+   * @param canal   le canal ouvert en lecture sur la table
+   * @param fichier le fichier, pour les messages d’erreur
+   * @return le sommaire de la table
+   * @throws IOException si le fichier est illisible, corrompu ou d’une version
+   *                     inconnue
+   */
+  static Sommaire lireSommaire(FileChannel canal, Path fichier) throws IOException {
+    long taille = canal.size();
+    if (taille < TAILLE_BLOC + 8) {
+      throw new IOException("Taille de table triée invalide : " + fichier);
+    }
+    ByteBuffer enTete = lireTout(canal, TAILLE_EN_TETE, 0, fichier);
+    if (enTete.getInt() != MAGIE) {
+      throw new IOException("Ce fichier n'est pas une table triée DNS : " + fichier);
+    }
+    short version = enTete.getShort();
+    if (version != VERSION) {
+      throw new IOException("Version de table triée non prise en charge : " + version);
+    }
+    enTete.getShort();
+    long nombre = enTete.getLong();
+    int tailleBloc = enTete.getInt();
+    int blocsNoms = enTete.getInt();
+    int blocsAdresses = enTete.getInt();
+    long positionIndex = enTete.getLong();
+    long tailleIndex = taille - 8 - positionIndex;
+    if (tailleBloc <= 0 || blocsNoms < 0 || blocsAdresses < 0 || tailleIndex < 0
+        || tailleIndex > Integer.MAX_VALUE - 8
+        || positionIndex != (long) tailleBloc * (1L + blocsNoms + blocsAdresses)) {
+      throw new IOException("En-tête de table triée invalide : " + fichier);
+    }
+    ByteBuffer index = lireTout(canal, (int) tailleIndex + 8, positionIndex, fichier);
+    CRC32 crc = new CRC32();
+    crc.update(enTete.array());
+    crc.update(index.array(), 0, (int) tailleIndex);
+    if (crc.getValue() != index.getLong((int) tailleIndex)) {
+      throw new IOException("Somme de contrôle invalide : " + fichier);
+    }
+    index.limit((int) tailleIndex);
+    try {
+      return new Sommaire(nombre, tailleBloc,
+          lireIndex(index, blocsNoms, tailleBloc, tailleBloc, false),
+          lireIndex(index, blocsAdresses, tailleBloc * (1L + blocsNoms), tailleBloc, true));
+    } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+      throw new IOException("Index de table triée tronqué : " + fichier, e);
+    }
+  }
+
+  private static Index lireIndex(ByteBuffer index, int blocs, long premierBloc, int tailleBloc,
+      boolean parAdresse) {
+    int[] debuts = new int[blocs + 1];
+    int debut = index.position();
+    for (int b = 0; b < blocs; b++) {
+      int longueur = Short.toUnsignedInt(index.getShort());
+      debuts[b + 1] = debuts[b] + longueur;
+      index.position(index.position() + longueur);
+    }
+    byte[] cles = new byte[debuts[blocs]];
+    int position = debut;
+    for (int b = 0; b < blocs; b++) {
+      int longueur = debuts[b + 1] - debuts[b];
+      index.get(position + 2, cles, debuts[b], longueur);
+      position += 2 + longueur;
+    }
+    return new Index(cles, debuts, premierBloc, tailleBloc, parAdresse);
+  }
+
+  private static ByteBuffer lireTout(FileChannel canal, int taille, long position, Path fichier)
+      throws IOException {
+    ByteBuffer tampon = ByteBuffer.allocate(taille);
+    while (tampon.hasRemaining()) {
+      if (canal.read(tampon, position + tampon.position()) < 0) {
+        throw new IOException("Table triée tronquée : " + fichier);
+      }
+    }
+    return tampon.flip();
+  }
+
+  /**
+   * Convertit un fichier texte ou un instantané binaire en table triée.
+   *
+   * @param source      le fichier à convertir, dont le format est détecté
+   * @param destination la table à produire
+   * @return le nombre d’enregistrements écrits
+   * @throws IOException              si une erreur d’entrée/sortie se produit
+   * @throws IllegalArgumentException si le fichier texte contient une ligne
+   *                                  invalide
+   */
+  public static int convertir(Path source, Path destination) throws IOException {
+    List<DnsItem> items = InstantaneBinaire.estInstantane(source)
+        ? InstantaneBinaire.lire(source) : ChargeurBase.charger(source);
+    return ecrire(items, destination);
+  }
+}
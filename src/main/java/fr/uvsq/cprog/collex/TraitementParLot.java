@@ -0,0 +1,169 @@
+package fr.uvsq.cprog.collex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Exécution non interactive d’un lot de commandes de la grammaire de
+ * {@link DnsTUI}, lues une par ligne.
+ * <p>
+ * Les commandes sont exécutées dans l’ordre, sans invite, et leurs résultats
+ * écrits sur une même {@link SortieCommande}, que le lot ne vide pas. Les
+ * lignes vides et celles commençant par {@code #} sont ignorées ; une ligne
+ * {@code quit} termine le lot. Une commande est comptée en erreur si l’une des
+ * lignes qu’elle écrit commence par {@code ERREUR}.
+ * </p>
+ * <p>
+ * La durée d’exécution de chaque commande est enregistrée, par type de
+ * commande, dans un {@link Histogramme} propre au lot ainsi que dans les
+ * métriques de la base. Le {@link #rapport(SortieCommande) rapport} donne le
+ * débit du lot et les centiles de latence de chaque type.
+ * </p>
+ */
+public class TraitementParLot {
+  /** Taille en caractères du tampon de lecture conseillé pour l’entrée. */
+  public static final int TAILLE_LECTURE = 1 << 16;
+
+  private static final String ERREUR = "ERREUR";
+
+  private final BaseDns dns;
+  private final Map<Class<?>, Histogramme> latencesParType = new HashMap<>();
+  private final Map<String, Histogramme> latences = new TreeMap<>();
+  private long commandes;
+  private long erreurs;
+  private long duree;
+
+  /**
+   * Construit un traitement par lot sur une base donnée.
+   *
+   * @param dns la base interrogée
+   */
+  public TraitementParLot(BaseDns dns) {
+    this.dns = dns;
+  }
+
+  /**
+   * Exécute les commandes lues jusqu’à la fin de l’entrée ou jusqu’à une
+   * ligne {@code quit}.
+   *
+   * @param entree l’entrée, lue ligne à ligne
+   * @param sortie la sortie des résultats, qui n’est pas vidée
+   * @throws IOException si la lecture de l’entrée échoue
+   */
+  public void executer(BufferedReader entree, SortieCommande sortie) throws IOException {
+    SortieSurveillee surveillee = new SortieSurveillee(sortie);
+    long debut = System.nanoTime();
+    try {
+      String ligne;
+      while ((ligne = entree.readLine()) != null) {
+        String texte = ligne.trim();
+        if (texte.isEmpty() || texte.startsWith("#")) {
+          continue;
+        }
+        if (texte.equalsIgnoreCase("quit")) {
+          break;
+        }
+        Commande commande = DnsTUI.analyser(dns, texte);
+        surveillee.erreur = false;
+        long avant = System.nanoTime();
+        commande.execute(surveillee);
+        long nanos = System.nanoTime() - avant;
+        histogramme(commande.getClass()).enregistrer(nanos);
+        dns.getMetriques().commande(commande, nanos);
+        commandes++;
+        if (surveillee.erreur) {
+          erreurs++;
+        }
+      }
+    } finally {
+      duree += System.nanoTime() - debut;
+    }
+  }
+
+  private Histogramme histogramme(Class<?> type) {
+    Histogramme histogramme = latencesParType.get(type);
+    if (histogramme == null) {
+      histogramme = latences.computeIfAbsent(MetriquesDns.nomCommande(type), n -> new Histogramme());
+      latencesParType.put(type, histogramme);
+    }
+    return histogramme;
+  }
+
+  /**
+   * Écrit le bilan du lot : nombre de commandes, erreurs, durée totale et
+   * débit, puis, pour chaque type de commande, le nombre d’exécutions et les
+   * centiles 50, 90 et 99 et le maximum de leur durée.
+   *
+   * @param sortie la sortie du bilan
+   */
+  public void rapport(SortieCommande sortie) {
+    long millis = duree / 1_000_000;
+    long debit = commandes * 1_000_000_000L / Math.max(1, duree);
+    sortie.ligne("Lot terminé : " + commandes + " commandes, " + erreurs + " erreurs en " + millis + " ms ("
+        + debit + " commandes/s)");
+    latences.forEach((nom, histogramme) -> sortie.ligne("  " + nom + " : " + histogramme.nombre()
+        + " commandes, p50 " + StatistiquesLatence.formater(histogramme.quantile(0.5))
+        + ", p90 " + StatistiquesLatence.formater(histogramme.quantile(0.9))
+        + ", p99 " + StatistiquesLatence.formater(histogramme.quantile(0.99))
+        + ", max " + StatistiquesLatence.formater(histogramme.max())));
+  }
+
+  /**
+   * Retourne le nombre de commandes exécutées.
+   *
+   * @return le nombre de commandes
+   */
+  public long getCommandes() {
+    return commandes;
+  }
+
+  /**
+   * Retourne le nombre de commandes ayant signalé une erreur.
+   *
+   * @return le nombre d’erreurs
+   */
+  public long getErreurs() {
+    return erreurs;
+  }
+
+  /**
+   * Sortie relayant les lignes d’une commande et notant si l’une d’elles
+   * signale une erreur.
+   */
+  private static final class SortieSurveillee implements SortieCommande {
+    private final SortieCommande sortie;
+    private boolean erreur;
+
+    SortieSurveillee(SortieCommande sortie) {
+      this.sortie = sortie;
+    }
+
+    @Override
+    public void ligne(CharSequence ligne) {
+      if (!erreur && commencePar(ligne, ERREUR)) {
+        erreur = true;
+      }
+      sortie.ligne(ligne);
+    }
+
+    @Override
+    public void vider() {
+      sortie.vider();
+    }
+
+    private static boolean commencePar(CharSequence ligne, String prefixe) {
+      if (ligne.length() < prefixe.length()) {
+        return false;
+      }
+      for (int i = 0; i < prefixe.length(); i++) {
+        if (ligne.charAt(i) != prefixe.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
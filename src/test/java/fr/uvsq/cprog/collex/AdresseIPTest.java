@@ -1,8 +1,10 @@
 package fr.uvsq.cprog.collex;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -74,4 +76,47 @@ public class AdresseIPTest {
     AdresseIP ip4 = new AdresseIP("10.255.255.255");
     assertTrue(ip3.compareTo(ip4) > 0);
   }
+
+  @Test
+  public void testCompareTo_octetsSuperieursA127() {
+    AdresseIP ip1 = new AdresseIP("127.255.255.255");
+    AdresseIP ip2 = new AdresseIP("128.0.0.0");
+    AdresseIP ip3 = new AdresseIP("255.0.0.1");
+    assertTrue(ip1.compareTo(ip2) < 0);
+    assertTrue(ip2.compareTo(ip3) < 0);
+  }
+
+  @Test
+  public void testValeurEntiere() {
+    AdresseIP ip = new AdresseIP("193.51.31.90");
+    assertEquals(0xC1331F5A, ip.getValeur());
+    assertArrayEquals(new byte[] {(byte) 193, 51, 31, 90}, ip.getOctets());
+  }
+
+  @Test
+  public void testFormeCanonique() {
+    AdresseIP ip = new AdresseIP("010.000.0.01");
+    assertEquals("10.0.0.1", ip.getIp());
+    assertEquals(new AdresseIP("10.0.0.1"), ip);
+  }
+
+  @Test
+  public void testDepuisEntier() {
+    AdresseIP ip = AdresseIP.depuisEntier(0xC0A80001);
+    assertEquals("192.168.0.1", ip.getIp());
+    assertEquals(new AdresseIP("192.168.0.1"), ip);
+    assertEquals(new AdresseIP("192.168.0.1").hashCode(), ip.hashCode());
+    assertSame(ip, AdresseIP.depuisEntier(0xC0A80001));
+  }
+
+  @Test
+  public void testDepuisOctets() {
+    AdresseIP ip = AdresseIP.depuisOctets(new byte[] {(byte) 255, 0, (byte) 128, 1});
+    assertEquals("255.0.128.1", ip.getIp());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDepuisOctetsTailleInvalide() {
+    AdresseIP.depuisOctets(new byte[] {1, 2, 3});
+  }
 }
@@ -0,0 +1,138 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AdresseIPv6Test {
+  @Test
+  public void testFormesAbregees() {
+    assertEquals(AdresseIP.depuisEntiers(0, 0), AdresseIP.depuisTexte("::"));
+    assertEquals(AdresseIP.depuisEntiers(0, 1), AdresseIP.depuisTexte("::1"));
+    assertEquals(AdresseIP.depuisEntiers(0x0001_0000_0000_0000L, 0), AdresseIP.depuisTexte("1::"));
+    assertEquals(AdresseIP.depuisEntiers(0x2001_0db8_0000_0000L, 0x0000_0000_0000_0001L),
+        AdresseIP.depuisTexte("2001:db8::1"));
+    assertEquals(AdresseIP.depuisEntiers(0x2001_0db8_0000_0000L, 0x0000_0000_0000_0001L),
+        AdresseIP.depuisTexte("2001:0DB8:0000:0000:0000:0000:0000:0001"));
+    assertEquals(AdresseIP.depuisEntiers(0x0001_0002_0003_0000L, 0x0005_0006_0007_0008L),
+        AdresseIP.depuisTexte("1:2:3::5:6:7:8"));
+    assertEquals(AdresseIP.depuisEntiers(0, 0x0000_ffff_c000_0201L),
+        AdresseIP.depuisTexte("::ffff:192.0.2.1"));
+    assertEquals(AdresseIP.depuisEntiers(0x0064_ff9b_0000_0000L, 0x0000_0000_c000_0201L),
+        AdresseIP.depuisTexte("64:ff9b::192.0.2.1"));
+  }
+
+  @Test
+  public void testEstValide() {
+    assertTrue(AdresseIP.estValide("fe80::1"));
+    assertTrue(AdresseIP.estValide("1:2:3:4:5:6:7:8"));
+    assertFalse(AdresseIP.estValide(null));
+    assertFalse(AdresseIP.estValide(""));
+    assertFalse(AdresseIP.estValide(":"));
+    assertFalse(AdresseIP.estValide(":::"));
+    assertFalse(AdresseIP.estValide(":1"));
+    assertFalse(AdresseIP.estValide("1:"));
+    assertFalse(AdresseIP.estValide("1::2::3"));
+    assertFalse(AdresseIP.estValide("1:2:3:4:5:6:7"));
+    assertFalse(AdresseIP.estValide("1:2:3:4:5:6:7:8:9"));
+    assertFalse(AdresseIP.estValide("1:2:3:4::5:6:7:8"));
+    assertFalse(AdresseIP.estValide("12345::"));
+    assertFalse(AdresseIP.estValide("g::"));
+    assertTrue(AdresseIP.estValide("192.0.2.1"));
+    assertFalse(AdresseIP.estValide("::ffff:192.0.2"));
+    assertFalse(AdresseIP.estValide("1:2:3:4:5:6:7:192.0.2.1"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructeurInvalide() {
+    AdresseIP.depuisTexte("2001:db8:::1");
+  }
+
+  @Test
+  public void testFormeCanonique() {
+    assertEquals("::", AdresseIP.depuisTexte("0:0:0:0:0:0:0:0").getIp());
+    assertEquals("::1", AdresseIP.depuisTexte("0:0:0:0:0:0:0:1").getIp());
+    assertEquals("2001:db8::1", AdresseIP.depuisTexte("2001:0DB8:0:0:0:0:0:0001").getIp());
+    // Un seul groupe nul n'est pas abrégé ; la plus longue suite l'emporte.
+    assertEquals("2001:db8:0:1:1:1:1:1", AdresseIP.depuisTexte("2001:db8:0:1:1:1:1:1").getIp());
+    assertEquals("2001:0:0:1::1", AdresseIP.depuisTexte("2001:0:0:1:0:0:0:1").getIp());
+    // En cas d'égalité, la première suite est abrégée.
+    assertEquals("2001:db8::1:0:0:1", AdresseIP.depuisTexte("2001:db8:0:0:1:0:0:1").getIp());
+    assertEquals("1::", AdresseIP.depuisTexte("1:0:0:0:0:0:0:0").getIp());
+    assertEquals("::ffff:c000:201", AdresseIP.depuisTexte("::ffff:192.0.2.1").toString());
+  }
+
+  @Test
+  public void testAllerRetourAleatoire() {
+    Random aleatoire = new Random(3);
+    for (int i = 0; i < 10_000; i++) {
+      // Des groupes souvent nuls pour exercer l'abréviation.
+      long fort = aleatoire.nextLong() & aleatoire.nextLong() & aleatoire.nextLong();
+      long faible = aleatoire.nextLong() & aleatoire.nextLong() & aleatoire.nextLong();
+      AdresseIP adresse = AdresseIP.depuisEntiers(fort, faible);
+      assertEquals(adresse, AdresseIP.depuisTexte(adresse.getIp()));
+      assertEquals(adresse, AdresseIP.depuisOctets(adresse.getOctets()));
+    }
+  }
+
+  @Test
+  public void testOctets() {
+    byte[] attendu = {0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1};
+    assertArrayEquals(attendu, AdresseIP.depuisTexte("2001:db8::1").getOctets());
+  }
+
+  @Test
+  public void testEqualsEtHashCode() {
+    AdresseIP a = AdresseIP.depuisTexte("2001:db8::1");
+    AdresseIP b = AdresseIP.depuisTexte("2001:db8:0::0:1");
+
+    assertEquals(a, b);
+    assertEquals(a.hashCode(), b.hashCode());
+    assertNotEquals(a, AdresseIP.depuisTexte("2001:db8::2"));
+    // Une adresse IPv6 n'est jamais égale à une adresse IPv4, dans les deux sens.
+    assertNotEquals(AdresseIP.depuisTexte("::"), new AdresseIP("0.0.0.0"));
+    assertNotEquals(new AdresseIP("0.0.0.0"), AdresseIP.depuisTexte("::"));
+  }
+
+  @Test
+  public void testOrdreNumerique() {
+    List<AdresseIP> adresses = new ArrayList<>(List.of(AdresseIP.depuisTexte("ffff::"), AdresseIP.depuisTexte("::1"),
+        new AdresseIP("255.255.255.255"), AdresseIP.depuisTexte("8000::"), AdresseIP.depuisTexte("::"),
+        AdresseIP.depuisTexte("::8000:0:0:0"), new AdresseIP("10.0.0.1")));
+    adresses.sort(null);
+
+    List<String> attendu = List.of("10.0.0.1", "255.255.255.255", "::", "::1", "::8000:0:0:0", "8000::",
+        "ffff::");
+    List<String> obtenu = new ArrayList<>();
+    adresses.forEach(a -> obtenu.add(a.getIp()));
+    assertEquals(attendu, obtenu);
+  }
+
+  @Test
+  public void testDepuisTexte() {
+    assertTrue(AdresseIP.depuisTexte("2001:db8::1").estIpv6());
+    assertFalse(AdresseIP.depuisTexte("10.0.0.1").estIpv6());
+    assertEquals(new AdresseIP("10.0.0.1"), AdresseIP.depuisTexte("10.0.0.1"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDepuisTexteInvalide() {
+    AdresseIP.depuisTexte("10.0.0");
+  }
+
+  @Test
+  public void testFamilleSelonLaForme() {
+    assertTrue(AdresseIP.depuisTexte("::1").estIpv6());
+    assertFalse(AdresseIP.depuisTexte("10.0.0.1").estIpv6());
+    assertTrue(AdresseIP.depuisOctets(new byte[16]).estIpv6());
+    assertFalse(AdresseIP.depuisOctets(new byte[4]).estIpv6());
+  }
+}
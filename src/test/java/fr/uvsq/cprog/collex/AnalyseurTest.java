@@ -0,0 +1,106 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class AnalyseurTest {
+  private static long ip(String texte) {
+    return Analyseur.analyserIp(texte, 0, texte.length());
+  }
+
+  private static long ipOctets(String texte) {
+    byte[] octets = texte.getBytes(StandardCharsets.US_ASCII);
+    return Analyseur.analyserIp(octets, 0, octets.length);
+  }
+
+  @Test
+  public void testAnalyserIpValide() {
+    assertEquals(0xC1331F5AL, ip("193.51.31.90"));
+    assertEquals(0L, ip("0.0.0.0"));
+    assertEquals(0xFFFFFFFFL, ip("255.255.255.255"));
+    assertEquals(0x0A000001L, ip("010.0.0.001"));
+    assertEquals(0xC1331F5AL, ipOctets("193.51.31.90"));
+  }
+
+  @Test
+  public void testAnalyserIpInvalide() {
+    String[] invalides = {"", "1.2.3", "1.2.3.4.5", "1.2.3.", ".1.2.3", "1..2.3", "256.0.0.1",
+        "1.2.3.abc", "1.2.3.-4", " 1.2.3.4", "1.2.3.4 ", "99999999999.0.0.1"};
+    for (String invalide : invalides) {
+      assertEquals(invalide, Analyseur.INVALIDE, ip(invalide));
+      assertEquals(invalide, Analyseur.INVALIDE, ipOctets(invalide));
+    }
+  }
+
+  @Test
+  public void testAnalyserIpDansUneRegion() {
+    assertEquals(0x0A000001L, Analyseur.analyserIp("xx10.0.0.1yy", 2, 10));
+  }
+
+  @Test
+  public void testIndexPoint() {
+    assertEquals(3, Analyseur.indexPoint("www.uvsq.fr"));
+    assertEquals(-1, Analyseur.indexPoint("sanspoint"));
+    assertEquals(-1, Analyseur.indexPoint(".debut"));
+    assertEquals(-1, Analyseur.indexPoint("fin."));
+    assertEquals(-1, Analyseur.indexPoint(""));
+  }
+
+  @Test
+  public void testAnalyserLigne() {
+    DnsItem item = Analyseur.analyserLigne("  www.uvsq.fr 193.51.31.90\r");
+    assertEquals("www.uvsq.fr", item.getNomMachine().getNomComplet());
+    assertEquals("uvsq.fr", item.getNomMachine().getNomDomaine());
+    assertEquals("193.51.31.90", item.getAdresseIP().getIp());
+
+    byte[] octets = "xwww.uvsq.fr 193.51.31.90x".getBytes(StandardCharsets.UTF_8);
+    assertEquals(item, Analyseur.analyserLigne(octets, 1, octets.length - 1));
+  }
+
+  @Test
+  public void testAnalyserLigneIpv6() {
+    DnsItem item = Analyseur.analyserLigne("www.uvsq.fr 2001:db8::5a");
+    assertEquals(AdresseIP.depuisTexte("2001:db8::5a"), item.getAdresseIP());
+
+    byte[] octets = "xwww.uvsq.fr 2001:db8:0:0::5Ax".getBytes(StandardCharsets.UTF_8);
+    assertEquals(item, Analyseur.analyserLigne(octets, 1, octets.length - 1));
+  }
+
+  @Test
+  public void testAnalyserIpv6DansUneRegion() {
+    byte[] octets = "x::1x".getBytes(StandardCharsets.UTF_8);
+    assertEquals(AdresseIP.depuisEntiers(0, 1), Analyseur.analyserIpv6(octets, 1, 4));
+    assertEquals(AdresseIP.depuisEntiers(0, 1), Analyseur.analyserIpv6("x::1x", 1, 4));
+  }
+
+  @Test
+  public void testAnalyserLigneSansDeuxChamps() {
+    assertNull(Analyseur.analyserLigne(""));
+    assertNull(Analyseur.analyserLigne("www.uvsq.fr"));
+    assertNull(Analyseur.analyserLigne("www.uvsq.fr  193.51.31.90"));
+    assertNull(Analyseur.analyserLigne("a b c"));
+  }
+
+  @Test
+  public void testAnalyserLigneAdresseInvalide() {
+    assertNull(Analyseur.analyserLigne("www.uvsq.fr 193.51.31"));
+    assertEquals("Adresse ip invalide : 193.51.31", Analyseur.motifRejet(" www.uvsq.fr 193.51.31\r"));
+  }
+
+  @Test
+  public void testAnalyserLigneNomInvalide() {
+    byte[] octets = "wwwuvsqfr 193.51.31.90".getBytes(StandardCharsets.UTF_8);
+    assertNull(Analyseur.analyserLigne(octets, 0, octets.length));
+    assertEquals("Nom complet invalide : wwwuvsqfr", Analyseur.motifRejet("wwwuvsqfr 193.51.31.90"));
+  }
+
+  @Test
+  public void testMotifRejetLigneMalFormee() {
+    assertNull(Analyseur.motifRejet("www.uvsq.fr"));
+    assertNull(Analyseur.motifRejet("a b c"));
+  }
+}
@@ -0,0 +1,58 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class ArbreAdressesTest {
+  private static DnsItem item(int adresse) {
+    return new DnsItem(AdresseIP.depuisEntier(adresse),
+        new NomMachine("h" + Integer.toHexString(adresse) + ".test.fr"));
+  }
+
+  @Test
+  public void testArbreVide() {
+    assertTrue(new ArbreAdresses().lister(new Cidr("0.0.0.0/0")).isEmpty());
+  }
+
+  @Test
+  public void testDoublonIgnore() {
+    ArbreAdresses arbre = new ArbreAdresses();
+    assertTrue(arbre.ajouter(item(42)));
+    assertFalse(arbre.ajouter(item(42)));
+    assertEquals(1, arbre.lister(new Cidr("0.0.0.0/0")).size());
+  }
+
+  @Test
+  public void testBlocsConformesAUnParcoursComplet() {
+    Random aleatoire = new Random(7);
+    ArbreAdresses arbre = new ArbreAdresses();
+    List<DnsItem> tous = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      // Adresses regroupées dans quelques réseaux pour obtenir des blocs non vides.
+      int adresse = (aleatoire.nextInt(8) << 29) | (aleatoire.nextInt(4) << 16) | aleatoire.nextInt(1 << 12);
+      DnsItem item = item(adresse);
+      if (arbre.ajouter(item)) {
+        tous.add(item);
+      }
+    }
+    tous.sort((a, b) -> a.getAdresseIP().compareTo(b.getAdresseIP()));
+
+    for (int essai = 0; essai < 500; essai++) {
+      DnsItem reference = tous.get(aleatoire.nextInt(tous.size()));
+      Cidr bloc = new Cidr(reference.getAdresseIP(), aleatoire.nextInt(33));
+      List<DnsItem> attendus = tous.stream().filter(it -> bloc.contient(it.getAdresseIP()))
+          .collect(Collectors.toList());
+      assertEquals(bloc.toString(), attendus, arbre.lister(bloc));
+    }
+    assertEquals(tous, arbre.lister(new Cidr("0.0.0.0/0")));
+    assertTrue(arbre.lister(new Cidr("0.0.0.0/32")).stream().allMatch(it -> it.getAdresseIP().equals(AdresseIP.depuisEntier(0))));
+  }
+}
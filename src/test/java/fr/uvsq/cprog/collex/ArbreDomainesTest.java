@@ -0,0 +1,84 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ArbreDomainesTest {
+  private final ArbreDomaines arbre = new ArbreDomaines();
+  private final Map<String, IndexDomaine> domaines = new HashMap<>();
+  private int adresse;
+
+  private void ajouter(String nomComplet) {
+    DnsItem item = new DnsItem(AdresseIP.depuisEntier(++adresse), new NomMachine(nomComplet));
+    String domaine = item.getNomMachine().getNomDomaine();
+    IndexDomaine index = domaines.computeIfAbsent(domaine, d -> new IndexDomaine());
+    index.ajouter(item);
+    arbre.ajouter(domaine, index, 1);
+  }
+
+  private List<String> noms(String domaine) {
+    List<String> noms = new ArrayList<>();
+    Iterator<DnsItem> parcours = arbre.parcourir(domaine);
+    while (parcours.hasNext()) {
+      noms.add(parcours.next().getNomMachine().getNomComplet());
+    }
+    return noms;
+  }
+
+  @Test
+  public void testParcoursRecursifDansLOrdreCanonique() {
+    ajouter("www.uvsq.fr");
+    ajouter("pc2.dept.uvsq.fr");
+    ajouter("autre.fr");
+    ajouter("a.uvsq.fr");
+    ajouter("pc1.dept.uvsq.fr");
+    ajouter("z.uvsq.fr");
+    ajouter("srv.info.dept.uvsq.fr");
+    ajouter("www.ailleurs.com");
+
+    assertEquals(List.of("a.uvsq.fr", "srv.info.dept.uvsq.fr", "pc1.dept.uvsq.fr", "pc2.dept.uvsq.fr",
+        "www.uvsq.fr", "z.uvsq.fr"), noms("uvsq.fr"));
+    assertEquals(List.of("srv.info.dept.uvsq.fr", "pc1.dept.uvsq.fr", "pc2.dept.uvsq.fr"),
+        noms("dept.uvsq.fr"));
+    assertEquals(8, noms("").size());
+  }
+
+  @Test
+  public void testMachineEtSousDomaineDeMemeLibelle() {
+    ajouter("dept.uvsq.fr");
+    ajouter("pc1.dept.uvsq.fr");
+
+    // Le nom du domaine précède ses sous-noms, comme dans une zone DNS.
+    assertEquals(List.of("dept.uvsq.fr", "pc1.dept.uvsq.fr"), noms("uvsq.fr"));
+  }
+
+  @Test
+  public void testDomaineInconnu() {
+    ajouter("www.uvsq.fr");
+
+    assertFalse(arbre.parcourir("inconnu.fr").hasNext());
+    assertFalse(arbre.parcourir("vsq.fr").hasNext());
+    assertEquals(0, arbre.tailleZone("inconnu.fr"));
+  }
+
+  @Test
+  public void testTailleDesZones() {
+    ajouter("www.uvsq.fr");
+    ajouter("pc1.dept.uvsq.fr");
+    ajouter("pc2.dept.uvsq.fr");
+    ajouter("autre.fr");
+
+    assertEquals(4, arbre.tailleZone("fr"));
+    assertEquals(3, arbre.tailleZone("uvsq.fr"));
+    assertEquals(2, arbre.tailleZone("dept.uvsq.fr"));
+    assertEquals(4, arbre.tailleZone(""));
+  }
+}
@@ -0,0 +1,107 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CacheRecherchesTest {
+  private static final long UNE_HEURE = TimeUnit.HOURS.toNanos(1);
+
+  private final MetriquesDns metriques = new MetriquesDns();
+
+  private static DnsItem item(int i) {
+    return new DnsItem(AdresseIP.depuisEntier(i), new NomMachine("h" + i + ".test.fr"));
+  }
+
+  @Test
+  public void testSuccesEtEchecs() {
+    CacheRecherches cache = new CacheRecherches(4, UNE_HEURE, metriques);
+    DnsItem item = item(1);
+
+    assertNull(cache.trouver("h1.test.fr"));
+    cache.inserer("h1.test.fr", item, cache.generation());
+    cache.inserer("absent.test.fr", null, cache.generation());
+
+    assertSame(item, cache.trouver("h1.test.fr").item);
+    CacheRecherches.Entree absence = cache.trouver("absent.test.fr");
+    assertNotNull(absence);
+    assertNull(absence.item);
+    assertEquals(2, metriques.getCacheSucces());
+    assertEquals(1, metriques.getCacheEchecs());
+  }
+
+  @Test
+  public void testAbsenceExpiree() {
+    CacheRecherches cache = new CacheRecherches(4, 0, metriques);
+    cache.inserer("absent.test.fr", null, cache.generation());
+    cache.inserer("h1.test.fr", item(1), cache.generation());
+
+    // Une absence expire, une présence jamais.
+    assertNull(cache.trouver("absent.test.fr"));
+    assertNotNull(cache.trouver("h1.test.fr"));
+  }
+
+  @Test
+  public void testEvictionParHorloge() {
+    CacheRecherches cache = new CacheRecherches(3, UNE_HEURE, metriques);
+    for (int i = 0; i < 3; i++) {
+      cache.inserer("h" + i, item(i), cache.generation());
+    }
+    // h0 et h2 sont référencés : l'aiguille leur laisse une seconde chance.
+    cache.trouver("h0");
+    cache.trouver("h2");
+    cache.inserer("h3", item(3), cache.generation());
+
+    assertEquals(3, cache.taille());
+    assertNull(cache.trouver("h1"));
+    assertNotNull(cache.trouver("h0"));
+    assertNotNull(cache.trouver("h2"));
+    assertNotNull(cache.trouver("h3"));
+    assertEquals(1, metriques.getCacheEvictions());
+  }
+
+  @Test
+  public void testTailleBornee() {
+    CacheRecherches cache = new CacheRecherches(100, UNE_HEURE, metriques);
+    for (int i = 0; i < 10_000; i++) {
+      cache.trouver("h" + (i % 300));
+      cache.inserer("h" + (i % 300), item(i % 300), cache.generation());
+    }
+    assertEquals(100, cache.taille());
+    assertEquals(metriques.getCacheEchecs() - 100, metriques.getCacheEvictions());
+  }
+
+  @Test
+  public void testInvalidation() {
+    CacheRecherches cache = new CacheRecherches(4, UNE_HEURE, metriques);
+    cache.inserer("absent.test.fr", null, cache.generation());
+    cache.invalider(() -> "absent.test.fr");
+
+    assertNull(cache.trouver("absent.test.fr"));
+    assertEquals(0, cache.taille());
+  }
+
+  @Test
+  public void testInvalidationPendantUneRecherche() {
+    CacheRecherches cache = new CacheRecherches(4, UNE_HEURE, metriques);
+    long generation = cache.generation();
+    // Un ajout survient entre la recherche infructueuse et sa mise en cache.
+    cache.invalider(() -> "h1.test.fr");
+    cache.inserer("h1.test.fr", null, generation);
+
+    assertNull(cache.trouver("h1.test.fr"));
+  }
+
+  @Test
+  public void testCacheDesactive() {
+    CacheRecherches cache = new CacheRecherches(0, UNE_HEURE, metriques);
+    cache.inserer("h1.test.fr", item(1), cache.generation());
+
+    assertNull(cache.trouver("h1.test.fr"));
+  }
+}
@@ -0,0 +1,75 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChargeurBaseTest {
+  private Path fichier;
+
+  @Before
+  public void setUp() throws IOException {
+    fichier = Files.createTempFile("dns_test_chargeur", ".txt");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(fichier);
+  }
+
+  @Test
+  public void testChargeDansLOrdreDuFichier() throws IOException {
+    Files.write(fichier, List.of("www.uvsq.fr 193.51.31.90", "poste.uvsq.fr 193.51.31.154"));
+
+    List<DnsItem> items = ChargeurBase.charger(fichier);
+    assertEquals(2, items.size());
+    assertEquals("www.uvsq.fr", items.get(0).getNomMachine().getNomComplet());
+    assertEquals("193.51.31.154", items.get(1).getAdresseIP().getIp());
+  }
+
+  @Test
+  public void testFichierVide() throws IOException {
+    assertTrue(ChargeurBase.charger(fichier).isEmpty());
+  }
+
+  @Test
+  public void testFinsDeLigneWindowsEtLignesVides() throws IOException {
+    Files.writeString(fichier, "a.uvsq.fr 10.0.0.1\r\n\r\nb.uvsq.fr 10.0.0.2", StandardCharsets.UTF_8);
+
+    List<DnsItem> items = ChargeurBase.charger(fichier);
+    assertEquals(2, items.size());
+    assertEquals("10.0.0.1", items.get(0).getAdresseIP().getIp());
+    assertEquals("b.uvsq.fr", items.get(1).getNomMachine().getNomComplet());
+  }
+
+  @Test
+  public void testDecoupageEnPetitsMorceaux() throws IOException {
+    List<String> lignes = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      lignes.add("machine" + i + ".domaine.fr 10.0." + (i >> 8) + "." + (i & 255));
+    }
+    Files.write(fichier, lignes);
+
+    List<DnsItem> items = ChargeurBase.charger(fichier, 100);
+    assertEquals(5_000, items.size());
+    for (int i = 0; i < 5_000; i++) {
+      assertEquals("machine" + i + ".domaine.fr", items.get(i).getNomMachine().getNomComplet());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAdresseInvalide() throws IOException {
+    Files.write(fichier, List.of("www.uvsq.fr 300.0.0.1"));
+    ChargeurBase.charger(fichier);
+  }
+}
@@ -0,0 +1,54 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CidrTest {
+  @Test
+  public void testNotation() {
+    Cidr bloc = new Cidr("193.51.31.90/16");
+    assertEquals("193.51.0.0", bloc.getReseau().getIp());
+    assertEquals(16, bloc.getLongueur());
+    assertEquals("193.51.0.0/16", bloc.toString());
+    assertEquals(new Cidr("193.51.0.0/16"), bloc);
+    assertEquals(new Cidr("193.51.0.0/16").hashCode(), bloc.hashCode());
+  }
+
+  @Test
+  public void testContient() {
+    Cidr bloc = new Cidr("193.51.0.0/16");
+    assertTrue(bloc.contient(new AdresseIP("193.51.0.0")));
+    assertTrue(bloc.contient(new AdresseIP("193.51.255.255")));
+    assertFalse(bloc.contient(new AdresseIP("193.52.0.0")));
+    assertFalse(bloc.contient(new AdresseIP("10.51.0.1")));
+
+    assertTrue(new Cidr("0.0.0.0/0").contient(new AdresseIP("255.255.255.255")));
+    assertTrue(new Cidr("10.0.0.1/32").contient(new AdresseIP("10.0.0.1")));
+    assertFalse(new Cidr("10.0.0.1/32").contient(new AdresseIP("10.0.0.2")));
+    assertTrue(new Cidr(new AdresseIP("200.1.2.3"), 1).contient(new AdresseIP("128.0.0.0")));
+  }
+
+  @Test
+  public void testValidite() {
+    assertTrue(Cidr.estValide("10.0.0.0/8"));
+    assertFalse(Cidr.estValide("10.0.0.0"));
+    assertFalse(Cidr.estValide("10.0.0.0/33"));
+    assertFalse(Cidr.estValide("10.0.0.0/"));
+    assertFalse(Cidr.estValide("10.0.0/8"));
+    assertFalse(Cidr.estValide("10.0.0.0/8a"));
+    assertFalse(Cidr.estValide(null));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotationInvalide() {
+    new Cidr("10.0.0.0/40");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLongueurInvalide() {
+    new Cidr(new AdresseIP("10.0.0.0"), -1);
+  }
+}
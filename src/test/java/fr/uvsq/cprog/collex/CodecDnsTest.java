@@ -0,0 +1,179 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CodecDnsTest {
+  private static final String NOM_LONG =
+      "a".repeat(63) + "." + "b".repeat(63) + "." + "c".repeat(63) + ".uvsq.fr";
+
+  private Path fichier;
+  private Dns dns;
+  private final ByteBuffer reponse = ByteBuffer.allocate(CodecDns.TAILLE_MAX_UDP);
+  private final StringBuilder nom = new StringBuilder();
+
+  @Before
+  public void setUp() throws IOException {
+    fichier = Files.createTempFile("dns_test_codec", ".txt");
+    Files.write(fichier, List.of("www.uvsq.fr 193.51.31.90", "poste.uvsq.fr 193.51.31.154",
+        "v6.uvsq.fr 2001:db8::5a", NOM_LONG + " 10.0.0.2"));
+    dns = new Dns(fichier);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(fichier);
+  }
+
+  /** Construit une requête standard à une question, récursion demandée. */
+  static ByteBuffer requete(int identifiant, String nom, int type) {
+    ByteBuffer tampon = ByteBuffer.allocate(CodecDns.TAILLE_MAX_UDP);
+    tampon.putShort((short) identifiant).putShort((short) 0x0100).putShort((short) 1)
+        .putShort((short) 0).putShort((short) 0).putShort((short) 0);
+    for (String libelle : nom.split("\\.")) {
+      tampon.put((byte) libelle.length()).put(libelle.getBytes());
+    }
+    tampon.put((byte) 0).putShort((short) type).putShort((short) CodecDns.CLASSE_IN);
+    return tampon.flip();
+  }
+
+  private boolean repondre(ByteBuffer requete) {
+    return CodecDns.repondre(requete, reponse, dns, nom);
+  }
+
+  private int rcode() {
+    return reponse.getShort(2) & 0xF;
+  }
+
+  private int nombreReponses() {
+    return reponse.getShort(6);
+  }
+
+  @Test
+  public void testRequeteA() {
+    assertTrue(repondre(requete(0x1234, "www.uvsq.fr", CodecDns.TYPE_A)));
+
+    assertEquals(0x1234, reponse.getShort(0) & 0xFFFF);
+    assertEquals(0x8500, reponse.getShort(2) & 0xFFFF); // QR, AA, RD, NOERROR
+    assertEquals(1, reponse.getShort(4));
+    assertEquals(1, nombreReponses());
+    int rdata = reponse.limit() - 4;
+    assertEquals(4, reponse.getShort(rdata - 2));
+    assertEquals(new AdresseIP("193.51.31.90").getValeur(), reponse.getInt(rdata));
+  }
+
+  @Test
+  public void testRequetePtr() {
+    assertTrue(repondre(requete(7, "154.31.51.193.in-addr.arpa", CodecDns.TYPE_PTR)));
+
+    assertEquals(CodecDns.RCODE_OK, rcode());
+    assertEquals(1, nombreReponses());
+    byte[] attendu = {5, 'p', 'o', 's', 't', 'e', 4, 'u', 'v', 's', 'q', 2, 'f', 'r', 0};
+    byte[] obtenu = new byte[attendu.length];
+    reponse.get(reponse.limit() - attendu.length, obtenu);
+    assertEquals(new String(attendu), new String(obtenu));
+  }
+
+  @Test
+  public void testRequeteAaaa() {
+    assertTrue(repondre(requete(8, "v6.uvsq.fr", CodecDns.TYPE_AAAA)));
+
+    assertEquals(CodecDns.RCODE_OK, rcode());
+    assertEquals(1, nombreReponses());
+    int rdata = reponse.limit() - 16;
+    assertEquals(16, reponse.getShort(rdata - 2));
+    assertEquals(0x2001_0db8_0000_0000L, reponse.getLong(rdata));
+    assertEquals(0x5aL, reponse.getLong(rdata + 8));
+
+    // Une machine IPv6 n'a pas d'enregistrement A.
+    assertTrue(repondre(requete(9, "v6.uvsq.fr", CodecDns.TYPE_A)));
+    assertEquals(CodecDns.RCODE_OK, rcode());
+    assertEquals(0, nombreReponses());
+  }
+
+  @Test
+  public void testRequetePtrIpv6() {
+    String nomInverse = "a.5.0.0.0.0.0.0.0.0.0.0.0.0.0.0.0.0.0.0.0.0.0.0.8.b.d.0.1.0.0.2.ip6.arpa";
+    assertTrue(repondre(requete(10, nomInverse, CodecDns.TYPE_PTR)));
+
+    assertEquals(CodecDns.RCODE_OK, rcode());
+    assertEquals(1, nombreReponses());
+    byte[] attendu = {2, 'v', '6', 4, 'u', 'v', 's', 'q', 2, 'f', 'r', 0};
+    byte[] obtenu = new byte[attendu.length];
+    reponse.get(reponse.limit() - attendu.length, obtenu);
+    assertEquals(new String(attendu), new String(obtenu));
+
+    assertTrue(repondre(requete(11, "1.0.ip6.arpa", CodecDns.TYPE_PTR)));
+    assertEquals(CodecDns.RCODE_NOM_INEXISTANT, rcode());
+  }
+
+  @Test
+  public void testReponseTronquee() {
+    ByteBuffer requete = requete(12, "2.0.0.10.in-addr.arpa", CodecDns.TYPE_PTR);
+    ByteBuffer petite = ByteBuffer.allocate(200);
+    assertTrue(CodecDns.repondre(requete, petite, dns, nom));
+
+    // L'en-tête et la question sont renvoyés, sans l'enregistrement PTR.
+    assertEquals(0x0200, petite.getShort(2) & 0x0200);
+    assertEquals(CodecDns.RCODE_OK, petite.getShort(2) & 0xF);
+    assertEquals(0, petite.getShort(6));
+    assertEquals(requete.limit(), petite.limit());
+
+    assertTrue(repondre(requete.rewind()));
+    assertEquals(0, reponse.getShort(2) & 0x0200);
+    assertEquals(1, nombreReponses());
+    assertEquals(requete.limit() + 12 + NOM_LONG.length() + 2, reponse.limit());
+  }
+
+  @Test
+  public void testNomInexistant() {
+    assertTrue(repondre(requete(1, "absent.uvsq.fr", CodecDns.TYPE_A)));
+    assertEquals(CodecDns.RCODE_NOM_INEXISTANT, rcode());
+    assertEquals(0, nombreReponses());
+
+    assertTrue(repondre(requete(2, "1.0.0.10.in-addr.arpa", CodecDns.TYPE_PTR)));
+    assertEquals(CodecDns.RCODE_NOM_INEXISTANT, rcode());
+  }
+
+  @Test
+  public void testTypeSansDonnees() {
+    assertTrue(repondre(requete(3, "www.uvsq.fr", 28)));
+    assertEquals(CodecDns.RCODE_OK, rcode());
+    assertEquals(0, nombreReponses());
+  }
+
+  @Test
+  public void testRequeteMalFormee() {
+    ByteBuffer requete = requete(4, "www.uvsq.fr", CodecDns.TYPE_A);
+    requete.limit(requete.limit() - 6);
+    assertTrue(repondre(requete));
+    assertEquals(CodecDns.RCODE_FORMAT, rcode());
+  }
+
+  @Test
+  public void testOpcodeNonImplemente() {
+    ByteBuffer requete = requete(5, "www.uvsq.fr", CodecDns.TYPE_A);
+    requete.putShort(2, (short) 0x2800); // UPDATE
+    assertTrue(repondre(requete));
+    assertEquals(CodecDns.RCODE_NON_IMPLEMENTE, rcode());
+  }
+
+  @Test
+  public void testMessagesIgnores() {
+    assertFalse(repondre(ByteBuffer.allocate(5)));
+    ByteBuffer dejaUneReponse = requete(6, "www.uvsq.fr", CodecDns.TYPE_A);
+    dejaUneReponse.putShort(2, (short) 0x8000);
+    assertFalse(repondre(dejaUneReponse));
+  }
+}
@@ -0,0 +1,70 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandeConvertirTest {
+  private final ByteArrayOutputStream sortieCapturee = new ByteArrayOutputStream();
+  private final PrintStream sortieOriginale = System.out;
+  private Path texte;
+  private Path binaire;
+
+  @Before
+  public void setUp() throws IOException {
+    texte = Files.createTempFile("dns_test_convertir", ".txt");
+    binaire = texte.resolveSibling(texte.getFileName() + ".bin");
+    System.setOut(new PrintStream(sortieCapturee));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(texte);
+    Files.deleteIfExists(binaire);
+    System.setOut(sortieOriginale);
+  }
+
+  @Test
+  public void testConversionReussie() throws IOException {
+    Files.write(texte, List.of("www.uvsq.fr 193.51.31.90"));
+
+    new CommandeConvertir(texte.toString(), binaire.toString()).execute();
+
+    assertTrue(sortieCapturee.toString().contains("Conversion réussie : 1 enregistrements"));
+    assertTrue(InstantaneBinaire.estInstantane(binaire));
+  }
+
+  @Test
+  public void testConversionEnTableTriee() throws IOException {
+    Files.write(texte, List.of("www.uvsq.fr 193.51.31.90"));
+    Path table = texte.resolveSibling(texte.getFileName() + TableTriee.EXTENSION);
+
+    try {
+      new CommandeConvertir(texte.toString(), table.toString()).execute();
+
+      assertTrue(sortieCapturee.toString().contains("Conversion réussie : 1 enregistrements"));
+      try (DnsTableTriee dns = new DnsTableTriee(table)) {
+        assertEquals("193.51.31.90", dns.getItemParNom("www.uvsq.fr").getAdresseIP().getIp());
+      }
+    } finally {
+      Files.deleteIfExists(table);
+    }
+  }
+
+  @Test
+  public void testSourceInexistante() {
+    new CommandeConvertir("inexistant.txt", binaire.toString()).execute();
+
+    assertTrue(sortieCapturee.toString().startsWith("ERREUR"));
+  }
+}
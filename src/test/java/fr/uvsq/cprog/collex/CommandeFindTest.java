@@ -0,0 +1,72 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandeFindTest {
+  private final ResultatCommande sortie = new ResultatCommande();
+  private Path fichier;
+  private Dns dns;
+
+  @Before
+  public void setUp() throws IOException {
+    fichier = Files.createTempFile("dns_test_find", ".txt");
+    Files.write(fichier, List.of("web-2.uvsq.fr 193.51.31.2", "web-1.ailleurs.fr 193.52.0.1",
+        "www.uvsq.fr 193.51.31.90", "web-3.dept.uvsq.fr 193.51.40.3"));
+    dns = new Dns(fichier);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(fichier);
+  }
+
+  private String[] executer(Commande commande) {
+    commande.execute(sortie);
+    return sortie.getLignes().toArray(new String[0]);
+  }
+
+  @Test
+  public void testPrefixe() {
+    String[] attendu = {"193.52.0.1 web-1.ailleurs.fr", "193.51.31.2 web-2.uvsq.fr",
+        "193.51.40.3 web-3.dept.uvsq.fr"};
+
+    assertArrayEquals(attendu, executer(new CommandeFind(dns, "web-*")));
+  }
+
+  @Test
+  public void testDomaine() {
+    String[] attendu = {"193.51.40.3 web-3.dept.uvsq.fr", "193.51.31.2 web-2.uvsq.fr",
+        "193.51.31.90 www.uvsq.fr"};
+
+    assertArrayEquals(attendu, executer(new CommandeFind(dns, "*.uvsq.fr")));
+  }
+
+  @Test
+  public void testLimite() {
+    String[] attendu = {"193.52.0.1 web-1.ailleurs.fr", "193.51.31.2 web-2.uvsq.fr",
+        "(résultats limités à 2)"};
+
+    assertArrayEquals(attendu, executer(new CommandeFind(dns, "web-*", 2)));
+  }
+
+  @Test
+  public void testAucunResultat() {
+    assertEquals("Pas de machines correspondant à mail*", executer(new CommandeFind(dns, "mail*"))[0]);
+  }
+
+  @Test
+  public void testMotifInvalide() {
+    assertTrue(executer(new CommandeFind(dns, "w*b"))[0].startsWith("ERREUR : Motif invalide"));
+  }
+}
@@ -0,0 +1,84 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandeImportTest {
+  private final ResultatCommande sortie = new ResultatCommande();
+  private Path base;
+  private Path hotes;
+  private Dns dns;
+
+  @Before
+  public void setUp() throws IOException {
+    base = Files.createTempFile("dns_test_import", ".txt");
+    hotes = Files.createTempFile("dns_test_hotes", ".txt");
+    Files.write(base, List.of("www.uvsq.fr 193.51.31.90"));
+    dns = new Dns(base);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(base);
+    Files.deleteIfExists(base.resolveSibling(base.getFileName() + ".journal"));
+    Files.deleteIfExists(hotes);
+  }
+
+  private String[] importer(int tailleLot) {
+    new CommandeImport(dns, hotes.toString(), tailleLot).execute(sortie);
+    return sortie.getLignes().toArray(new String[0]);
+  }
+
+  @Test
+  public void testImportParLots() throws IOException {
+    List<String> lignes = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      lignes.add("h" + i + ".import.fr 10.0.0." + i);
+    }
+    Files.write(hotes, lignes);
+
+    String[] messages = importer(10);
+
+    assertEquals(3, messages.length);
+    assertTrue(messages[0].startsWith("Import : 10 lignes lues, 10 ajouts"));
+    assertTrue(messages[1].startsWith("Import : 20 lignes lues, 20 ajouts"));
+    assertTrue(messages[2].startsWith("Import terminé : 25 ajouts, 0 conflits, 0 lignes invalides"));
+    assertEquals(25, dns.getItems("import.fr").size());
+    assertEquals(25, new Dns(base).getItems("import.fr").size());
+  }
+
+  @Test
+  public void testImportEcarteConflitsEtLignesInvalides() throws IOException {
+    Files.write(hotes, List.of("un.import.fr 10.0.0.1", "autre.uvsq.fr 193.51.31.90", "www.uvsq.fr 10.0.0.2",
+        "", "ligne invalide en trop", "deux.import.fr 999.0.0.1", "un.import.fr 10.0.0.3",
+        "trois.import.fr 10.0.0.4"));
+
+    String[] messages = importer(100);
+
+    assertEquals("Import terminé : 2 ajouts, 3 conflits, 2 lignes invalides",
+        messages[messages.length - 1].substring(0, messages[messages.length - 1].indexOf(" en ")));
+    assertEquals("10.0.0.1", dns.getItem(new NomMachine("un.import.fr")).getAdresseIP().getIp());
+    assertNotNull(dns.getItem(new NomMachine("trois.import.fr")));
+    assertEquals("193.51.31.90", dns.getItem(new NomMachine("www.uvsq.fr")).getAdresseIP().getIp());
+  }
+
+  @Test
+  public void testFichierInexistant() throws IOException {
+    Files.delete(hotes);
+
+    String[] messages = importer(10);
+
+    assertTrue(messages[0].startsWith("ERREUR : Import impossible"));
+  }
+}
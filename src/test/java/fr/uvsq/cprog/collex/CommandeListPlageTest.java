@@ -0,0 +1,57 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandeListPlageTest {
+  private final ResultatCommande sortie = new ResultatCommande();
+  private Path fichier;
+  private Dns dns;
+
+  @Before
+  public void setUp() throws IOException {
+    fichier = Files.createTempFile("dns_test_plage", ".txt");
+    Files.write(fichier, List.of("www.uvsq.fr 193.51.31.90", "poste.uvsq.fr 193.51.31.154",
+        "ecampus.uvsq.fr 193.51.25.12", "autre.ailleurs.fr 193.52.0.1"));
+    dns = new Dns(fichier);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(fichier);
+  }
+
+  private String[] executer(String bloc) {
+    new CommandeListPlage(dns, bloc).execute(sortie);
+    return sortie.getLignes().toArray(new String[0]);
+  }
+
+  @Test
+  public void testAfficheLeBlocTrieParAdresse() {
+    String[] lignes = executer("193.51.0.0/16");
+
+    assertEquals(3, lignes.length);
+    assertEquals("193.51.25.12 ecampus.uvsq.fr", lignes[0]);
+    assertEquals("193.51.31.90 www.uvsq.fr", lignes[1]);
+    assertEquals("193.51.31.154 poste.uvsq.fr", lignes[2]);
+  }
+
+  @Test
+  public void testBlocVide() {
+    assertEquals("Pas de machines dans le bloc 10.0.0.0/8", executer("10.0.0.0/8")[0]);
+  }
+
+  @Test
+  public void testBlocInvalide() {
+    assertTrue(executer("193.51.0.0/99")[0].startsWith("ERREUR : Bloc CIDR invalide"));
+  }
+}
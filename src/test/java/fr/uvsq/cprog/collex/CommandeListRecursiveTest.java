@@ -0,0 +1,56 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandeListRecursiveTest {
+  private final ResultatCommande sortie = new ResultatCommande();
+  private Path fichier;
+  private Dns dns;
+
+  @Before
+  public void setUp() throws IOException {
+    fichier = Files.createTempFile("dns_test_recursif", ".txt");
+    Files.write(fichier, List.of("www.uvsq.fr 193.51.31.90", "pc1.dept.uvsq.fr 193.51.40.1",
+        "ecampus.uvsq.fr 193.51.25.12", "autre.ailleurs.fr 193.52.0.1"));
+    dns = new Dns(fichier);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(fichier);
+  }
+
+  private String[] executer(Commande commande) {
+    commande.execute(sortie);
+    return sortie.getLignes().toArray(new String[0]);
+  }
+
+  @Test
+  public void testAfficheLaZoneTriee() {
+    String[] attendu = {"193.51.40.1 pc1.dept.uvsq.fr", "193.51.25.12 ecampus.uvsq.fr",
+        "193.51.31.90 www.uvsq.fr"};
+
+    assertArrayEquals(attendu, executer(new CommandeListRecursive(dns, "uvsq.fr")));
+  }
+
+  @Test
+  public void testZoneVide() {
+    assertEquals("Pas de machines dans la zone inconnu.fr",
+        executer(new CommandeListRecursive(dns, "inconnu.fr"))[0]);
+  }
+
+  @Test
+  public void testTailleDeZone() {
+    assertEquals("uvsq.fr : 3 machine(s)", executer(new CommandeTailleZone(dns, "uvsq.fr"))[0]);
+  }
+}
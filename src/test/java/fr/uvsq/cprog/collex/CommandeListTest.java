@@ -1,11 +1,14 @@
 package fr.uvsq.cprog.collex;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -87,4 +90,61 @@ public class CommandeListTest {
     String sortie = sortieCapturée.toString().trim();
     assertEquals("Pas de machines pour le domaine mondomaine.vide", sortie);
   }
+
+  private String[] executer(Commande cmd) {
+    sortieCapturée.reset();
+    cmd.execute();
+    return sortieCapturée.toString().split(System.lineSeparator());
+  }
+
+  @Test
+  public void testPaginationAvecCurseur() throws Exception {
+    Path tempFile = Files.createTempFile("dns_test", ".txt");
+    try {
+      Dns dns = new Dns(tempFile);
+      for (int i = 0; i < 25; i++) {
+        dns.addItem(AdresseIP.depuisEntier(0x0A000000 + 24 - i), new NomMachine(String.format("h%02d.page.fr", i)));
+      }
+
+      for (boolean parAdresse : new boolean[] {false, true}) {
+        List<String> lues = new ArrayList<>();
+        String curseur = null;
+        int pages = 0;
+        do {
+          String[] lignes = executer(new CommandeList(dns, "page.fr", parAdresse, 10, curseur));
+          pages++;
+          String derniere = lignes[lignes.length - 1];
+          curseur = derniere.startsWith("Suite : ") ? derniere.substring("Suite : ".length()) : null;
+          for (String ligne : lignes) {
+            if (!ligne.startsWith("Suite : ")) {
+              lues.add(ligne);
+            }
+          }
+          if (pages == 1) {
+            // Un ajout entre deux pages ne décale pas la suite.
+            dns.addItem(AdresseIP.depuisEntier(0x0A0000FF - (parAdresse ? 0 : 1)),
+                new NomMachine((parAdresse ? "zz" : "zy") + ".page.fr"));
+          }
+        } while (curseur != null);
+
+        assertEquals(3, pages);
+        List<String> attendues = new ArrayList<>();
+        for (DnsItem item : dns.getItems("page.fr", parAdresse)) {
+          attendues.add(item.getAdresseIP().getIp() + " " + item.getNomMachine().getNomComplet());
+        }
+        assertEquals(attendues, lues);
+      }
+    } finally {
+      Files.deleteIfExists(tempFile);
+      Files.deleteIfExists(tempFile.resolveSibling(tempFile.getFileName() + ".journal"));
+    }
+  }
+
+  @Test
+  public void testCurseurInvalide() throws Exception {
+    Dns dns = new Dns();
+    String[] lignes = executer(new CommandeList(dns, "mondomaine.fr", true, 10, "bnd3dw"));
+
+    assertTrue(lignes[0].startsWith("ERREUR : Curseur invalide"));
+  }
 }
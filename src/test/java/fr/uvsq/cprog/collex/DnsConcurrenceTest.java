@@ -0,0 +1,115 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DnsConcurrenceTest {
+  private static final int ECRIVAINS = 4;
+  private static final int LECTEURS = 4;
+  private static final int AJOUTS_PAR_ECRIVAIN = 500;
+
+  private Path fichier;
+  private Dns dns;
+
+  @Before
+  public void setUp() throws IOException {
+    fichier = Files.createTempFile("dns_test_concurrence", ".txt");
+    List<String> lignes = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      lignes.add("base" + i + ".stress.fr 10.1." + (i >> 8) + "." + (i & 255));
+    }
+    Files.write(fichier, lignes);
+    dns = new Dns(fichier, 300);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    dns.compacter();
+    Files.deleteIfExists(fichier);
+    Files.deleteIfExists(fichier.resolveSibling(fichier.getFileName() + ".journal"));
+  }
+
+  @Test
+  public void testLecturesEtAjoutsConcurrents() throws Exception {
+    AtomicBoolean ecritureTerminee = new AtomicBoolean();
+    AtomicInteger ajoutsReussis = new AtomicInteger();
+    ConcurrentLinkedQueue<Throwable> erreurs = new ConcurrentLinkedQueue<>();
+    CountDownLatch depart = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+
+    // Tous les écrivains tentent les mêmes ajouts : chacun ne doit réussir qu’une fois.
+    for (int e = 0; e < ECRIVAINS; e++) {
+      threads.add(new Thread(() -> {
+        try {
+          depart.await();
+          for (int i = 0; i < AJOUTS_PAR_ECRIVAIN; i++) {
+            try {
+              dns.addItem(new AdresseIP("10.2." + (i >> 8) + "." + (i & 255)),
+                  new NomMachine("ajout" + i + ".stress.fr"));
+              ajoutsReussis.incrementAndGet();
+            } catch (IllegalArgumentException conflit) {
+              // Un autre écrivain a déjà ajouté cet enregistrement.
+            }
+          }
+        } catch (Throwable t) {
+          erreurs.add(t);
+        }
+      }));
+    }
+    for (int l = 0; l < LECTEURS; l++) {
+      threads.add(new Thread(() -> {
+        try {
+          depart.await();
+          int i = 0;
+          while (!ecritureTerminee.get()) {
+            int j = i++ % 1_000;
+            DnsItem item = dns.getItem(new NomMachine("base" + j + ".stress.fr"));
+            assertNotNull(item);
+            assertSame(item, dns.getItem(item.getAdresseIP()));
+            List<DnsItem> domaine = dns.getItems("stress.fr", (i & 1) == 0);
+            assertTrue(domaine.size() >= 1_000);
+          }
+        } catch (Throwable t) {
+          erreurs.add(t);
+        }
+      }));
+    }
+
+    threads.forEach(Thread::start);
+    depart.countDown();
+    for (int e = 0; e < ECRIVAINS; e++) {
+      threads.get(e).join();
+    }
+    ecritureTerminee.set(true);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertTrue(erreurs.toString(), erreurs.isEmpty());
+    assertEquals(AJOUTS_PAR_ECRIVAIN, ajoutsReussis.get());
+    assertEquals(1_000 + AJOUTS_PAR_ECRIVAIN, dns.getItems("stress.fr").size());
+    for (int i = 0; i < AJOUTS_PAR_ECRIVAIN; i++) {
+      DnsItem item = dns.getItem(new NomMachine("ajout" + i + ".stress.fr"));
+      assertEquals("10.2." + (i >> 8) + "." + (i & 255), item.getAdresseIP().getIp());
+    }
+
+    dns.compacter();
+    assertEquals(1_000 + AJOUTS_PAR_ECRIVAIN, new Dns(fichier).getItems("stress.fr").size());
+  }
+}
@@ -0,0 +1,277 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DnsHorsTasTest {
+  private static final Path BASE = Path.of("dns_hors_tas_test.txt");
+  private static final Path JOURNAL = Path.of("dns_hors_tas_test.txt.journal");
+  private static final Path BASE_TAS = Path.of("dns_hors_tas_test_tas.txt");
+  private static final Path JOURNAL_TAS = Path.of("dns_hors_tas_test_tas.txt.journal");
+
+  private DnsHorsTas dns;
+
+  @Before
+  public void setup() throws IOException {
+    Files.write(BASE, List.of("ecampus.uvsq.fr 193.51.25.12", "poste.uvsq.fr 193.51.31.154",
+        "www.uvsq.fr 193.51.31.90", "doublon.uvsq.fr 193.51.31.90"));
+    Files.deleteIfExists(JOURNAL);
+    dns = new DnsHorsTas(BASE);
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    Files.deleteIfExists(BASE);
+    Files.deleteIfExists(JOURNAL);
+    Files.deleteIfExists(BASE_TAS);
+    Files.deleteIfExists(JOURNAL_TAS);
+  }
+
+  private static List<String> noms(List<DnsItem> items) {
+    return items.stream().map(item -> item.getNomMachine().getNomComplet()).collect(Collectors.toList());
+  }
+
+  private static List<String> adresses(List<DnsItem> items) {
+    return items.stream().map(item -> item.getAdresseIP().getIp()).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testRecherches() {
+    assertEquals(3, dns.getNombre());
+    assertEquals("193.51.31.154", dns.getItem(new NomMachine("poste.uvsq.fr")).getAdresseIP().getIp());
+    DnsItem item = dns.getItem(new AdresseIP("193.51.31.90"));
+    assertEquals("www.uvsq.fr", item.getNomMachine().getNomComplet());
+    assertEquals("www", item.getNomMachine().getNomMachine());
+    assertEquals("uvsq.fr", item.getNomMachine().getNomDomaine());
+    assertNull(dns.getItem(new NomMachine("doublon.uvsq.fr")));
+    assertNull(dns.getItem(new NomMachine("www.uvsq.f")));
+    assertNull(dns.getItem(new NomMachine("www.uvsq.frr")));
+    assertNull(dns.getItem(new AdresseIP("8.8.8.8")));
+    assertEquals("www.uvsq.fr", dns.getItemParNom("www.uvsq.fr").getNomMachine().getNomComplet());
+  }
+
+  @Test
+  public void testAjoutsEtRejeuDuJournal() throws IOException {
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+    dns.addItem(AdresseIP.depuisTexte("2001:db8::1"), new NomMachine("v6.maison.fr"));
+    dns.addItem(new AdresseIP("10.0.0.2"), new NomMachine("élysée.maison.fr"));
+    try {
+      dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("deux.maison.fr"));
+      fail("Adresse en double acceptée");
+    } catch (IllegalArgumentException e) {
+      assertEquals("ERREUR : L'adresse IP existe déjà !", e.getMessage());
+    }
+    try {
+      dns.addItems(List.of(new DnsItem(new AdresseIP("10.0.0.3"), new NomMachine("trois.maison.fr")),
+          new DnsItem(new AdresseIP("10.0.0.4"), new NomMachine("un.maison.fr"))));
+      fail("Lot en conflit accepté");
+    } catch (LotInvalideException e) {
+      assertEquals(1, e.getConflits().size());
+    }
+    assertNull(dns.getItem(new NomMachine("trois.maison.fr")));
+
+    DnsHorsTas relu = new DnsHorsTas(BASE);
+    assertEquals(6, relu.getNombre());
+    assertEquals("v6.maison.fr", relu.getItem(AdresseIP.depuisTexte("2001:db8::1")).getNomMachine().getNomComplet());
+    assertEquals("10.0.0.2", relu.getItem(new NomMachine("élysée.maison.fr")).getAdresseIP().getIp());
+    assertEquals(List.of("un.maison.fr", "v6.maison.fr", "élysée.maison.fr"), noms(relu.getItems("maison.fr")));
+    assertEquals(List.of("un.maison.fr"), noms(relu.getItemsParMotif("un*", 10)));
+    assertEquals(List.of("10.0.0.1", "10.0.0.2", "2001:db8::1"), adresses(relu.getItems("maison.fr", true)));
+
+    // Le journal est au format de Dns, qui le relit.
+    Dns tas = new Dns(BASE);
+    assertEquals("élysée.maison.fr", tas.getItem(new AdresseIP("10.0.0.2")).getNomMachine().getNomComplet());
+  }
+
+  @Test
+  public void testMemesResultatsQueDns() throws IOException {
+    List<DnsItem> lot = new ArrayList<>();
+    lot.add(new DnsItem(new AdresseIP("193.51.40.1"), new NomMachine("pc1.dept.uvsq.fr")));
+    lot.add(new DnsItem(new AdresseIP("193.51.40.2"), new NomMachine("dept.uvsq.fr")));
+    lot.add(new DnsItem(new AdresseIP("10.0.0.1"), new NomMachine("pc2.maison.fr")));
+    lot.add(new DnsItem(new AdresseIP("193.51.31.91"), new NomMachine("www2.uvsq.fr")));
+    for (int i = 0; i < 300; i++) {
+      lot.add(new DnsItem(AdresseIP.depuisEntier(0xC0A80000 + i * 7), new NomMachine("h" + i + ".lan" + i % 5 + ".fr")));
+    }
+    dns.addItems(lot);
+    Files.copy(BASE, BASE_TAS);
+    Files.copy(JOURNAL, JOURNAL_TAS);
+    Dns tas = new Dns(BASE_TAS);
+
+    for (String domaine : List.of("uvsq.fr", "fr", "dept.uvsq.fr", "lan3.fr", "inconnu.fr")) {
+      assertEquals(noms(tas.getItems(domaine)), noms(dns.getItems(domaine)));
+      assertEquals(adresses(tas.getItems(domaine, true)), adresses(dns.getItems(domaine, true)));
+      assertEquals(noms(tas.getItemsRecursif(domaine).collect(Collectors.toList())),
+          noms(dns.getItemsRecursif(domaine).collect(Collectors.toList())));
+      assertEquals(tas.getTailleZone(domaine), dns.getTailleZone(domaine));
+    }
+    for (String bloc : List.of("193.51.31.0/24", "193.51.0.0/16", "192.168.0.0/23", "0.0.0.0/0", "10.0.0.1/32")) {
+      assertEquals(adresses(tas.getItems(new Cidr(bloc))), adresses(dns.getItems(new Cidr(bloc))));
+    }
+    for (String motif : List.of("h1*", "w*", "www.uvsq.*", "dept.*", "h29.lan4.fr*", "*.uvsq.fr", "z*")) {
+      assertEquals(noms(tas.getItemsParMotif(motif, 5)), noms(dns.getItemsParMotif(motif, 5)));
+    }
+  }
+
+  @Test
+  public void testGrandeBase() throws IOException {
+    // Assez d'enregistrements pour remplir plusieurs segments et agrandir les index.
+    List<DnsItem> lot = new ArrayList<>();
+    for (int i = 0; i < 300_000; i++) {
+      lot.add(new DnsItem(AdresseIP.depuisEntier(0x0A000000 + i), new NomMachine("machine" + i + ".d" + i % 100 + ".fr")));
+    }
+    dns.addItems(lot);
+
+    assertTrue(dns.getOctetsHorsTas() > 2L * MemoireHorsTas.TAILLE_SEGMENT);
+    for (int i = 0; i < 300_000; i += 997) {
+      assertEquals(AdresseIP.depuisEntier(0x0A000000 + i),
+          dns.getItem(new NomMachine("machine" + i + ".d" + i % 100 + ".fr")).getAdresseIP());
+      assertEquals("machine" + i + ".d" + i % 100 + ".fr",
+          dns.getItem(AdresseIP.depuisEntier(0x0A000000 + i)).getNomMachine().getNomComplet());
+    }
+    assertEquals(3000, dns.getItems("d42.fr").size());
+    assertEquals(65_536, dns.getItems(new Cidr("10.1.0.0/16")).size());
+    assertEquals(300_000, dns.getItems(new Cidr("10.0.0.0/8")).size());
+    assertEquals(List.of("machine299999.d99.fr"), noms(dns.getItemsParMotif("machine299999*", 10)));
+  }
+
+  @Test
+  public void testParcoursPagine() throws IOException {
+    List<DnsItem> lot = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      lot.add(new DnsItem(AdresseIP.depuisEntier(0x0A000000 + (i * 37) % 200), new NomMachine("h" + i + ".maison.fr")));
+    }
+    lot.add(new DnsItem(AdresseIP.depuisTexte("2001:db8::1"), new NomMachine("v6.maison.fr")));
+    lot.add(new DnsItem(AdresseIP.depuisTexte("::ffff"), new NomMachine("v6bis.maison.fr")));
+    lot.add(new DnsItem(new AdresseIP("10.0.0.250"), new NomMachine("élysée.maison.fr")));
+    dns.addItems(lot);
+
+    List<DnsItem> parNom = dns.getItems("maison.fr");
+    List<DnsItem> parAdresse = dns.getItems("maison.fr", true);
+    assertEquals(parNom, iterer(dns.parcourirParNom("maison.fr", null)));
+    assertEquals(parAdresse, iterer(dns.parcourirParAdresse("maison.fr", null)));
+    for (int i = 0; i < parNom.size(); i += 17) {
+      assertEquals(parNom.subList(i + 1, parNom.size()),
+          iterer(dns.parcourirParNom("maison.fr", parNom.get(i).getNomMachine())));
+      assertEquals(parAdresse.subList(i + 1, parAdresse.size()),
+          iterer(dns.parcourirParAdresse("maison.fr", parAdresse.get(i).getAdresseIP())));
+    }
+    assertEquals(List.of("v6bis.maison.fr", "v6.maison.fr"),
+        noms(iterer(dns.parcourirParAdresse("maison.fr", new AdresseIP("255.255.255.255")))));
+    assertEquals(List.of("élysée.maison.fr"),
+        noms(iterer(dns.parcourirParNom("maison.fr", new NomMachine("v6bis.maison.fr")))));
+    assertFalse(dns.parcourirParNom("inconnu.fr", null).hasNext());
+    assertFalse(dns.parcourirParAdresse("inconnu.fr", null).hasNext());
+  }
+
+  @Test
+  public void testIndexTrieApresAjouts() throws IOException {
+    List<DnsItem> attendus = new ArrayList<>();
+    for (int i = 0; i < 60; i++) {
+      DnsItem item = new DnsItem(AdresseIP.depuisEntier(0x0A000000 + (i * 23) % 60),
+          new NomMachine("n" + (i * 41) % 60 + ".lot.fr"));
+      if (i % 7 == 0) {
+        dns.addItem(item.getAdresseIP(), item.getNomMachine());
+      } else {
+        dns.addItems(List.of(item));
+      }
+      attendus.add(item);
+      if (i % 5 == 0) {
+        attendus.sort(Comparator.comparing(DnsItem::getNomMachine, NomMachine.ORDRE_NOM_MACHINE));
+        assertEquals(attendus, iterer(dns.parcourirParNom("lot.fr", null)));
+        attendus.sort(Comparator.comparing(DnsItem::getAdresseIP));
+        assertEquals(attendus.subList(i / 2 + 1, attendus.size()),
+            iterer(dns.parcourirParAdresse("lot.fr", attendus.get(i / 2).getAdresseIP())));
+      }
+    }
+  }
+
+  private static List<DnsItem> iterer(Iterator<DnsItem> items) {
+    List<DnsItem> liste = new ArrayList<>();
+    items.forEachRemaining(liste::add);
+    return liste;
+  }
+
+  @Test
+  public void testCidrApresAjouts() throws IOException {
+    assertEquals(List.of("193.51.25.12", "193.51.31.90", "193.51.31.154"),
+        adresses(dns.getItems(new Cidr("128.0.0.0/1"))));
+    dns.addItem(new AdresseIP("255.255.255.255"), new NomMachine("dernier.maison.fr"));
+    dns.addItem(new AdresseIP("2001:db8::1"), new NomMachine("v6.maison.fr"));
+    dns.addItem(new AdresseIP("193.51.31.100"), new NomMachine("cent.uvsq.fr"));
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+
+    assertEquals(List.of("193.51.31.90", "193.51.31.100", "193.51.31.154"),
+        adresses(dns.getItems(new Cidr("193.51.31.0/24"))));
+    assertEquals(List.of("255.255.255.255"),
+        adresses(dns.getItems(new Cidr("255.255.255.255/32"))));
+    assertEquals(List.of("10.0.0.1"), adresses(dns.getItems(new Cidr("0.0.0.0/1"))));
+    assertEquals(6, dns.getItems(new Cidr("0.0.0.0/0")).size());
+    assertTrue(dns.getItems(new Cidr("11.0.0.0/8")).isEmpty());
+  }
+
+  @Test
+  public void testCompacter() throws IOException {
+    dns.addItem(new AdresseIP("10.0.0.2"), new NomMachine("élysée.maison.fr"));
+    dns.addItems(List.of(new DnsItem(new AdresseIP("2001:db8::1"),
+        new NomMachine("v6.maison.fr"))));
+    dns.compacter();
+
+    assertFalse(Files.exists(JOURNAL));
+    assertEquals(List.of("ecampus.uvsq.fr 193.51.25.12", "poste.uvsq.fr 193.51.31.154",
+        "www.uvsq.fr 193.51.31.90", "élysée.maison.fr 10.0.0.2", "v6.maison.fr 2001:db8::1"),
+        Files.readAllLines(BASE));
+    dns.addItem(new AdresseIP("10.0.0.3"), new NomMachine("trois.maison.fr"));
+    DnsHorsTas relu = new DnsHorsTas(BASE);
+    assertEquals(6, relu.getNombre());
+    assertEquals("trois.maison.fr",
+        relu.getItem(new AdresseIP("10.0.0.3")).getNomMachine().getNomComplet());
+  }
+
+  @Test
+  public void testCompactageAutomatiqueAuSeuil() throws Exception {
+    Files.write(BASE_TAS, List.of("www.uvsq.fr 193.51.31.90"));
+    DnsHorsTas base = new DnsHorsTas(BASE_TAS, 2);
+    base.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+    base.addItem(new AdresseIP("10.0.0.2"), new NomMachine("deux.maison.fr"));
+
+    Path journalCompacte = BASE_TAS.resolveSibling(BASE_TAS.getFileName() + ".journal.compactage");
+    long limite = System.currentTimeMillis() + 5_000;
+    while ((Files.exists(JOURNAL_TAS) || Files.exists(journalCompacte))
+        && System.currentTimeMillis() < limite) {
+      Thread.sleep(10);
+    }
+    assertFalse(Files.exists(JOURNAL_TAS));
+    assertEquals(3, Files.readAllLines(BASE_TAS).size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBaseInvalide() throws IOException {
+    Files.write(BASE, List.of("www.uvsq.fr 193.51.31.900"));
+    new DnsHorsTas(BASE);
+  }
+
+  @Test
+  public void testComparerCanonique() {
+    assertTrue(DnsHorsTas.comparerCanonique("pc1.dept.uvsq.fr", "ecampus.uvsq.fr") < 0);
+    assertTrue(DnsHorsTas.comparerCanonique("dept.uvsq.fr", "pc1.dept.uvsq.fr") < 0);
+    assertTrue(DnsHorsTas.comparerCanonique("a.uvsq.fr", "a.uvsq.com") > 0);
+    assertEquals(0, DnsHorsTas.comparerCanonique("www.uvsq.fr", "www.uvsq.fr"));
+  }
+}
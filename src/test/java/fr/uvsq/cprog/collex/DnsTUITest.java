@@ -1,6 +1,7 @@
 package fr.uvsq.cprog.collex;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -224,4 +225,81 @@ public class DnsTUITest {
     String sortie = sortieCmd.toString().trim();
     assertTrue(sortie.contains("ERREUR"));
   }
+
+  @Test
+  public void testCommandeConvert() {
+    DnsTUI tui = prepareDnsTUIAvecEntree("convert base.txt base.bin\n");
+    assertTrue(tui.nextCommande() instanceof CommandeConvertir);
+  }
+
+  @Test
+  public void testCommandeConvertSyntaxeIncorrecte() {
+    DnsTUI tui = prepareDnsTUIAvecEntree("convert base.txt\n");
+    Commande cmd = tui.nextCommande();
+
+    ByteArrayOutputStream sortieCmd = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(sortieCmd));
+
+    cmd.execute();
+    assertTrue(sortieCmd.toString().contains("ERREUR"));
+  }
+
+  @Test
+  public void testCommandeImport() {
+    assertTrue(DnsTUI.analyser(dns, "import hotes.txt") instanceof CommandeImport);
+
+    ResultatCommande resultat = new ResultatCommande();
+    DnsTUI.analyser(dns, "import").execute(resultat);
+    assertTrue(resultat.getLignes().get(0).startsWith("ERREUR : Commande 'import' invalide"));
+  }
+
+  @Test
+  public void testCommandeListPlage() {
+    assertTrue(DnsTUI.analyser(dns, "ls -r 193.51.0.0/16") instanceof CommandeListPlage);
+  }
+
+  @Test
+  public void testCommandeGetNomIpv6() {
+    assertTrue(DnsTUI.analyser(dns, "2001:db8::1") instanceof CommandeGetNom);
+    assertTrue(DnsTUI.analyser(dns, "::1") instanceof CommandeGetNom);
+  }
+
+  @Test
+  public void testCommandeFind() {
+    assertTrue(DnsTUI.analyser(dns, "find web-*") instanceof CommandeFind);
+    assertTrue(DnsTUI.analyser(dns, "find -n 10 *.uvsq.fr") instanceof CommandeFind);
+    assertFalse(DnsTUI.analyser(dns, "find -n dix web-*") instanceof CommandeFind);
+  }
+
+  @Test
+  public void testCommandeListPaginee() {
+    assertTrue(DnsTUI.analyser(dns, "ls -a -n 10 uvsq.fr") instanceof CommandeList);
+    assertTrue(DnsTUI.analyser(dns, "ls -n 10 -s bnd3dw uvsq.fr") instanceof CommandeList);
+    assertFalse(DnsTUI.analyser(dns, "ls -n dix uvsq.fr") instanceof CommandeList);
+    assertFalse(DnsTUI.analyser(dns, "ls -n 10") instanceof CommandeList);
+    assertFalse(DnsTUI.analyser(dns, "ls -x uvsq.fr") instanceof CommandeList);
+  }
+
+  @Test
+  public void testCommandesDeZone() {
+    assertTrue(DnsTUI.analyser(dns, "ls -R uvsq.fr") instanceof CommandeListRecursive);
+    assertTrue(DnsTUI.analyser(dns, "ls -c uvsq.fr") instanceof CommandeTailleZone);
+  }
+
+  @Test
+  public void testAnalyserEcritSurLeFluxDonne() throws Exception {
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("machine.test.fr"));
+    ByteArrayOutputStream sortieCmd = new ByteArrayOutputStream();
+    SortieTamponnee sortie = new SortieTamponnee(sortieCmd);
+
+    DnsTUI.analyser(dns, "  10.0.0.1 ").execute(sortie);
+    DnsTUI.analyser(dns, "ls").execute(sortie);
+    assertEquals(0, sortieCmd.size());
+    sortie.vider();
+
+    String[] lignes = sortieCmd.toString().split("\\R");
+    assertEquals("machine.test.fr", lignes[0]);
+    assertTrue(lignes[1].startsWith("ERREUR : Commande 'ls' invalide"));
+    assertEquals("", sortieCapturee.toString());
+  }
 }
@@ -0,0 +1,150 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DnsTableTrieeTest {
+  private Path texte;
+  private Path table;
+  private DnsTableTriee dns;
+
+  @Before
+  public void setUp() throws IOException {
+    texte = Files.createTempFile("dns_test_table", ".txt");
+    table = texte.resolveSibling(texte.getFileName() + TableTriee.EXTENSION);
+    Files.write(texte, List.of("ecampus.uvsq.fr 193.51.25.12", "poste.uvsq.fr 193.51.31.154",
+        "www.uvsq.fr 193.51.31.90", "doublon.uvsq.fr 193.51.31.90", "pc1.dept.uvsq.fr 193.51.40.1",
+        "élysée.maison.fr 10.0.0.2", "v6.maison.fr 2001:db8::1"));
+    assertEquals(6, TableTriee.convertir(texte, table));
+    dns = new DnsTableTriee(table);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    dns.close();
+    Files.deleteIfExists(texte);
+    Files.deleteIfExists(table);
+    Files.deleteIfExists(texte.resolveSibling(texte.getFileName() + ".journal"));
+  }
+
+  private static List<String> noms(List<DnsItem> items) {
+    return items.stream().map(item -> item.getNomMachine().getNomComplet()).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testRecherches() {
+    assertEquals(6, dns.getNombre());
+    assertEquals("193.51.31.154", dns.getItem(new NomMachine("poste.uvsq.fr")).getAdresseIP().getIp());
+    DnsItem item = dns.getItem(new AdresseIP("193.51.31.90"));
+    assertEquals("www.uvsq.fr", item.getNomMachine().getNomComplet());
+    assertEquals("uvsq.fr", item.getNomMachine().getNomDomaine());
+    assertEquals("10.0.0.2", dns.getItemParNom("élysée.maison.fr").getAdresseIP().getIp());
+    assertEquals("v6.maison.fr", dns.getItemParAdresse("2001:db8::1").getNomMachine().getNomComplet());
+    assertNull(dns.getItem(new NomMachine("doublon.uvsq.fr")));
+    assertNull(dns.getItem(new NomMachine("aaa.aaa")));
+    assertNull(dns.getItem(new NomMachine("zzz.zzz")));
+    assertNull(dns.getItem(new AdresseIP("8.8.8.8")));
+  }
+
+  @Test
+  public void testListes() {
+    assertEquals(List.of("ecampus.uvsq.fr", "poste.uvsq.fr", "www.uvsq.fr"), noms(dns.getItems("uvsq.fr")));
+    assertEquals(List.of("élysée.maison.fr", "v6.maison.fr"), noms(dns.getItems("maison.fr", true)));
+    assertEquals(List.of("ecampus.uvsq.fr", "www.uvsq.fr", "poste.uvsq.fr"),
+        noms(dns.getItems(new Cidr("193.51.0.0/19"))));
+    assertEquals(List.of("pc1.dept.uvsq.fr", "ecampus.uvsq.fr", "poste.uvsq.fr", "www.uvsq.fr"),
+        noms(dns.getItemsRecursif("uvsq.fr").collect(Collectors.toList())));
+    assertEquals(6, dns.getTailleZone("fr"));
+    assertEquals(List.of("pc1.dept.uvsq.fr", "poste.uvsq.fr"), noms(dns.getItemsParMotif("p*", 10)));
+  }
+
+  @Test
+  public void testMemesResultatsQueDns() throws IOException {
+    List<String> lignes = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++) {
+      lignes.add("machine" + i + ".d" + i % 50 + ".fr " + AdresseIP.depuisEntier(0x0A000000 + i * 3).getIp());
+    }
+    Files.write(texte, lignes);
+    TableTriee.convertir(texte, table);
+    Dns tas = new Dns(texte);
+    try (DnsTableTriee grande = new DnsTableTriee(table)) {
+      for (int i = 0; i < 20_000; i += 101) {
+        NomMachine nom = new NomMachine("machine" + i + ".d" + i % 50 + ".fr");
+        assertEquals(tas.getItem(nom), grande.getItem(nom));
+        AdresseIP ip = AdresseIP.depuisEntier(0x0A000000 + i * 3 + i % 2);
+        assertEquals(tas.getItem(ip), grande.getItem(ip));
+      }
+      assertEquals(tas.getItems("d7.fr"), grande.getItems("d7.fr"));
+      assertEquals(tas.getItems("d7.fr", true), grande.getItems("d7.fr", true));
+      assertEquals(tas.getItems(new Cidr("10.0.64.0/18")), grande.getItems(new Cidr("10.0.64.0/18")));
+      assertEquals(tas.getItemsParMotif("machine1999*", 5), grande.getItemsParMotif("machine1999*", 5));
+    }
+  }
+
+  @Test
+  public void testParcoursParNom() {
+    Iterator<DnsItem> items = dns.parcourirParNom("uvsq.fr", null);
+    assertEquals("ecampus.uvsq.fr", items.next().getNomMachine().getNomComplet());
+    assertEquals(List.of("poste.uvsq.fr", "www.uvsq.fr"),
+        noms(iterer(dns.parcourirParNom("uvsq.fr", new NomMachine("ecampus.uvsq.fr")))));
+    assertEquals(List.of("www.uvsq.fr"), noms(iterer(dns.parcourirParNom("uvsq.fr", new NomMachine("q.uvsq.fr")))));
+    assertFalse(dns.parcourirParNom("uvsq.fr", new NomMachine("www.uvsq.fr")).hasNext());
+    assertFalse(dns.parcourirParNom("inconnu.fr", null).hasNext());
+  }
+
+  @Test
+  public void testParcoursParAdresse() {
+    assertEquals(dns.getItems("uvsq.fr", true), iterer(dns.parcourirParAdresse("uvsq.fr", null)));
+    assertEquals(List.of("www.uvsq.fr", "poste.uvsq.fr"),
+        noms(iterer(dns.parcourirParAdresse("uvsq.fr", new AdresseIP("193.51.25.12")))));
+    assertEquals(List.of("v6.maison.fr"),
+        noms(iterer(dns.parcourirParAdresse("maison.fr", new AdresseIP("10.0.0.2")))));
+    assertFalse(dns.parcourirParAdresse("maison.fr", AdresseIP.depuisTexte("2001:db8::1")).hasNext());
+    assertFalse(dns.parcourirParAdresse("inconnu.fr", null).hasNext());
+  }
+
+  private static List<DnsItem> iterer(Iterator<DnsItem> items) {
+    List<DnsItem> liste = new ArrayList<>();
+    items.forEachRemaining(liste::add);
+    return liste;
+  }
+
+  @Test
+  public void testLectureSeule() {
+    try {
+      dns.addItem(new AdresseIP("10.0.0.9"), new NomMachine("neuf.maison.fr"));
+      fail("Ajout accepté dans une table triée");
+    } catch (IOException e) {
+      assertEquals("La base est en lecture seule", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testFichierCorrompu() throws IOException {
+    byte[] octets = Files.readAllBytes(table);
+    // Dernier octet de l'index, juste avant la somme de contrôle.
+    octets[octets.length - 9] ^= 1;
+    Files.write(table, octets);
+    try {
+      new DnsTableTriee(table).close();
+      fail("Table corrompue acceptée");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().startsWith("Somme de contrôle invalide"));
+    }
+  }
+}
@@ -1,14 +1,20 @@
 package fr.uvsq.cprog.collex;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.After;
 import org.junit.Before;
@@ -17,6 +23,8 @@ import org.junit.Test;
 
 public class DnsTest {
   private static final Path TEMP_FILE = Path.of("dns_test_base.txt");
+  private static final Path JOURNAL = Path.of("dns_test_base.txt.journal");
+  private static final Path INSTANTANE = Path.of("dns_test_base.txt.bin");
   private Dns dns;
 
   @Before
@@ -25,6 +33,8 @@ public class DnsTest {
     List<String> lignes = List.of("ecampus.uvsq.fr 193.51.25.12", "poste.uvsq.fr 193.51.31.154",
         "www.uvsq.fr 193.51.31.90");
     Files.write(TEMP_FILE, lignes);
+    Files.deleteIfExists(JOURNAL);
+    Files.deleteIfExists(INSTANTANE);
 
     // Instancie la classe Dns, elle lira config.properties depuis le classpath
     dns = new Dns();
@@ -33,6 +43,8 @@ public class DnsTest {
   @After
   public void cleanup() throws IOException {
     Files.deleteIfExists(TEMP_FILE);
+    Files.deleteIfExists(JOURNAL);
+    Files.deleteIfExists(INSTANTANE);
   }
 
   @Test
@@ -117,7 +129,7 @@ public class DnsTest {
     assertNotNull(itemNom);
     assertEquals(itemIp, itemNom);
 
-    List<String> lignes = Files.readAllLines(TEMP_FILE);
+    List<String> lignes = Files.readAllLines(JOURNAL);
     boolean presentDansFichier = lignes.stream()
         .anyMatch(s -> s.contains(nouveauNom.getNomComplet()) && s.contains(nouvelleIp.getIp()));
     assertTrue(presentDansFichier);
@@ -128,9 +140,375 @@ public class DnsTest {
     AdresseIP ipTest = new AdresseIP("10.0.0.99");
     NomMachine nomTest = new NomMachine("test.maison.fr");
     dns.addItem(ipTest, nomTest);
+    dns.compacter();
 
     List<String> lignes = Files.readAllLines(TEMP_FILE);
 
+    assertEquals(4, lignes.size());
     assertTrue(lignes.stream().anyMatch(l -> l.contains(ipTest.getIp()) && l.contains(nomTest.getNomComplet())));
+    assertFalse(Files.exists(JOURNAL));
+  }
+
+  @Test
+  public void testAddItem_nAjouteQuUneLigneAuJournal() throws IOException {
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+    dns.addItem(new AdresseIP("10.0.0.2"), new NomMachine("deux.maison.fr"));
+
+    assertEquals(3, Files.readAllLines(TEMP_FILE).size());
+    assertEquals(List.of("un.maison.fr 10.0.0.1", "deux.maison.fr 10.0.0.2"), Files.readAllLines(JOURNAL));
+  }
+
+  @Test
+  public void testAddItems_ajouteLeLotEnUneEcriture() throws IOException {
+    dns.addItems(List.of(item("10.0.0.1", "un.maison.fr"), item("10.0.0.2", "deux.maison.fr")));
+
+    assertEquals("10.0.0.2", dns.getItem(new NomMachine("deux.maison.fr")).getAdresseIP().getIp());
+    assertEquals(2, dns.getItems("maison.fr").size());
+    assertEquals(List.of("un.maison.fr 10.0.0.1", "deux.maison.fr 10.0.0.2"), Files.readAllLines(JOURNAL));
+    assertEquals(2, new Dns().getItems("maison.fr").size());
+  }
+
+  @Test
+  public void testAddItems_rapporteTousLesConflitsSansRienAjouter() throws IOException {
+    List<DnsItem> lot = List.of(item("10.0.0.1", "un.maison.fr"), item("193.51.31.90", "deux.maison.fr"),
+        item("10.0.0.3", "www.uvsq.fr"), item("10.0.0.1", "quatre.maison.fr"), item("10.0.0.5", "un.maison.fr"));
+    try {
+      dns.addItems(lot);
+      fail("Le lot aurait dû être refusé");
+    } catch (LotInvalideException e) {
+      List<LotInvalideException.Conflit> conflits = e.getConflits();
+      assertEquals(4, conflits.size());
+      assertEquals(lot.get(1), conflits.get(0).getItem());
+      assertEquals("L'adresse IP existe déjà", conflits.get(0).getMotif());
+      assertEquals(lot.get(2), conflits.get(1).getItem());
+      assertEquals("Le nom de machine existe déjà", conflits.get(1).getMotif());
+      assertEquals(lot.get(3), conflits.get(2).getItem());
+      assertEquals("L'adresse IP est en double dans le lot", conflits.get(2).getMotif());
+      assertEquals(lot.get(4), conflits.get(3).getItem());
+      assertEquals("Le nom de machine est en double dans le lot", conflits.get(3).getMotif());
+    }
+
+    assertNull(dns.getItem(new NomMachine("un.maison.fr")));
+    assertTrue(dns.getItems("maison.fr").isEmpty());
+    assertFalse(Files.exists(JOURNAL));
+  }
+
+  @Test
+  public void testAddItems_lotVide() throws IOException {
+    dns.addItems(List.of());
+    assertFalse(Files.exists(JOURNAL));
+  }
+
+  private static DnsItem item(String ip, String nom) {
+    return new DnsItem(new AdresseIP(ip), new NomMachine(nom));
+  }
+
+  @Test
+  public void testGetItems_parBlocCidr() throws IOException {
+    dns.addItem(new AdresseIP("193.51.31.100"), new NomMachine("ajout.maison.fr"));
+
+    List<String> attendu = List.of("193.51.31.90", "193.51.31.100", "193.51.31.154");
+    assertEquals(attendu, adresses(dns.getItems(new Cidr("193.51.31.0/24"))));
+    assertEquals(4, dns.getItems(new Cidr("193.51.0.0/16")).size());
+    assertTrue(dns.getItems(new Cidr("10.0.0.0/8")).isEmpty());
+
+    // L'arbre est reconstruit par le rejeu du journal et par l'instantané.
+    assertEquals(attendu, adresses(new Dns().getItems(new Cidr("193.51.31.0/24"))));
+    dns.exporterInstantane();
+    assertEquals(attendu, adresses(new Dns().getItems(new Cidr("193.51.31.0/24"))));
+  }
+
+  @Test
+  public void testGetItemsRecursif_sousDomaines() throws IOException {
+    dns.addItem(new AdresseIP("193.51.40.1"), new NomMachine("pc1.dept.uvsq.fr"));
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+
+    List<String> attendu = List.of("pc1.dept.uvsq.fr", "ecampus.uvsq.fr", "poste.uvsq.fr", "www.uvsq.fr");
+    assertEquals(attendu, noms(dns.getItemsRecursif("uvsq.fr").collect(Collectors.toList())));
+    assertEquals(3, dns.getItems("uvsq.fr").size());
+    assertEquals(4, dns.getTailleZone("uvsq.fr"));
+    assertEquals(5, dns.getTailleZone("fr"));
+    assertEquals(0, dns.getItemsRecursif("inconnu.fr").count());
+
+    // L'arbre est reconstruit par le rejeu du journal et par l'instantané.
+    Dns relu = new Dns();
+    assertEquals(attendu, noms(relu.getItemsRecursif("uvsq.fr").collect(Collectors.toList())));
+    assertEquals(5, relu.getTailleZone("fr"));
+    dns.exporterInstantane();
+    relu = new Dns();
+    assertEquals(attendu, noms(relu.getItemsRecursif("uvsq.fr").collect(Collectors.toList())));
+    assertEquals(5, relu.getTailleZone("fr"));
+  }
+
+  @Test
+  public void testIpv6() throws IOException {
+    dns.addItem(AdresseIP.depuisTexte("2001:db8::2"), new NomMachine("v6b.uvsq.fr"));
+    dns.addItem(AdresseIP.depuisTexte("2001:db8::1"), new NomMachine("v6a.uvsq.fr"));
+
+    assertEquals("v6a.uvsq.fr", dns.getItem(new AdresseIP("2001:0db8:0::1")).getNomMachine().getNomComplet());
+    assertEquals("2001:db8::2", dns.getItem(new NomMachine("v6b.uvsq.fr")).getAdresseIP().getIp());
+    List<String> parAdresse = List.of("193.51.25.12", "193.51.31.90", "193.51.31.154", "2001:db8::1",
+        "2001:db8::2");
+    assertEquals(parAdresse, adresses(dns.getItems("uvsq.fr", true)));
+    assertEquals(3, dns.getItems(new Cidr("0.0.0.0/0")).size());
+    try {
+      dns.addItem(new AdresseIP("2001:db8::1"), new NomMachine("doublon.uvsq.fr"));
+      fail("Adresse IPv6 en double acceptée");
+    } catch (IllegalArgumentException e) {
+      // attendu
+    }
+
+    // Les adresses IPv6 sont relues depuis le journal et depuis l'instantané.
+    assertEquals(parAdresse, adresses(new Dns().getItems("uvsq.fr", true)));
+    dns.exporterInstantane();
+    Dns relu = new Dns();
+    assertEquals(parAdresse, adresses(relu.getItems("uvsq.fr", true)));
+    assertEquals("v6a.uvsq.fr", relu.getItem(new AdresseIP("2001:db8::1")).getNomMachine().getNomComplet());
+  }
+
+  @Test
+  public void testRecherchesParLeCache() throws IOException {
+    MetriquesDns metriques = dns.getMetriques();
+
+    assertNull(dns.getItemParNom("nouveau.uvsq.fr"));
+    assertNull(dns.getItemParNom("nouveau.uvsq.fr"));
+    assertNull(dns.getItemParAdresse("10.0.0.1"));
+    assertEquals("www.uvsq.fr", dns.getItemParAdresse("193.51.31.90").getNomMachine().getNomComplet());
+    assertEquals("www.uvsq.fr", dns.getItemParAdresse("193.51.31.90").getNomMachine().getNomComplet());
+    // Les absences rejetées par les filtres de Bloom ne sont pas mises en cache.
+    assertEquals(1, metriques.getCacheSucces());
+    assertEquals(4, metriques.getCacheEchecs());
+
+    // L'ajout invalide les absences mises en cache, par nom et par adresse.
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("nouveau.uvsq.fr"));
+    assertEquals("10.0.0.1", dns.getItemParNom("nouveau.uvsq.fr").getAdresseIP().getIp());
+    assertEquals("nouveau.uvsq.fr", dns.getItemParAdresse("10.0.0.1").getNomMachine().getNomComplet());
+
+    // Une forme non canonique n'est pas conservée, donc jamais périmée.
+    assertNull(dns.getItemParAdresse("2001:DB8::1"));
+    dns.addItems(List.of(new DnsItem(new AdresseIP("2001:db8::1"), new NomMachine("v6.uvsq.fr"))));
+    assertNotNull(dns.getItemParAdresse("2001:DB8::1"));
+    assertNotNull(dns.getItemParAdresse("2001:db8::1"));
+  }
+
+  @Test
+  public void testRecherchesSansCache() {
+    dns.configurerCache(0, 0);
+
+    assertNotNull(dns.getItemParNom("www.uvsq.fr"));
+    assertNotNull(dns.getItemParNom("www.uvsq.fr"));
+    assertEquals(0, dns.getMetriques().getCacheSucces());
+  }
+
+  @Test
+  public void testFiltresDeBloom() throws IOException {
+    MetriquesDns metriques = dns.getMetriques();
+    long octets = metriques.getFiltreOctets();
+    assertTrue(octets > 0);
+
+    assertNull(dns.getItemParNom("absent.uvsq.fr"));
+    assertNull(dns.getItemParAdresse("10.9.9.9"));
+    assertNotNull(dns.getItemParNom("www.uvsq.fr"));
+    assertEquals(2, metriques.getFiltreRejets() + metriques.getFiltreFauxPositifs());
+    assertEquals(2, metriques.getRecherchesManquees());
+
+    // Au-delà de leur capacité, les filtres sont reconstruits plus grands.
+    List<DnsItem> lot = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      lot.add(new DnsItem(AdresseIP.depuisEntier(0x0A000000 + i), new NomMachine("h" + i + ".lot.fr")));
+    }
+    dns.addItems(lot);
+    assertTrue(metriques.getFiltreOctets() > octets);
+    for (DnsItem item : lot) {
+      assertNotNull(dns.getItemParNom(item.getNomMachine().getNomComplet()));
+      assertNotNull(dns.getItemParAdresse(item.getAdresseIP().getIp()));
+    }
+
+    dns.configurerFiltres(0.001);
+    assertNotNull(dns.getItemParNom("h1999.lot.fr"));
+    assertNull(dns.getItemParNom("h2000.lot.fr"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConfigurerFiltres_tauxInvalide() {
+    dns.configurerFiltres(0);
+  }
+
+  @Test
+  public void testGetItemsParMotif() throws IOException {
+    dns.addItem(new AdresseIP("193.51.40.1"), new NomMachine("pc1.dept.uvsq.fr"));
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("pc2.maison.fr"));
+
+    assertEquals(List.of("pc1.dept.uvsq.fr", "pc2.maison.fr"), noms(dns.getItemsParMotif("pc*", 10)));
+    assertEquals(List.of("pc1.dept.uvsq.fr"), noms(dns.getItemsParMotif("pc*", 1)));
+    assertEquals(List.of("poste.uvsq.fr"), noms(dns.getItemsParMotif("po*", 10)));
+    assertEquals(List.of("pc1.dept.uvsq.fr", "ecampus.uvsq.fr", "poste.uvsq.fr", "www.uvsq.fr"),
+        noms(dns.getItemsParMotif("*.uvsq.fr", 10)));
+    assertTrue(dns.getItemsParMotif("*.inconnu.fr", 10).isEmpty());
+    assertEquals(5, dns.getItemsParMotif("*", 10).size());
+
+    // L'index des noms est reconstruit par l'instantané.
+    dns.exporterInstantane();
+    assertEquals(List.of("pc1.dept.uvsq.fr", "pc2.maison.fr"), noms(new Dns().getItemsParMotif("pc*", 10)));
+  }
+
+  @Test
+  public void testGetItemsParMotif_motifInvalide() {
+    for (String motif : List.of("pc", "p*c", "*uvsq.fr", "pc**", "*.uvsq.*")) {
+      try {
+        dns.getItemsParMotif(motif, 10);
+        fail("Motif accepté : " + motif);
+      } catch (IllegalArgumentException e) {
+        assertEquals("Motif invalide : " + motif, e.getMessage());
+      }
+    }
+    try {
+      dns.getItemsParMotif("pc*", 0);
+      fail("Limite nulle acceptée");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Limite invalide : 0", e.getMessage());
+    }
+  }
+
+  private static List<String> noms(List<DnsItem> items) {
+    List<String> noms = new ArrayList<>();
+    for (DnsItem item : items) {
+      noms.add(item.getNomMachine().getNomComplet());
+    }
+    return noms;
+  }
+
+  private static List<String> adresses(List<DnsItem> items) {
+    List<String> adresses = new ArrayList<>();
+    for (DnsItem item : items) {
+      adresses.add(item.getAdresseIP().getIp());
+    }
+    return adresses;
+  }
+
+  @Test
+  public void testChargerBase_rejoueLeJournal() throws IOException {
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+
+    Dns relu = new Dns();
+    assertEquals("10.0.0.1", relu.getItem(new NomMachine("un.maison.fr")).getAdresseIP().getIp());
+    assertEquals(4, relu.getItems("uvsq.fr").size() + relu.getItems("maison.fr").size());
+  }
+
+  @Test
+  public void testChargerBase_ignoreUnAjoutInterrompu() throws IOException {
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+    Files.writeString(JOURNAL, "deux.maison.fr 10.0.", StandardOpenOption.APPEND);
+
+    Dns relu = new Dns();
+    assertNotNull(relu.getItem(new NomMachine("un.maison.fr")));
+    assertNull(relu.getItem(new NomMachine("deux.maison.fr")));
+  }
+
+  @Test
+  public void testChargerBase_ignoreUnAjoutTronqueEncoreValide() throws IOException {
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+    // Arrêt pendant l’écriture de « deux.maison.fr 10.0.0.123 ».
+    Files.writeString(JOURNAL, "deux.maison.fr 10.0.0.12", StandardOpenOption.APPEND);
+
+    Dns relu = new Dns();
+    assertNotNull(relu.getItem(new NomMachine("un.maison.fr")));
+    assertNull(relu.getItem(new NomMachine("deux.maison.fr")));
+    assertNull(relu.getItem(new AdresseIP("10.0.0.12")));
+
+    // La ligne tronquée est retirée : l’ajout suivant ne la prolonge pas.
+    relu.addItem(new AdresseIP("10.0.0.3"), new NomMachine("trois.maison.fr"));
+    Dns reluEncore = new Dns();
+    assertNotNull(reluEncore.getItem(new NomMachine("un.maison.fr")));
+    assertNotNull(reluEncore.getItem(new NomMachine("trois.maison.fr")));
+    assertNull(reluEncore.getItem(new NomMachine("deux.maison.fr")));
+  }
+
+  @Test
+  public void testExporterInstantane_chargeAuDemarrage() throws IOException {
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+    dns.exporterInstantane();
+    assertTrue(InstantaneBinaire.estInstantane(INSTANTANE));
+
+    // Le fichier texte est vidé sans changer de taille ni de date : seul
+    // l’instantané peut fournir les enregistrements.
+    long taille = Files.size(TEMP_FILE);
+    var date = Files.getLastModifiedTime(TEMP_FILE);
+    Files.write(TEMP_FILE, new byte[(int) taille]);
+    Files.setLastModifiedTime(TEMP_FILE, date);
+
+    Dns relu = new Dns();
+    assertEquals("10.0.0.1", relu.getItem(new NomMachine("un.maison.fr")).getAdresseIP().getIp());
+    assertEquals("193.51.31.90", relu.getItems("uvsq.fr", true).get(1).getAdresseIP().getIp());
+  }
+
+  @Test
+  public void testInstantane_ignoreSiLaBaseAChange() throws IOException {
+    dns.exporterInstantane();
+    Files.write(TEMP_FILE, List.of("seul.uvsq.fr 10.9.9.9"));
+
+    Dns relu = new Dns();
+    assertEquals(1, relu.getItems("uvsq.fr").size());
+    assertNotNull(relu.getItem(new NomMachine("seul.uvsq.fr")));
+  }
+
+  @Test
+  public void testCompacter_metAJourLInstantane() throws IOException {
+    dns.exporterInstantane();
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+    dns.compacter();
+
+    assertEquals(4, InstantaneBinaire.lire(INSTANTANE).size());
+  }
+
+  @Test
+  public void testCompactage_automatiqueAuSeuil() throws Exception {
+    Path fichier = Files.createTempFile("dns_test_compactage", ".txt");
+    Path journal = fichier.resolveSibling(fichier.getFileName() + ".journal");
+    Path journalCompacte = fichier.resolveSibling(fichier.getFileName() + ".journal.compactage");
+    try {
+      Dns base = new Dns(fichier, 2);
+      base.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+      base.addItem(new AdresseIP("10.0.0.2"), new NomMachine("deux.maison.fr"));
+
+      long limite = System.currentTimeMillis() + 5_000;
+      while ((Files.exists(journal) || Files.exists(journalCompacte)) && System.currentTimeMillis() < limite) {
+        Thread.sleep(10);
+      }
+      assertFalse(Files.exists(journal));
+      assertEquals(2, Files.readAllLines(fichier).size());
+    } finally {
+      Files.deleteIfExists(fichier);
+      Files.deleteIfExists(journal);
+    }
+  }
+
+  @Test
+  public void testGetItem_trouveChaqueEnregistrementDUneGrandeBase() throws IOException {
+    // Le coût des recherches selon la taille de la base est mesuré par
+    // DnsRechercheJmh ; ce test vérifie que les index couvrent toute la base.
+    int taille = 200_000;
+    Path fichier = Files.createTempFile("dns_test_grande", ".txt");
+    try {
+      List<String> lignes = new ArrayList<>(taille);
+      for (int i = 0; i < taille; i++) {
+        lignes.add("h" + i + ".grande.fr 10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255));
+      }
+      Files.write(fichier, lignes);
+      Dns base = new Dns(fichier);
+
+      for (int i = 0; i < taille; i++) {
+        String ip = "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255);
+        DnsItem parNom = base.getItem(new NomMachine("h" + i + ".grande.fr"));
+        assertNotNull(parNom);
+        assertEquals(ip, parNom.getAdresseIP().getIp());
+        assertSame(parNom, base.getItem(new AdresseIP(ip)));
+      }
+      assertNull(base.getItem(new NomMachine("h" + taille + ".grande.fr")));
+      assertNull(base.getItem(new AdresseIP("10.200.0.0")));
+    } finally {
+      Files.deleteIfExists(fichier);
+      Files.deleteIfExists(fichier.resolveSibling(fichier.getFileName() + ".journal"));
+    }
   }
 }
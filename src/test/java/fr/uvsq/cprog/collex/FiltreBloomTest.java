@@ -0,0 +1,75 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FiltreBloomTest {
+  private static final int CLES = 100_000;
+
+  @Test
+  public void testAucunFauxNegatif() {
+    FiltreBloom filtre = new FiltreBloom(CLES, 0.01);
+    for (int i = 0; i < CLES; i++) {
+      filtre.ajouter(("h" + i + ".test.fr").hashCode());
+    }
+    for (int i = 0; i < CLES; i++) {
+      assertTrue(filtre.peutContenir(("h" + i + ".test.fr").hashCode()));
+    }
+  }
+
+  @Test
+  public void testTauxDeFauxPositifs() {
+    FiltreBloom filtre = new FiltreBloom(CLES, 0.01);
+    for (int i = 0; i < CLES; i++) {
+      filtre.ajouter(AdresseIP.depuisEntier(i).hashCode());
+    }
+    int fauxPositifs = 0;
+    for (int i = CLES; i < 2 * CLES; i++) {
+      if (filtre.peutContenir(AdresseIP.depuisEntier(i).hashCode())) {
+        fauxPositifs++;
+      }
+    }
+    double taux = (double) fauxPositifs / CLES;
+    assertTrue("taux mesuré : " + taux, taux < 0.0115);
+  }
+
+  @Test
+  public void testTauxEstime() {
+    // Un bloc vide ne donne jamais de faux positif ; des blocs saturés toujours.
+    assertEquals(0, FiltreBloom.tauxEstime(0, 10, 7), 1e-12);
+    assertEquals(1, FiltreBloom.tauxEstime(1_000_000, 1, 7), 1e-6);
+    // Pour 1 % visé, un filtre classique de 19 blocs reste au-dessus de la cible.
+    assertTrue(FiltreBloom.tauxEstime(1000, 19, 7) > 0.01);
+    assertTrue(FiltreBloom.tauxEstime(1000, 20, 7) <= 0.01);
+  }
+
+  @Test
+  public void testTailleEtCapacite() {
+    FiltreBloom filtre = new FiltreBloom(1000, 0.01);
+    // 19 blocs de 64 octets pour un filtre classique, un de plus pour compenser
+    // le remplissage inégal des blocs.
+    assertEquals(1280, filtre.octets());
+    assertEquals(7, filtre.fonctions());
+    assertTrue(new FiltreBloom(1000, 0.001).octets() > filtre.octets());
+
+    for (int i = 0; i < 999; i++) {
+      filtre.ajouter(i);
+    }
+    assertFalse(filtre.estPlein());
+    filtre.ajouter(999);
+    assertTrue(filtre.estPlein());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTauxInvalide() {
+    new FiltreBloom(1000, 1.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCapaciteInvalide() {
+    new FiltreBloom(0, 0.01);
+  }
+}
@@ -0,0 +1,68 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+public class HistogrammeTest {
+  @Test
+  public void testClassesContiguesEtCroissantes() {
+    long precedente = -1;
+    for (long valeur = 0; valeur < 1 << 20; valeur++) {
+      int classe = Histogramme.classe(valeur);
+      assertTrue(valeur <= Histogramme.borneSuperieure(classe));
+      if (classe > 0) {
+        assertTrue(valeur > Histogramme.borneSuperieure(classe - 1));
+      }
+      assertTrue(classe >= precedente);
+      precedente = classe;
+    }
+    assertTrue(Histogramme.classe(Long.MAX_VALUE) >= 0);
+  }
+
+  @Test
+  public void testQuantiles() {
+    Histogramme histogramme = new Histogramme();
+    for (int i = 1; i <= 1_000; i++) {
+      histogramme.enregistrer(i * 1_000L);
+    }
+
+    assertEquals(1_000, histogramme.nombre());
+    assertEquals(500_500, histogramme.moyenne());
+    assertEquals(1_000_000, histogramme.max());
+    long mediane = histogramme.quantile(0.5);
+    assertTrue("médiane " + mediane, mediane >= 500_000 && mediane <= 500_000 * 1.125);
+    long centile = histogramme.quantile(0.99);
+    assertTrue("p99 " + centile, centile >= 990_000 && centile <= 1_000_000);
+  }
+
+  @Test
+  public void testVide() {
+    Histogramme histogramme = new Histogramme();
+    assertEquals(0, histogramme.quantile(0.99));
+    assertEquals(0, histogramme.moyenne());
+  }
+
+  @Test
+  public void testEnregistrementSansAllocation() {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Histogramme histogramme = new Histogramme();
+    for (int i = 0; i < 100_000; i++) {
+      histogramme.enregistrer(i);
+    }
+
+    long id = Thread.currentThread().getId();
+    long avant = threads.getThreadAllocatedBytes(id);
+    for (int i = 0; i < 100_000; i++) {
+      histogramme.enregistrer(i);
+    }
+    long alloue = threads.getThreadAllocatedBytes(id) - avant;
+
+    // Quelques octets au plus pour l’appel de mesure lui-même.
+    assertTrue(alloue + " octets alloués", alloue < 1_000);
+  }
+}
@@ -0,0 +1,53 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexDomaineTest {
+  private IndexDomaine index;
+
+  @Before
+  public void setUp() {
+    index = new IndexDomaine();
+    index.ajouter(new DnsItem(new AdresseIP("193.51.31.90"), new NomMachine("www.uvsq.fr")));
+    index.ajouter(new DnsItem(new AdresseIP("193.51.25.12"), new NomMachine("ecampus.uvsq.fr")));
+    index.ajouter(new DnsItem(new AdresseIP("193.51.31.154"), new NomMachine("poste.uvsq.fr")));
+  }
+
+  @Test
+  public void testListeTrieeParNom() {
+    List<DnsItem> items = index.lister(false);
+    assertEquals(3, items.size());
+    assertEquals("ecampus.uvsq.fr", items.get(0).getNomMachine().getNomComplet());
+    assertEquals("poste.uvsq.fr", items.get(1).getNomMachine().getNomComplet());
+    assertEquals("www.uvsq.fr", items.get(2).getNomMachine().getNomComplet());
+  }
+
+  @Test
+  public void testListeTrieeParAdresse() {
+    List<DnsItem> items = index.lister(true);
+    assertEquals(3, items.size());
+    assertEquals("193.51.25.12", items.get(0).getAdresseIP().getIp());
+    assertEquals("193.51.31.90", items.get(1).getAdresseIP().getIp());
+    assertEquals("193.51.31.154", items.get(2).getAdresseIP().getIp());
+  }
+
+  @Test
+  public void testAjoutMaintientLeTri() {
+    index.ajouter(new DnsItem(new AdresseIP("193.51.25.24"), new NomMachine("pikachu.uvsq.fr")));
+    assertEquals(4, index.taille());
+    assertEquals("pikachu.uvsq.fr", index.lister(false).get(1).getNomMachine().getNomComplet());
+    assertEquals("193.51.25.24", index.lister(true).get(1).getAdresseIP().getIp());
+  }
+
+  @Test
+  public void testListeIndependanteDeLIndex() {
+    List<DnsItem> items = index.lister(false);
+    items.clear();
+    assertEquals(3, index.taille());
+  }
+}
@@ -0,0 +1,135 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InstantaneBinaireTest {
+  private Path texte;
+  private Path binaire;
+
+  @Before
+  public void setUp() throws IOException {
+    texte = Files.createTempFile("dns_test_instantane", ".txt");
+    binaire = Files.createTempFile("dns_test_instantane", ".bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(texte);
+    Files.deleteIfExists(binaire);
+  }
+
+  private static List<DnsItem> exemple() {
+    return List.of(new DnsItem(new AdresseIP("193.51.31.90"), new NomMachine("www.uvsq.fr")),
+        new DnsItem(new AdresseIP("10.0.0.1"), new NomMachine("hôte.exemple.org")),
+        new DnsItem(new AdresseIP("193.51.25.12"), new NomMachine("ecampus.uvsq.fr")));
+  }
+
+  @Test
+  public void testEcritureEtLecture() throws IOException {
+    InstantaneBinaire.ecrire(exemple(), binaire);
+
+    List<DnsItem> items = InstantaneBinaire.lire(binaire);
+    assertEquals(3, items.size());
+    assertTrue(items.containsAll(exemple()));
+    assertEquals("hôte", items.get(0).getNomMachine().getNomMachine());
+    assertEquals("exemple.org", items.get(0).getNomMachine().getNomDomaine());
+  }
+
+  @Test
+  public void testRegroupementParDomaineEtIndexParAdresse() throws IOException {
+    InstantaneBinaire.ecrire(exemple(), binaire);
+
+    InstantaneBinaire.Contenu contenu = InstantaneBinaire.lireContenu(binaire);
+    assertEquals(2, contenu.parNom.size());
+    List<DnsItem> uvsq = contenu.parNom.get(1);
+    assertEquals("ecampus.uvsq.fr", uvsq.get(0).getNomMachine().getNomComplet());
+    assertEquals("www.uvsq.fr", uvsq.get(1).getNomMachine().getNomComplet());
+    assertEquals("193.51.25.12", contenu.parAdresse.get(1).get(0).getAdresseIP().getIp());
+  }
+
+  @Test
+  public void testIndexParNomComplet() throws IOException {
+    InstantaneBinaire.ecrire(exemple(), binaire);
+
+    List<DnsItem> parNomComplet = InstantaneBinaire.lireContenu(binaire).parNomComplet;
+    assertEquals(3, parNomComplet.size());
+    assertEquals("ecampus.uvsq.fr", parNomComplet.get(0).getNomMachine().getNomComplet());
+    assertEquals("hôte.exemple.org", parNomComplet.get(1).getNomMachine().getNomComplet());
+    assertEquals("www.uvsq.fr", parNomComplet.get(2).getNomMachine().getNomComplet());
+  }
+
+  @Test
+  public void testLectureParPetitesFenetres() throws IOException {
+    List<DnsItem> items = new ArrayList<>(exemple());
+    items.add(new DnsItem(AdresseIP.depuisTexte("2001:db8::1"), new NomMachine("v6.uvsq.fr")));
+    InstantaneBinaire.ecrire(items, binaire);
+
+    InstantaneBinaire.Contenu attendu = InstantaneBinaire.lireContenu(binaire);
+    for (int fenetre : new int[] {1, 3, 7, 64}) {
+      InstantaneBinaire.Contenu contenu = InstantaneBinaire.lireContenu(binaire, fenetre);
+      assertEquals(attendu.parNom, contenu.parNom);
+      assertEquals(attendu.parAdresse, contenu.parAdresse);
+      assertEquals(attendu.parNomComplet, contenu.parNomComplet);
+    }
+  }
+
+  @Test
+  public void testAdressesIpv6() throws IOException {
+    List<DnsItem> items = List.of(new DnsItem(AdresseIP.depuisTexte("2001:db8::2"), new NomMachine("b.uvsq.fr")),
+        new DnsItem(new AdresseIP("193.51.31.90"), new NomMachine("www.uvsq.fr")),
+        new DnsItem(AdresseIP.depuisTexte("2001:db8::1"), new NomMachine("a.uvsq.fr")));
+    InstantaneBinaire.ecrire(items, binaire);
+
+    InstantaneBinaire.Contenu contenu = InstantaneBinaire.lireContenu(binaire);
+    List<DnsItem> parNom = contenu.parNom.get(0);
+    assertEquals(AdresseIP.depuisTexte("2001:db8::1"), parNom.get(0).getAdresseIP());
+    assertEquals("a.uvsq.fr", parNom.get(0).getNomMachine().getNomComplet());
+    assertEquals(new AdresseIP("193.51.31.90"), parNom.get(2).getAdresseIP());
+    List<DnsItem> parAdresse = contenu.parAdresse.get(0);
+    assertEquals("www.uvsq.fr", parAdresse.get(0).getNomMachine().getNomComplet());
+    assertEquals("b.uvsq.fr", parAdresse.get(2).getNomMachine().getNomComplet());
+  }
+
+  @Test
+  public void testEstInstantane() throws IOException {
+    Files.write(texte, List.of("www.uvsq.fr 193.51.31.90"));
+    InstantaneBinaire.ecrire(exemple(), binaire);
+
+    assertTrue(InstantaneBinaire.estInstantane(binaire));
+    assertFalse(InstantaneBinaire.estInstantane(texte));
+  }
+
+  @Test(expected = IOException.class)
+  public void testSommeDeControleInvalide() throws IOException {
+    InstantaneBinaire.ecrire(exemple(), binaire);
+    byte[] octets = Files.readAllBytes(binaire);
+    octets[octets.length / 2] ^= 1;
+    Files.write(binaire, octets);
+
+    InstantaneBinaire.lire(binaire);
+  }
+
+  @Test
+  public void testConversionsDansLesDeuxSens() throws IOException {
+    Files.write(texte, List.of("www.uvsq.fr 193.51.31.90", "poste.uvsq.fr 193.51.31.154"));
+
+    assertEquals(2, InstantaneBinaire.convertir(texte, binaire));
+    assertTrue(InstantaneBinaire.estInstantane(binaire));
+
+    Files.delete(texte);
+    assertEquals(2, InstantaneBinaire.convertir(binaire, texte));
+    assertEquals(List.of("poste.uvsq.fr 193.51.31.154", "www.uvsq.fr 193.51.31.90"), Files.readAllLines(texte));
+  }
+}
@@ -0,0 +1,141 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetriquesDnsTest {
+  private Path fichier;
+  private Dns dns;
+
+  @Before
+  public void setUp() throws IOException {
+    fichier = Files.createTempFile("dns_test_metriques", ".txt");
+    Files.write(fichier, List.of("www.uvsq.fr 193.51.31.90", "poste.uvsq.fr 193.51.31.154"));
+    dns = new Dns(fichier);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(fichier);
+    Files.deleteIfExists(fichier.resolveSibling(fichier.getFileName() + ".journal"));
+  }
+
+  private List<String> operations() {
+    return dns.getMetriques().getLatences().stream().map(StatistiquesLatence::getOperation)
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testOperationsDeLaBase() throws IOException {
+    // Assez de recherches pour que l’échantillonnage en chronomètre plusieurs.
+    int recherches = 100 * MetriquesDns.ECHANTILLONNAGE_RECHERCHES;
+    for (int i = 0; i < recherches; i++) {
+      dns.getItem(new NomMachine("www.uvsq.fr"));
+      dns.getItem(new NomMachine("absent.uvsq.fr"));
+      dns.getItem(new AdresseIP("193.51.31.154"));
+    }
+    dns.getItems("uvsq.fr", true);
+    dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr"));
+    try {
+      dns.addItem(new AdresseIP("10.0.0.1"), new NomMachine("deux.maison.fr"));
+    } catch (IllegalArgumentException e) {
+      // attendu
+    }
+
+    MetriquesDns metriques = dns.getMetriques();
+    assertEquals(2 * recherches, metriques.getRecherchesTrouvees());
+    assertEquals(recherches, metriques.getRecherchesManquees());
+    assertEquals(1, metriques.getAjoutsRefuses());
+    assertEquals(2, metriques.getEnregistrementsCharges());
+    assertEquals(List.of("getItem(nom)", "getItem(adresse)", "getItems", "addItem", "journal"), operations());
+    long echantillons = metriques.getLatences().get(0).getNombre();
+    assertTrue(echantillons + " recherches chronométrées", echantillons > 0 && echantillons < 2 * recherches / 4);
+    assertEquals(1, metriques.getLatences().get(2).getNombre());
+  }
+
+  @Test
+  public void testAjoutParLot() throws IOException {
+    dns.addItems(List.of(new DnsItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr")),
+        new DnsItem(new AdresseIP("10.0.0.2"), new NomMachine("deux.maison.fr"))));
+    assertEquals(1, latence(dns.getMetriques(), "addItem").getNombre());
+
+    Path base = Files.createTempFile("dns_test_metriques_hors_tas", ".txt");
+    try {
+      Files.write(base, List.of("www.uvsq.fr 193.51.31.90"));
+      DnsHorsTas horsTas = new DnsHorsTas(base);
+      horsTas.addItems(List.of(
+          new DnsItem(new AdresseIP("10.0.0.1"), new NomMachine("un.maison.fr")),
+          new DnsItem(new AdresseIP("10.0.0.2"), new NomMachine("deux.maison.fr"))));
+      assertEquals(1, latence(horsTas.getMetriques(), "addItem").getNombre());
+    } finally {
+      Files.deleteIfExists(base);
+      Files.deleteIfExists(base.resolveSibling(base.getFileName() + ".journal"));
+    }
+  }
+
+  private static StatistiquesLatence latence(MetriquesDns metriques, String operation) {
+    return metriques.getLatences().stream().filter(s -> s.getOperation().equals(operation))
+        .findFirst().get();
+  }
+
+  @Test
+  public void testCommandesRegroupeesParType() {
+    MetriquesDns metriques = dns.getMetriques();
+    metriques.commande(DnsTUI.analyser(dns, "www.uvsq.fr"), 1_000);
+    metriques.commande(DnsTUI.analyser(dns, "poste.uvsq.fr"), 3_000);
+    metriques.commande(DnsTUI.analyser(dns, "ls"), 1_000);
+    metriques.commande(DnsTUI.analyser(dns, ""), 1_000);
+
+    List<StatistiquesLatence> latences = metriques.getLatences();
+    StatistiquesLatence getAdresse = latences.stream()
+        .filter(s -> s.getOperation().equals("CommandeGetAdresse")).findFirst().get();
+    assertEquals(2, getAdresse.getNombre());
+    assertEquals(3_000, getAdresse.getMaxNanos());
+    StatistiquesLatence invalide = latences.stream()
+        .filter(s -> s.getOperation().equals("CommandeInvalide")).findFirst().get();
+    assertEquals(2, invalide.getNombre());
+  }
+
+  @Test
+  public void testLatencesSousLaMicroseconde() {
+    Histogramme histogramme = new Histogramme();
+    histogramme.enregistrer(180);
+    histogramme.enregistrer(220);
+    StatistiquesLatence resume = StatistiquesLatence.resumer("getItem", histogramme);
+    assertEquals(200, resume.getMoyenneNanos());
+    assertTrue(resume.getP50Nanos() > 0);
+    assertEquals(220, resume.getMaxNanos());
+    assertTrue(resume.toString(), resume.toString().endsWith("max 0.220 µs"));
+  }
+
+  @Test
+  public void testPublicationJmx() throws Exception {
+    dns.getItem(new NomMachine("www.uvsq.fr"));
+    dns.getItems("uvsq.fr");
+    ObjectName nom = dns.getMetriques().publier("test-" + fichier.getFileName());
+    MBeanServer serveur = ManagementFactory.getPlatformMBeanServer();
+    try {
+      assertEquals(1L, serveur.getAttribute(nom, "RecherchesTrouvees"));
+      CompositeData[] latences = (CompositeData[]) serveur.getAttribute(nom, "Latences");
+      CompositeData liste = latences[latences.length - 1];
+      assertEquals("getItems", liste.get("operation"));
+      assertEquals(1L, liste.get("nombre"));
+    } finally {
+      serveur.unregisterMBean(nom);
+    }
+  }
+}
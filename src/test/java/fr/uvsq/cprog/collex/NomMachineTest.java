@@ -1,10 +1,14 @@
 package fr.uvsq.cprog.collex;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Test;
 
 public class NomMachineTest {
@@ -59,4 +63,34 @@ public class NomMachineTest {
     NomMachine nom = new NomMachine("machine.domaine");
     assertEquals("machine.domaine", nom.toString());
   }
+
+  @Test
+  public void testOrdreNomMachine() {
+    NomMachine a = new NomMachine("a.uvsq.fr");
+    NomMachine aTiret = new NomMachine("a-b.uvsq.fr");
+    NomMachine ab = new NomMachine("ab.autre.fr");
+
+    assertTrue(NomMachine.ORDRE_NOM_MACHINE.compare(a, aTiret) < 0);
+    assertTrue(NomMachine.ORDRE_NOM_MACHINE.compare(aTiret, ab) < 0);
+    assertTrue(NomMachine.ORDRE_NOM_MACHINE.compare(a, ab) < 0);
+    assertEquals(0, NomMachine.ORDRE_NOM_MACHINE.compare(a, new NomMachine("a.autre.fr")));
+  }
+
+  @Test
+  public void testDomainePartage() {
+    String domaine = new NomMachine("pc1.dept.uvsq.fr").getNomDomaine();
+    assertEquals("dept.uvsq.fr", domaine);
+    assertSame(domaine, new NomMachine("pc2.dept.uvsq.fr").getNomDomaine());
+  }
+
+  @Test
+  public void testComparerNomMachine() {
+    NomMachine nom = new NomMachine("ab.uvsq.fr");
+    assertEquals(0, nom.comparerNomMachine("ab"));
+    assertTrue(nom.comparerNomMachine("a") > 0);
+    assertTrue(nom.comparerNomMachine("abc") < 0);
+    assertTrue(nom.comparerNomMachine("b") < 0);
+    assertArrayEquals(new byte[] {'a', 'b'}, nom.getNomMachineUtf8());
+    assertArrayEquals("hôte".getBytes(StandardCharsets.UTF_8), new NomMachine("hôte.fr").getNomMachineUtf8());
+  }
 }
@@ -0,0 +1,144 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServeurDnsTcpTest {
+  private Path fichier;
+  private Dns dns;
+  private ServeurDnsTcp serveur;
+
+  @Before
+  public void setUp() throws IOException {
+    fichier = Files.createTempFile("dns_test_tcp", ".txt");
+    Files.write(fichier, List.of("www.uvsq.fr 193.51.31.90", "poste.uvsq.fr 193.51.31.154"));
+    dns = new Dns(fichier);
+    serveur = new ServeurDnsTcp(dns, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).demarrer();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    serveur.close();
+    Files.deleteIfExists(fichier);
+    Files.deleteIfExists(fichier.resolveSibling(fichier.getFileName() + ".journal"));
+  }
+
+  private Socket connecter() throws IOException {
+    return new Socket(InetAddress.getLoopbackAddress(), serveur.getPort());
+  }
+
+  private static BufferedReader lecteur(Socket socket) throws IOException {
+    return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testCommandesEnchainees() throws IOException {
+    try (Socket socket = connecter()) {
+      OutputStream sortie = socket.getOutputStream();
+      StringBuilder requetes = new StringBuilder();
+      for (int i = 0; i < 200; i++) {
+        requetes.append(i % 2 == 0 ? "www.uvsq.fr\n" : "193.51.31.154\n");
+      }
+      requetes.append("add 10.0.0.1 nouveau.uvsq.fr\nls -a uvsq.fr\nbidule\n");
+      sortie.write(requetes.toString().getBytes(StandardCharsets.UTF_8));
+      sortie.flush();
+
+      BufferedReader lecteur = lecteur(socket);
+      for (int i = 0; i < 200; i++) {
+        assertEquals(i % 2 == 0 ? "193.51.31.90" : "poste.uvsq.fr", lecteur.readLine());
+        assertEquals("", lecteur.readLine());
+      }
+      assertEquals("Ajout réussi : 10.0.0.1 nouveau.uvsq.fr", lecteur.readLine());
+      assertEquals("", lecteur.readLine());
+      assertEquals("10.0.0.1 nouveau.uvsq.fr", lecteur.readLine());
+      assertEquals("193.51.31.90 www.uvsq.fr", lecteur.readLine());
+      assertEquals("193.51.31.154 poste.uvsq.fr", lecteur.readLine());
+      assertEquals("", lecteur.readLine());
+      assertEquals("ERREUR : Commande non reconnue. Veuillez réessayer.", lecteur.readLine());
+      assertEquals("", lecteur.readLine());
+    }
+  }
+
+  @Test
+  public void testConnexionsSimultanees() throws IOException {
+    try (Socket premier = connecter(); Socket second = connecter()) {
+      BufferedReader lecteurPremier = lecteur(premier);
+      BufferedReader lecteurSecond = lecteur(second);
+
+      second.getOutputStream().write("add 10.0.0.2 partage.uvsq.fr\n".getBytes(StandardCharsets.UTF_8));
+      assertEquals("Ajout réussi : 10.0.0.2 partage.uvsq.fr", lecteurSecond.readLine());
+      premier.getOutputStream().write("partage.uvsq.fr\n".getBytes(StandardCharsets.UTF_8));
+      assertEquals("10.0.0.2", lecteurPremier.readLine());
+    }
+  }
+
+  @Test
+  public void testQuitFermeLaConnexion() throws IOException {
+    try (Socket socket = connecter()) {
+      socket.getOutputStream().write("quit\nwww.uvsq.fr\n".getBytes(StandardCharsets.UTF_8));
+      BufferedReader lecteur = lecteur(socket);
+      assertEquals("Fin de la connexion.", lecteur.readLine());
+      assertNull(lecteur.readLine());
+    }
+    // Le serveur continue d’accepter des clients.
+    try (Socket socket = connecter()) {
+      socket.getOutputStream().write("www.uvsq.fr\n".getBytes(StandardCharsets.UTF_8));
+      assertEquals("193.51.31.90", lecteur(socket).readLine());
+    }
+  }
+
+  @Test
+  public void testEcouteParDefautSurLaBoucleLocale() throws IOException {
+    try (ServeurDnsTcp local = new ServeurDnsTcp(dns, 0)) {
+      assertTrue(local.getAdresse().isLoopbackAddress());
+    }
+  }
+
+  @Test
+  public void testCommandesDeFichiersRefusees() throws IOException {
+    Path cible = fichier.resolveSibling(fichier.getFileName() + ".copie");
+    try (Socket socket = connecter()) {
+      socket.getOutputStream().write(("convert " + fichier + " " + cible + "\nimport " + fichier
+          + "\nwww.uvsq.fr\n").getBytes(StandardCharsets.UTF_8));
+      BufferedReader lecteur = lecteur(socket);
+      assertEquals("ERREUR : Commande 'convert' non autorisée à distance.", lecteur.readLine());
+      assertEquals("", lecteur.readLine());
+      assertEquals("ERREUR : Commande 'import' non autorisée à distance.", lecteur.readLine());
+      assertEquals("", lecteur.readLine());
+      assertEquals("193.51.31.90", lecteur.readLine());
+    } finally {
+      assertFalse(Files.deleteIfExists(cible));
+    }
+  }
+
+  @Test
+  public void testLigneTropLongueIgnoree() throws IOException {
+    try (Socket socket = connecter()) {
+      String longue = "a".repeat(ServeurDnsTcp.LONGUEUR_MAX_LIGNE * 4) + ".uvsq.fr";
+      socket.getOutputStream().write((longue + "\nwww.uvsq.fr\n").getBytes(StandardCharsets.UTF_8));
+      BufferedReader lecteur = lecteur(socket);
+      assertEquals("ERREUR : Ligne de plus de " + ServeurDnsTcp.LONGUEUR_MAX_LIGNE + " caractères ignorée.",
+          lecteur.readLine());
+      assertEquals("", lecteur.readLine());
+      assertEquals("193.51.31.90", lecteur.readLine());
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServeurDnsUdpTest {
+  private Path fichier;
+  private ServeurDnsUdp serveur;
+
+  @Before
+  public void setUp() throws IOException {
+    fichier = Files.createTempFile("dns_test_udp", ".txt");
+    Files.write(fichier, List.of("www.uvsq.fr 193.51.31.90"));
+    serveur = new ServeurDnsUdp(new Dns(fichier), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+        .demarrer();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    serveur.close();
+    Files.deleteIfExists(fichier);
+  }
+
+  @Test
+  public void testRequetesSurLaBoucleLocale() throws IOException {
+    try (DatagramChannel client = DatagramChannel.open()) {
+      client.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), serveur.getPort()));
+      ByteBuffer reponse = ByteBuffer.allocate(CodecDns.TAILLE_MAX_UDP);
+
+      for (int i = 0; i < 10; i++) {
+        client.write(CodecDnsTest.requete(i, "www.uvsq.fr", CodecDns.TYPE_A));
+        reponse.clear();
+        client.read(reponse);
+        reponse.flip();
+        assertEquals(i, reponse.getShort(0));
+        assertEquals(1, reponse.getShort(6));
+        assertEquals(new AdresseIP("193.51.31.90").getValeur(), reponse.getInt(reponse.limit() - 4));
+      }
+    }
+  }
+}
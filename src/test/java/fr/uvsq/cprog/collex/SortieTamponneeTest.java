@@ -0,0 +1,81 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class SortieTamponneeTest {
+  private static class FluxCompte extends ByteArrayOutputStream {
+    private int ecritures;
+    private int vidages;
+
+    @Override
+    public synchronized void write(byte[] octets, int debut, int longueur) {
+      ecritures++;
+      super.write(octets, debut, longueur);
+    }
+
+    @Override
+    public void flush() {
+      vidages++;
+    }
+  }
+
+  @Test
+  public void testRienNEstEcritAvantVider() {
+    FluxCompte flux = new FluxCompte();
+    SortieTamponnee sortie = new SortieTamponnee(flux, StandardCharsets.UTF_8);
+
+    sortie.ligne("www.uvsq.fr");
+    sortie.ligne(new StringBuilder("193.51.31.90"));
+    assertEquals(0, flux.size());
+
+    sortie.vider();
+    assertEquals(1, flux.ecritures);
+    assertEquals(1, flux.vidages);
+    String finDeLigne = System.lineSeparator();
+    assertEquals("www.uvsq.fr" + finDeLigne + "193.51.31.90" + finDeLigne,
+        flux.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testEcritureParPaquetsSansVidage() {
+    FluxCompte flux = new FluxCompte();
+    SortieTamponnee sortie = new SortieTamponnee(flux, StandardCharsets.UTF_8);
+    StringBuilder attendu = new StringBuilder();
+
+    for (int i = 0; i < 50_000; i++) {
+      String ligne = "hôte-" + i + ".réseau.fr";
+      sortie.ligne(ligne);
+      attendu.append(ligne).append(System.lineSeparator());
+    }
+    assertTrue(flux.ecritures > 1);
+    assertTrue(flux.ecritures < 100);
+    assertEquals(0, flux.vidages);
+
+    sortie.vider();
+    assertEquals(attendu.toString(), flux.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testErreurDEcriture() {
+    OutputStream flux = new OutputStream() {
+      @Override
+      public void write(int octet) throws IOException {
+        throw new IOException("connexion fermée");
+      }
+    };
+    SortieTamponnee sortie = new SortieTamponnee(flux);
+    sortie.ligne("perdue");
+
+    assertThrows(UncheckedIOException.class, sortie::vider);
+  }
+}
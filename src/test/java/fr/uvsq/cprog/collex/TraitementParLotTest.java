@@ -0,0 +1,86 @@
+package fr.uvsq.cprog.collex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TraitementParLotTest {
+  private Path fichier;
+  private Dns dns;
+
+  @Before
+  public void setUp() throws IOException {
+    fichier = Files.createTempFile("dns_test_lot", ".txt");
+    Files.write(fichier, List.of("www.uvsq.fr 193.51.31.90", "poste.uvsq.fr 193.51.31.154"));
+    dns = new Dns(fichier);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(fichier);
+    Files.deleteIfExists(Path.of(fichier + ".journal"));
+  }
+
+  private ResultatCommande executer(TraitementParLot lot, String script) throws IOException {
+    ResultatCommande resultat = new ResultatCommande();
+    lot.executer(new BufferedReader(new StringReader(script)), resultat);
+    return resultat;
+  }
+
+  @Test
+  public void testExecutionSansInvite() throws IOException {
+    TraitementParLot lot = new TraitementParLot(dns);
+    ResultatCommande resultat = executer(lot, "# commentaire\n"
+        + "www.uvsq.fr\n"
+        + "\n"
+        + "193.51.31.154\n"
+        + "add 193.51.25.12 ecampus.uvsq.fr\n"
+        + "ecampus.uvsq.fr\n"
+        + "absente.uvsq.fr\n"
+        + "ls\n"
+        + "quit\n"
+        + "www.uvsq.fr\n");
+
+    List<String> lignes = resultat.getLignes();
+    assertEquals("193.51.31.90", lignes.get(0));
+    assertEquals("poste.uvsq.fr", lignes.get(1));
+    assertEquals("Ajout réussi : 193.51.25.12 ecampus.uvsq.fr", lignes.get(2));
+    assertEquals("193.51.25.12", lignes.get(3));
+    assertTrue(lignes.get(4).startsWith("ERREUR : Machine introuvable"));
+    assertTrue(lignes.get(5).startsWith("ERREUR : Commande 'ls' invalide"));
+    assertEquals(6, lignes.size());
+    assertEquals(6, lot.getCommandes());
+    assertEquals(2, lot.getErreurs());
+  }
+
+  @Test
+  public void testRapport() throws IOException {
+    TraitementParLot lot = new TraitementParLot(dns);
+    executer(lot, "www.uvsq.fr\nposte.uvsq.fr\n193.51.31.90\ninconnue\n");
+
+    ResultatCommande rapport = new ResultatCommande();
+    lot.rapport(rapport);
+    List<String> lignes = rapport.getLignes();
+    assertTrue(lignes.get(0).startsWith("Lot terminé : 4 commandes, 1 erreurs en "));
+    assertTrue(lignes.get(0).endsWith(" commandes/s)"));
+    assertEquals(4, lignes.size());
+    assertTrue(lignes.get(1).startsWith("  CommandeGetAdresse : 2 commandes, p50 "));
+    assertTrue(lignes.get(1).contains(", p90 "));
+    assertTrue(lignes.get(1).contains(", p99 "));
+    assertTrue(lignes.get(1).contains(", max "));
+    // Les durées gardent trois décimales : une commande rapide ne s’affiche pas « 0 µs ».
+    assertTrue(lignes.get(1), lignes.get(1).matches(".*, max \\d+\\.\\d{3} µs"));
+    assertTrue(lignes.get(2).startsWith("  CommandeGetNom : 1 commandes"));
+    assertTrue(lignes.get(3).startsWith("  CommandeInvalide : 1 commandes"));
+  }
+}